@@ -0,0 +1,15 @@
+package com.vibhuti.microservices.api;
+
+/**
+ * A representation that is served with a strong ETag, so clients can revalidate it
+ * with If-None-Match instead of fetching it again.
+ */
+public interface EntityTagged {
+
+  /**
+   * Not a bean getter, so it's never part of the JSON body.
+   *
+   * @return the quoted entity tag, see {@link EntityTags}
+   */
+  String entityTag();
+}
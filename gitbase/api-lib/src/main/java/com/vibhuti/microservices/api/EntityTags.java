@@ -0,0 +1,153 @@
+package com.vibhuti.microservices.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds the ETags of the API. The tag of an entity is
+ * {@code "<version>.<generation>-<hash>"}, where the version is the optimistic locking
+ * version of the entity, the generation is drawn at random when the entity is created,
+ * since the version starts over when it is deleted and created again, and the hash
+ * covers the fields of the representation. Service addresses are left out, so every
+ * instance of a service hands out the same tag for the same data.
+ */
+public final class EntityTags {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private EntityTags() {}
+
+  /**
+   * Version and generation of an entity tag, which the tag's hash follows from, as every
+   * write that changes a field increases the version. A conditional write only needs to
+   * match these two.
+   */
+  public record Revision(int version, long generation) {}
+
+  public static String of(int version, long generation, Object... fields) {
+    long hash = FNV_OFFSET_BASIS;
+    for (Object field : fields) {
+      hash = hash(hash, String.valueOf(field));
+    }
+    return quote(version + "." + Long.toHexString(generation), hash);
+  }
+
+  /**
+   * Generation of an entity that is created, never 0, which entities stored before
+   * generations were introduced have.
+   */
+  public static long newGeneration() {
+    long generation;
+    do {
+      generation = ThreadLocalRandom.current().nextLong();
+    } while (generation == 0);
+    return generation;
+  }
+
+  /**
+   * Tag of a list, it changes when an item is added, removed, reordered or updated.
+   * The size takes the place of the version.
+   */
+  public static String ofList(List<? extends EntityTagged> items) {
+    long hash = FNV_OFFSET_BASIS;
+    for (EntityTagged item : items) {
+      hash = hash(hash, item.entityTag());
+    }
+    return quote(String.valueOf(items.size()), hash);
+  }
+
+  /**
+   * Tag of a representation built from other tagged parts, e.g. an aggregate. A null
+   * part, i.e. one that was left out, gives another tag than an empty one.
+   */
+  public static String combine(int version, long generation, String... tags) {
+    long hash = FNV_OFFSET_BASIS;
+    for (String tag : tags) {
+      hash = hash(hash, tag == null ? "-" : tag);
+    }
+    return quote(version + "." + Long.toHexString(generation), hash);
+  }
+
+  /**
+   * Version a tag was built with, e.g. to check a cached representation against the
+   * current version of its entity.
+   */
+  public static int version(String entityTag) {
+    return revision(entityTag).version();
+  }
+
+  /**
+   * Revision of a strong entity tag, null for a weak or malformed one.
+   */
+  public static Revision revision(String entityTag) {
+    int dot = entityTag.indexOf('.');
+    int dash = entityTag.indexOf('-', dot + 1);
+    if (entityTag.length() < 2 || !entityTag.startsWith("\"") || !entityTag.endsWith("\"") || dot < 2
+      || dash < dot + 2) {
+      return null;
+    }
+    try {
+      return new Revision(Integer.parseInt(entityTag.substring(1, dot)),
+        Long.parseUnsignedLong(entityTag.substring(dot + 1, dash), 16));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * True if an If-Match header lets any state through, i.e. it is {@code *} or missing,
+   * so an update needn't be conditional.
+   */
+  public static boolean matchesAny(String ifMatch) {
+    return ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*");
+  }
+
+  /**
+   * Revisions of the strong tags of an If-Match header, for a conditional write that
+   * applies if the entity is at any of them. Weak and malformed tags are left out, an
+   * empty list matches nothing.
+   */
+  public static List<Revision> revisions(String ifMatch) {
+    List<Revision> revisions = new ArrayList<>();
+    for (String tag : ifMatch.split(",")) {
+      Revision revision = revision(tag.trim());
+      if (revision != null) {
+        revisions.add(revision);
+      }
+    }
+    return revisions;
+  }
+
+  /**
+   * Compares the tags of an If-Match header with the current tag of a representation,
+   * the whole tag. Weak and malformed tags match nothing.
+   */
+  public static boolean matches(String ifMatch, String entityTag) {
+    if (matchesAny(ifMatch)) {
+      return true;
+    }
+    for (String tag : ifMatch.split(",")) {
+      if (tag.trim().equals(entityTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // FNV-1a, 64 bits keeps collisions between two states of the same resource out of reach
+  private static long hash(long hash, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    // Separator, so ("ab", "c") and ("a", "bc") differ
+    hash ^= 0xff;
+    return hash * FNV_PRIME;
+  }
+
+  private static String quote(String revision, long hash) {
+    return "\"" + revision + "-" + Long.toHexString(hash) + "\"";
+  }
+}
@@ -0,0 +1,36 @@
+package com.vibhuti.microservices.api.composite.product;
+
+/**
+ * The outcome of one composite product of a bulk import, with the HTTP status a
+ * single create of it would have got, and the error message of a failed one.
+ */
+public class ImportResult {
+
+  private final int productId;
+  private final int status;
+  private final String message;
+
+  public ImportResult() {
+    productId = 0;
+    status = 0;
+    message = null;
+  }
+
+  public ImportResult(int productId, int status, String message) {
+    this.productId = productId;
+    this.status = status;
+    this.message = message;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+}
@@ -2,13 +2,23 @@ package com.vibhuti.microservices.api.composite.product;
 
 import java.util.List;
 
-public class ProductAggregate {
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.vibhuti.microservices.api.EntityTagged;
+
+public class ProductAggregate implements EntityTagged {
   private final int productId;
   private final String name;
   private final int weight;
+  // Null when left out with the include parameter, and then omitted from the JSON
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private final List<RecommendationSummary> recommendations;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private final List<ReviewSummary> reviews;
   private final ServiceAddresses serviceAddresses;
+  // Sent as the ETag header, not in the body
+  @JsonIgnore
+  private final String entityTag;
 
   public ProductAggregate(
     int productId,
@@ -18,12 +28,25 @@ public class ProductAggregate {
     List<ReviewSummary> reviews,
     ServiceAddresses serviceAddresses) {
 
+    this(productId, name, weight, recommendations, reviews, serviceAddresses, null);
+  }
+
+  public ProductAggregate(
+    int productId,
+    String name,
+    int weight,
+    List<RecommendationSummary> recommendations,
+    List<ReviewSummary> reviews,
+    ServiceAddresses serviceAddresses,
+    String entityTag) {
+
     this.productId = productId;
     this.name = name;
     this.weight = weight;
     this.recommendations = recommendations;
     this.reviews = reviews;
     this.serviceAddresses = serviceAddresses;
+    this.entityTag = entityTag;
   }
   
   public ProductAggregate() {
@@ -33,6 +56,7 @@ public class ProductAggregate {
 	    recommendations = null;
 	    reviews = null;
 	    serviceAddresses = null;
+	    entityTag = null;
 	  }
 
   public int getProductId() {
@@ -58,4 +82,9 @@ public class ProductAggregate {
   public ServiceAddresses getServiceAddresses() {
     return serviceAddresses;
   }
-}
\ No newline at end of file
+
+  @Override
+  public String entityTag() {
+    return entityTag;
+  }
+}
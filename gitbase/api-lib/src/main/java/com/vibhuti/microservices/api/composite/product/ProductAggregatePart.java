@@ -0,0 +1,81 @@
+package com.vibhuti.microservices.api.composite.product;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One part of a composite product, sent as soon as its core service has answered: the
+ * product itself first, then its recommendations and its reviews in the order they
+ * arrive. Only the fields of its type are set, the others are omitted from the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductAggregatePart {
+
+  public enum Type {
+    PRODUCT,
+    RECOMMENDATIONS,
+    REVIEWS
+  }
+
+  private final Type type;
+  private final int productId;
+  private final String name;
+  private final Integer weight;
+  private final List<RecommendationSummary> recommendations;
+  private final List<ReviewSummary> reviews;
+  private final String serviceAddress;
+
+  public ProductAggregatePart() {
+    type = null;
+    productId = 0;
+    name = null;
+    weight = null;
+    recommendations = null;
+    reviews = null;
+    serviceAddress = null;
+  }
+
+  public ProductAggregatePart(Type type, int productId, String name, Integer weight,
+    List<RecommendationSummary> recommendations, List<ReviewSummary> reviews, String serviceAddress) {
+
+    this.type = type;
+    this.productId = productId;
+    this.name = name;
+    this.weight = weight;
+    this.recommendations = recommendations;
+    this.reviews = reviews;
+    this.serviceAddress = serviceAddress;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Integer getWeight() {
+    return weight;
+  }
+
+  public List<RecommendationSummary> getRecommendations() {
+    return recommendations;
+  }
+
+  public List<ReviewSummary> getReviews() {
+    return reviews;
+  }
+
+  /**
+   * The address of the core service instance the part is from.
+   */
+  public String getServiceAddress() {
+    return serviceAddress;
+  }
+}
@@ -0,0 +1,53 @@
+package com.vibhuti.microservices.api.composite.product;
+
+import java.util.List;
+
+/**
+ * A page of the composite products changed since a token, in the order they were
+ * changed. A product that changed again later shows up again on a later page.
+ */
+public class ProductChanges {
+
+  private final List<ProductAggregate> products;
+  private final List<Integer> deletedProductIds;
+  private final String next;
+  private final boolean more;
+
+  public ProductChanges() {
+    products = null;
+    deletedProductIds = null;
+    next = null;
+    more = false;
+  }
+
+  public ProductChanges(List<ProductAggregate> products, List<Integer> deletedProductIds, String next,
+    boolean more) {
+
+    this.products = products;
+    this.deletedProductIds = deletedProductIds;
+    this.next = next;
+    this.more = more;
+  }
+
+  public List<ProductAggregate> getProducts() {
+    return products;
+  }
+
+  public List<Integer> getDeletedProductIds() {
+    return deletedProductIds;
+  }
+
+  /**
+   * The token to ask for the changes after this page with.
+   */
+  public String getNext() {
+    return next;
+  }
+
+  /**
+   * Whether there are more changes than this page, to be asked for right away.
+   */
+  public boolean isMore() {
+    return more;
+  }
+}
@@ -1,45 +1,169 @@
 package com.vibhuti.microservices.api.composite.product;
 
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import com.vibhuti.microservices.api.core.product.ProductPatch;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import reactor.core.publisher.Flux;
 
 @Tag(name = "ProductComposite", description = "REST API for composite product information.")
 public interface ProductCompositeService {
 
 	/**
-	 * Sample usage: "curl $HOST:$PORT/product-composite/1".
+	 * Sample usage: "curl $HOST:$PORT/product-composite/1?include=reviews".
 	 *
 	 * @param productId Id of the product
+	 * @param include   sections to include, recommendations and/or reviews. All
+	 *                  of them if left out, none if empty
 	 * @return the composite product info, if found, else null
 	 */
 	@Operation(summary = "${api.product-composite.get-composite-product.description}", description = "${api.product-composite.get-composite-product.notes}")
 	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+			@ApiResponse(responseCode = "304", description = "${api.responseCodes.notModified.description}"),
 			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
 			@ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
 			@ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}") })
 	@GetMapping(value = "/product-composite/{productId}", produces = "application/json")
-	ProductAggregate getProduct(@PathVariable("productId") int productId);
+	ProductAggregate getProduct(@PathVariable("productId") int productId,
+			@RequestParam(value = "include", required = false) List<String> include);
 
-	@Operation(summary = "${api.product-composite.create-composite-product.description}", description = "${api.product-composite.create-composite-product.notes}")
-	@ApiResponses(value = {
+	/**
+	 * Sample usage: "curl -H 'Accept: application/x-ndjson' $HOST:$PORT/product-composite/1".
+	 *
+	 * @param productId Id of the product
+	 * @param include   sections to include, as for the JSON response
+	 * @return the product first, then its recommendations and reviews as each arrives
+	 */
+	@Operation(summary = "${api.product-composite.get-composite-product-parts.description}", description = "${api.product-composite.get-composite-product-parts.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
 			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+			@ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
 			@ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}") })
+	@GetMapping(value = "/product-composite/{productId}", produces = "application/x-ndjson")
+	Flux<ProductAggregatePart> getProductParts(@PathVariable("productId") int productId,
+			@RequestParam(value = "include", required = false) List<String> include);
+
+	/**
+	 * Sample usage: "curl -H 'Accept: text/event-stream' $HOST:$PORT/product-composite/1".
+	 *
+	 * @param productId Id of the product
+	 * @param include   sections to include, as for the JSON response
+	 * @return the parts of {@link #getProductParts}, as events named after their type
+	 */
+	@Operation(summary = "${api.product-composite.get-composite-product-parts.description}", description = "${api.product-composite.get-composite-product-parts.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+			@ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+			@ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}") })
+	@GetMapping(value = "/product-composite/{productId}", produces = "text/event-stream")
+	Flux<ServerSentEvent<ProductAggregatePart>> getProductPartEvents(@PathVariable("productId") int productId,
+			@RequestParam(value = "include", required = false) List<String> include);
+
+	/**
+	 * Sample usage: "curl $HOST:$PORT/product-composite/changes?since=1700000000000-1&limit=100".
+	 *
+	 * @param since the next token of the previous page, none to start from the oldest change
+	 * @param limit most changes on the page
+	 * @return the changed products, and the token to ask for the changes after them
+	 */
+	@Operation(summary = "${api.product-composite.get-composite-product-changes.description}", description = "${api.product-composite.get-composite-product-changes.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+			@ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}") })
+	@GetMapping(value = "/product-composite/changes", produces = "application/json")
+	ProductChanges getChanges(@RequestParam(value = "since", required = false) String since,
+			@RequestParam(value = "limit", required = false, defaultValue = "100") int limit);
+
+	/**
+	 * Sample usage: "curl $HOST:$PORT/product-composite/export".
+	 *
+	 * @return all composite products ordered by product id, one JSON document per line
+	 */
+	@Operation(summary = "${api.product-composite.export-composite-products.description}", description = "${api.product-composite.export-composite-products.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}") })
+	@GetMapping(value = "/product-composite/export", produces = "application/x-ndjson")
+	Flux<ProductAggregate> exportProducts();
+
+	@Operation(summary = "${api.product-composite.create-composite-product.description}", description = "${api.product-composite.create-composite-product.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+			@ApiResponse(responseCode = "202", description = "${api.responseCodes.accepted.description}"),
+			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+			@ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}"),
+			@ApiResponse(responseCode = "503", description = "${api.responseCodes.serviceUnavailable.description}") })
 	@PostMapping(value = "/product-composite", consumes = "application/json")
-	void createProduct(@RequestBody ProductAggregate body);
+	ResponseEntity<Void> createProduct(@RequestBody ProductAggregate body);
 
-	@Operation(summary = "${api.product-composite.delete-composite-product.description}", description = "${api.product-composite.delete-composite-product.notes}")
-	@ApiResponses(value = {
+	/**
+	 * Sample usage: "curl -X PUT $HOST:$PORT/product-composite/1 -H 'If-Match: &lt;ETag&gt;' -H 'Content-Type: application/json' --data '{...}'".
+	 *
+	 * @param productId Id of the product
+	 * @param ifMatch   ETags of the composite product the update applies to, any if left out
+	 * @param body      the new name and weight, and the new fields of the recommendations and reviews listed
+	 * @return the updated composite product
+	 */
+	@Operation(summary = "${api.product-composite.update-composite-product.description}", description = "${api.product-composite.update-composite-product.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
 			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+			@ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+			@ApiResponse(responseCode = "412", description = "${api.responseCodes.preconditionFailed.description}"),
 			@ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}") })
+	@PutMapping(value = "/product-composite/{productId}", consumes = "application/json", produces = "application/json")
+	ProductAggregate updateProduct(@PathVariable int productId,
+			@RequestHeader(value = "If-Match", required = false) String ifMatch, @RequestBody ProductAggregate body);
+
+	/**
+	 * Sample usage: "curl -X PATCH $HOST:$PORT/product-composite/1 -H 'If-Match: &lt;ETag&gt;' -H 'Content-Type: application/json' --data '{"weight":2}'".
+	 *
+	 * @param productId Id of the product
+	 * @param ifMatch   ETags of the composite product the update applies to, any if left out
+	 * @param body      the fields of the product to change
+	 * @return the updated composite product
+	 */
+	@Operation(summary = "${api.product-composite.patch-composite-product.description}", description = "${api.product-composite.patch-composite-product.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+			@ApiResponse(responseCode = "404", description = "${api.responseCodes.notFound.description}"),
+			@ApiResponse(responseCode = "412", description = "${api.responseCodes.preconditionFailed.description}"),
+			@ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}") })
+	@PatchMapping(value = "/product-composite/{productId}", consumes = "application/json", produces = "application/json")
+	ProductAggregate patchProduct(@PathVariable int productId,
+			@RequestHeader(value = "If-Match", required = false) String ifMatch, @RequestBody ProductPatch body);
+
+	/**
+	 * Sample usage: "curl -X POST $HOST:$PORT/product-composite/import -H 'Content-Type: application/x-ndjson' --data-binary @products.ndjson".
+	 *
+	 * @param body the composite products, one JSON document per line
+	 * @return the result of each composite product, in the order they were sent
+	 */
+	@Operation(summary = "${api.product-composite.import-composite-products.description}", description = "${api.product-composite.import-composite-products.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}") })
+	@PostMapping(value = "/product-composite/import", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+	Flux<ImportResult> importProducts(@RequestBody Flux<ProductAggregate> body);
+
+	@Operation(summary = "${api.product-composite.delete-composite-product.description}", description = "${api.product-composite.delete-composite-product.notes}")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+			@ApiResponse(responseCode = "202", description = "${api.responseCodes.accepted.description}"),
+			@ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}"),
+			@ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}"),
+			@ApiResponse(responseCode = "503", description = "${api.responseCodes.serviceUnavailable.description}") })
 	@DeleteMapping(value = "/product-composite/{productId}")
-	void deleteProduct(@PathVariable int productId);
+	ResponseEntity<Void> deleteProduct(@PathVariable int productId);
 
 }
@@ -1,9 +1,13 @@
 package com.vibhuti.microservices.api.composite.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class ServiceAddresses {
   private final String cmp;
   private final String pro;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private final String rev;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   private final String rec;
 
   public ServiceAddresses() {
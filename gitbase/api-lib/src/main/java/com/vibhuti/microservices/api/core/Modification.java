@@ -0,0 +1,35 @@
+package com.vibhuti.microservices.api.core;
+
+/**
+ * The last change of the entities of a product in a core service, a create or a
+ * delete. Modifications are listed in the order of their position, the time of the
+ * change in epoch milliseconds and then the product id.
+ */
+public class Modification {
+
+  /**
+   * The most modifications listed per request.
+   */
+  public static final int MAX_LIMIT = 1000;
+
+  private final int productId;
+  private final long lastModified;
+
+  public Modification() {
+    productId = 0;
+    lastModified = 0;
+  }
+
+  public Modification(int productId, long lastModified) {
+    this.productId = productId;
+    this.lastModified = lastModified;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+}
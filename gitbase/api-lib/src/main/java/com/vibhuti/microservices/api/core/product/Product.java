@@ -1,10 +1,15 @@
 package com.vibhuti.microservices.api.core.product;
 
-public class Product {
+import com.vibhuti.microservices.api.EntityTagged;
+import com.vibhuti.microservices.api.EntityTags;
+
+public class Product implements EntityTagged {
 	private int productId;
 	private String name;
 	private int weight;
 	private String serviceAddress;
+	private int version;
+	private long generation;
 	
 	public Product() {
 		productId = 0;
@@ -52,8 +57,25 @@ public class Product {
 	public void setServiceAddress(String serviceAddress) {
 		this.serviceAddress = serviceAddress;
 	}
-	
-	
-	
 
-}
\ No newline at end of file
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public void setGeneration(long generation) {
+		this.generation = generation;
+	}
+
+	@Override
+	public String entityTag() {
+		return EntityTags.of(version, generation, productId, name, weight);
+	}
+}
@@ -0,0 +1,28 @@
+package com.vibhuti.microservices.api.core.product;
+
+/**
+ * The fields of a product to change, fields left out, i.e. null, are kept as they are.
+ */
+public class ProductPatch {
+
+  private final String name;
+  private final Integer weight;
+
+  public ProductPatch() {
+    name = null;
+    weight = null;
+  }
+
+  public ProductPatch(String name, Integer weight) {
+    this.name = name;
+    this.weight = weight;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Integer getWeight() {
+    return weight;
+  }
+}
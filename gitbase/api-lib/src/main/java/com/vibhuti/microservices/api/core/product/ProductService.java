@@ -1,10 +1,20 @@
 package com.vibhuti.microservices.api.core.product;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import com.vibhuti.microservices.api.core.Modification;
+
+import reactor.core.publisher.Flux;
 
 public interface ProductService {
 
@@ -14,9 +24,47 @@ public interface ProductService {
 	 * @param productId Id of the product
 	 * @return the product, if found, else null
 	 */
-	@GetMapping(value = "/product/{productId}", produces = "application/json")
+	@GetMapping(value = "/product/{productId}", produces = {"application/json", "application/x-jackson-smile"})
 	Product getProduct(@PathVariable("productId") int productId);
+
+	/**
+	 * Sample usage: "curl $HOST:$PORT/product/batch?productIds=1,2,3".
+	 *
+	 * @param productIds Ids of the products
+	 * @return the products found, ids without a product are left out
+	 */
+	@GetMapping(value = "/product/batch", produces = {"application/json", "application/x-jackson-smile"})
+	List<Product> getProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
+	/**
+	 * Sample usage: "curl $HOST:$PORT/product/ids".
+	 *
+	 * @return the ids of all products, e.g. to build a filter of existing ids from
+	 */
+	@GetMapping(value = "/product/ids", produces = {"application/json", "application/x-jackson-smile"})
+	List<Integer> getProductIds();
 	
+	/**
+	 * Sample usage: "curl $HOST:$PORT/product/modifications?afterTime=0&afterProductId=0&limit=100".
+	 *
+	 * @param afterTime      time of the position to list from, in epoch milliseconds
+	 * @param afterProductId product id of the position to list from
+	 * @param limit          most modifications to list
+	 * @return the products created or deleted after the position, in position order
+	 */
+	@GetMapping(value = "/product/modifications", produces = {"application/json", "application/x-jackson-smile"})
+	List<Modification> getProductModifications(@RequestParam(value = "afterTime", required = true) long afterTime,
+			@RequestParam(value = "afterProductId", required = true) int afterProductId,
+			@RequestParam(value = "limit", required = true) int limit);
+
+	/**
+	 * Sample usage: "curl $HOST:$PORT/product/export".
+	 *
+	 * @return all products ordered by product id, streamed from a cursor as the client reads them
+	 */
+	@GetMapping(value = "/product/export", produces = "application/x-ndjson")
+	Flux<Product> exportProducts();
+
 	  /**
 	   * Sample usage, see below.
 	   *
@@ -24,14 +72,67 @@ public interface ProductService {
 	   *   -H "Content-Type: application/json" --data \
 	   *   '{"productId":123,"name":"product 123","weight":123}'
 	   *
+	   * With app.create-mode UPSERT an existing product is replaced rather than reported as
+	   * a duplicate, so the create can be retried.
+	   *
 	   * @param body A JSON representation of the new product
 	   * @return A JSON representation of the newly created product
 	   */
 	  @PostMapping(
 	    value    = "/product",
-	    consumes = "application/json",
-	    produces = "application/json")
+	    consumes = {"application/json", "application/x-jackson-smile"},
+	    produces = {"application/json", "application/x-jackson-smile"})
 	  Product createProduct(@RequestBody Product body);
+
+	  /**
+	   * Sample usage, see below.
+	   *
+	   * curl -X POST $HOST:$PORT/product/batch \
+	   *   -H "Content-Type: application/json" --data \
+	   *   '[{"productId":123,"name":"product 123","weight":123}]'
+	   *
+	   * @param body the new products, products that exist already are skipped
+	   */
+	  @PostMapping(
+	    value    = "/product/batch",
+	    consumes = {"application/json", "application/x-jackson-smile"})
+	  void createProducts(@RequestBody List<Product> body);
+
+	  /**
+	   * Sample usage, see below.
+	   *
+	   * curl -X PUT $HOST:$PORT/product/123 -H 'If-Match: "0-5a1f0c0e2d3b4a69"' \
+	   *   -H "Content-Type: application/json" --data '{"name":"product 123","weight":124}'
+	   *
+	   * @param productId Id of the product
+	   * @param ifMatch   ETags of the versions the update applies to, any version if left out
+	   * @param body      the new name and weight, other fields are ignored
+	   * @return the updated product
+	   */
+	  @PutMapping(
+	    value    = "/product/{productId}",
+	    consumes = {"application/json", "application/x-jackson-smile"},
+	    produces = {"application/json", "application/x-jackson-smile"})
+	  Product updateProduct(@PathVariable int productId,
+	    @RequestHeader(value = "If-Match", required = false) String ifMatch, @RequestBody Product body);
+
+	  /**
+	   * Sample usage, see below.
+	   *
+	   * curl -X PATCH $HOST:$PORT/product/123 -H 'If-Match: "0-5a1f0c0e2d3b4a69"' \
+	   *   -H "Content-Type: application/json" --data '{"weight":124}'
+	   *
+	   * @param productId Id of the product
+	   * @param ifMatch   ETags of the versions the update applies to, any version if left out
+	   * @param body      the fields to change
+	   * @return the updated product
+	   */
+	  @PatchMapping(
+	    value    = "/product/{productId}",
+	    consumes = {"application/json", "application/x-jackson-smile"},
+	    produces = {"application/json", "application/x-jackson-smile"})
+	  Product patchProduct(@PathVariable int productId,
+	    @RequestHeader(value = "If-Match", required = false) String ifMatch, @RequestBody ProductPatch body);
 	  
 	  /**
 	   * Sample usage: "curl -X DELETE $HOST:$PORT/product/1".
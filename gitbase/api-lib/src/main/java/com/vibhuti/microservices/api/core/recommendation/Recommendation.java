@@ -1,12 +1,17 @@
 package com.vibhuti.microservices.api.core.recommendation;
 
-public class Recommendation {
+import com.vibhuti.microservices.api.EntityTagged;
+import com.vibhuti.microservices.api.EntityTags;
+
+public class Recommendation implements EntityTagged {
   private  int productId;
   private  int recommendationId;
   private  String author;
   private  int rate;
   private  String content;
   private  String serviceAddress;
+  private int version;
+  private long generation;
 
   public Recommendation() {
     productId = 0;
@@ -80,6 +85,25 @@ public void setContent(String content) {
 public void setServiceAddress(String serviceAddress) {
 	this.serviceAddress = serviceAddress;
 }
-  
-  
-}
\ No newline at end of file
+
+  public int getVersion() {
+    return version;
+  }
+
+  public void setVersion(int version) {
+    this.version = version;
+  }
+
+  public long getGeneration() {
+    return generation;
+  }
+
+  public void setGeneration(long generation) {
+    this.generation = generation;
+  }
+
+  @Override
+  public String entityTag() {
+    return EntityTags.of(version, generation, productId, recommendationId, author, rate, content);
+  }
+}
@@ -4,10 +4,17 @@ import java.util.List;
 
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import com.vibhuti.microservices.api.core.Modification;
+
+import reactor.core.publisher.Flux;
+
 public interface RecommendationService {
 
   /**
@@ -18,16 +25,88 @@ public interface RecommendationService {
    */
   @GetMapping(
     value = "/recommendation",
-    produces = "application/json")
+    produces = {"application/json", "application/x-jackson-smile"})
   List<Recommendation> getRecommendations(
     @RequestParam(value = "productId", required = true) int productId);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/recommendation/batch?productIds=1,2,3".
+   *
+   * @param productIds Ids of the products
+   * @return the recommendations of all the products
+   */
+  @GetMapping(
+    value = "/recommendation/batch",
+    produces = {"application/json", "application/x-jackson-smile"})
+  List<Recommendation> getRecommendationsForProducts(
+    @RequestParam(value = "productIds", required = true) List<Integer> productIds);
   
   
+  /**
+   * Sample usage: "curl $HOST:$PORT/recommendation/modifications?afterTime=0&afterProductId=0&limit=100".
+   *
+   * @param afterTime      time of the position to list from, in epoch milliseconds
+   * @param afterProductId product id of the position to list from
+   * @param limit          most modifications to list
+   * @return the products whose recommendations were created or deleted after the position, in position order
+   */
+  @GetMapping(
+    value = "/recommendation/modifications",
+    produces = {"application/json", "application/x-jackson-smile"})
+  List<Modification> getRecommendationModifications(
+    @RequestParam(value = "afterTime", required = true) long afterTime,
+    @RequestParam(value = "afterProductId", required = true) int afterProductId,
+    @RequestParam(value = "limit", required = true) int limit);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/recommendation/export".
+   *
+   * @return all recommendations ordered by product id and recommendation id, streamed from a
+   *         cursor as the client reads them
+   */
+  @GetMapping(
+    value = "/recommendation/export",
+    produces = "application/x-ndjson")
+  Flux<Recommendation> exportRecommendations();
+
   @PostMapping(
     value = "/recommendation",
-	consumes = "application/json",
-	produces = "application/json")
+	consumes = {"application/json", "application/x-jackson-smile"},
+	produces = {"application/json", "application/x-jackson-smile"})
   Recommendation createRecommendation(@RequestBody Recommendation body);
+
+  /**
+   * Sample usage, see below.
+   *
+   * curl -X POST $HOST:$PORT/recommendation/batch \
+   *   -H "Content-Type: application/json" --data \
+   *   '[{"productId":123,"recommendationId":456,"author":"me","rate":5,"content":"yada, yada, yada"}]'
+   *
+   * @param body the new recommendations, recommendations that exist already are skipped
+   */
+  @PostMapping(
+    value = "/recommendation/batch",
+    consumes = {"application/json", "application/x-jackson-smile"})
+  void createRecommendations(@RequestBody List<Recommendation> body);
+
+  /**
+   * Sample usage, see below.
+   *
+   * curl -X PUT $HOST:$PORT/recommendation/123/456 -H 'If-Match: "0-5a1f0c0e2d3b4a69"' \
+   *   -H "Content-Type: application/json" --data '{"author":"me","rate":4,"content":"yada, yada"}'
+   *
+   * @param productId        Id of the product
+   * @param recommendationId Id of the recommendation
+   * @param ifMatch          ETags of the versions the update applies to, any version if left out
+   * @param body             the new author, rate and content, other fields are ignored
+   * @return the updated recommendation
+   */
+  @PutMapping(
+    value = "/recommendation/{productId}/{recommendationId}",
+    consumes = {"application/json", "application/x-jackson-smile"},
+    produces = {"application/json", "application/x-jackson-smile"})
+  Recommendation updateRecommendation(@PathVariable int productId, @PathVariable int recommendationId,
+    @RequestHeader(value = "If-Match", required = false) String ifMatch, @RequestBody Recommendation body);
   
   /**
    * Sample usage: "curl -X DELETE $HOST:$PORT/recommendation?productId=1".
@@ -1,12 +1,17 @@
 package com.vibhuti.microservices.api.core.review;
 
-public class Review {
+import com.vibhuti.microservices.api.EntityTagged;
+import com.vibhuti.microservices.api.EntityTags;
+
+public class Review implements EntityTagged {
 	private int productId;
 	private int reviewId;
 	private String author;
 	private String subject;
 	private String content;
 	private String serviceAddress;
+	private int version;
+	private long generation;
 
 	public Review() {
 		productId = 0;
@@ -75,4 +80,24 @@ public class Review {
 		this.serviceAddress = serviceAddress;
 	}
 
-}
\ No newline at end of file
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public void setGeneration(long generation) {
+		this.generation = generation;
+	}
+
+	@Override
+	public String entityTag() {
+		return EntityTags.of(version, generation, productId, reviewId, author, subject, content);
+	}
+}
@@ -4,10 +4,17 @@ import java.util.List;
 
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import com.vibhuti.microservices.api.core.Modification;
+
+import reactor.core.publisher.Flux;
+
 public interface ReviewService {
 
 	/**
@@ -17,15 +24,50 @@ public interface ReviewService {
 	   *   -H "Content-Type: application/json" --data \
 	   *   '{"productId":123,"reviewId":456,"author":"me","subject":"yada, yada, yada","content":"yada, yada, yada"}'
 	   *
+	   * With app.create-mode UPSERT an existing review is replaced instead of failing with 422.
+	   *
 	   * @param body A JSON representation of the new review
 	   * @return A JSON representation of the newly created review
 	   */
 	  @PostMapping(
 	      value    = "/review",
-	      consumes = "application/json",
-	      produces = "application/json")
+	      consumes = {"application/json", "application/x-jackson-smile"},
+	      produces = {"application/json", "application/x-jackson-smile"})
 	  Review createReview(@RequestBody Review body);
 
+	  /**
+	   * Sample usage, see below.
+	   *
+	   * curl -X POST $HOST:$PORT/review/batch \
+	   *   -H "Content-Type: application/json" --data \
+	   *   '[{"productId":123,"reviewId":456,"author":"me","subject":"yada, yada, yada","content":"yada, yada, yada"}]'
+	   *
+	   * @param body the new reviews, reviews that exist already are skipped
+	   */
+	  @PostMapping(
+	      value    = "/review/batch",
+	      consumes = {"application/json", "application/x-jackson-smile"})
+	  void createReviews(@RequestBody List<Review> body);
+
+	  /**
+	   * Sample usage, see below.
+	   *
+	   * curl -X PUT $HOST:$PORT/review/123/456 -H 'If-Match: "0-5a1f0c0e2d3b4a69"' \
+	   *   -H "Content-Type: application/json" --data '{"author":"me","subject":"yada","content":"yada, yada"}'
+	   *
+	   * @param productId Id of the product
+	   * @param reviewId  Id of the review
+	   * @param ifMatch   ETags of the versions the update applies to, any version if left out
+	   * @param body      the new author, subject and content, other fields are ignored
+	   * @return the updated review
+	   */
+	  @PutMapping(
+	      value    = "/review/{productId}/{reviewId}",
+	      consumes = {"application/json", "application/x-jackson-smile"},
+	      produces = {"application/json", "application/x-jackson-smile"})
+	  Review updateReview(@PathVariable int productId, @PathVariable int reviewId,
+	      @RequestHeader(value = "If-Match", required = false) String ifMatch, @RequestBody Review body);
+
 	  /**
 	   * Sample usage: "curl $HOST:$PORT/review?productId=1".
 	   *
@@ -34,9 +76,48 @@ public interface ReviewService {
 	   */
 	  @GetMapping(
 	    value = "/review",
-	    produces = "application/json")
+	    produces = {"application/json", "application/x-jackson-smile"})
 	  List<Review> getReviews(@RequestParam(value = "productId", required = true) int productId);
 
+	  /**
+	   * Sample usage: "curl $HOST:$PORT/review/batch?productIds=1,2,3".
+	   *
+	   * @param productIds Ids of the products
+	   * @return the reviews of all the products
+	   */
+	  @GetMapping(
+	    value = "/review/batch",
+	    produces = {"application/json", "application/x-jackson-smile"})
+	  List<Review> getReviewsForProducts(
+	    @RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
+	  /**
+	   * Sample usage: "curl $HOST:$PORT/review/modifications?afterTime=0&afterProductId=0&limit=100".
+	   *
+	   * @param afterTime      time of the position to list from, in epoch milliseconds
+	   * @param afterProductId product id of the position to list from
+	   * @param limit          most modifications to list
+	   * @return the products whose reviews were created or deleted after the position, in position order
+	   */
+	  @GetMapping(
+	    value = "/review/modifications",
+	    produces = {"application/json", "application/x-jackson-smile"})
+	  List<Modification> getReviewModifications(
+	    @RequestParam(value = "afterTime", required = true) long afterTime,
+	    @RequestParam(value = "afterProductId", required = true) int afterProductId,
+	    @RequestParam(value = "limit", required = true) int limit);
+
+	  /**
+	   * Sample usage: "curl $HOST:$PORT/review/export".
+	   *
+	   * @return all reviews ordered by product id and review id, streamed from a result set
+	   *         as the client reads them
+	   */
+	  @GetMapping(
+	    value = "/review/export",
+	    produces = "application/x-ndjson")
+	  Flux<Review> exportReviews();
+
 	  /**
 	   * Sample usage: "curl -X DELETE $HOST:$PORT/review?productId=1".
 	   *
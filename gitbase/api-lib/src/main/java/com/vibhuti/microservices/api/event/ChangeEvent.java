@@ -0,0 +1,24 @@
+package com.vibhuti.microservices.api.event;
+
+/**
+ * An {@link Event} of a change feed, with the resume token of its position in the
+ * feed. A consumer that reconnects with the token of the last event it processed
+ * receives the events after it, none is missed.
+ */
+public class ChangeEvent<K, T> extends Event<K, T> {
+
+  private String resumeToken;
+
+  public ChangeEvent() {
+    this.resumeToken = null;
+  }
+
+  public ChangeEvent(Type eventType, K key, T data, String resumeToken) {
+    super(eventType, key, data);
+    this.resumeToken = resumeToken;
+  }
+
+  public String getResumeToken() {
+    return resumeToken;
+  }
+}
@@ -0,0 +1,55 @@
+package com.vibhuti.microservices.api.event;
+
+import java.time.Instant;
+
+/**
+ * A change of a core service entity, published after it is stored. The key is the
+ * product id, the data the created entity, and null for deletes, which remove all
+ * entities of the product.
+ */
+public class Event<K, T> {
+
+  public enum Type {
+    CREATE,
+    DELETE,
+    /**
+     * Sent first on an event stream, once the stream receives all later events.
+     */
+    SUBSCRIBED
+  }
+
+  private Type eventType;
+  private K key;
+  private T data;
+  private Instant eventCreatedAt;
+
+  public Event() {
+    this.eventType = null;
+    this.key = null;
+    this.data = null;
+    this.eventCreatedAt = null;
+  }
+
+  public Event(Type eventType, K key, T data) {
+    this.eventType = eventType;
+    this.key = key;
+    this.data = data;
+    this.eventCreatedAt = Instant.now();
+  }
+
+  public Type getEventType() {
+    return eventType;
+  }
+
+  public K getKey() {
+    return key;
+  }
+
+  public T getData() {
+    return data;
+  }
+
+  public Instant getEventCreatedAt() {
+    return eventCreatedAt;
+  }
+}
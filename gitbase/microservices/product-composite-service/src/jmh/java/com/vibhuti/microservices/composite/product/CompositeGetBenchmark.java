@@ -0,0 +1,116 @@
+package com.vibhuti.microservices.composite.product;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Publisher;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeServiceImpl;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances.SelectionStrategy;
+import com.vibhuti.microservices.util.ServiceUtil;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Throughput of the composite GET path, i.e. three calls to stubbed core services,
+ * over HTTP/1.1 versus h2c. Run with:
+ *
+ * ./gradlew :microservices:product-composite-service:jmh -PjmhIncludes=CompositeGetBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CompositeGetBenchmark {
+
+  private static final String PRODUCT =
+    "{\"productId\":1,\"name\":\"name\",\"weight\":1,\"serviceAddress\":\"stub\"}";
+  private static final String RECOMMENDATIONS = "["
+    + "{\"productId\":1,\"recommendationId\":1,\"author\":\"a\",\"rate\":1,\"content\":\"c\",\"serviceAddress\":\"stub\"},"
+    + "{\"productId\":1,\"recommendationId\":2,\"author\":\"a\",\"rate\":2,\"content\":\"c\",\"serviceAddress\":\"stub\"},"
+    + "{\"productId\":1,\"recommendationId\":3,\"author\":\"a\",\"rate\":3,\"content\":\"c\",\"serviceAddress\":\"stub\"}]";
+  private static final String REVIEWS = "["
+    + "{\"productId\":1,\"reviewId\":1,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\",\"serviceAddress\":\"stub\"},"
+    + "{\"productId\":1,\"reviewId\":2,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\",\"serviceAddress\":\"stub\"},"
+    + "{\"productId\":1,\"reviewId\":3,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\",\"serviceAddress\":\"stub\"}]";
+
+  @Param({"HTTP11", "H2C"})
+  public HttpProtocol protocol;
+
+  private DisposableServer coreServices;
+  private ConnectionProvider pool;
+  private LoopResources loops;
+  private ProductCompositeServiceImpl compositeService;
+
+  @Setup
+  public void setUp() {
+    coreServices = HttpServer.create()
+      .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+      .port(0)
+      .route(routes -> routes
+        .get("/product/{productId}", (request, response) -> json(response, PRODUCT))
+        .get("/recommendation", (request, response) -> json(response, RECOMMENDATIONS))
+        .get("/review", (request, response) -> json(response, REVIEWS)))
+      .bindNow();
+
+    List<String> urls = List.of("http://localhost:" + coreServices.port());
+    ServiceInstances instances = new ServiceInstances("core-services", urls, SelectionStrategy.LEAST_OUTSTANDING, 3,
+      Duration.ofSeconds(30));
+
+    pool = CoreServicesClientConfiguration.createConnectionProvider(protocol, 50, 100, Duration.ofSeconds(30),
+      Duration.ofMinutes(5), Duration.ofSeconds(10));
+    loops = LoopResources.create("core-services-client");
+    WebClient webClient = WebClient.builder()
+      .clientConnector(CoreServicesClientConfiguration.createConnector(pool, loops, protocol, true,
+        Duration.ofSeconds(10)))
+      .build();
+    ProductCompositeIntegration integration = new ProductCompositeIntegration(webClient, new ObjectMapper(),
+      MediaType.APPLICATION_JSON, instances, instances, instances);
+    compositeService = new ProductCompositeServiceImpl(new ServiceUtil("0"), integration);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.disposeLater().block();
+    loops.disposeLater().block();
+    coreServices.disposeNow();
+  }
+
+  @Benchmark
+  public ProductAggregate getCompositeProduct() {
+    return compositeService.getProduct(1, null);
+  }
+
+  private static Publisher<Void> json(HttpServerResponse response, String body) {
+    return response.header("Content-Type", "application/json").sendString(Mono.just(body));
+  }
+}
@@ -0,0 +1,77 @@
+package com.vibhuti.microservices.composite.product;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.vibhuti.microservices.api.core.review.Review;
+
+/**
+ * Encode and decode cost of a review list, the largest payload on the composite
+ * GET path, in JSON, Smile and CBOR. Payload sizes are printed during setup.
+ *
+ * ./gradlew :microservices:product-composite-service:jmh -PjmhIncludes=SerializationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializationBenchmark {
+
+  @Param({"JSON", "SMILE", "CBOR"})
+  public String format;
+
+  @Param({"3", "100"})
+  public int reviews;
+
+  private ObjectMapper mapper;
+  private JavaType listType;
+  private List<Review> payload;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    mapper = switch (format) {
+      case "SMILE" -> new SmileMapper();
+      case "CBOR" -> new CBORMapper();
+      default -> new ObjectMapper();
+    };
+    listType = mapper.getTypeFactory().constructCollectionType(List.class, Review.class);
+
+    payload = new ArrayList<>();
+    for (int i = 0; i < reviews; i++) {
+      payload.add(new Review(1, i, "Author " + i, "Subject " + i, "Content of review " + i, "review/172.17.0.3:8080"));
+    }
+    encoded = mapper.writeValueAsBytes(payload);
+    System.out.printf("%n%s payload with %d reviews: %d bytes%n", format, reviews, encoded.length);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return mapper.writeValueAsBytes(payload);
+  }
+
+  @Benchmark
+  public List<Review> decode() throws IOException {
+    return mapper.readValue(encoded, listType);
+  }
+}
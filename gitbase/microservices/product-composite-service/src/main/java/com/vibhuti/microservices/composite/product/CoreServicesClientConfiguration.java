@@ -0,0 +1,154 @@
+package com.vibhuti.microservices.composite.product;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.WebFilter;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * HTTP transport used by the composite to call the core services.
+ *
+ * The client is pooled and speaks either HTTP/1.1 or h2c (HTTP/2 over clear text
+ * with prior knowledge), where one h2c connection multiplexes up to
+ * {@code max-streams} concurrent requests. The client runs on its own event loops
+ * and the blocking controller methods run on a worker pool, so waiting for a core
+ * service never blocks the event loops that the server and the client depend on.
+ *
+ * Spring 6.1.1 only subscribes to a blocking method on the worker pool, the method
+ * itself runs where its arguments complete. For a JSON request body that is the
+ * server event loop, so the body of those requests is handed over to the pool.
+ */
+@Configuration
+public class CoreServicesClientConfiguration implements WebFluxConfigurer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CoreServicesClientConfiguration.class);
+
+	private final int blockingExecutionThreads;
+
+	public CoreServicesClientConfiguration(@Value("${app.blocking-execution.threads:100}") int blockingExecutionThreads) {
+		this.blockingExecutionThreads = blockingExecutionThreads;
+	}
+
+	@Bean
+	WebClient webClient(WebClient.Builder builder, ConnectionProvider coreServicesConnectionProvider,
+			LoopResources coreServicesLoopResources,
+			@Value("${app.http-client.protocol:H2C}") HttpProtocol protocol,
+			@Value("${app.http-client.keep-alive:true}") boolean keepAlive,
+			@Value("${app.http-client.timeout:10s}") Duration timeout) {
+
+		return builder.clientConnector(createConnector(coreServicesConnectionProvider, coreServicesLoopResources,
+				protocol, keepAlive, timeout)).build();
+	}
+
+	// Beans rather than parts of the WebClient, so they are disposed when the context closes
+	@Bean(destroyMethod = "dispose")
+	LoopResources coreServicesLoopResources() {
+		return LoopResources.create("core-services-client");
+	}
+
+	// Depends on the event loops so it is disposed first, while its connections can still be closed
+	@Bean(destroyMethod = "dispose")
+	@DependsOn("coreServicesLoopResources")
+	ConnectionProvider coreServicesConnectionProvider(
+			@Value("${app.http-client.protocol:H2C}") HttpProtocol protocol,
+			@Value("${app.http-client.max-connections:50}") int maxConnections,
+			@Value("${app.http-client.max-streams:100}") int maxStreams,
+			@Value("${app.http-client.max-idle-time:30s}") Duration maxIdleTime,
+			@Value("${app.http-client.max-life-time:5m}") Duration maxLifeTime,
+			@Value("${app.http-client.timeout:10s}") Duration timeout) {
+
+		LOG.info("Calls core services using {}, max {} connections, max {} streams per connection", protocol,
+				maxConnections, maxStreams);
+		return createConnectionProvider(protocol, maxConnections, maxStreams, maxIdleTime, maxLifeTime, timeout);
+	}
+
+	public static ConnectionProvider createConnectionProvider(HttpProtocol protocol, int maxConnections,
+			int maxStreams, Duration maxIdleTime, Duration maxLifeTime, Duration timeout) {
+
+		ConnectionProvider.Builder pool = ConnectionProvider.builder("core-services")
+				.maxIdleTime(maxIdleTime)
+				.maxLifeTime(maxLifeTime)
+				.pendingAcquireTimeout(timeout);
+
+		if (protocol == HttpProtocol.H2C) {
+			pool.allocationStrategy(Http2AllocationStrategy.builder()
+					.minConnections(1)
+					.maxConnections(maxConnections)
+					.maxConcurrentStreams(maxStreams)
+					.build());
+		} else {
+			pool.maxConnections(maxConnections);
+		}
+		return pool.build();
+	}
+
+	/**
+	 * The pool and the event loops stay with the caller, who disposes them.
+	 */
+	public static ReactorClientHttpConnector createConnector(ConnectionProvider pool, LoopResources loops,
+			HttpProtocol protocol, boolean keepAlive, Duration timeout) {
+
+		HttpClient httpClient = HttpClient.create(pool)
+				.runOn(loops)
+				.protocol(protocol)
+				.keepAlive(keepAlive)
+				.responseTimeout(timeout);
+
+		return new ReactorClientHttpConnector(httpClient);
+	}
+
+	@Bean
+	ThreadPoolTaskExecutor blockingExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix("composite-blocking-");
+		executor.setCorePoolSize(blockingExecutionThreads);
+		executor.setMaxPoolSize(blockingExecutionThreads);
+		return executor;
+	}
+
+	@Bean
+	WebFilter jsonBodyOnBlockingExecutor(ThreadPoolTaskExecutor blockingExecutor) {
+		Scheduler scheduler = Schedulers.fromExecutor(blockingExecutor);
+		return (exchange, chain) -> {
+			ServerHttpRequest request = exchange.getRequest();
+			if (!MediaType.APPLICATION_JSON.isCompatibleWith(request.getHeaders().getContentType())) {
+				return chain.filter(exchange);
+			}
+			ServerHttpRequest decorated = new ServerHttpRequestDecorator(request) {
+				@Override
+				public Flux<DataBuffer> getBody() {
+					return super.getBody().publishOn(scheduler);
+				}
+			};
+			return chain.filter(exchange.mutate().request(decorated).build());
+		};
+	}
+
+	@Override
+	public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+		configurer.setExecutor(blockingExecutor());
+	}
+}
@@ -0,0 +1,481 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.util.HotKeyTracker;
+
+/**
+ * Serialized product aggregates, kept in memory and optionally in a cache tier shared
+ * by all composite replicas. A lookup tries the entries of this replica, then the
+ * shared tier, and only then builds the aggregate from the core services. A built
+ * aggregate is stored in both tiers, an aggregate found in the shared tier is kept in
+ * memory as well. Entries expire after {@code ttl} in each tier.
+ *
+ * A value is the ETag of the aggregate on one line followed by its JSON, so any
+ * replica can answer conditional requests from bytes another one stored. Creating or
+ * deleting a product drops its entries from the shared tier and publishes their keys,
+ * and every replica then drops them from memory. A lookup that was building the
+ * aggregate meanwhile doesn't store it in either tier, see {@link #invalidate}. The
+ * least recently used entries are dropped above {@code maxEntries}, except those of
+ * pinned, i.e. hot, product ids.
+ *
+ * With a {@code snapshotFile} the entries in memory are written to it on shutdown, and
+ * read back through a memory mapping on startup, so a restart doesn't begin cold.
+ * Entries that expired meanwhile are skipped. Since the product may have changed while
+ * the replica was down, the first lookup of a restored entry checks it against the
+ * current product, see {@link #get}, and rebuilds the aggregate if that fails.
+ *
+ * Lookups return an {@link EncodedProductAggregate}, whose JSON is written to the
+ * response without serializing it again. With {@link Storage#OFF_HEAP} the values are
+ * kept in direct buffers, so a large cache adds little to the heap and to the work of
+ * the garbage collector. See the aggregate.cache.* metrics for its size, and the
+ * jvm.gc.* and jvm.buffer.memory.used metrics for the effect.
+ */
+@Component
+public class AggregateCache implements DisposableBean, MeterBinder {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AggregateCache.class);
+
+	static final String KEY_PREFIX = "product-composite:aggregate:";
+	static final String INVALIDATION_CHANNEL = "product-composite:invalidations";
+	static final String FENCE_PREFIX = "product-composite:fence:";
+
+	private static final int GENERATION_STRIPES = 1024;
+
+	private static final int SNAPSHOT_MAGIC = 0x41474743;
+	private static final int SNAPSHOT_FORMAT = 1;
+
+	/**
+	 * Where values are kept. Direct buffers count against -XX:MaxDirectMemorySize, by
+	 * default as large as the max heap, and are freed after the entry is dropped and
+	 * its buffer collected.
+	 */
+	public enum Storage {
+		HEAP, OFF_HEAP;
+
+		private ByteBuffer store(byte[] value) {
+			return this == HEAP ? ByteBuffer.wrap(value) : copyOf(ByteBuffer.wrap(value));
+		}
+
+		private ByteBuffer copyOf(ByteBuffer value) {
+			ByteBuffer copy = this == HEAP ? ByteBuffer.allocate(value.remaining())
+					: ByteBuffer.allocateDirect(value.remaining());
+			return copy.put(value).flip();
+		}
+	}
+
+	private final ObjectMapper mapper;
+	private final Storage storage;
+	private final long ttlMillis;
+	private final Duration ttl;
+	private final Map<String, Entry> entries;
+
+	// Counts the invalidations of the product ids of each stripe, see putUnlessFenced
+	private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+	// Null when app.aggregate-cache.snapshot-file is empty
+	private final Path snapshotFile;
+
+	// Set when app.aggregate-cache.shared.enabled is true
+	private final SharedCacheClient sharedCache;
+
+	// Restored is set on entries read from the snapshot until they are checked
+	private record Entry(int productId, ByteBuffer value, long storedAt, boolean restored) {
+	}
+
+	@Autowired
+	public AggregateCache(ObjectMapper mapper, @Value("${app.aggregate-cache.ttl:0s}") Duration ttl,
+			@Value("${app.aggregate-cache.max-entries:10000}") int maxEntries,
+			@Value("${app.aggregate-cache.storage:HEAP}") Storage storage,
+			@Value("${app.aggregate-cache.snapshot-file:}") String snapshotFile, HotKeyTracker hotKeyTracker,
+			ObjectProvider<SharedCacheClient> sharedCache) {
+
+		this(mapper, ttl, maxEntries, storage, hotKeyTracker::isHot, sharedCache.getIfAvailable(),
+				snapshotFile.isBlank() ? null : Path.of(snapshotFile));
+	}
+
+	public AggregateCache(ObjectMapper mapper, Duration ttl, int maxEntries, Storage storage,
+			IntPredicate pinned, SharedCacheClient sharedCache, Path snapshotFile) {
+
+		this.mapper = mapper;
+		this.storage = storage;
+		this.ttl = ttl;
+		this.ttlMillis = ttl.toMillis();
+		this.sharedCache = ttlMillis > 0 ? sharedCache : null;
+		this.snapshotFile = ttlMillis > 0 ? snapshotFile : null;
+		this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() <= maxEntries) {
+					return false;
+				}
+				// Removes the least recently used entry that isn't pinned, the map allows that if false is returned
+				Iterator<Entry> values = values().iterator();
+				while (values.hasNext()) {
+					if (!pinned.test(values.next().productId())) {
+						values.remove();
+						return false;
+					}
+				}
+				return false;
+			}
+		});
+
+		if (this.sharedCache != null) {
+			this.sharedCache.subscribe(INVALIDATION_CHANNEL, message -> {
+				LOG.debug("Drops invalidated aggregates: {}", message);
+				for (String key : message.split(" ")) {
+					generations.incrementAndGet(stripe(productIdOf(key)));
+					entries.remove(key);
+				}
+			});
+		}
+
+		if (this.snapshotFile != null && Files.exists(this.snapshotFile)) {
+			restore(this.snapshotFile);
+		}
+	}
+
+	/**
+	 * @param variant selects one representation of the product, e.g. its sections
+	 * @param loader builds the aggregate when neither tier has it, what it throws is not cached
+	 * @param current checks a restored aggregate against the current product, throwing counts as false
+	 */
+	public ProductAggregate get(int productId, String variant, Supplier<ProductAggregate> loader,
+			Predicate<ProductAggregate> current) {
+
+		if (ttlMillis <= 0) {
+			return loader.get();
+		}
+
+		String key = key(productId, variant);
+		long generation = generations.get(stripe(productId));
+		Entry entry = entries.get(key);
+		long now = System.currentTimeMillis();
+		if (entry != null && now - entry.storedAt() < ttlMillis) {
+			ProductAggregate cached = toAggregate(entry.value());
+			if (!entry.restored()) {
+				return cached;
+			}
+			if (isCurrent(cached, current)) {
+				entries.replace(key, entry, new Entry(productId, entry.value(), entry.storedAt(), false));
+				return cached;
+			}
+			LOG.debug("Drops the outdated restored aggregate {}", key);
+			entries.remove(key, entry);
+		}
+
+		byte[] shared = getShared(key);
+		if (shared != null) {
+			ByteBuffer value = storage.store(shared);
+			putUnlessFenced(key, new Entry(productId, value, now, false), generation);
+			return toAggregate(value);
+		}
+
+		Fence fence = getFence(productId);
+		byte[] encoded = encode(loader.get());
+		ByteBuffer value = storage.store(encoded);
+		if (putUnlessFenced(key, new Entry(productId, value, now, false), generation)) {
+			setShared(key, encoded, fence);
+		}
+		return toAggregate(value);
+	}
+
+	/**
+	 * Drops all variants of the product from both tiers, and from the memory of the other
+	 * replicas.
+	 *
+	 * Lookups of the product that are loading it meanwhile may have read it before the
+	 * change, so they return what they loaded without storing it. In memory a counter of
+	 * invalidations per product id stripe fences them, in the shared tier a random token
+	 * stored under the fence key of the product, which the shared store compares with
+	 * the one the lookup read before loading. The token expires after {@code ttl}, a
+	 * load that takes longer may still store what it read.
+	 */
+	public void invalidate(int productId, Collection<String> variants) {
+		if (ttlMillis <= 0) {
+			return;
+		}
+
+		String[] keys = variants.stream().map(variant -> key(productId, variant)).toArray(String[]::new);
+		generations.incrementAndGet(stripe(productId));
+		for (String key : keys) {
+			entries.remove(key);
+		}
+		if (sharedCache != null) {
+			try {
+				sharedCache.set(FENCE_PREFIX + productId, UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8),
+						ttl);
+				sharedCache.delete(keys);
+				sharedCache.publish(INVALIDATION_CHANNEL, String.join(" ", keys));
+			} catch (RuntimeException ex) {
+				LOG.warn("Failed to invalidate the shared aggregates of productId {}: {}", productId, ex.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("aggregate.cache.entries", entries, Map::size).description("Aggregates in memory")
+				.register(registry);
+		Gauge.builder("aggregate.cache.payload", this, AggregateCache::payloadBytes)
+				.description("Size of the aggregates in memory").baseUnit("bytes")
+				.tag("storage", storage.name().toLowerCase().replace('_', '-')).register(registry);
+	}
+
+	private long payloadBytes() {
+		synchronized (entries) {
+			long bytes = 0;
+			for (Entry entry : entries.values()) {
+				bytes += entry.value().capacity();
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * Writes the snapshot, to a temporary file first so a failed write keeps the last one.
+	 */
+	@Override
+	public void destroy() {
+		if (snapshotFile != null) {
+			snapshot(snapshotFile);
+		}
+	}
+
+	private void snapshot(Path file) {
+		List<Map.Entry<String, Entry>> copy;
+		synchronized (entries) {
+			// Least recently used first, restoring them in this order keeps the order
+			copy = new ArrayList<>(entries.entrySet());
+		}
+
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+		} catch (IOException ex) {
+			LOG.warn("Failed to create the directory of the aggregate snapshot {}: {}", file, ex.getMessage());
+			return;
+		}
+		byte[] chunk = new byte[8192];
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_FORMAT);
+			out.writeInt(copy.size());
+			for (Map.Entry<String, Entry> mapEntry : copy) {
+				Entry entry = mapEntry.getValue();
+				byte[] key = mapEntry.getKey().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(entry.productId());
+				out.writeLong(entry.storedAt());
+				out.writeInt(key.length);
+				out.write(key);
+				ByteBuffer value = entry.value().duplicate();
+				out.writeInt(value.remaining());
+				// Values off the heap are copied out in chunks
+				while (value.hasRemaining()) {
+					int length = Math.min(chunk.length, value.remaining());
+					value.get(chunk, 0, length);
+					out.write(chunk, 0, length);
+				}
+			}
+			out.close();
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOG.info("Wrote {} aggregates to the snapshot {}", copy.size(), file);
+		} catch (IOException ex) {
+			LOG.warn("Failed to write the aggregate snapshot {}: {}", file, ex.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the entries that haven't expired from the snapshot, a damaged snapshot is
+	 * ignored as a whole.
+	 */
+	private void restore(Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_FORMAT) {
+				LOG.warn("Ignores {}, it isn't an aggregate snapshot of this version", file);
+				return;
+			}
+
+			int count = buffer.getInt();
+			long now = System.currentTimeMillis();
+			Map<String, Entry> restored = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				int productId = buffer.getInt();
+				long storedAt = buffer.getLong();
+				byte[] key = new byte[buffer.getInt()];
+				buffer.get(key);
+				int length = buffer.getInt();
+				ByteBuffer value = buffer.slice(buffer.position(), length);
+				buffer.position(buffer.position() + length);
+				if (now - storedAt < ttlMillis) {
+					restored.put(new String(key, StandardCharsets.UTF_8),
+							new Entry(productId, storage.copyOf(value), storedAt, true));
+				}
+			}
+			entries.putAll(restored);
+			LOG.info("Restored {} of {} aggregates from the snapshot {}", restored.size(), count, file);
+		} catch (IOException | RuntimeException ex) {
+			LOG.warn("Failed to read the aggregate snapshot {}, starts cold: {}", file, ex.getMessage());
+		}
+	}
+
+	private boolean isCurrent(ProductAggregate cached, Predicate<ProductAggregate> current) {
+		try {
+			return current.test(cached);
+		} catch (RuntimeException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the entry unless the product was invalidated since the lookup read the
+	 * generation, invalidate counts first and then removes, so either this sees the new
+	 * count or the removal waits for the lock and drops the entry.
+	 */
+	private boolean putUnlessFenced(String key, Entry entry, long generation) {
+		synchronized (entries) {
+			if (generations.get(stripe(entry.productId())) != generation) {
+				LOG.debug("Doesn't store {}, it was invalidated while loading", key);
+				return false;
+			}
+			entries.put(key, entry);
+			return true;
+		}
+	}
+
+	private static String key(int productId, String variant) {
+		return KEY_PREFIX + productId + ":" + variant;
+	}
+
+	private static int productIdOf(String key) {
+		return Integer.parseInt(key.substring(KEY_PREFIX.length(), key.indexOf(':', KEY_PREFIX.length())));
+	}
+
+	private static int stripe(int productId) {
+		return Math.floorMod(productId, GENERATION_STRIPES);
+	}
+
+	// The token under the fence key when the load started, null if there is none
+	private record Fence(byte[] token) {
+	}
+
+	/**
+	 * @return the fence of the product in the shared tier, null if it can't be read,
+	 * and then nothing is stored there
+	 */
+	private Fence getFence(int productId) {
+		if (sharedCache == null) {
+			return null;
+		}
+		try {
+			return new Fence(sharedCache.get(FENCE_PREFIX + productId));
+		} catch (RuntimeException ex) {
+			LOG.warn("Failed to get the fence of productId {} from the shared cache: {}", productId, ex.getMessage());
+			return null;
+		}
+	}
+
+	private byte[] getShared(String key) {
+		if (sharedCache == null) {
+			return null;
+		}
+		try {
+			return sharedCache.get(key);
+		} catch (RuntimeException ex) {
+			LOG.warn("Failed to get {} from the shared cache, builds it instead: {}", key, ex.getMessage());
+			return null;
+		}
+	}
+
+	private void setShared(String key, byte[] value, Fence fence) {
+		if (fence == null) {
+			return;
+		}
+		try {
+			if (!sharedCache.setIfFence(key, value, ttl, FENCE_PREFIX + productIdOf(key), fence.token())) {
+				LOG.debug("Doesn't store {} in the shared cache, it was invalidated while loading", key);
+			}
+		} catch (RuntimeException ex) {
+			LOG.warn("Failed to store {} in the shared cache: {}", key, ex.getMessage());
+		}
+	}
+
+	private byte[] encode(ProductAggregate aggregate) {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+			if (aggregate.entityTag() != null) {
+				out.write(aggregate.entityTag().getBytes(StandardCharsets.UTF_8));
+			}
+			out.write('\n');
+			mapper.writeValue(out, aggregate);
+			return out.toByteArray();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private EncodedProductAggregate toAggregate(ByteBuffer value) {
+		int newline = 0;
+		while (value.get(newline) != '\n') {
+			newline++;
+		}
+		byte[] entityTag = new byte[newline];
+		value.get(0, entityTag);
+		ByteBuffer json = value.slice(newline + 1, value.limit() - newline - 1);
+		return new EncodedProductAggregate(json, newline > 0 ? new String(entityTag, StandardCharsets.UTF_8) : null,
+				this::decode);
+	}
+
+	private ProductAggregate decode(ByteBuffer json) {
+		try {
+			return mapper.readValue(new ByteBufferBackedInputStream(json), ProductAggregate.class);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
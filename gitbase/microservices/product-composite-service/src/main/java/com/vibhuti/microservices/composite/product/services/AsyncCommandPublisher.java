@@ -0,0 +1,144 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.exception.ServiceUnavailableException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Queues the writes of composite products as create and delete commands, one
+ * {@link CommandQueue} per core service, enabled with {@code app.write-mode: ASYNC}.
+ * The commands of a write are queued all or none, a write that doesn't fit in every
+ * queue is refused.
+ */
+@Component
+@ConditionalOnProperty(name = "app.write-mode", havingValue = "ASYNC")
+public class AsyncCommandPublisher implements MeterBinder, DisposableBean {
+
+	private final CommandQueue productCommands;
+	private final CommandQueue recommendationCommands;
+	private final CommandQueue reviewCommands;
+
+	@Autowired
+	public AsyncCommandPublisher(RSocketRequester.Builder builder,
+			@Value("${app.product-service.host}") String productServiceHost,
+			@Value("${app.product-service.rsocket-port}") int productServicePort,
+			@Value("${app.product-service.instances:}") String productServiceInstances,
+			@Value("${app.product-service.rsocket-instances:}") String productServiceRSocketInstances,
+			@Value("${app.recommendation-service.host}") String recommendationServiceHost,
+			@Value("${app.recommendation-service.rsocket-port}") int recommendationServicePort,
+			@Value("${app.recommendation-service.instances:}") String recommendationServiceInstances,
+			@Value("${app.recommendation-service.rsocket-instances:}") String recommendationServiceRSocketInstances,
+			@Value("${app.review-service.host}") String reviewServiceHost,
+			@Value("${app.review-service.rsocket-port}") int reviewServicePort,
+			@Value("${app.review-service.instances:}") String reviewServiceInstances,
+			@Value("${app.review-service.rsocket-instances:}") String reviewServiceRSocketInstances,
+			@Value("${app.rsocket.timeout:10s}") Duration timeout,
+			@Value("${app.command-queue.capacity:10000}") int capacity,
+			@Value("${app.command-queue.max-batch-size:100}") int maxBatchSize,
+			@Value("${app.command-queue.window:5ms}") Duration window,
+			@Value("${app.command-queue.max-backoff:30s}") Duration maxBackoff,
+			@Value("${app.command-queue.max-attempts:10}") int maxAttempts) {
+
+		this(new CommandQueue("product", CoreServicesRSocketClient.requesters(builder, "product-service",
+				productServiceInstances, productServiceRSocketInstances, productServiceHost, productServicePort),
+				"product.commands", capacity, maxBatchSize, window, timeout, maxBackoff, maxAttempts),
+				new CommandQueue("recommendation", CoreServicesRSocketClient.requesters(builder,
+						"recommendation-service", recommendationServiceInstances,
+						recommendationServiceRSocketInstances, recommendationServiceHost, recommendationServicePort),
+						"recommendation.commands", capacity, maxBatchSize, window, timeout, maxBackoff, maxAttempts),
+				new CommandQueue("review", CoreServicesRSocketClient.requesters(builder, "review-service",
+						reviewServiceInstances, reviewServiceRSocketInstances, reviewServiceHost, reviewServicePort),
+						"review.commands", capacity, maxBatchSize, window, timeout, maxBackoff, maxAttempts));
+	}
+
+	public AsyncCommandPublisher(CommandQueue productCommands, CommandQueue recommendationCommands,
+			CommandQueue reviewCommands) {
+
+		this.productCommands = productCommands;
+		this.recommendationCommands = recommendationCommands;
+		this.reviewCommands = reviewCommands;
+	}
+
+	public void publishCreate(ProductAggregate body) {
+		int productId = body.getProductId();
+		List<Event<Integer, ?>> products = List.of(new Event<>(Event.Type.CREATE, productId,
+				new Product(productId, body.getName(), body.getWeight(), null)));
+
+		List<Event<Integer, ?>> recommendations = new ArrayList<>();
+		if (body.getRecommendations() != null) {
+			body.getRecommendations().forEach(r -> recommendations.add(new Event<>(Event.Type.CREATE, productId,
+					new Recommendation(productId, r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(),
+							null))));
+		}
+
+		List<Event<Integer, ?>> reviews = new ArrayList<>();
+		if (body.getReviews() != null) {
+			body.getReviews().forEach(r -> reviews.add(new Event<>(Event.Type.CREATE, productId,
+					new Review(productId, r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent(), null))));
+		}
+
+		publish(products, recommendations, reviews);
+	}
+
+	public void publishDelete(int productId) {
+		List<Event<Integer, ?>> delete = List.of(new Event<>(Event.Type.DELETE, productId, null));
+		publish(delete, delete, delete);
+	}
+
+	private synchronized void publish(List<Event<Integer, ?>> products, List<Event<Integer, ?>> recommendations,
+			List<Event<Integer, ?>> reviews) {
+
+		if (productCommands.remainingCapacity() < products.size()
+				|| recommendationCommands.remainingCapacity() < recommendations.size()
+				|| reviewCommands.remainingCapacity() < reviews.size()) {
+			throw new ServiceUnavailableException("Too many writes in progress, try again later");
+		}
+		productCommands.addAll(products);
+		recommendationCommands.addAll(recommendations);
+		reviewCommands.addAll(reviews);
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		bindQueue(registry, "product", productCommands);
+		bindQueue(registry, "recommendation", recommendationCommands);
+		bindQueue(registry, "review", reviewCommands);
+	}
+
+	private static void bindQueue(MeterRegistry registry, String service, CommandQueue queue) {
+		Gauge.builder("command.queue.size", queue, CommandQueue::size)
+				.description("Commands waiting to be sent to a core service")
+				.tag("service", service)
+				.register(registry);
+		FunctionCounter.builder("command.queue.dropped", queue, CommandQueue::dropped)
+				.description("Commands the core service rejected, which were dropped")
+				.tag("service", service)
+				.register(registry);
+	}
+
+	@Override
+	public void destroy() {
+		productCommands.close();
+		recommendationCommands.close();
+		reviewCommands.close();
+	}
+}
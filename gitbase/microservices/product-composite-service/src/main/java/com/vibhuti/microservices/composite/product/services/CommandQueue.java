@@ -0,0 +1,178 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.codec.CodecException;
+import org.springframework.messaging.rsocket.RSocketRequester;
+
+import com.vibhuti.microservices.api.event.Event;
+
+import io.rsocket.exceptions.ApplicationErrorException;
+import io.rsocket.exceptions.CustomRSocketException;
+
+/**
+ * Bounded in-memory queue of the commands for one core service, sent in order over
+ * RSocket by a thread of its own. A batch is sent when it reaches
+ * {@code maxBatchSize} commands or {@code window} after its first command.
+ *
+ * A batch that fails to reach the core service, e.g. it is down or doesn't answer
+ * within {@code timeout}, is sent again with a growing delay until it is accepted,
+ * each time to the next instance of the service. A batch the core service rejects,
+ * with one of the {@code RSocketErrorCodes} or by failing {@code maxAttempts} times,
+ * is sent again one command at a time, and only the commands rejected on their own
+ * are dropped, so one bad command doesn't block the queue or take the others with
+ * it. Commands are idempotent, those of the batch that were applied before it failed
+ * may be applied again. Dropped commands are logged and counted, see {@link #dropped}.
+ * Commands still queued when the composite stops are lost.
+ */
+public class CommandQueue {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CommandQueue.class);
+
+	private final String name;
+	private final List<RSocketRequester> requesters;
+	private final String route;
+	private final BlockingQueue<Event<Integer, ?>> commands;
+	private final int maxBatchSize;
+	private final Duration window;
+	private final Duration timeout;
+	private final Duration maxBackoff;
+	private final int maxAttempts;
+	private final AtomicLong dropped = new AtomicLong();
+	private final Thread sender;
+	// Index of the requester the sender uses, it moves on after a failure
+	private int current;
+
+	public CommandQueue(String name, List<RSocketRequester> requesters, String route, int capacity,
+			int maxBatchSize, Duration window, Duration timeout, Duration maxBackoff, int maxAttempts) {
+
+		this.name = name;
+		this.requesters = List.copyOf(requesters);
+		this.route = route;
+		this.commands = new LinkedBlockingQueue<>(capacity);
+		this.maxBatchSize = maxBatchSize;
+		this.window = window;
+		this.timeout = timeout;
+		this.maxBackoff = maxBackoff;
+		this.maxAttempts = maxAttempts;
+		this.sender = new Thread(this::sendBatches, name + "-commands");
+		this.sender.setDaemon(true);
+		this.sender.start();
+	}
+
+	public int remainingCapacity() {
+		return commands.remainingCapacity();
+	}
+
+	public int size() {
+		return commands.size();
+	}
+
+	/**
+	 * @return the number of commands the core service rejected, which were dropped
+	 */
+	public long dropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * The caller checks the {@link #remainingCapacity} first, only the sender removes
+	 * commands, so the capacity can only have grown since.
+	 */
+	public void addAll(Collection<? extends Event<Integer, ?>> added) {
+		commands.addAll(added);
+	}
+
+	public void close() {
+		sender.interrupt();
+		if (!commands.isEmpty()) {
+			LOG.warn("Dropping {} {} commands that weren't sent", commands.size(), name);
+		}
+		requesters.forEach(RSocketRequester::dispose);
+	}
+
+	private void sendBatches() {
+		try {
+			while (true) {
+				deliver(nextBatch());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void deliver(List<Event<Integer, ?>> batch) throws InterruptedException {
+		long backoffMillis = 100;
+		int attempts = 0;
+		while (true) {
+			try {
+				send(batch);
+				return;
+			} catch (RuntimeException e) {
+				attempts++;
+				if (isRejected(e, attempts)) {
+					reject(batch, e);
+					return;
+				}
+				LOG.warn("Failed to send {} {} commands, will retry: {}", batch.size(), name, e.toString());
+				current = (current + 1) % requesters.size();
+				Thread.sleep(backoffMillis);
+				backoffMillis = Math.min(backoffMillis * 2, maxBackoff.toMillis());
+			}
+		}
+	}
+
+	/**
+	 * Errors the core service mapped are rejections. An unmapped one can't be told
+	 * apart, e.g. its database being down from a command it can't decode, so it counts
+	 * as a rejection once it was retried {@code maxAttempts} times. Anything else failed
+	 * on the way and is retried for as long as it takes.
+	 */
+	private boolean isRejected(RuntimeException e, int attempts) {
+		return e instanceof CustomRSocketException || e instanceof CodecException
+				|| (e instanceof ApplicationErrorException && attempts >= maxAttempts);
+	}
+
+	private void reject(List<Event<Integer, ?>> batch, RuntimeException e) throws InterruptedException {
+		if (batch.size() > 1) {
+			LOG.warn("The {} service rejected a batch of {} commands, sends them one by one: {}", name, batch.size(),
+					e.toString());
+			for (Event<Integer, ?> command : batch) {
+				deliver(List.of(command));
+			}
+			return;
+		}
+		Event<Integer, ?> command = batch.get(0);
+		dropped.incrementAndGet();
+		LOG.error("Dropping the {} {} command of productId {}, the service rejected it: {}", command.getEventType(),
+				name, command.getKey(), e.toString());
+	}
+
+	private List<Event<Integer, ?>> nextBatch() throws InterruptedException {
+		List<Event<Integer, ?>> batch = new ArrayList<>(maxBatchSize);
+		batch.add(commands.take());
+		long deadline = System.nanoTime() + window.toNanos();
+		while (batch.size() < maxBatchSize) {
+			Event<Integer, ?> command = commands.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (command == null) {
+				break;
+			}
+			batch.add(command);
+		}
+		return batch;
+	}
+
+	private void send(List<Event<Integer, ?>> batch) {
+		requesters.get(current).route(route).data(batch).retrieveMono(Void.class).block(timeout);
+		LOG.debug("Sent {} {} commands", batch.size(), name);
+	}
+}
@@ -0,0 +1,286 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+
+import com.vibhuti.microservices.api.core.Modification;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.product.ProductPatch;
+import com.vibhuti.microservices.api.core.product.ProductService;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.recommendation.RecommendationService;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.core.review.ReviewService;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import io.rsocket.exceptions.CustomRSocketException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Calls the core services over RSocket instead of HTTP, enabled with
+ * {@code app.transport: RSOCKET}. Each core service gets one TCP connection that
+ * all requests are multiplexed on, it is opened on first use and re-established
+ * after it is lost. Recommendations and reviews are request-streams.
+ */
+@Component
+@ConditionalOnProperty(name = "app.transport", havingValue = "RSOCKET")
+public class CoreServicesRSocketClient implements ProductService, RecommendationService, ReviewService, DisposableBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CoreServicesRSocketClient.class);
+
+	private final RSocketRequester productRequester;
+	private final RSocketRequester recommendationRequester;
+	private final RSocketRequester reviewRequester;
+	private final Duration timeout;
+
+	@Autowired
+	public CoreServicesRSocketClient(RSocketRequester.Builder builder,
+			@Value("${app.product-service.host}") String productServiceHost,
+			@Value("${app.product-service.rsocket-port}") int productServicePort,
+			@Value("${app.recommendation-service.host}") String recommendationServiceHost,
+			@Value("${app.recommendation-service.rsocket-port}") int recommendationServicePort,
+			@Value("${app.review-service.host}") String reviewServiceHost,
+			@Value("${app.review-service.rsocket-port}") int reviewServicePort,
+			@Value("${app.rsocket.timeout:10s}") Duration timeout) {
+
+		this(builder.tcp(productServiceHost, productServicePort),
+				builder.tcp(recommendationServiceHost, recommendationServicePort),
+				builder.tcp(reviewServiceHost, reviewServicePort), timeout);
+	}
+
+	public CoreServicesRSocketClient(RSocketRequester productRequester, RSocketRequester recommendationRequester,
+			RSocketRequester reviewRequester, Duration timeout) {
+
+		this.productRequester = productRequester;
+		this.recommendationRequester = recommendationRequester;
+		this.reviewRequester = reviewRequester;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * One requester per instance of a core service, from the comma separated host:port
+	 * list of its {@code rsocket-instances}, or else its host and rsocket-port.
+	 *
+	 * @throws IllegalStateException if the service has several HTTP instances but no
+	 *         rsocket-instances, for callers that have to reach every instance, e.g. to
+	 *         follow the events of each one
+	 */
+	public static List<RSocketRequester> requesters(RSocketRequester.Builder builder, String serviceName,
+			String instances, String rsocketInstances, String host, int rsocketPort) {
+
+		List<RSocketRequester> requesters = new ArrayList<>();
+		for (String instance : rsocketInstances.split(",")) {
+			if (!instance.isBlank()) {
+				String[] hostAndPort = instance.trim().split(":");
+				requesters.add(builder.tcp(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+			}
+		}
+		if (requesters.isEmpty()) {
+			if (ServiceInstances.toBaseUrls(instances, host, rsocketPort).size() > 1) {
+				throw new IllegalStateException("The instances of " + serviceName + " need their RSocket addresses in app."
+						+ serviceName + ".rsocket-instances");
+			}
+			requesters.add(builder.tcp(host, rsocketPort));
+		}
+		return requesters;
+	}
+
+	@Override
+	public Product getProduct(int productId) {
+		LOG.debug("Will request product {} over RSocket", productId);
+		return block(productRequester.route("product.get.{productId}", productId).retrieveMono(Product.class));
+	}
+
+	@Override
+	public List<Product> getProducts(List<Integer> productIds) {
+		return block(productRequester.route("products.batch").data(productIds).retrieveFlux(Product.class)
+				.collectList());
+	}
+
+	@Override
+	public List<Integer> getProductIds() {
+		return block(productRequester.route("product.ids").retrieveFlux(Integer.class).collectList());
+	}
+
+	@Override
+	public List<Modification> getProductModifications(long afterTime, int afterProductId, int limit) {
+		return block(productRequester.route("product.modifications.{afterTime}.{afterProductId}.{limit}", afterTime,
+				afterProductId, limit).retrieveFlux(Modification.class).collectList());
+	}
+
+	@Override
+	public Flux<Product> exportProducts() {
+		return productRequester.route("product.export").retrieveFlux(Product.class)
+				.onErrorMap(CustomRSocketException.class, RSocketErrorCodes::toException);
+	}
+
+	@Override
+	public Product createProduct(Product body) {
+		return block(productRequester.route("product.create").data(body).retrieveMono(Product.class));
+	}
+
+	/**
+	 * Sent as create commands, the core services have no other batch write over RSocket.
+	 */
+	@Override
+	public void createProducts(List<Product> body) {
+		block(productRequester.route("product.commands").data(createCommands(body, Product::getProductId))
+				.retrieveMono(Void.class));
+	}
+
+	@Override
+	public Product updateProduct(int productId, String ifMatch, Product body) {
+		return block(productRequester.route("product.update.{productId}.{ifMatch}", productId, anyIfNull(ifMatch))
+				.data(body).retrieveMono(Product.class));
+	}
+
+	@Override
+	public Product patchProduct(int productId, String ifMatch, ProductPatch body) {
+		return block(productRequester.route("product.patch.{productId}.{ifMatch}", productId, anyIfNull(ifMatch))
+				.data(body).retrieveMono(Product.class));
+	}
+
+	@Override
+	public void deleteProduct(int productId) {
+		block(productRequester.route("product.delete.{productId}", productId).retrieveMono(Void.class));
+	}
+
+	@Override
+	public List<Recommendation> getRecommendations(int productId) {
+		return block(streamRecommendations(productId).collectList());
+	}
+
+	public Flux<Recommendation> streamRecommendations(int productId) {
+		return recommendationRequester.route("recommendations.get.{productId}", productId)
+				.retrieveFlux(Recommendation.class)
+				.onErrorMap(CustomRSocketException.class, RSocketErrorCodes::toException);
+	}
+
+	@Override
+	public List<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+		return block(recommendationRequester.route("recommendations.batch").data(productIds)
+				.retrieveFlux(Recommendation.class).collectList());
+	}
+
+	@Override
+	public List<Modification> getRecommendationModifications(long afterTime, int afterProductId, int limit) {
+		return block(recommendationRequester.route("recommendation.modifications.{afterTime}.{afterProductId}.{limit}",
+				afterTime, afterProductId, limit).retrieveFlux(Modification.class).collectList());
+	}
+
+	@Override
+	public Flux<Recommendation> exportRecommendations() {
+		return recommendationRequester.route("recommendation.export").retrieveFlux(Recommendation.class)
+				.onErrorMap(CustomRSocketException.class, RSocketErrorCodes::toException);
+	}
+
+	@Override
+	public Recommendation createRecommendation(Recommendation body) {
+		return block(
+				recommendationRequester.route("recommendation.create").data(body).retrieveMono(Recommendation.class));
+	}
+
+	@Override
+	public void createRecommendations(List<Recommendation> body) {
+		block(recommendationRequester.route("recommendation.commands")
+				.data(createCommands(body, Recommendation::getProductId)).retrieveMono(Void.class));
+	}
+
+	@Override
+	public Recommendation updateRecommendation(int productId, int recommendationId, String ifMatch,
+			Recommendation body) {
+		return block(recommendationRequester.route("recommendation.update.{productId}.{recommendationId}.{ifMatch}",
+				productId, recommendationId, anyIfNull(ifMatch)).data(body).retrieveMono(Recommendation.class));
+	}
+
+	@Override
+	public void deleteRecommendations(int productId) {
+		block(recommendationRequester.route("recommendations.delete.{productId}", productId)
+				.retrieveMono(Void.class));
+	}
+
+	@Override
+	public List<Review> getReviews(int productId) {
+		return block(streamReviews(productId).collectList());
+	}
+
+	public Flux<Review> streamReviews(int productId) {
+		return reviewRequester.route("reviews.get.{productId}", productId)
+				.retrieveFlux(Review.class)
+				.onErrorMap(CustomRSocketException.class, RSocketErrorCodes::toException);
+	}
+
+	@Override
+	public List<Review> getReviewsForProducts(List<Integer> productIds) {
+		return block(reviewRequester.route("reviews.batch").data(productIds).retrieveFlux(Review.class)
+				.collectList());
+	}
+
+	@Override
+	public List<Modification> getReviewModifications(long afterTime, int afterProductId, int limit) {
+		return block(reviewRequester.route("review.modifications.{afterTime}.{afterProductId}.{limit}", afterTime,
+				afterProductId, limit).retrieveFlux(Modification.class).collectList());
+	}
+
+	@Override
+	public Flux<Review> exportReviews() {
+		return reviewRequester.route("review.export").retrieveFlux(Review.class)
+				.onErrorMap(CustomRSocketException.class, RSocketErrorCodes::toException);
+	}
+
+	@Override
+	public Review createReview(Review body) {
+		return block(reviewRequester.route("review.create").data(body).retrieveMono(Review.class));
+	}
+
+	@Override
+	public void createReviews(List<Review> body) {
+		block(reviewRequester.route("review.commands").data(createCommands(body, Review::getProductId))
+				.retrieveMono(Void.class));
+	}
+
+	@Override
+	public Review updateReview(int productId, int reviewId, String ifMatch, Review body) {
+		return block(reviewRequester.route("review.update.{productId}.{reviewId}.{ifMatch}", productId, reviewId,
+				anyIfNull(ifMatch)).data(body).retrieveMono(Review.class));
+	}
+
+	@Override
+	public void deleteReviews(int productId) {
+		block(reviewRequester.route("reviews.delete.{productId}", productId).retrieveMono(Void.class));
+	}
+
+	@Override
+	public void destroy() {
+		productRequester.dispose();
+		recommendationRequester.dispose();
+		reviewRequester.dispose();
+	}
+
+	private static <T> List<Event<Integer, T>> createCommands(List<T> creates, Function<T, Integer> productIdOf) {
+		return creates.stream().map(create -> new Event<>(Event.Type.CREATE, productIdOf.apply(create), create))
+				.toList();
+	}
+
+	// Routes have no optional variables, * is what an If-Match that matches any version looks like
+	private static String anyIfNull(String ifMatch) {
+		return ifMatch == null ? "*" : ifMatch;
+	}
+
+	private <T> T block(Mono<T> response) {
+		return response.onErrorMap(CustomRSocketException.class, RSocketErrorCodes::toException).block(timeout);
+	}
+}
@@ -0,0 +1,82 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Function;
+
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.composite.product.RecommendationSummary;
+import com.vibhuti.microservices.api.composite.product.ReviewSummary;
+import com.vibhuti.microservices.api.composite.product.ServiceAddresses;
+
+/**
+ * Product aggregate served from the {@link AggregateCache}. Its JSON is written to the
+ * response as it is stored, see {@link EncodedProductAggregateEncoder}, and the fields
+ * are only decoded when a getter is called, e.g. when another media type is requested.
+ */
+public final class EncodedProductAggregate extends ProductAggregate {
+
+	private final ByteBuffer json;
+	private final String entityTag;
+	private final Function<ByteBuffer, ProductAggregate> decoder;
+
+	private volatile ProductAggregate decoded;
+
+	EncodedProductAggregate(ByteBuffer json, String entityTag, Function<ByteBuffer, ProductAggregate> decoder) {
+		this.json = json;
+		this.entityTag = entityTag;
+		this.decoder = decoder;
+	}
+
+	/**
+	 * @return a read-only view of the stored JSON, which is on or off the heap
+	 */
+	public ByteBuffer json() {
+		return json.asReadOnlyBuffer();
+	}
+
+	@Override
+	public String entityTag() {
+		return entityTag;
+	}
+
+	@Override
+	public int getProductId() {
+		return decoded().getProductId();
+	}
+
+	@Override
+	public String getName() {
+		return decoded().getName();
+	}
+
+	@Override
+	public int getWeight() {
+		return decoded().getWeight();
+	}
+
+	@Override
+	public List<RecommendationSummary> getRecommendations() {
+		return decoded().getRecommendations();
+	}
+
+	@Override
+	public List<ReviewSummary> getReviews() {
+		return decoded().getReviews();
+	}
+
+	@Override
+	public ServiceAddresses getServiceAddresses() {
+		return decoded().getServiceAddresses();
+	}
+
+	private ProductAggregate decoded() {
+		ProductAggregate current = decoded;
+		if (current == null) {
+			// Decoding twice in a race is harmless
+			current = decoder.apply(json());
+			decoded = current;
+		}
+		return current;
+	}
+}
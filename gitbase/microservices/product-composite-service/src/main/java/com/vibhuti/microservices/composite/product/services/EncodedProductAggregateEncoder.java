@@ -0,0 +1,57 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.CodecConfigurer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Writes the JSON of an {@link EncodedProductAggregate} as it is, without serializing
+ * it again. The buffer is wrapped rather than copied, so an aggregate stored off-heap
+ * goes from its direct buffer to the socket. Registered ahead of the default JSON
+ * encoder, which still writes all other types and media types.
+ */
+@Component
+public class EncodedProductAggregateEncoder implements Encoder<EncodedProductAggregate>, CodecCustomizer {
+
+	@Override
+	public void customize(CodecConfigurer configurer) {
+		configurer.customCodecs().register(this);
+	}
+
+	@Override
+	public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+		return EncodedProductAggregate.class.isAssignableFrom(elementType.toClass())
+				&& (mimeType == null || MediaType.APPLICATION_JSON.isCompatibleWith(mimeType));
+	}
+
+	@Override
+	public Flux<DataBuffer> encode(Publisher<? extends EncodedProductAggregate> inputStream,
+			DataBufferFactory bufferFactory, ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+
+		return Flux.from(inputStream).map(aggregate -> encodeValue(aggregate, bufferFactory, elementType, mimeType, hints));
+	}
+
+	@Override
+	public DataBuffer encodeValue(EncodedProductAggregate aggregate, DataBufferFactory bufferFactory,
+			ResolvableType valueType, MimeType mimeType, Map<String, Object> hints) {
+
+		return bufferFactory.wrap(aggregate.json());
+	}
+
+	@Override
+	public List<MimeType> getEncodableMimeTypes() {
+		return List.of(MediaType.APPLICATION_JSON);
+	}
+}
@@ -0,0 +1,37 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The last response of each single-id GET with its ETag, keyed by path and query.
+ * A repeated GET is then sent with If-None-Match, and a 304 is answered from here
+ * instead of transferring and decoding the same body again. The key leaves out the
+ * instance, since all instances of a core service hand out the same ETag for the
+ * same data. The least recently used entries are dropped above maxEntries.
+ */
+class EntityTagCache {
+
+	record Entry(String entityTag, Object body) {
+	}
+
+	private final Map<String, Entry> entries;
+
+	EntityTagCache(int maxEntries) {
+		this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+
+	Entry get(String key) {
+		return entries.get(key);
+	}
+
+	void put(String key, String entityTag, Object body) {
+		entries.put(key, new Entry(entityTag, body));
+	}
+}
@@ -0,0 +1,107 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Collects individual lookups by key and loads them with a single multi-key call,
+ * DataLoader style. A batch is sent when it reaches {@code maxBatchSize} keys or
+ * {@code window} after its first key arrived, whichever comes first. Concurrent
+ * lookups of the same key within a batch share one result.
+ *
+ * The loader returns a map with the values found, keys missing from it complete
+ * with {@code null}. If the loader fails, every lookup in the batch fails with it.
+ */
+public class MicroBatcher<K, V> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MicroBatcher.class);
+
+	private final String name;
+	private final Function<List<K>, Map<K, V>> loader;
+	private final Duration window;
+	private final int maxBatchSize;
+	private final Scheduler scheduler;
+
+	private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+	private Disposable windowTimer;
+
+	public MicroBatcher(String name, Function<List<K>, Map<K, V>> loader, Duration window, int maxBatchSize,
+			Scheduler scheduler) {
+
+		this.name = name;
+		this.loader = loader;
+		this.window = window;
+		this.maxBatchSize = maxBatchSize;
+		this.scheduler = scheduler;
+	}
+
+	public CompletableFuture<V> load(K key) {
+		CompletableFuture<V> result;
+		Map<K, CompletableFuture<V>> full = null;
+
+		synchronized (this) {
+			result = pending.get(key);
+			if (result == null) {
+				result = new CompletableFuture<>();
+				pending.put(key, result);
+
+				if (pending.size() >= maxBatchSize) {
+					full = takePending();
+				} else if (pending.size() == 1) {
+					windowTimer = scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+
+		// A full batch is loaded by the caller that filled it, it would wait for the result anyway
+		if (full != null) {
+			dispatch(full);
+		}
+		return result;
+	}
+
+	private void flush() {
+		Map<K, CompletableFuture<V>> batch;
+		synchronized (this) {
+			batch = takePending();
+		}
+		dispatch(batch);
+	}
+
+	private Map<K, CompletableFuture<V>> takePending() {
+		Map<K, CompletableFuture<V>> batch = pending;
+		pending = new LinkedHashMap<>();
+		if (windowTimer != null) {
+			windowTimer.dispose();
+			windowTimer = null;
+		}
+		return batch;
+	}
+
+	private void dispatch(Map<K, CompletableFuture<V>> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		List<K> keys = new ArrayList<>(batch.keySet());
+		LOG.debug("{}: loading a batch of {} keys", name, keys.size());
+		try {
+			Map<K, V> values = loader.apply(keys);
+			batch.forEach((key, result) -> result.complete(values.get(key)));
+		} catch (RuntimeException ex) {
+			batch.values().forEach(result -> result.completeExceptionally(ex));
+		}
+	}
+}
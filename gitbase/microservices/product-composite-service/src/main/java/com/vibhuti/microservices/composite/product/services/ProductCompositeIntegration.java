@@ -1,94 +1,280 @@
 package com.vibhuti.microservices.composite.product.services;
 
-import static org.springframework.http.HttpMethod.GET;
-
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibhuti.microservices.api.core.Modification;
 import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.product.ProductPatch;
 import com.vibhuti.microservices.api.core.product.ProductService;
 import com.vibhuti.microservices.api.core.recommendation.Recommendation;
 import com.vibhuti.microservices.api.core.recommendation.RecommendationService;
 import com.vibhuti.microservices.api.core.review.Review;
 import com.vibhuti.microservices.api.core.review.ReviewService;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances.SelectionStrategy;
 import com.vibhuti.microservices.exception.InvalidInputException;
 import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.exception.PreconditionFailedException;
+import com.vibhuti.microservices.util.HotKeyTracker;
 import com.vibhuti.microservices.util.HttpErrorInfo;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 @Component
 public class ProductCompositeIntegration implements ProductService, RecommendationService, ReviewService {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ProductCompositeIntegration.class);
-	private final RestTemplate restTemplate;
+	private final WebClient webClient;
 	private final ObjectMapper mapper;
+	private final MediaType internalMediaType;
+
+	private final ServiceInstances productServiceInstances;
+	private final ServiceInstances recommendationServiceInstances;
+	private final ServiceInstances reviewServiceInstances;
+
+	// Set when app.transport is RSOCKET, calls then bypass the HTTP client and load balancer
+	private final CoreServicesRSocketClient rsocketClient;
+
+	// Null when app.batching.window is 0, single lookups are then sent one by one
+	private final MicroBatcher<Integer, Product> productBatcher;
+	private final MicroBatcher<Integer, List<Recommendation>> recommendationBatcher;
+	private final MicroBatcher<Integer, List<Review>> reviewBatcher;
+
+	// Null when app.revalidation.max-entries is 0, GETs are then never conditional
+	private final EntityTagCache entityTagCache;
 
-	private final String productServiceUrl;
-	private final String recommendationServiceUrl;
-	private final String reviewServiceUrl;
+	// Null when app.response-cache.fresh-ttl is 0, every lookup then goes to the core service
+	private final StaleWhileRevalidateCache<List<Recommendation>> recommendationCache;
+	private final StaleWhileRevalidateCache<List<Review>> reviewCache;
 
 	@Autowired
-	public ProductCompositeIntegration(RestTemplate restTemplate, ObjectMapper mapper,
+	public ProductCompositeIntegration(WebClient webClient, ObjectMapper mapper,
 			@Value("${app.product-service.host}") String productServiceHost,
 			@Value("${app.product-service.port}") int productServicePort,
+			@Value("${app.product-service.instances:}") String productServiceInstances,
 			@Value("${app.recommendation-service.host}") String recommendationServiceHost,
 			@Value("${app.recommendation-service.port}") int recommendationServicePort,
+			@Value("${app.recommendation-service.instances:}") String recommendationServiceInstances,
 			@Value("${app.review-service.host}") String reviewServiceHost,
-			@Value("${app.review-service.port}") int reviewServicePort) {
+			@Value("${app.review-service.port}") int reviewServicePort,
+			@Value("${app.review-service.instances:}") String reviewServiceInstances,
+			@Value("${app.load-balancer.strategy:LEAST_OUTSTANDING}") SelectionStrategy strategy,
+			@Value("${app.load-balancer.failure-threshold:3}") int failureThreshold,
+			@Value("${app.load-balancer.ejection-time:30s}") Duration ejectionTime,
+			@Value("${app.internal-media-type:application/x-jackson-smile}") String internalMediaType,
+			@Value("${app.batching.window:0}") Duration batchWindow,
+			@Value("${app.batching.max-size:50}") int maxBatchSize,
+			@Value("${app.revalidation.max-entries:10000}") int revalidationMaxEntries,
+			@Value("${app.response-cache.fresh-ttl:5s}") Duration cacheFreshTtl,
+			@Value("${app.response-cache.stale-ttl:1m}") Duration cacheStaleTtl,
+			@Value("${app.response-cache.max-entries:10000}") int cacheMaxEntries,
+			HotKeyTracker hotKeyTracker,
+			ObjectProvider<CoreServicesRSocketClient> rsocketClient) {
+
+		this(webClient, mapper, MediaType.parseMediaType(internalMediaType),
+				new ServiceInstances("product-service",
+						ServiceInstances.toBaseUrls(productServiceInstances, productServiceHost, productServicePort),
+						strategy, failureThreshold, ejectionTime),
+				new ServiceInstances("recommendation-service",
+						ServiceInstances.toBaseUrls(recommendationServiceInstances, recommendationServiceHost,
+								recommendationServicePort),
+						strategy, failureThreshold, ejectionTime),
+				new ServiceInstances("review-service",
+						ServiceInstances.toBaseUrls(reviewServiceInstances, reviewServiceHost, reviewServicePort),
+						strategy, failureThreshold, ejectionTime),
+				rsocketClient.getIfAvailable(), batchWindow, maxBatchSize, revalidationMaxEntries, cacheFreshTtl,
+				cacheStaleTtl, cacheMaxEntries, hotKeyTracker::isHot);
+	}
+
+	public ProductCompositeIntegration(WebClient webClient, ObjectMapper mapper, MediaType internalMediaType,
+			ServiceInstances productServiceInstances, ServiceInstances recommendationServiceInstances,
+			ServiceInstances reviewServiceInstances) {
+
+		this(webClient, mapper, internalMediaType, productServiceInstances, recommendationServiceInstances,
+				reviewServiceInstances, null, Duration.ZERO, 1);
+	}
+
+	public ProductCompositeIntegration(WebClient webClient, ObjectMapper mapper, MediaType internalMediaType,
+			ServiceInstances productServiceInstances, ServiceInstances recommendationServiceInstances,
+			ServiceInstances reviewServiceInstances, CoreServicesRSocketClient rsocketClient, Duration batchWindow,
+			int maxBatchSize) {
 
-		this.restTemplate = restTemplate;
+		this(webClient, mapper, internalMediaType, productServiceInstances, recommendationServiceInstances,
+				reviewServiceInstances, rsocketClient, batchWindow, maxBatchSize, 0, Duration.ZERO, Duration.ZERO, 0,
+				productId -> false);
+	}
+
+	public ProductCompositeIntegration(WebClient webClient, ObjectMapper mapper, MediaType internalMediaType,
+			ServiceInstances productServiceInstances, ServiceInstances recommendationServiceInstances,
+			ServiceInstances reviewServiceInstances, CoreServicesRSocketClient rsocketClient, Duration batchWindow,
+			int maxBatchSize, int revalidationMaxEntries, Duration cacheFreshTtl, Duration cacheStaleTtl,
+			int cacheMaxEntries, IntPredicate pinnedKeys) {
+
+		this.webClient = webClient;
 		this.mapper = mapper;
+		this.internalMediaType = internalMediaType;
+		this.productServiceInstances = productServiceInstances;
+		this.recommendationServiceInstances = recommendationServiceInstances;
+		this.reviewServiceInstances = reviewServiceInstances;
+		this.rsocketClient = rsocketClient;
+		// Only single lookups are conditional, the id sets of batches hardly ever repeat
+		if (revalidationMaxEntries > 0 && !batchWindow.isZero()) {
+			LOG.info("Batching is on, lookups are sent as batches and not revalidated");
+			this.entityTagCache = null;
+		} else {
+			this.entityTagCache = revalidationMaxEntries > 0 ? new EntityTagCache(revalidationMaxEntries) : null;
+		}
 
-		productServiceUrl = "http://" + productServiceHost + ":" + productServicePort + "/product";
-		recommendationServiceUrl = "http://" + recommendationServiceHost + ":" + recommendationServicePort
-				+ "/recommendation";
-		reviewServiceUrl = "http://" + reviewServiceHost + ":" + reviewServicePort + "/review";
+		if (cacheFreshTtl.isZero()) {
+			this.recommendationCache = null;
+			this.reviewCache = null;
+		} else {
+			this.recommendationCache = new StaleWhileRevalidateCache<>("recommendations", this::loadRecommendations,
+					cacheFreshTtl, cacheStaleTtl, cacheMaxEntries, pinnedKeys, Schedulers.boundedElastic());
+			this.reviewCache = new StaleWhileRevalidateCache<>("reviews", this::loadReviews, cacheFreshTtl,
+					cacheStaleTtl, cacheMaxEntries, pinnedKeys, Schedulers.boundedElastic());
+		}
 
+		if (batchWindow.isZero()) {
+			this.productBatcher = null;
+			this.recommendationBatcher = null;
+			this.reviewBatcher = null;
+		} else {
+			this.productBatcher = new MicroBatcher<>("products",
+					productIds -> getProducts(productIds).stream()
+							.collect(Collectors.toMap(Product::getProductId, Function.identity(), (p1, p2) -> p1)),
+					batchWindow, maxBatchSize, Schedulers.boundedElastic());
+			this.recommendationBatcher = new MicroBatcher<>("recommendations",
+					productIds -> groupByProductId(productIds, getRecommendationsForProducts(productIds),
+							Recommendation::getProductId),
+					batchWindow, maxBatchSize, Schedulers.boundedElastic());
+			this.reviewBatcher = new MicroBatcher<>("reviews",
+					productIds -> groupByProductId(productIds, getReviewsForProducts(productIds), Review::getProductId),
+					batchWindow, maxBatchSize, Schedulers.boundedElastic());
+		}
 	}
 
 	@Override
 	public Product getProduct(int productId) {
-		try {
-			String url = this.productServiceUrl +"/" +productId;
-			Product product = this.restTemplate.getForObject(url, Product.class);
+		if (productBatcher != null) {
+			Product product = await(productBatcher, productId);
+			if (product == null) {
+				throw new NotFoundException("No product found for productId: " + productId);
+			}
 			return product;
-		} catch (HttpClientErrorException ex) {
+		}
+
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.getProduct(productId);
+			}
+			return execute(productServiceInstances, instance -> {
+				Product product = getConditional(instance, "/product/" + productId,
+						new ParameterizedTypeReference<Product>() {});
+				return withServiceAddress(product, instance);
+			});
+		} catch (WebClientResponseException ex) {
 			throw handleHttpClientException(ex);
 		}
 	}//
 
-	private String getErrorMessage(HttpClientErrorException ex) {
+	@Override
+	public List<Product> getProducts(List<Integer> productIds) {
 		try {
-			return mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
-		} catch (IOException ioex) {
-			return ex.getMessage();
+			if (rsocketClient != null) {
+				return rsocketClient.getProducts(productIds);
+			}
+			return execute(productServiceInstances, instance -> {
+				String path = "/product/batch?productIds=" + toParameter(productIds);
+				LOG.debug("Will call getProducts API on URL: {}{}", instance.getBaseUrl(), path);
+				List<Product> list = get(instance, path, response -> response.bodyToFlux(Product.class).collectList());
+				list.forEach(p -> withServiceAddress(p, instance));
+				return list;
+			});
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
 		}
 	}
 
-	public List<Recommendation> getRecommendations(int productId) {
+	@Override
+	public List<Integer> getProductIds() {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.getProductIds();
+			}
+			return execute(productServiceInstances,
+					instance -> get(instance, "/product/ids", response -> response.bodyToFlux(Integer.class).collectList()));
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
 
+	@Override
+	public List<Modification> getProductModifications(long afterTime, int afterProductId, int limit) {
 		try {
-			String url = recommendationServiceUrl +  "?productId="+productId;
+			if (rsocketClient != null) {
+				return rsocketClient.getProductModifications(afterTime, afterProductId, limit);
+			}
+			return execute(productServiceInstances, instance -> get(instance,
+					"/product/modifications?afterTime=" + afterTime + "&afterProductId=" + afterProductId + "&limit=" + limit,
+					response -> response.bodyToFlux(Modification.class).collectList()));
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
 
-			LOG.debug("Will call getRecommendations API on URL: {}", url);
-			List<Recommendation> recommendations = restTemplate
-					.exchange(url, GET, null, new ParameterizedTypeReference<List<Recommendation>>() {
-					}).getBody();
+	@Override
+	public Flux<Product> exportProducts() {
+		if (rsocketClient != null) {
+			return rsocketClient.exportProducts();
+		}
+		return stream(productServiceInstances, "/product/export", Product.class, this::withServiceAddress);
+	}
 
-			LOG.debug("Found {} recommendations for a product with id: {}", recommendations.size(), productId);
-			return recommendations;
+	private String getErrorMessage(WebClientResponseException ex) {
+		try {
+			// Error bodies are encoded in whatever media type was negotiated, JSON or Smile
+			MediaType contentType = ex.getHeaders().getContentType();
+			if (contentType == null || MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+				return mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
+			}
+			return ex.getResponseBodyAs(HttpErrorInfo.class).getMessage();
+		} catch (IOException | RuntimeException ioex) {
+			return ex.getMessage();
+		}
+	}
 
+	public List<Recommendation> getRecommendations(int productId) {
+
+		try {
+			return (recommendationCache != null) ? recommendationCache.get(productId) : loadRecommendations(productId);
 		} catch (Exception ex) {
 			LOG.warn("Got an exception while requesting recommendations, return zero recommendations: {}",
 					ex.getMessage());
@@ -96,106 +282,581 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 		}
 	}
 
-	public List<Review> getReviews(int productId) {
+	/**
+	 * The recommendations as they are now, for checks that can't do with stale ones. Not
+	 * read from the response cache, and a failure of the core service is thrown rather
+	 * than answered with no recommendations.
+	 */
+	public List<Recommendation> getCurrentRecommendations(int productId) {
+		return loadRecommendations(productId);
+	}
 
+	private List<Recommendation> loadRecommendations(int productId) {
 		try {
-			String url = reviewServiceUrl +  "?productId="+productId;
+			if (recommendationBatcher != null) {
+				return await(recommendationBatcher, productId);
+			}
+			if (rsocketClient != null) {
+				return rsocketClient.getRecommendations(productId);
+			}
+			List<Recommendation> recommendations = execute(recommendationServiceInstances, instance -> {
+				String path = "/recommendation?productId=" + productId;
+
+				LOG.debug("Will call getRecommendations API on URL: {}{}", instance.getBaseUrl(), path);
+				List<Recommendation> list = getConditional(instance, path,
+						new ParameterizedTypeReference<List<Recommendation>>() {});
+				list.forEach(r -> withServiceAddress(r, instance));
+				return list;
+			});
 
-			LOG.debug("Will call getReviews API on URL: {}", url);
-			List<Review> reviews = restTemplate
-					.exchange(url, GET, null, new ParameterizedTypeReference<List<Review>>() {
-					}).getBody();
+			LOG.debug("Found {} recommendations for a product with id: {}", recommendations.size(), productId);
+			return recommendations;
 
-			LOG.debug("Found {} reviews for a product with id: {}", reviews.size(), productId);
-			return reviews;
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
 
+	public List<Review> getReviews(int productId) {
+
+		try {
+			return (reviewCache != null) ? reviewCache.get(productId) : loadReviews(productId);
 		} catch (Exception ex) {
 			LOG.warn("Got an exception while requesting reviews, return zero reviews: {}", ex.getMessage());
 			return new ArrayList<>();
 		}
 	}
 
+	// Same as getCurrentRecommendations, for the reviews
+	public List<Review> getCurrentReviews(int productId) {
+		return loadReviews(productId);
+	}
+
+	private List<Review> loadReviews(int productId) {
+		try {
+			if (reviewBatcher != null) {
+				return await(reviewBatcher, productId);
+			}
+			if (rsocketClient != null) {
+				return rsocketClient.getReviews(productId);
+			}
+			List<Review> reviews = execute(reviewServiceInstances, instance -> {
+				String path = "/review?productId=" + productId;
+
+				LOG.debug("Will call getReviews API on URL: {}{}", instance.getBaseUrl(), path);
+				List<Review> list = getConditional(instance, path,
+						new ParameterizedTypeReference<List<Review>>() {});
+				list.forEach(r -> withServiceAddress(r, instance));
+				return list;
+			});
+
+			LOG.debug("Found {} reviews for a product with id: {}", reviews.size(), productId);
+			return reviews;
+
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
+
+	@Override
+	public List<Review> getReviewsForProducts(List<Integer> productIds) {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.getReviewsForProducts(productIds);
+			}
+			return execute(reviewServiceInstances, instance -> {
+				String path = "/review/batch?productIds=" + toParameter(productIds);
+				LOG.debug("Will call getReviewsForProducts API on URL: {}{}", instance.getBaseUrl(), path);
+				List<Review> list = get(instance, path, response -> response.bodyToFlux(Review.class).collectList());
+				list.forEach(r -> withServiceAddress(r, instance));
+				return list;
+			});
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
+
+	@Override
+	public List<Modification> getReviewModifications(long afterTime, int afterProductId, int limit) {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.getReviewModifications(afterTime, afterProductId, limit);
+			}
+			return execute(reviewServiceInstances, instance -> get(instance,
+					"/review/modifications?afterTime=" + afterTime + "&afterProductId=" + afterProductId + "&limit=" + limit,
+					response -> response.bodyToFlux(Modification.class).collectList()));
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
+
+	@Override
+	public Flux<Review> exportReviews() {
+		if (rsocketClient != null) {
+			return rsocketClient.exportReviews();
+		}
+		return stream(reviewServiceInstances, "/review/export", Review.class, this::withServiceAddress);
+	}
+
 	@Override
 	public Review createReview(Review body) {
 		try {
-			String url = this.reviewServiceUrl;
-			LOG.debug("Will post a new review to URL{}",url);
-			Review review = this.restTemplate.postForObject(url, body, Review.class);
-			return review;
-		} catch (HttpClientErrorException ex) {
+			if (rsocketClient != null) {
+				return rsocketClient.createReview(body);
+			}
+			return execute(reviewServiceInstances, instance -> {
+				String url = instance.getBaseUrl() + "/review";
+				LOG.debug("Will post a new review to URL{}",url);
+				Review review = webClient.post().uri(url).contentType(internalMediaType)
+						.accept(internalMediaType, MediaType.APPLICATION_JSON).bodyValue(body).retrieve()
+						.bodyToMono(Review.class).block();
+				return review;
+			});
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		} finally {
+			invalidate(reviewCache, body.getProductId());
+		}
+	}
+
+	@Override
+	public void createReviews(List<Review> body) {
+		try {
+			if (rsocketClient != null) {
+				rsocketClient.createReviews(body);
+				return;
+			}
+			execute(reviewServiceInstances, instance -> webClient.post().uri(instance.getBaseUrl() + "/review/batch")
+					.contentType(internalMediaType).bodyValue(body).retrieve().toBodilessEntity().block());
+		} catch (WebClientResponseException ex) {
 			throw handleHttpClientException(ex);
+		} finally {
+			body.forEach(review -> invalidate(reviewCache, review.getProductId()));
+		}
+	}
+
+	@Override
+	public Review updateReview(int productId, int reviewId, String ifMatch, Review body) {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.updateReview(productId, reviewId, ifMatch, body);
+			}
+			return execute(reviewServiceInstances, instance -> withServiceAddress(webClient.put()
+					.uri(instance.getBaseUrl() + "/review/" + productId + "/" + reviewId)
+					.headers(headers -> setIfMatch(headers, ifMatch)).contentType(internalMediaType)
+					.accept(internalMediaType, MediaType.APPLICATION_JSON).bodyValue(body).retrieve()
+					.bodyToMono(Review.class).block(), instance));
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		} finally {
+			invalidate(reviewCache, productId);
 		}
 	}
 
 	@Override
 	public void deleteReviews(int productId) {
 		try {
-			String url = reviewServiceUrl +  "?productId="+productId;
-			LOG.debug("Will delete  review to URL: {}", url);
-			this.restTemplate.delete(url);
-		} catch (HttpClientErrorException ex) {
+			if (rsocketClient != null) {
+				rsocketClient.deleteReviews(productId);
+				return;
+			}
+			execute(reviewServiceInstances, instance -> {
+				String url = instance.getBaseUrl() + "/review?productId=" + productId;
+				LOG.debug("Will delete  review to URL: {}", url);
+				return webClient.delete().uri(url).retrieve().toBodilessEntity().block();
+			});
+		} catch (WebClientResponseException ex) {
 			throw handleHttpClientException(ex);
+		} finally {
+			invalidate(reviewCache, productId);
 		}
 	}
 
 	@Override
-	public Recommendation createRecommendation(Recommendation body) {
+	public List<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
 		try {
-			String url = recommendationServiceUrl;
-			LOG.debug("Will post a new recommendation to URL: {}", url);
+			if (rsocketClient != null) {
+				return rsocketClient.getRecommendationsForProducts(productIds);
+			}
+			return execute(recommendationServiceInstances, instance -> {
+				String path = "/recommendation/batch?productIds=" + toParameter(productIds);
+				LOG.debug("Will call getRecommendationsForProducts API on URL: {}{}", instance.getBaseUrl(), path);
+				List<Recommendation> list = get(instance, path,
+						response -> response.bodyToFlux(Recommendation.class).collectList());
+				list.forEach(r -> withServiceAddress(r, instance));
+				return list;
+			});
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
 
-			Recommendation recommendation = restTemplate.postForObject(url, body, Recommendation.class);
-			LOG.debug("Created a recommendation with id: {}", recommendation.getProductId());
+	@Override
+	public List<Modification> getRecommendationModifications(long afterTime, int afterProductId, int limit) {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.getRecommendationModifications(afterTime, afterProductId, limit);
+			}
+			return execute(recommendationServiceInstances, instance -> get(instance,
+					"/recommendation/modifications?afterTime=" + afterTime + "&afterProductId=" + afterProductId + "&limit=" + limit,
+					response -> response.bodyToFlux(Modification.class).collectList()));
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
+
+	@Override
+	public Flux<Recommendation> exportRecommendations() {
+		if (rsocketClient != null) {
+			return rsocketClient.exportRecommendations();
+		}
+		return stream(recommendationServiceInstances, "/recommendation/export", Recommendation.class, this::withServiceAddress);
+	}
+
+	@Override
+	public Recommendation createRecommendation(Recommendation body) {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.createRecommendation(body);
+			}
+			return execute(recommendationServiceInstances, instance -> {
+				String url = instance.getBaseUrl() + "/recommendation";
+				LOG.debug("Will post a new recommendation to URL: {}", url);
+
+				Recommendation recommendation = webClient.post().uri(url).contentType(internalMediaType)
+						.accept(internalMediaType, MediaType.APPLICATION_JSON).bodyValue(body).retrieve()
+						.bodyToMono(Recommendation.class).block();
+				LOG.debug("Created a recommendation with id: {}", recommendation.getProductId());
+
+				return recommendation;
+			});
+
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		} finally {
+			invalidate(recommendationCache, body.getProductId());
+		}
+	}
 
-			return recommendation;
+	@Override
+	public void createRecommendations(List<Recommendation> body) {
+		try {
+			if (rsocketClient != null) {
+				rsocketClient.createRecommendations(body);
+				return;
+			}
+			execute(recommendationServiceInstances, instance -> webClient.post()
+					.uri(instance.getBaseUrl() + "/recommendation/batch").contentType(internalMediaType).bodyValue(body)
+					.retrieve().toBodilessEntity().block());
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		} finally {
+			body.forEach(recommendation -> invalidate(recommendationCache, recommendation.getProductId()));
+		}
+	}
 
-		} catch (HttpClientErrorException ex) {
+	@Override
+	public Recommendation updateRecommendation(int productId, int recommendationId, String ifMatch,
+			Recommendation body) {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.updateRecommendation(productId, recommendationId, ifMatch, body);
+			}
+			return execute(recommendationServiceInstances, instance -> withServiceAddress(webClient.put()
+					.uri(instance.getBaseUrl() + "/recommendation/" + productId + "/" + recommendationId)
+					.headers(headers -> setIfMatch(headers, ifMatch)).contentType(internalMediaType)
+					.accept(internalMediaType, MediaType.APPLICATION_JSON).bodyValue(body).retrieve()
+					.bodyToMono(Recommendation.class).block(), instance));
+		} catch (WebClientResponseException ex) {
 			throw handleHttpClientException(ex);
+		} finally {
+			invalidate(recommendationCache, productId);
 		}
 	}
 
 	@Override
 	public void deleteRecommendations(int productId) {
 		try {
-			String url = recommendationServiceUrl +  "?productId="+productId;
-			LOG.debug("Will delete  recommendation to URL: {}", url);
-			this.restTemplate.delete(url);
-		} catch (HttpClientErrorException ex) {
+			if (rsocketClient != null) {
+				rsocketClient.deleteRecommendations(productId);
+				return;
+			}
+			execute(recommendationServiceInstances, instance -> {
+				String url = instance.getBaseUrl() + "/recommendation?productId=" + productId;
+				LOG.debug("Will delete  recommendation to URL: {}", url);
+				return webClient.delete().uri(url).retrieve().toBodilessEntity().block();
+			});
+		} catch (WebClientResponseException ex) {
 			throw handleHttpClientException(ex);
+		} finally {
+			invalidate(recommendationCache, productId);
 		}
 	}
 
 	@Override
 	public Product createProduct(Product body) {
 		try {
-			String url = this.productServiceUrl;
-			LOG.debug("Will post a new product to URL: {}", url);
-			Product product = this.restTemplate.postForObject(url, body, Product.class);
-			LOG.debug("Created a product with id: {}", product.getProductId());
-			return product;
-		} catch (HttpClientErrorException ex) {
+			if (rsocketClient != null) {
+				return rsocketClient.createProduct(body);
+			}
+			return execute(productServiceInstances, instance -> {
+				String url = instance.getBaseUrl() + "/product";
+				LOG.debug("Will post a new product to URL: {}", url);
+				Product product = webClient.post().uri(url).contentType(internalMediaType)
+						.accept(internalMediaType, MediaType.APPLICATION_JSON).bodyValue(body).retrieve()
+						.bodyToMono(Product.class).block();
+				LOG.debug("Created a product with id: {}", product.getProductId());
+				return product;
+			});
+		} catch (WebClientResponseException ex) {
 			throw handleHttpClientException(ex);
 		}
 
 	}
 
+	@Override
+	public void createProducts(List<Product> body) {
+		try {
+			if (rsocketClient != null) {
+				rsocketClient.createProducts(body);
+				return;
+			}
+			execute(productServiceInstances, instance -> webClient.post().uri(instance.getBaseUrl() + "/product/batch")
+					.contentType(internalMediaType).bodyValue(body).retrieve().toBodilessEntity().block());
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
+
+	@Override
+	public Product updateProduct(int productId, String ifMatch, Product body) {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.updateProduct(productId, ifMatch, body);
+			}
+			return execute(productServiceInstances, instance -> withServiceAddress(webClient.put()
+					.uri(instance.getBaseUrl() + "/product/" + productId)
+					.headers(headers -> setIfMatch(headers, ifMatch)).contentType(internalMediaType)
+					.accept(internalMediaType, MediaType.APPLICATION_JSON).bodyValue(body).retrieve()
+					.bodyToMono(Product.class).block(), instance));
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
+
+	@Override
+	public Product patchProduct(int productId, String ifMatch, ProductPatch body) {
+		try {
+			if (rsocketClient != null) {
+				return rsocketClient.patchProduct(productId, ifMatch, body);
+			}
+			return execute(productServiceInstances, instance -> withServiceAddress(webClient.patch()
+					.uri(instance.getBaseUrl() + "/product/" + productId)
+					.headers(headers -> setIfMatch(headers, ifMatch)).contentType(internalMediaType)
+					.accept(internalMediaType, MediaType.APPLICATION_JSON).bodyValue(body).retrieve()
+					.bodyToMono(Product.class).block(), instance));
+		} catch (WebClientResponseException ex) {
+			throw handleHttpClientException(ex);
+		}
+	}
+
 	@Override
 	public void deleteProduct(int productId) {
 		try {
-			String url = this.productServiceUrl + "/"+productId;
-			LOG.debug("Will delete  product to URL: {}", url);
-			this.restTemplate.delete(url);
-		} catch (HttpClientErrorException ex) {
+			if (rsocketClient != null) {
+				rsocketClient.deleteProduct(productId);
+				return;
+			}
+			execute(productServiceInstances, instance -> {
+				String url = instance.getBaseUrl() + "/product/" + productId;
+				LOG.debug("Will delete  product to URL: {}", url);
+				return webClient.delete().uri(url).retrieve().toBodilessEntity().block();
+			});
+		} catch (WebClientResponseException ex) {
 			throw handleHttpClientException(ex);
 		}
 	}
 
-	private RuntimeException handleHttpClientException(HttpClientErrorException ex) {
+	/**
+	 * Runs a request against an instance picked by the load balancer. 4xx responses
+	 * count as a healthy instance, connect errors and 5xx responses as a failure.
+	 */
+	private <T> T execute(ServiceInstances instances, Function<ServiceInstance, T> request) {
+		ServiceInstance instance = instances.choose();
+		boolean success = false;
+		try {
+			T result = request.apply(instance);
+			success = true;
+			return result;
+		} catch (WebClientResponseException ex) {
+			success = ex.getStatusCode().is4xxClientError();
+			throw ex;
+		} finally {
+			instances.release(instance, success);
+		}
+	}
+
+	/**
+	 * Streams a newline delimited JSON response, read as fast as it is requested. The
+	 * instance is released once the stream completes, fails or is cancelled, with the
+	 * same notion of success as {@link #execute}.
+	 */
+	private <T> Flux<T> stream(ServiceInstances instances, String path, Class<T> type,
+			BiFunction<T, ServiceInstance, T> withServiceAddress) {
+		return Flux.defer(() -> {
+			ServiceInstance instance = instances.choose();
+			return webClient.get().uri(instance.getBaseUrl() + path).accept(MediaType.APPLICATION_NDJSON)
+					.retrieve().bodyToFlux(type)
+					.map(item -> withServiceAddress.apply(item, instance))
+					.doOnError(ex -> instances.release(instance, ex instanceof WebClientResponseException response
+							&& response.getStatusCode().is4xxClientError()))
+					.doOnComplete(() -> instances.release(instance, true))
+					.doOnCancel(() -> instances.release(instance, true));
+		}).onErrorMap(WebClientResponseException.class, this::handleHttpClientException);
+	}
+
+	/**
+	 * Sends a GET. Error responses are thrown as a WebClientResponseException, same as
+	 * with retrieve().
+	 */
+	private <T> T get(ServiceInstance instance, String path, Function<ClientResponse, Mono<T>> bodyReader) {
+		return webClient.get().uri(instance.getBaseUrl() + path).accept(internalMediaType, MediaType.APPLICATION_JSON)
+				.exchangeToMono(response -> response.statusCode().is2xxSuccessful() ? bodyReader.apply(response)
+						: response.<T>createError())
+				.block();
+	}
+
+	/**
+	 * Sends the GET of a single product id, conditional with If-None-Match when an
+	 * earlier response for the same path carried an ETag. A 304 returns a copy of that
+	 * earlier body, with the address of the instance that answered the 304, since
+	 * callers change what they get and the cached body is shared.
+	 */
+	private <T> T getConditional(ServiceInstance instance, String path, ParameterizedTypeReference<T> type) {
+		if (entityTagCache == null) {
+			return get(instance, path, response -> response.bodyToMono(type));
+		}
+		EntityTagCache.Entry cached = entityTagCache.get(path);
+		return webClient.get().uri(instance.getBaseUrl() + path).accept(internalMediaType, MediaType.APPLICATION_JSON)
+				.headers(headers -> {
+					if (cached != null) {
+						headers.setIfNoneMatch(cached.entityTag());
+					}
+				})
+				.exchangeToMono(response -> {
+					if (cached != null && response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+						LOG.debug("Not modified: {}, reuses the earlier response", path);
+						T copy = mapper.convertValue(cached.body(), mapper.constructType(type.getType()));
+						return response.releaseBody().thenReturn(stampServiceAddress(copy, instance.getBaseUrl()));
+					}
+					if (!response.statusCode().is2xxSuccessful()) {
+						return response.<T>createError();
+					}
+					String entityTag = response.headers().asHttpHeaders().getETag();
+					return response.bodyToMono(type).doOnNext(body -> {
+						if (entityTag != null) {
+							entityTagCache.put(path, entityTag, body);
+						}
+					});
+				}).block();
+	}
+
+	private static <T> T stampServiceAddress(T body, String serviceAddress) {
+		if (body instanceof Product product) {
+			product.setServiceAddress(serviceAddress);
+		} else if (body instanceof List<?> list) {
+			list.forEach(item -> stampServiceAddress(item, serviceAddress));
+		} else if (body instanceof Recommendation recommendation) {
+			recommendation.setServiceAddress(serviceAddress);
+		} else if (body instanceof Review review) {
+			review.setServiceAddress(serviceAddress);
+		}
+		return body;
+	}
+
+	/**
+	 * Drops a cached value after a write by this composite, so its own changes are
+	 * seen right away. Also after a failed write, it may have been applied anyway.
+	 * Writes by others show up when the value goes stale.
+	 */
+	private static <V> void invalidate(StaleWhileRevalidateCache<V> cache, int productId) {
+		if (cache != null) {
+			cache.invalidate(productId);
+		}
+	}
+
+	/**
+	 * Waits for a lookup that is sent as part of a batch. Invalid ids are rejected up
+	 * front, so they can't fail the lookups of other callers in the same batch.
+	 */
+	private <V> V await(MicroBatcher<Integer, V> batcher, int productId) {
+		if (productId < 1) {
+			throw new InvalidInputException("Invalid productId: " + productId);
+		}
+		CompletableFuture<V> result = batcher.load(productId);
+		try {
+			return result.join();
+		} catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw ex;
+		}
+	}
+
+	private static <T> Map<Integer, List<T>> groupByProductId(List<Integer> productIds, List<T> items,
+			Function<T, Integer> productIdOf) {
+		Map<Integer, List<T>> grouped = new HashMap<>();
+		productIds.forEach(productId -> grouped.put(productId, new ArrayList<>()));
+		items.forEach(item -> grouped.computeIfAbsent(productIdOf.apply(item), productId -> new ArrayList<>()).add(item));
+		return grouped;
+	}
+
+	private static String toParameter(List<Integer> productIds) {
+		return productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Core services report their own address, if one doesn't the instance the
+	 * request was load balanced to is used instead.
+	 */
+	private Product withServiceAddress(Product product, ServiceInstance instance) {
+		if (product != null && product.getServiceAddress() == null) {
+			product.setServiceAddress(instance.getBaseUrl());
+		}
+		return product;
+	}
+
+	private Recommendation withServiceAddress(Recommendation recommendation, ServiceInstance instance) {
+		if (recommendation.getServiceAddress() == null) {
+			recommendation.setServiceAddress(instance.getBaseUrl());
+		}
+		return recommendation;
+	}
+
+	private Review withServiceAddress(Review review, ServiceInstance instance) {
+		if (review.getServiceAddress() == null) {
+			review.setServiceAddress(instance.getBaseUrl());
+		}
+		return review;
+	}
+
+	// Forwarded as is, the core services only look at the versions in the tags
+	private static void setIfMatch(HttpHeaders headers, String ifMatch) {
+		if (ifMatch != null) {
+			headers.set(HttpHeaders.IF_MATCH, ifMatch);
+		}
+	}
+
+	private RuntimeException handleHttpClientException(WebClientResponseException ex) {
 		switch (HttpStatus.resolve(ex.getStatusCode().value())) {
 
 		case NOT_FOUND:
 			return new NotFoundException(getErrorMessage(ex));
 
+		case PRECONDITION_FAILED:
+			return new PreconditionFailedException(getErrorMessage(ex));
+
 		case UNPROCESSABLE_ENTITY:
 			return new InvalidInputException(getErrorMessage(ex));
 
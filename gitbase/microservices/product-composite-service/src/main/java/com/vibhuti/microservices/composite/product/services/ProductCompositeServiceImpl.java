@@ -1,51 +1,229 @@
 package com.vibhuti.microservices.composite.product.services;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import com.vibhuti.microservices.api.EntityTags;
+import com.vibhuti.microservices.api.composite.product.ImportResult;
 import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.composite.product.ProductAggregatePart;
+import com.vibhuti.microservices.api.composite.product.ProductChanges;
 import com.vibhuti.microservices.api.composite.product.ProductCompositeService;
 import com.vibhuti.microservices.api.composite.product.RecommendationSummary;
 import com.vibhuti.microservices.api.composite.product.ReviewSummary;
 import com.vibhuti.microservices.api.composite.product.ServiceAddresses;
+import com.vibhuti.microservices.api.core.Modification;
 import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.product.ProductPatch;
 import com.vibhuti.microservices.api.core.recommendation.Recommendation;
 import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.AggregateCache.Storage;
+import com.vibhuti.microservices.exception.BadRequestException;
+import com.vibhuti.microservices.exception.InvalidInputException;
 import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.exception.PreconditionFailedException;
+import com.vibhuti.microservices.exception.ServiceUnavailableException;
+import com.vibhuti.microservices.util.HotKeyTracker;
 import com.vibhuti.microservices.util.ServiceUtil;
 
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 @RestController
 public class ProductCompositeServiceImpl implements ProductCompositeService {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ProductCompositeServiceImpl.class);
+
+	private static final String RECOMMENDATIONS = "recommendations";
+	private static final String REVIEWS = "reviews";
+	private static final Set<String> ALL_SECTIONS = Set.of(RECOMMENDATIONS, REVIEWS);
+	// Every selection of sections, as cache variants
+	private static final List<String> VARIANTS = List.of("", RECOMMENDATIONS, REVIEWS,
+			RECOMMENDATIONS + "," + REVIEWS);
+	private static final Comparator<Modification> POSITION_ORDER = Comparator
+			.comparingLong(Modification::getLastModified).thenComparingInt(Modification::getProductId);
+	// Products read ahead of the export per core service stream
+	private static final int EXPORT_PREFETCH = 256;
+
 	private final ProductCompositeIntegration compositeIntegration;
 	private final ServiceUtil serviceUtil;
+	private final HotKeyTracker hotKeyTracker;
+	private final AggregateCache aggregateCache;
+
+	// Set when app.product-id-filter.enabled is true
+	private final ProductIdFilter productIdFilter;
+	// Set when app.parts-cache.enabled is true
+	private final ProductPartsCache productPartsCache;
+	// Set when app.write-mode is ASYNC
+	private final AsyncCommandPublisher asyncCommandPublisher;
+
+	private final int importBatchSize;
+	private final Duration importWindow;
+	private final int importConcurrency;
 
 	@Autowired
+	public ProductCompositeServiceImpl(ServiceUtil serviceUtil, ProductCompositeIntegration compositeIntegration,
+			HotKeyTracker hotKeyTracker, AggregateCache aggregateCache, ObjectProvider<ProductIdFilter> productIdFilter,
+			ObjectProvider<ProductPartsCache> productPartsCache,
+			ObjectProvider<AsyncCommandPublisher> asyncCommandPublisher,
+			@Value("${app.import.batch-size:100}") int importBatchSize,
+			@Value("${app.import.window:100ms}") Duration importWindow,
+			@Value("${app.import.concurrency:4}") int importConcurrency) {
+		this.serviceUtil = serviceUtil;
+		this.compositeIntegration = compositeIntegration;
+		this.hotKeyTracker = hotKeyTracker;
+		this.aggregateCache = aggregateCache;
+		this.productIdFilter = productIdFilter.getIfAvailable();
+		this.productPartsCache = productPartsCache.getIfAvailable();
+		this.asyncCommandPublisher = asyncCommandPublisher.getIfAvailable();
+		this.importBatchSize = importBatchSize;
+		this.importWindow = importWindow;
+		this.importConcurrency = importConcurrency;
+	}
+
 	public ProductCompositeServiceImpl(ServiceUtil serviceUtil, ProductCompositeIntegration compositeIntegration) {
 		this.serviceUtil = serviceUtil;
 		this.compositeIntegration = compositeIntegration;
+		this.hotKeyTracker = new HotKeyTracker(100, 10, Duration.ofMinutes(1));
+		this.aggregateCache = new AggregateCache(null, Duration.ZERO, 0, Storage.HEAP, productId -> false, null, null);
+		this.productIdFilter = null;
+		this.productPartsCache = null;
+		this.asyncCommandPublisher = null;
+		this.importBatchSize = 100;
+		this.importWindow = Duration.ofMillis(100);
+		this.importConcurrency = 4;
 	}
 
 	@Override
-	public ProductAggregate getProduct(int productId) {
+	public ProductAggregate getProduct(int productId, List<String> include) {
+		Set<String> sections = toSections(include);
+		hotKeyTracker.record(productId);
+
+		// Invalid ids are left to the integration, to keep their 422 response
+		if (productIdFilter != null && productId > 0 && !productIdFilter.mightExist(productId)) {
+			throw new NotFoundException("No product found for productId: " + productId);
+		}
+
+		return aggregateCache.get(productId, toVariant(sections), () -> loadProductAggregate(productId, sections),
+				this::isCurrent);
+	}
+
+	/**
+	 * Asks the core services for all sections at once, the recommendations and reviews
+	 * parts are held back until the product part is sent. Bypasses the aggregate cache,
+	 * which holds whole aggregates only.
+	 */
+	@Override
+	public Flux<ProductAggregatePart> getProductParts(int productId, List<String> include) {
+		Set<String> sections = toSections(include);
+		hotKeyTracker.record(productId);
+
+		if (productIdFilter != null && productId > 0 && !productIdFilter.mightExist(productId)) {
+			throw new NotFoundException("No product found for productId: " + productId);
+		}
+
+		// Cached, so the parts held back for it don't ask product-service again
+		Mono<Product> product = blocking(() -> compositeIntegration.getProduct(productId))
+				.switchIfEmpty(Mono.error(() -> new NotFoundException("No product found for productId: " + productId)))
+				.cache();
+		Mono<ProductAggregatePart> productPart = product.map(p -> new ProductAggregatePart(
+				ProductAggregatePart.Type.PRODUCT, productId, p.getName(), p.getWeight(), null, null,
+				p.getServiceAddress()));
+		Mono<ProductAggregatePart> recommendationsPart = !sections.contains(RECOMMENDATIONS) ? Mono.empty()
+				: blocking(() -> compositeIntegration.getRecommendations(productId)).delayUntil(r -> product)
+						.map(recommendations -> new ProductAggregatePart(ProductAggregatePart.Type.RECOMMENDATIONS,
+								productId, null, null, toRecommendationSummaries(recommendations), null,
+								recommendations.isEmpty() ? "" : recommendations.get(0).getServiceAddress()));
+		Mono<ProductAggregatePart> reviewsPart = !sections.contains(REVIEWS) ? Mono.empty()
+				: blocking(() -> compositeIntegration.getReviews(productId)).delayUntil(r -> product)
+						.map(reviews -> new ProductAggregatePart(ProductAggregatePart.Type.REVIEWS, productId, null,
+								null, null, toReviewSummaries(reviews),
+								reviews.isEmpty() ? "" : reviews.get(0).getServiceAddress()));
+
+		return Flux.merge(productPart, recommendationsPart, reviewsPart);
+	}
+
+	@Override
+	public Flux<ServerSentEvent<ProductAggregatePart>> getProductPartEvents(int productId, List<String> include) {
+		return getProductParts(productId, include)
+				.map(part -> ServerSentEvent.builder(part).event(part.getType().name()).build());
+	}
+
+	private static <T> Mono<T> blocking(Callable<T> call) {
+		return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	/**
+	 * Checks the product of a cached aggregate against product-service, the sections
+	 * are left to the ttl of the cache.
+	 */
+	private boolean isCurrent(ProductAggregate cached) {
+		Product cachedProduct = new Product(cached.getProductId(), cached.getName(), cached.getWeight(), null);
+		EntityTags.Revision revision = EntityTags.revision(cached.entityTag());
+		cachedProduct.setVersion(revision.version());
+		cachedProduct.setGeneration(revision.generation());
+		return cachedProduct.entityTag().equals(compositeIntegration.getProduct(cached.getProductId()).entityTag());
+	}
+
+	private ProductAggregate loadProductAggregate(int productId, Set<String> sections) {
+		ProductPartsCache.Parts parts = productPartsCache != null ? productPartsCache.get(productId) : null;
+		if (parts != null) {
+			return createProductAggregate(parts.product(),
+					sections.contains(RECOMMENDATIONS) ? parts.recommendations() : null,
+					sections.contains(REVIEWS) ? parts.reviews() : null, serviceUtil.getServiceAddress());
+		}
+
 		Product product = compositeIntegration.getProduct(productId);
 		if (product == null) {
 			throw new NotFoundException("No product found for productId: " + productId);
 		}
 
-		List<Recommendation> recommendations = compositeIntegration.getRecommendations(productId);
+		// Sections that are left out are neither fetched nor mapped, and stay null in the response
+		List<Recommendation> recommendations = sections.contains(RECOMMENDATIONS)
+				? compositeIntegration.getRecommendations(productId)
+				: null;
 
-		List<Review> reviews = compositeIntegration.getReviews(productId);
+		List<Review> reviews = sections.contains(REVIEWS) ? compositeIntegration.getReviews(productId) : null;
 
 		return createProductAggregate(product, recommendations, reviews, serviceUtil.getServiceAddress());
 	}
 
+	private static Set<String> toSections(List<String> include) {
+		if (include == null) {
+			return ALL_SECTIONS;
+		}
+		Set<String> sections = include.stream().map(String::trim).filter(section -> !section.isEmpty())
+				.collect(Collectors.toSet());
+		sections.stream().filter(section -> !ALL_SECTIONS.contains(section)).findFirst().ifPresent(section -> {
+			throw new BadRequestException("Unknown include: " + section + ", expected recommendations and/or reviews");
+		});
+		return sections;
+	}
+
+	private static String toVariant(Set<String> sections) {
+		return sections.stream().sorted().collect(Collectors.joining(","));
+	}
+
 	private ProductAggregate createProductAggregate(Product product, List<Recommendation> recommendations,
 			List<Review> reviews, String serviceAddress) {
 
@@ -56,36 +234,138 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 
 		// 2. Copy summary recommendation info, if available
 		List<RecommendationSummary> recommendationSummaries = (recommendations == null) ? null
-				: recommendations.stream()
-						.map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(),r.getContent()))
-						.collect(Collectors.toList());
+				: toRecommendationSummaries(recommendations);
 
 		// 3. Copy summary review info, if available
-		List<ReviewSummary> reviewSummaries = (reviews == null) ? null
-				: reviews.stream().map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(),r.getContent()))
-						.collect(Collectors.toList());
+		List<ReviewSummary> reviewSummaries = (reviews == null) ? null : toReviewSummaries(reviews);
 
 		// 4. Create info regarding the involved microservices addresses
 		String productAddress = product.getServiceAddress();
-		String reviewAddress = (reviews != null && reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
-		String recommendationAddress = (recommendations != null && recommendations.size() > 0)
-				? recommendations.get(0).getServiceAddress()
-				: "";
+		String reviewAddress = (reviews == null) ? null
+				: (reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
+		String recommendationAddress = (recommendations == null) ? null
+				: (recommendations.size() > 0) ? recommendations.get(0).getServiceAddress() : "";
 		ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, productAddress, reviewAddress,
 				recommendationAddress);
 
+		// 5. Combine the ETags of the parts, sections that were left out give another tag than empty ones
+		String entityTag = EntityTags.combine(product.getVersion(), product.getGeneration(), product.entityTag(),
+				(recommendations == null) ? null : EntityTags.ofList(recommendations),
+				(reviews == null) ? null : EntityTags.ofList(reviews));
+
 		return new ProductAggregate(productId, name, weight, recommendationSummaries, reviewSummaries,
-				serviceAddresses);
+				serviceAddresses, entityTag);
+	}
+
+	private static List<RecommendationSummary> toRecommendationSummaries(List<Recommendation> recommendations) {
+		return recommendations.stream()
+				.map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate(),r.getContent()))
+				.collect(Collectors.toList());
+	}
+
+	private static List<ReviewSummary> toReviewSummaries(List<Review> reviews) {
+		return reviews.stream().map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(),r.getContent()))
+				.collect(Collectors.toList());
 	}
 
+	/**
+	 * Merges the modifications listed by the three core services, each lists up to
+	 * limit after the position of the token, so the first limit of the merge are the
+	 * first limit overall. The token is the position of the last one on the page.
+	 */
 	@Override
-	public void createProduct(ProductAggregate body) {
+	public ProductChanges getChanges(String since, int limit) {
+		if (limit < 1 || limit > Modification.MAX_LIMIT) {
+			throw new InvalidInputException("Invalid limit: " + limit);
+		}
+		Modification after = since == null ? new Modification(0, 0) : fromToken(since);
+
+		List<List<Modification>> listed = List.of(
+				compositeIntegration.getProductModifications(after.getLastModified(), after.getProductId(), limit),
+				compositeIntegration.getRecommendationModifications(after.getLastModified(), after.getProductId(),
+						limit),
+				compositeIntegration.getReviewModifications(after.getLastModified(), after.getProductId(), limit));
+		List<Modification> merged = listed.stream().flatMap(List::stream).sorted(POSITION_ORDER).toList();
+		List<Modification> page = merged.subList(0, Math.min(limit, merged.size()));
+		boolean more = merged.size() > limit || listed.stream().anyMatch(list -> list.size() == limit);
+
+		// A product changed in more than one core service is on the page once
+		List<Integer> productIds = page.stream().map(Modification::getProductId).distinct().toList();
+		List<ProductAggregate> products = new ArrayList<>();
+		List<Integer> deletedProductIds = new ArrayList<>();
+		if (!productIds.isEmpty()) {
+			Map<Integer, Product> productsById = compositeIntegration.getProducts(productIds).stream()
+					.collect(Collectors.toMap(Product::getProductId, product -> product));
+			Map<Integer, List<Recommendation>> recommendations = compositeIntegration
+					.getRecommendationsForProducts(productIds).stream()
+					.collect(Collectors.groupingBy(Recommendation::getProductId));
+			Map<Integer, List<Review>> reviews = compositeIntegration.getReviewsForProducts(productIds).stream()
+					.collect(Collectors.groupingBy(Review::getProductId));
+			for (int productId : productIds) {
+				Product product = productsById.get(productId);
+				if (product == null) {
+					deletedProductIds.add(productId);
+				} else {
+					products.add(createProductAggregate(product, recommendations.getOrDefault(productId, List.of()),
+							reviews.getOrDefault(productId, List.of()), serviceUtil.getServiceAddress()));
+				}
+			}
+		}
+		LOG.debug("getChanges: {} changed and {} deleted products since {}", products.size(),
+				deletedProductIds.size(), since);
+
+		String next = page.isEmpty() ? toToken(after) : toToken(page.get(page.size() - 1));
+		return new ProductChanges(products, deletedProductIds, next, more);
+	}
+
+	@Override
+	public Flux<ProductAggregate> exportProducts() {
+		String serviceAddress = serviceUtil.getServiceAddress();
+		return SortedMergeJoin.join(compositeIntegration.exportProducts(), compositeIntegration.exportRecommendations(),
+				compositeIntegration.exportReviews(), EXPORT_PREFETCH)
+				.map(parts -> createProductAggregate(parts.product(), parts.recommendations(), parts.reviews(),
+						serviceAddress));
+	}
+
+	private static String toToken(Modification position) {
+		return position.getLastModified() + "-" + position.getProductId();
+	}
+
+	private static Modification fromToken(String token) {
+		String[] parts = token.split("-");
+		try {
+			if (parts.length == 2) {
+				return new Modification(Integer.parseInt(parts[1]), Long.parseLong(parts[0]));
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		throw new InvalidInputException("Invalid token: " + token);
+	}
+
+	@Override
+	public ResponseEntity<Void> createProduct(ProductAggregate body) {
+		if (asyncCommandPublisher != null) {
+			validate(body);
+			asyncCommandPublisher.publishCreate(body);
+			LOG.debug("createCompositeProduct: commands queued for productId: {}", body.getProductId());
+			if (productIdFilter != null) {
+				productIdFilter.add(body.getProductId());
+			}
+			aggregateCache.invalidate(body.getProductId(), VARIANTS);
+			evictFromPartsCache(body.getProductId());
+			return ResponseEntity.accepted().build();
+		}
+
 		try {
 
 			LOG.debug("createCompositeProduct: creates a new composite entity for productId: {}", body.getProductId());
 
 			Product product = new Product(body.getProductId(), body.getName(), body.getWeight(), null);
 			compositeIntegration.createProduct(product);
+			if (productIdFilter != null) {
+				productIdFilter.add(body.getProductId());
+			}
 
 			if (body.getRecommendations() != null) {
 				body.getRecommendations().forEach(r -> {
@@ -108,16 +388,267 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 		} catch (RuntimeException re) {
 			LOG.warn("createCompositeProduct failed", re);
 			throw re;
+		} finally {
+			// Also after a partial create, it may have added to the sections of a cached product
+			aggregateCache.invalidate(body.getProductId(), VARIANTS);
+			evictFromPartsCache(body.getProductId());
+		}
+		return ResponseEntity.ok().build();
+	}
+
+	/**
+	 * Checks the If-Match tags against the current aggregate first, then updates the
+	 * product and the recommendations and reviews listed in the body, by their ids, each
+	 * with the tag it had in that aggregate, so a part changed in between fails its write
+	 * with 412. The writes go to three services and aren't atomic, a failed one leaves the
+	 * ones before it applied. Written right away, also with app.write-mode ASYNC, since a
+	 * 412 can't be reported later.
+	 */
+	@Override
+	public ProductAggregate updateProduct(int productId, String ifMatch, ProductAggregate body) {
+		if (body.getProductId() != productId) {
+			throw new InvalidInputException("productId of the body differs from the path: " + body.getProductId());
+		}
+		validate(body);
+		ProductPartsCache.Parts current = checkIfMatch(productId, ifMatch);
+		Map<Integer, String> recommendationTags = current == null ? null : current.recommendations().stream()
+				.collect(Collectors.toMap(Recommendation::getRecommendationId, Recommendation::entityTag));
+		Map<Integer, String> reviewTags = current == null ? null : current.reviews().stream()
+				.collect(Collectors.toMap(Review::getReviewId, Review::entityTag));
+		if (current != null) {
+			// Before any write, so a part that doesn't exist leaves the product as it is
+			if (body.getRecommendations() != null) {
+				body.getRecommendations().stream().map(RecommendationSummary::getRecommendationId)
+						.filter(id -> !recommendationTags.containsKey(id)).findFirst().ifPresent(id -> {
+							throw new NotFoundException("No recommendation found for productId: " + productId
+									+ ", recommendationId: " + id);
+						});
+			}
+			if (body.getReviews() != null) {
+				body.getReviews().stream().map(ReviewSummary::getReviewId).filter(id -> !reviewTags.containsKey(id))
+						.findFirst().ifPresent(id -> {
+							throw new NotFoundException("No review found for productId: " + productId
+									+ ", reviewId: " + id);
+						});
+			}
+		}
+		try {
+			compositeIntegration.updateProduct(productId, current == null ? null : current.product().entityTag(),
+					new Product(productId, body.getName(), body.getWeight(), null));
+			if (body.getRecommendations() != null) {
+				body.getRecommendations().forEach(r -> compositeIntegration.updateRecommendation(productId,
+						r.getRecommendationId(),
+						recommendationTags == null ? null : recommendationTags.get(r.getRecommendationId()),
+						new Recommendation(productId, r.getRecommendationId(), r.getAuthor(), r.getRate(),
+								r.getContent(), null)));
+			}
+			if (body.getReviews() != null) {
+				body.getReviews().forEach(r -> compositeIntegration.updateReview(productId, r.getReviewId(),
+						reviewTags == null ? null : reviewTags.get(r.getReviewId()),
+						new Review(productId, r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent(), null)));
+			}
+			LOG.debug("updateCompositeProduct: updated for productId: {}", productId);
+		} finally {
+			aggregateCache.invalidate(productId, VARIANTS);
+			evictFromPartsCache(productId);
+		}
+		return getProduct(productId, null);
+	}
+
+	@Override
+	public ProductAggregate patchProduct(int productId, String ifMatch, ProductPatch body) {
+		ProductPartsCache.Parts current = checkIfMatch(productId, ifMatch);
+		try {
+			compositeIntegration.patchProduct(productId, current == null ? null : current.product().entityTag(), body);
+			LOG.debug("patchCompositeProduct: patched for productId: {}", productId);
+		} finally {
+			aggregateCache.invalidate(productId, VARIANTS);
+			evictFromPartsCache(productId);
+		}
+		return getProduct(productId, null);
+	}
+
+	/**
+	 * Reads the parts from the core services, past the response cache and the parts cache,
+	 * and compares the If-Match tags with the tag of the aggregate with each selection of
+	 * sections a GET can return. A core service that fails fails the update, rather than
+	 * the check passing against an empty section. Null if any state is allowed.
+	 */
+	private ProductPartsCache.Parts checkIfMatch(int productId, String ifMatch) {
+		if (EntityTags.matchesAny(ifMatch)) {
+			return null;
+		}
+		Product product = compositeIntegration.getProduct(productId);
+		if (product == null) {
+			throw new NotFoundException("No product found for productId: " + productId);
+		}
+		List<Recommendation> recommendations = compositeIntegration.getCurrentRecommendations(productId);
+		List<Review> reviews = compositeIntegration.getCurrentReviews(productId);
+		String recommendationsTag = EntityTags.ofList(recommendations);
+		String reviewsTag = EntityTags.ofList(reviews);
+		for (String recommendationTag : new String[] { recommendationsTag, null }) {
+			for (String reviewTag : new String[] { reviewsTag, null }) {
+				if (EntityTags.matches(ifMatch,
+						EntityTags.combine(product.getVersion(), product.getGeneration(), product.entityTag(),
+								recommendationTag, reviewTag))) {
+					return new ProductPartsCache.Parts(product, recommendations, reviews);
+				}
+			}
+		}
+		throw new PreconditionFailedException("Product has been modified, productId: " + productId);
+	}
+
+	/**
+	 * Validates each composite product on its own, and writes the valid ones in batches
+	 * of up to {@code app.import.batch-size}, with one write per core service and batch.
+	 * At most {@code app.import.concurrency} batches are written at a time, the body is
+	 * read no faster than that. A failed write fails the products of its batch only,
+	 * their creates that did succeed are skipped when they are imported again. Written
+	 * right away, also with app.write-mode ASYNC.
+	 */
+	@Override
+	public Flux<ImportResult> importProducts(Flux<ProductAggregate> body) {
+		return body.bufferTimeout(importBatchSize, importWindow, true)
+				.flatMapSequential(batch -> Mono.fromCallable(() -> importBatch(batch))
+						.subscribeOn(Schedulers.boundedElastic()), importConcurrency)
+				.flatMapIterable(results -> results);
+	}
+
+	private List<ImportResult> importBatch(List<ProductAggregate> batch) {
+		Map<ProductAggregate, ImportResult> rejected = new HashMap<>();
+		List<ProductAggregate> valid = new ArrayList<>();
+		for (ProductAggregate body : batch) {
+			try {
+				validate(body);
+				valid.add(body);
+			} catch (InvalidInputException e) {
+				rejected.put(body, new ImportResult(body.getProductId(), HttpStatus.UNPROCESSABLE_ENTITY.value(),
+						e.getMessage()));
+			}
+		}
+
+		RuntimeException failure = valid.isEmpty() ? null : writeBatch(valid);
+		LOG.debug("importProducts: {} written, {} rejected, failed: {}", valid.size(), rejected.size(), failure);
+
+		return batch.stream().map(body -> {
+			if (rejected.containsKey(body)) {
+				return rejected.get(body);
+			}
+			if (failure != null) {
+				return new ImportResult(body.getProductId(), statusOf(failure), failure.getMessage());
+			}
+			return new ImportResult(body.getProductId(), HttpStatus.OK.value(), null);
+		}).toList();
+	}
+
+	/**
+	 * Writes to the three core services at the same time.
+	 *
+	 * @return the first failure, null if all writes succeeded
+	 */
+	private RuntimeException writeBatch(List<ProductAggregate> batch) {
+		List<Product> products = batch.stream()
+				.map(body -> new Product(body.getProductId(), body.getName(), body.getWeight(), null)).toList();
+		List<Recommendation> recommendations = batch.stream().filter(body -> body.getRecommendations() != null)
+				.flatMap(body -> body.getRecommendations().stream().map(r -> new Recommendation(body.getProductId(),
+						r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(), null)))
+				.toList();
+		List<Review> reviews = batch.stream().filter(body -> body.getReviews() != null)
+				.flatMap(body -> body.getReviews().stream().map(r -> new Review(body.getProductId(), r.getReviewId(),
+						r.getAuthor(), r.getSubject(), r.getContent(), null)))
+				.toList();
+
+		try {
+			Mono.whenDelayError(
+					write(() -> compositeIntegration.createProducts(products)),
+					recommendations.isEmpty() ? Mono.empty()
+							: write(() -> compositeIntegration.createRecommendations(recommendations)),
+					reviews.isEmpty() ? Mono.empty() : write(() -> compositeIntegration.createReviews(reviews)))
+					.block();
+			return null;
+		} catch (RuntimeException e) {
+			LOG.warn("importProducts: failed to write a batch of {} products: {}", batch.size(), e.toString());
+			return (RuntimeException) Exceptions.unwrapMultiple(e).get(0);
+		} finally {
+			// Also after a failed write, it may have been applied in part
+			for (ProductAggregate body : batch) {
+				if (productIdFilter != null) {
+					productIdFilter.add(body.getProductId());
+				}
+				aggregateCache.invalidate(body.getProductId(), VARIANTS);
+				evictFromPartsCache(body.getProductId());
+			}
+		}
+	}
+
+	private static Mono<Void> write(Runnable write) {
+		return Mono.fromRunnable(write).subscribeOn(Schedulers.boundedElastic()).then();
+	}
+
+	private static int statusOf(RuntimeException e) {
+		if (e instanceof InvalidInputException) {
+			return HttpStatus.UNPROCESSABLE_ENTITY.value();
+		}
+		if (e instanceof NotFoundException) {
+			return HttpStatus.NOT_FOUND.value();
+		}
+		if (e instanceof PreconditionFailedException) {
+			return HttpStatus.PRECONDITION_FAILED.value();
+		}
+		if (e instanceof WebClientResponseException response) {
+			return response.getStatusCode().value();
+		}
+		if (e instanceof ServiceUnavailableException) {
+			return HttpStatus.SERVICE_UNAVAILABLE.value();
+		}
+		return HttpStatus.INTERNAL_SERVER_ERROR.value();
+	}
+
+	/**
+	 * The checks that can be made before the core services are called, queued writes
+	 * can't report errors later.
+	 */
+	private static void validate(ProductAggregate body) {
+		if (body.getProductId() < 1) {
+			throw new InvalidInputException("Invalid productId: " + body.getProductId());
+		}
+		if (body.getRecommendations() != null && body.getRecommendations().stream()
+				.map(RecommendationSummary::getRecommendationId).distinct().count() < body.getRecommendations().size()) {
+			throw new InvalidInputException("Duplicate recommendationId, Product Id: " + body.getProductId());
+		}
+		if (body.getReviews() != null && body.getReviews().stream().map(ReviewSummary::getReviewId).distinct()
+				.count() < body.getReviews().size()) {
+			throw new InvalidInputException("Duplicate reviewId, Product Id: " + body.getProductId());
 		}
 	}
 
 	@Override
-	public void deleteProduct(int productId) {
+	public ResponseEntity<Void> deleteProduct(int productId) {
 		LOG.debug("deleteCompositeProduct: Deletes a product aggregate for productId: {}", productId);
-	    compositeIntegration.deleteProduct(productId);
-	    compositeIntegration.deleteRecommendations(productId);
-	    compositeIntegration.deleteReviews(productId);
+		if (asyncCommandPublisher != null) {
+			asyncCommandPublisher.publishDelete(productId);
+			aggregateCache.invalidate(productId, VARIANTS);
+			evictFromPartsCache(productId);
+			return ResponseEntity.accepted().build();
+		}
+
+		try {
+		    compositeIntegration.deleteProduct(productId);
+		    compositeIntegration.deleteRecommendations(productId);
+		    compositeIntegration.deleteReviews(productId);
+		} finally {
+			aggregateCache.invalidate(productId, VARIANTS);
+			evictFromPartsCache(productId);
+		}
 	    LOG.debug("deleteCompositeProduct: aggregate entities deleted for productId: {}", productId);
+		return ResponseEntity.ok().build();
+	}
+
+	// The events of the write may not have arrived yet, the next read loads the product again
+	private void evictFromPartsCache(int productId) {
+		if (productPartsCache != null) {
+			productPartsCache.evict(productId);
+		}
 	}
 
 }
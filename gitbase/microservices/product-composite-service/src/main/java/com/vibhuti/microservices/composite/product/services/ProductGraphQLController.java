@@ -0,0 +1,106 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.GraphQlExceptionHandler;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.stereotype.Controller;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.exception.InvalidInputException;
+import com.vibhuti.microservices.exception.NotFoundException;
+
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * GraphQL view of products, see graphql/schema.graphqls. Recommendations and
+ * reviews are {@code @BatchMapping}s, so they are only fetched when selected and
+ * then with one multi-id call for all products of the query. Integration calls
+ * block, so they run on boundedElastic instead of the event loop.
+ */
+@Controller
+public class ProductGraphQLController {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProductGraphQLController.class);
+
+	private final ProductCompositeIntegration compositeIntegration;
+
+	public ProductGraphQLController(ProductCompositeIntegration compositeIntegration) {
+		this.compositeIntegration = compositeIntegration;
+	}
+
+	@QueryMapping
+	public Mono<Product> product(@Argument int productId) {
+		return blocking(() -> compositeIntegration.getProduct(productId));
+	}
+
+	@QueryMapping
+	public Mono<List<Product>> products(@Argument List<Integer> productIds) {
+		return blocking(() -> {
+			Map<Integer, Product> found = compositeIntegration.getProducts(productIds).stream()
+					.collect(Collectors.toMap(Product::getProductId, Function.identity(), (p1, p2) -> p1));
+			return productIds.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
+		});
+	}
+
+	@BatchMapping
+	public Mono<Map<Product, List<Recommendation>>> recommendations(List<Product> products) {
+		return blocking(() -> groupByProduct(products,
+				compositeIntegration.getRecommendationsForProducts(productIds(products)),
+				Recommendation::getProductId));
+	}
+
+	@BatchMapping
+	public Mono<Map<Product, List<Review>>> reviews(List<Product> products) {
+		return blocking(() -> groupByProduct(products, compositeIntegration.getReviewsForProducts(productIds(products)),
+				Review::getProductId));
+	}
+
+	@GraphQlExceptionHandler
+	public GraphQLError handleNotFoundException(NotFoundException ex, DataFetchingEnvironment env) {
+		return createGraphQLError(ErrorType.NOT_FOUND, ex, env);
+	}
+
+	@GraphQlExceptionHandler
+	public GraphQLError handleInvalidInputException(InvalidInputException ex, DataFetchingEnvironment env) {
+		return createGraphQLError(ErrorType.BAD_REQUEST, ex, env);
+	}
+
+	private GraphQLError createGraphQLError(ErrorType errorType, Exception ex, DataFetchingEnvironment env) {
+		LOG.debug("Returning GraphQL error: {} for path: {}, message: {}", errorType, env.getExecutionStepInfo().getPath(),
+				ex.getMessage());
+		return GraphqlErrorBuilder.newError(env).errorType(errorType).message(ex.getMessage()).build();
+	}
+
+	private static List<Integer> productIds(List<Product> products) {
+		return products.stream().map(Product::getProductId).distinct().collect(Collectors.toList());
+	}
+
+	private static <T> Map<Product, List<T>> groupByProduct(List<Product> products, List<T> items,
+			Function<T, Integer> productIdOf) {
+		Map<Integer, List<T>> byProductId = items.stream().collect(Collectors.groupingBy(productIdOf));
+		return products.stream().collect(Collectors.toMap(Function.identity(),
+				product -> byProductId.getOrDefault(product.getProductId(), new ArrayList<>()), (l1, l2) -> l1));
+	}
+
+	private static <T> Mono<T> blocking(Callable<T> call) {
+		return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+	}
+}
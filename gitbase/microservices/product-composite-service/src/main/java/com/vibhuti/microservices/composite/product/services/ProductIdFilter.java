@@ -0,0 +1,95 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.vibhuti.microservices.util.BloomFilter;
+
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Bloom filter of the product ids that exist, so lookups of ids that certainly
+ * don't exist are answered without calling product-service. It is rebuilt from
+ * product-service every {@code refresh-interval}, which also drops deleted ids, and
+ * products created through this composite are added right away.
+ *
+ * Products created past this composite, e.g. through another replica, are only seen
+ * after the next rebuild. Until the first rebuild succeeds every id passes.
+ */
+@Component
+@ConditionalOnProperty(name = "app.product-id-filter.enabled", havingValue = "true")
+public class ProductIdFilter implements DisposableBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProductIdFilter.class);
+
+	private final ProductCompositeIntegration compositeIntegration;
+	private final int expectedInsertions;
+	private final double falsePositiveRate;
+	private final Disposable refreshTask;
+
+	// Ids added while a rebuild runs, they may be missing from the ids it fetched
+	private final Set<Integer> recentlyAdded = ConcurrentHashMap.newKeySet();
+
+	private volatile BloomFilter filter;
+
+	public ProductIdFilter(ProductCompositeIntegration compositeIntegration,
+			@Value("${app.product-id-filter.expected-insertions:100000}") int expectedInsertions,
+			@Value("${app.product-id-filter.false-positive-rate:0.01}") double falsePositiveRate,
+			@Value("${app.product-id-filter.refresh-interval:30s}") Duration refreshInterval) {
+
+		this.compositeIntegration = compositeIntegration;
+		this.expectedInsertions = expectedInsertions;
+		this.falsePositiveRate = falsePositiveRate;
+		this.refreshTask = Schedulers.boundedElastic().schedulePeriodically(this::refresh, 0,
+				refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	public boolean mightExist(int productId) {
+		BloomFilter current = filter;
+		return current == null || current.mightContain(productId);
+	}
+
+	public void add(int productId) {
+		recentlyAdded.add(productId);
+		BloomFilter current = filter;
+		if (current != null) {
+			current.put(productId);
+		}
+	}
+
+	/**
+	 * Rebuilds the filter from the ids in product-service, a failed rebuild keeps the
+	 * filter as it was. The filter is sized for twice the current number of products,
+	 * so it stays accurate while products are added until the next rebuild.
+	 */
+	public synchronized void refresh() {
+		try {
+			recentlyAdded.clear();
+			List<Integer> productIds = compositeIntegration.getProductIds();
+			BloomFilter rebuilt = BloomFilter.create(Math.max(expectedInsertions, productIds.size() * 2),
+					falsePositiveRate);
+			productIds.forEach(rebuilt::put);
+			filter = rebuilt;
+			recentlyAdded.forEach(rebuilt::put);
+			LOG.debug("Rebuilt the product id filter, {} ids in {} bits", productIds.size(), rebuilt.bitSize());
+		} catch (RuntimeException ex) {
+			LOG.warn("Failed to rebuild the product id filter, keeps the current one: {}", ex.getMessage());
+		}
+	}
+
+	@Override
+	public void destroy() {
+		refreshTask.dispose();
+	}
+}
@@ -0,0 +1,307 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.util.BoundedIntMap;
+import com.vibhuti.microservices.util.HotKeyTracker;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+/**
+ * Cache of products with their recommendations and reviews, enabled with
+ * {@code app.parts-cache.enabled: true}. It is not a read model built from the events:
+ * a product is loaded from the core services the first time it is read, and the create
+ * and delete events the core services stream over RSocket then patch or drop the cached
+ * entry, so later reads need no remote call. Events of products that aren't cached are
+ * ignored. The event streams have no position to resume from, so the cache can't be
+ * rebuilt from them, only emptied when one is lost.
+ *
+ * Each instance of a core service streams the events of the writes it handled, so the
+ * cache follows every instance, see {@link CoreServicesRSocketClient#requesters}. It is
+ * only used while all these event streams are attached. When one is lost the cache is
+ * cleared, as events may have been missed, and reads go to the core services as usual
+ * until it is attached again and refilled by reads. A product is loaded again after
+ * {@code maxAge}, which bounds how long a missed event is noticed by no one.
+ */
+@Component
+@ConditionalOnProperty(name = "app.parts-cache.enabled", havingValue = "true")
+public class ProductPartsCache implements DisposableBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProductPartsCache.class);
+
+	public record Parts(Product product, List<Recommendation> recommendations, List<Review> reviews) {
+	}
+
+	private static final ParameterizedTypeReference<Event<Integer, Product>> PRODUCT_EVENT =
+			new ParameterizedTypeReference<>() {};
+	private static final ParameterizedTypeReference<Event<Integer, Recommendation>> RECOMMENDATION_EVENT =
+			new ParameterizedTypeReference<>() {};
+	private static final ParameterizedTypeReference<Event<Integer, Review>> REVIEW_EVENT =
+			new ParameterizedTypeReference<>() {};
+
+	// Entries without parts mark a load in progress, events drop them so the load isn't stored
+	private record Entry(Parts parts, long loadedAt) {
+	}
+
+	private final CoreServicesRSocketClient client;
+	private final List<RSocketRequester> requesters = new ArrayList<>();
+	private final BoundedIntMap<Entry> entries;
+	private final long maxAgeMillis;
+	private final int streams;
+	private final Set<String> attachedStreams = ConcurrentHashMap.newKeySet();
+	private final Disposable.Composite subscriptions = Disposables.composite();
+	// Counts the times the cache was cleared, a load is only stored if it wasn't meanwhile
+	private volatile long generation;
+
+	@Autowired
+	public ProductPartsCache(RSocketRequester.Builder builder,
+			@Value("${app.product-service.host}") String productServiceHost,
+			@Value("${app.product-service.rsocket-port}") int productServicePort,
+			@Value("${app.product-service.instances:}") String productServiceInstances,
+			@Value("${app.product-service.rsocket-instances:}") String productServiceRSocketInstances,
+			@Value("${app.recommendation-service.host}") String recommendationServiceHost,
+			@Value("${app.recommendation-service.rsocket-port}") int recommendationServicePort,
+			@Value("${app.recommendation-service.instances:}") String recommendationServiceInstances,
+			@Value("${app.recommendation-service.rsocket-instances:}") String recommendationServiceRSocketInstances,
+			@Value("${app.review-service.host}") String reviewServiceHost,
+			@Value("${app.review-service.rsocket-port}") int reviewServicePort,
+			@Value("${app.review-service.instances:}") String reviewServiceInstances,
+			@Value("${app.review-service.rsocket-instances:}") String reviewServiceRSocketInstances,
+			@Value("${app.rsocket.timeout:10s}") Duration timeout,
+			@Value("${app.parts-cache.max-entries:10000}") int maxEntries,
+			@Value("${app.parts-cache.max-age:10m}") Duration maxAge,
+			@Value("${app.parts-cache.max-backoff:30s}") Duration maxBackoff,
+			HotKeyTracker hotKeyTracker) {
+
+		this(CoreServicesRSocketClient.requesters(builder, "product-service", productServiceInstances,
+				productServiceRSocketInstances, productServiceHost, productServicePort),
+				CoreServicesRSocketClient.requesters(builder, "recommendation-service", recommendationServiceInstances,
+						recommendationServiceRSocketInstances, recommendationServiceHost, recommendationServicePort),
+				CoreServicesRSocketClient.requesters(builder, "review-service", reviewServiceInstances,
+						reviewServiceRSocketInstances, reviewServiceHost, reviewServicePort),
+				timeout, maxEntries, maxAge, maxBackoff, hotKeyTracker::isHot);
+	}
+
+	public ProductPartsCache(RSocketRequester productRequester, RSocketRequester recommendationRequester,
+			RSocketRequester reviewRequester, Duration timeout, int maxEntries, Duration maxBackoff,
+			IntPredicate pinned) {
+
+		this(List.of(productRequester), List.of(recommendationRequester), List.of(reviewRequester), timeout,
+				maxEntries, Duration.ZERO, maxBackoff, pinned);
+	}
+
+	/**
+	 * Loads from the first instance of each service, and follows the events of all.
+	 */
+	public ProductPartsCache(List<RSocketRequester> productRequesters,
+			List<RSocketRequester> recommendationRequesters, List<RSocketRequester> reviewRequesters,
+			Duration timeout, int maxEntries, Duration maxAge, Duration maxBackoff, IntPredicate pinned) {
+
+		this.client = new CoreServicesRSocketClient(productRequesters.get(0), recommendationRequesters.get(0),
+				reviewRequesters.get(0), timeout);
+		this.entries = new BoundedIntMap<>(maxEntries, pinned);
+		this.maxAgeMillis = maxAge.toMillis();
+		this.streams = productRequesters.size() + recommendationRequesters.size() + reviewRequesters.size();
+		follow("product", productRequesters, "product.events", PRODUCT_EVENT, this::applyProductEvent, maxBackoff);
+		follow("recommendation", recommendationRequesters, "recommendation.events", RECOMMENDATION_EVENT,
+				this::applyRecommendationEvent, maxBackoff);
+		follow("review", reviewRequesters, "review.events", REVIEW_EVENT, this::applyReviewEvent, maxBackoff);
+	}
+
+	/**
+	 * True while the event streams of all instances of the core services are attached.
+	 */
+	public boolean isLive() {
+		return attachedStreams.size() == streams;
+	}
+
+	/**
+	 * @return the product with all its recommendations and reviews, or null if the cache
+	 *         isn't live or the core services couldn't be reached, to fall back to the
+	 *         regular calls
+	 * @throws NotFoundException if there is no such product
+	 */
+	public Parts get(int productId) {
+		// Invalid ids are left to the regular calls, to keep their error response
+		if (productId < 1 || !isLive()) {
+			return null;
+		}
+		Entry current = entries.get(productId);
+		long now = System.currentTimeMillis();
+		if (current != null && current.parts() != null
+				&& (maxAgeMillis <= 0 || now - current.loadedAt() < maxAgeMillis)) {
+			return current.parts();
+		}
+
+		long loadGeneration = generation;
+		Entry loading = new Entry(null, now);
+		boolean marked = current == null ? entries.putIfAbsent(productId, loading) == null
+				: entries.replace(productId, current, loading);
+		try {
+			Parts loaded = load(productId);
+			if (marked) {
+				store(productId, loading, new Entry(loaded, now), loadGeneration);
+			}
+			return loaded;
+		} catch (NotFoundException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			LOG.warn("Failed to load product {} into the parts cache: {}", productId, e.toString());
+			return null;
+		} finally {
+			if (marked) {
+				entries.remove(productId, loading);
+			}
+		}
+	}
+
+	/**
+	 * Drops a product, so it is loaded again on the next read. Used after writes
+	 * through this replica, whose events may still be on their way.
+	 */
+	public void evict(int productId) {
+		entries.remove(productId);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public void destroy() {
+		subscriptions.dispose();
+		// The client disposes the first requester of each service
+		client.destroy();
+		requesters.forEach(RSocketRequester::dispose);
+	}
+
+	private Parts load(int productId) {
+		Product product = client.getProduct(productId);
+		if (product == null) {
+			throw new NotFoundException("No product found for productId: " + productId);
+		}
+		return new Parts(product, List.copyOf(client.getRecommendations(productId)),
+				List.copyOf(client.getReviews(productId)));
+	}
+
+	private synchronized void store(int productId, Entry loading, Entry loaded, long loadGeneration) {
+		if (generation == loadGeneration) {
+			entries.replace(productId, loading, loaded);
+		}
+	}
+
+	private synchronized void detach(String stream, Throwable error) {
+		if (attachedStreams.remove(stream)) {
+			LOG.warn("Lost the {} event stream, clearing the parts cache: {}", stream, error.toString());
+		}
+		generation++;
+		entries.clear();
+	}
+
+	private <T> void follow(String service, List<RSocketRequester> requesters, String route,
+			ParameterizedTypeReference<Event<Integer, T>> eventType, Consumer<Event<Integer, T>> apply,
+			Duration maxBackoff) {
+
+		for (int i = 0; i < requesters.size(); i++) {
+			RSocketRequester requester = requesters.get(i);
+			if (i > 0) {
+				this.requesters.add(requester);
+			}
+			String stream = requesters.size() == 1 ? service : service + " " + (i + 1);
+			subscriptions.add(follow(stream, requester.route(route).retrieveFlux(eventType), apply, maxBackoff));
+		}
+	}
+
+	private <T> Disposable follow(String stream, Flux<Event<Integer, T>> events, Consumer<Event<Integer, T>> apply,
+			Duration maxBackoff) {
+
+		return events
+				.concatWith(Flux.error(() -> new IllegalStateException("Event stream completed")))
+				.doOnNext(event -> {
+					if (event.getEventType() == Event.Type.SUBSCRIBED) {
+						LOG.info("Attached to the {} event stream", stream);
+						attachedStreams.add(stream);
+					} else {
+						apply.accept(event);
+					}
+				})
+				.doOnError(error -> detach(stream, error))
+				// transientErrors restarts the backoff once events are received again
+				.retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(maxBackoff)
+						.transientErrors(true))
+				.subscribe();
+	}
+
+	private void applyProductEvent(Event<Integer, Product> event) {
+		if (event.getEventType() == Event.Type.CREATE) {
+			update(event.getKey(), parts -> new Parts(event.getData(), parts.recommendations(), parts.reviews()));
+		} else {
+			update(event.getKey(), parts -> null);
+		}
+	}
+
+	private void applyRecommendationEvent(Event<Integer, Recommendation> event) {
+		update(event.getKey(), parts -> new Parts(parts.product(), event.getEventType() == Event.Type.CREATE
+				? with(parts.recommendations(), event.getData(), Recommendation::getRecommendationId)
+				: List.of(), parts.reviews()));
+	}
+
+	private void applyReviewEvent(Event<Integer, Review> event) {
+		update(event.getKey(), parts -> new Parts(parts.product(), parts.recommendations(),
+				event.getEventType() == Event.Type.CREATE ? with(parts.reviews(), event.getData(), Review::getReviewId)
+						: List.of()));
+	}
+
+	/**
+	 * Applies a change to a cached product, products that aren't cached are left to
+	 * be loaded when read. A null result removes the product.
+	 */
+	private void update(int productId, UnaryOperator<Parts> change) {
+		while (true) {
+			Entry current = entries.get(productId);
+			if (current == null) {
+				return;
+			}
+			// A load in progress may have read the entity before the change
+			Parts updated = current.parts() == null ? null : change.apply(current.parts());
+			if (updated == null ? entries.remove(productId, current)
+					: entries.replace(productId, current, new Entry(updated, current.loadedAt()))) {
+				return;
+			}
+		}
+	}
+
+	// Replaces the item with the same id, or adds it
+	private static <T> List<T> with(List<T> list, T item, ToIntFunction<T> id) {
+		List<T> updated = new ArrayList<>(list.size() + 1);
+		list.stream().filter(existing -> id.applyAsInt(existing) != id.applyAsInt(item)).forEach(updated::add);
+		updated.add(item);
+		return List.copyOf(updated);
+	}
+}
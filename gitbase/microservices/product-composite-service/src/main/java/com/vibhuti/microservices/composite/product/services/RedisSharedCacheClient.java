@@ -0,0 +1,107 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+
+/**
+ * {@link SharedCacheClient} of a Redis server, or anything else that speaks the Redis
+ * protocol. Commands, publishing included, share one connection, and subscriptions use
+ * a second one since a subscribed connection can't run other commands. Lettuce
+ * reconnects both after the server was unavailable and then subscribes again.
+ */
+@Component
+@ConditionalOnProperty(name = "app.aggregate-cache.shared.enabled", havingValue = "true")
+public class RedisSharedCacheClient implements SharedCacheClient, DisposableBean {
+
+	// A missing fence compares equal to the empty string
+	private static final String SET_IF_FENCE = """
+			if (redis.call('GET', KEYS[2]) or '') ~= ARGV[2] then
+			  return 0
+			end
+			redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3])
+			return 1
+			""";
+
+	private final RedisClient client;
+	private final StatefulRedisConnection<String, byte[]> connection;
+	private final StatefulRedisPubSubConnection<String, String> pubSubConnection;
+
+	public RedisSharedCacheClient(@Value("${app.aggregate-cache.shared.uri:redis://localhost:6379}") String uri,
+			@Value("${app.aggregate-cache.shared.timeout:200ms}") Duration timeout) {
+
+		RedisURI redisUri = RedisURI.create(uri);
+		redisUri.setTimeout(timeout);
+		this.client = RedisClient.create(redisUri);
+		// RESP2 skips the HELLO handshake, which servers before Redis 6 and most stand-ins lack
+		client.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build());
+		this.connection = client.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+		this.pubSubConnection = client.connectPubSub(StringCodec.UTF8);
+	}
+
+	@Override
+	public byte[] get(String key) {
+		return connection.sync().get(key);
+	}
+
+	@Override
+	public void set(String key, byte[] value, Duration ttl) {
+		connection.sync().set(key, value, SetArgs.Builder.px(ttl));
+	}
+
+	@Override
+	public boolean setIfFence(String key, byte[] value, Duration ttl, String fenceKey, byte[] fence) {
+		Long set = connection.sync().eval(SET_IF_FENCE, ScriptOutputType.INTEGER, new String[] { key, fenceKey },
+				value, fence == null ? new byte[0] : fence,
+				Long.toString(ttl.toMillis()).getBytes(StandardCharsets.UTF_8));
+		return set == 1;
+	}
+
+	@Override
+	public void delete(String... keys) {
+		connection.sync().del(keys);
+	}
+
+	@Override
+	public void publish(String channel, String message) {
+		connection.sync().publish(channel, message.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void subscribe(String channel, Consumer<String> listener) {
+		pubSubConnection.addListener(new RedisPubSubAdapter<>() {
+			@Override
+			public void message(String messageChannel, String message) {
+				if (channel.equals(messageChannel)) {
+					listener.accept(message);
+				}
+			}
+		});
+		pubSubConnection.sync().subscribe(channel);
+	}
+
+	@Override
+	public void destroy() {
+		pubSubConnection.close();
+		connection.close();
+		client.shutdown();
+	}
+}
@@ -0,0 +1,65 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One instance of a core service, e.g. "http://product:8080", together with the
+ * book keeping used by {@link ServiceInstances} to pick and eject instances.
+ */
+public class ServiceInstance {
+
+	private final String baseUrl;
+	private final AtomicInteger outstandingRequests = new AtomicInteger();
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	private volatile long ejectedUntil = 0;
+
+	public ServiceInstance(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public int getOutstandingRequests() {
+		return outstandingRequests.get();
+	}
+
+	public int getConsecutiveFailures() {
+		return consecutiveFailures.get();
+	}
+
+	public boolean isEjected(long now) {
+		return now < ejectedUntil;
+	}
+
+	long getEjectedUntil() {
+		return ejectedUntil;
+	}
+
+	void acquire() {
+		outstandingRequests.incrementAndGet();
+	}
+
+	void release() {
+		outstandingRequests.decrementAndGet();
+	}
+
+	void recordSuccess() {
+		consecutiveFailures.set(0);
+	}
+
+	int recordFailure() {
+		return consecutiveFailures.incrementAndGet();
+	}
+
+	void eject(long until) {
+		ejectedUntil = until;
+		consecutiveFailures.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return baseUrl;
+	}
+}
@@ -0,0 +1,146 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client side load balancer for the instances of one core service.
+ *
+ * Instances are picked either by least outstanding requests or by power of two
+ * choices. Instances that fail {@code failureThreshold} times in a row (connect
+ * errors and 5xx responses) are ejected for {@code ejectionTime}, i.e. a passive
+ * health check. If every instance is ejected the one that comes back first is
+ * used anyway, so a service is never made unreachable by the load balancer itself.
+ */
+public class ServiceInstances {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ServiceInstances.class);
+
+	public enum SelectionStrategy {
+		LEAST_OUTSTANDING, POWER_OF_TWO_CHOICES
+	}
+
+	private final String serviceName;
+	private final List<ServiceInstance> instances;
+	private final SelectionStrategy strategy;
+	private final int failureThreshold;
+	private final long ejectionTimeMillis;
+
+	public ServiceInstances(String serviceName, List<String> baseUrls, SelectionStrategy strategy,
+			int failureThreshold, Duration ejectionTime) {
+
+		if (baseUrls.isEmpty()) {
+			throw new IllegalArgumentException("No instances configured for " + serviceName);
+		}
+		List<ServiceInstance> list = new ArrayList<>();
+		baseUrls.forEach(url -> list.add(new ServiceInstance(url)));
+
+		this.serviceName = serviceName;
+		this.instances = Collections.unmodifiableList(list);
+		this.strategy = strategy;
+		this.failureThreshold = failureThreshold;
+		this.ejectionTimeMillis = ejectionTime.toMillis();
+	}
+
+	/**
+	 * Builds the list of base URLs from a comma separated "host:port" list, falling
+	 * back to the single host and port if the list is empty.
+	 */
+	public static List<String> toBaseUrls(String instances, String host, int port) {
+		List<String> urls = new ArrayList<>();
+		if (instances != null) {
+			for (String instance : instances.split(",")) {
+				if (!instance.isBlank()) {
+					urls.add("http://" + instance.trim());
+				}
+			}
+		}
+		if (urls.isEmpty()) {
+			urls.add("http://" + host + ":" + port);
+		}
+		return urls;
+	}
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public List<ServiceInstance> getInstances() {
+		return instances;
+	}
+
+	/**
+	 * Picks an instance and counts the request as outstanding on it, the caller must
+	 * call {@link #release(ServiceInstance, boolean)} when the request is done.
+	 */
+	public ServiceInstance choose() {
+		ServiceInstance instance = select(System.currentTimeMillis());
+		instance.acquire();
+		return instance;
+	}
+
+	public void release(ServiceInstance instance, boolean success) {
+		instance.release();
+		if (success) {
+			instance.recordSuccess();
+		} else if (instance.recordFailure() >= failureThreshold) {
+			instance.eject(System.currentTimeMillis() + ejectionTimeMillis);
+			LOG.warn("Ejected instance {} of {} for {} ms", instance, serviceName, ejectionTimeMillis);
+		}
+	}
+
+	private ServiceInstance select(long now) {
+		if (instances.size() == 1) {
+			return instances.get(0);
+		}
+
+		List<ServiceInstance> healthy = new ArrayList<>(instances.size());
+		for (ServiceInstance instance : instances) {
+			if (!instance.isEjected(now)) {
+				healthy.add(instance);
+			}
+		}
+
+		if (healthy.isEmpty()) {
+			ServiceInstance first = instances.get(0);
+			for (ServiceInstance instance : instances) {
+				if (instance.getEjectedUntil() < first.getEjectedUntil()) {
+					first = instance;
+				}
+			}
+			return first;
+		}
+
+		if (healthy.size() == 1) {
+			return healthy.get(0);
+		}
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (strategy == SelectionStrategy.POWER_OF_TWO_CHOICES) {
+			int a = random.nextInt(healthy.size());
+			int b = random.nextInt(healthy.size() - 1);
+			if (b >= a) {
+				b++;
+			}
+			return leastOutstanding(healthy.get(a), healthy.get(b));
+		}
+
+		// Start at a random position so that ties are spread over the instances
+		int start = random.nextInt(healthy.size());
+		ServiceInstance best = healthy.get(start);
+		for (int i = 1; i < healthy.size(); i++) {
+			best = leastOutstanding(best, healthy.get((start + i) % healthy.size()));
+		}
+		return best;
+	}
+
+	private ServiceInstance leastOutstanding(ServiceInstance a, ServiceInstance b) {
+		return b.getOutstandingRequests() < a.getOutstandingRequests() ? b : a;
+	}
+}
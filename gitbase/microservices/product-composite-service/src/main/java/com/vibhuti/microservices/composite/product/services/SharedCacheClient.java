@@ -0,0 +1,33 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Client of the cache tier shared by the composite replicas, see {@link AggregateCache}.
+ * Values are opaque bytes that expire after their ttl, and messages published on a
+ * channel reach the subscribers of every replica, including the publishing one.
+ */
+public interface SharedCacheClient {
+
+	/**
+	 * @return the value, or null if the key is missing or expired
+	 */
+	byte[] get(String key);
+
+	void set(String key, byte[] value, Duration ttl);
+
+	/**
+	 * Sets the value in one step with checking that {@code fenceKey} still holds
+	 * {@code fence}, or is still missing when {@code fence} is null.
+	 *
+	 * @return false if the fence changed and the value wasn't set
+	 */
+	boolean setIfFence(String key, byte[] value, Duration ttl, String fenceKey, byte[] fence);
+
+	void delete(String... keys);
+
+	void publish(String channel, String message);
+
+	void subscribe(String channel, Consumer<String> listener);
+}
@@ -0,0 +1,118 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.ProductPartsCache.Parts;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Joins the products, recommendations and reviews, each sorted by product id, into the
+ * parts of one aggregate per product, in a single pass over the three streams. Each
+ * stream is read ahead by at most {@code prefetch} products, so memory stays bounded
+ * however large the catalog is, and nothing is read faster than the join is requested.
+ * Recommendations and reviews without a product are skipped.
+ */
+public class SortedMergeJoin {
+
+	private SortedMergeJoin() {
+	}
+
+	public static Flux<Parts> join(Flux<Product> products, Flux<Recommendation> recommendations,
+			Flux<Review> reviews, int prefetch) {
+
+		return Flux.using(
+				() -> new Cursors(products.toStream(prefetch),
+						recommendations.bufferUntilChanged(Recommendation::getProductId).toStream(prefetch),
+						reviews.bufferUntilChanged(Review::getProductId).toStream(prefetch)),
+				cursors -> Flux.<Parts>generate(sink -> {
+					Parts next = cursors.next();
+					if (next == null) {
+						sink.complete();
+					} else {
+						sink.next(next);
+					}
+				}),
+				Cursors::close)
+				// The cursors block while waiting for the core services
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	private static final class Cursors {
+
+		private final Stream<Product> productStream;
+		private final Stream<List<Recommendation>> recommendationStream;
+		private final Stream<List<Review>> reviewStream;
+		private final Iterator<Product> products;
+		private final Group<Recommendation> recommendations;
+		private final Group<Review> reviews;
+
+		Cursors(Stream<Product> products, Stream<List<Recommendation>> recommendations, Stream<List<Review>> reviews) {
+			this.productStream = products;
+			this.recommendationStream = recommendations;
+			this.reviewStream = reviews;
+			this.products = products.iterator();
+			this.recommendations = new Group<>(recommendations.iterator(), Recommendation::getProductId);
+			this.reviews = new Group<>(reviews.iterator(), Review::getProductId);
+		}
+
+		Parts next() {
+			if (!products.hasNext()) {
+				return null;
+			}
+			Product product = products.next();
+			return new Parts(product, recommendations.take(product.getProductId()),
+					reviews.take(product.getProductId()));
+		}
+
+		// Cancels the core service streams that are still open
+		void close() {
+			productStream.close();
+			recommendationStream.close();
+			reviewStream.close();
+		}
+	}
+
+	/**
+	 * The groups of one stream, with the group at the head kept until its product id
+	 * is asked for or passed.
+	 */
+	private static final class Group<T> {
+
+		private final Iterator<List<T>> groups;
+		private final ToIntFunction<T> productIdOf;
+		private List<T> head;
+
+		Group(Iterator<List<T>> groups, ToIntFunction<T> productIdOf) {
+			this.groups = groups;
+			this.productIdOf = productIdOf;
+		}
+
+		List<T> take(int productId) {
+			while (true) {
+				if (head == null) {
+					if (!groups.hasNext()) {
+						return List.of();
+					}
+					head = groups.next();
+				}
+				int headProductId = productIdOf.applyAsInt(head.get(0));
+				if (headProductId > productId) {
+					return List.of();
+				}
+				List<T> group = head;
+				head = null;
+				if (headProductId == productId) {
+					return group;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.vibhuti.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vibhuti.microservices.util.BoundedIntMap;
+
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Caches loaded values by product id, stale-while-revalidate style. A value is served as is
+ * for {@code freshTtl} after it was loaded. For another {@code staleTtl} it is still
+ * served right away, and the first lookup in that period starts one reload in the
+ * background; concurrent lookups of the same key don't start another one. After
+ * that the value is expired and the lookup loads it again while the caller waits.
+ *
+ * If a reload fails, the value that was cached is kept and served instead, also
+ * once it has expired. Only a key that was never loaded fails with the loader. Keys
+ * that were not used recently are dropped above {@code maxEntries}, except pinned
+ * keys, e.g. the hot keys of a {@code HotKeyTracker}, see {@link BoundedIntMap}.
+ */
+public class StaleWhileRevalidateCache<V> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(StaleWhileRevalidateCache.class);
+
+	private final String name;
+	private final IntFunction<V> loader;
+	private final long freshNanos;
+	private final long expiredNanos;
+	private final Scheduler scheduler;
+	private final BoundedIntMap<Entry<V>> entries;
+
+	private static final class Entry<V> {
+		private final V value;
+		private final long loadedAt;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private Entry(V value, long loadedAt) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	public StaleWhileRevalidateCache(String name, IntFunction<V> loader, Duration freshTtl, Duration staleTtl,
+			int maxEntries, IntPredicate pinned, Scheduler scheduler) {
+
+		this.name = name;
+		this.loader = loader;
+		this.freshNanos = freshTtl.toNanos();
+		this.expiredNanos = freshTtl.plus(staleTtl).toNanos();
+		this.scheduler = scheduler;
+		this.entries = new BoundedIntMap<>(maxEntries, pinned);
+	}
+
+	public V get(int key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			return load(key);
+		}
+
+		long age = System.nanoTime() - entry.loadedAt;
+		if (age < freshNanos) {
+			return entry.value;
+		}
+		if (age < expiredNanos) {
+			if (entry.refreshing.compareAndSet(false, true)) {
+				LOG.debug("{}: serves a stale value for key {} and reloads it", name, key);
+				scheduler.schedule(() -> reload(key, entry));
+			}
+			return entry.value;
+		}
+
+		try {
+			return load(key);
+		} catch (RuntimeException ex) {
+			LOG.warn("{}: failed to reload an expired value for key {}, serves it anyway: {}", name, key,
+					ex.getMessage());
+			return entry.value;
+		}
+	}
+
+	public void invalidate(int key) {
+		entries.remove(key);
+	}
+
+	private V load(int key) {
+		V value = loader.apply(key);
+		entries.put(key, new Entry<>(value, System.nanoTime()));
+		return value;
+	}
+
+	private void reload(int key, Entry<V> stale) {
+		try {
+			V value = loader.apply(key);
+			// Replace only the entry that went stale, not one put by a concurrent load or removed by invalidate
+			entries.replace(key, stale, new Entry<>(value, System.nanoTime()));
+		} catch (RuntimeException ex) {
+			LOG.warn("{}: failed to reload a stale value for key {}, keeps it: {}", name, key, ex.getMessage());
+			// Lets the next lookup in the stale period try again
+			stale.refreshing.set(false);
+		}
+	}
+}
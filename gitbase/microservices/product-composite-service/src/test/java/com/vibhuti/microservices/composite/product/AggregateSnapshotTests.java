@@ -0,0 +1,86 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.composite.product.ServiceAddresses;
+import com.vibhuti.microservices.composite.product.services.AggregateCache;
+import com.vibhuti.microservices.composite.product.services.AggregateCache.Storage;
+
+class AggregateSnapshotTests {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void restoresAggregatesAndChecksThemOnFirstUse() {
+    Path file = directory.resolve("cache/aggregates.snapshot");
+    AtomicInteger loads = new AtomicInteger();
+    AtomicInteger checks = new AtomicInteger();
+
+    AggregateCache cache = new AggregateCache(mapper, Duration.ofMinutes(1), 100,
+      Storage.OFF_HEAP, key -> false, null, file);
+    cache.get(1, "", loader(1, loads), cached -> true);
+    cache.get(2, "", loader(2, loads), cached -> true);
+    cache.destroy();
+    assertTrue(Files.exists(file));
+
+    AggregateCache restored = new AggregateCache(mapper, Duration.ofMinutes(1), 100,
+      Storage.OFF_HEAP, key -> false, null, file);
+    assertEquals("\"1-abc\"", restored.get(1, "", loader(1, loads), cached -> checks.incrementAndGet() > 0)
+      .entityTag());
+    assertEquals(2, loads.get());
+    assertEquals(1, checks.get());
+
+    // Checked once only
+    restored.get(1, "", loader(1, loads), cached -> checks.incrementAndGet() > 0);
+    assertEquals(1, checks.get());
+
+    // An outdated product is built again
+    restored.get(2, "", loader(2, loads), cached -> false);
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  void skipsExpiredAndDamagedSnapshots() throws IOException, InterruptedException {
+    Path file = directory.resolve("aggregates.snapshot");
+    AtomicInteger loads = new AtomicInteger();
+
+    AggregateCache cache = new AggregateCache(mapper, Duration.ofMillis(20), 100,
+      Storage.HEAP, key -> false, null, file);
+    cache.get(1, "", loader(1, loads), cached -> true);
+    cache.destroy();
+    Thread.sleep(30);
+    new AggregateCache(mapper, Duration.ofMillis(20), 100, Storage.HEAP, key -> false, null, file)
+      .get(1, "", loader(1, loads), cached -> true);
+    assertEquals(2, loads.get());
+
+    Files.write(file, new byte[] {1, 2, 3});
+    new AggregateCache(mapper, Duration.ofMinutes(1), 100, Storage.OFF_HEAP, key -> false, null, file)
+      .get(1, "", loader(1, loads), cached -> true);
+    assertEquals(3, loads.get());
+  }
+
+  private static Supplier<ProductAggregate> loader(int productId, AtomicInteger loads) {
+    return () -> {
+      loads.incrementAndGet();
+      return new ProductAggregate(productId, "name", 1, null, List.of(), new ServiceAddresses("c", "p", "r", ""),
+        "\"" + productId + "-abc\"");
+    };
+  }
+}
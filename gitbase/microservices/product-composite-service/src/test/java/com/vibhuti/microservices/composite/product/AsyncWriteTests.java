@@ -0,0 +1,212 @@
+package com.vibhuti.microservices.composite.product;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.stereotype.Controller;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.composite.product.RecommendationSummary;
+import com.vibhuti.microservices.api.composite.product.ReviewSummary;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import io.rsocket.core.RSocketServer;
+import io.rsocket.exceptions.CustomRSocketException;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import reactor.core.publisher.Mono;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "app.write-mode=ASYNC")
+class AsyncWriteTests {
+
+  private static final StaticApplicationContext coreServicesContext = new StaticApplicationContext();
+  private static final CloseableChannel coreServices = startCoreServices();
+
+  @Autowired private WebTestClient client;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @DynamicPropertySource
+  static void coreServiceProperties(DynamicPropertyRegistry registry) {
+    for (String service : List.of("product", "recommendation", "review")) {
+      registry.add("app." + service + "-service.host", () -> "localhost");
+      registry.add("app." + service + "-service.rsocket-port", () -> coreServices.address().getPort());
+    }
+  }
+
+  @AfterAll
+  static void stopCoreServices() {
+    coreServices.dispose();
+  }
+
+  @BeforeEach
+  void clearCommands() {
+    CommandsStub commands = coreServicesContext.getBean(CommandsStub.class);
+    commands.products.clear();
+    commands.recommendations.clear();
+    commands.reviews.clear();
+  }
+
+  @Test
+  void queuesCommandsAndReturnsAccepted() {
+    CommandsStub commands = coreServicesContext.getBean(CommandsStub.class);
+    ProductAggregate body = new ProductAggregate(1, "name", 1,
+      List.of(new RecommendationSummary(1, "a", 1, "c"), new RecommendationSummary(2, "a", 1, "c")),
+      singletonList(new ReviewSummary(1, "a", "s", "c")), null);
+
+    client.post().uri("/product-composite").contentType(APPLICATION_JSON).bodyValue(body).exchange()
+      .expectStatus().isAccepted();
+    awaitTrue(() -> commands.products.size() == 1 && commands.recommendations.size() == 2
+      && commands.reviews.size() == 1);
+    assertEquals("name", commands.products.get(0).getData().getName());
+    assertEquals(1, commands.recommendations.get(1).getKey());
+
+    client.delete().uri("/product-composite/1").exchange()
+      .expectStatus().isAccepted();
+    awaitTrue(() -> commands.products.size() == 2 && commands.recommendations.size() == 3
+      && commands.reviews.size() == 2);
+    assertEquals(Event.Type.DELETE, commands.reviews.get(1).getEventType());
+
+    verify(compositeIntegration, never()).createProduct(any());
+    verify(compositeIntegration, never()).deleteProduct(anyInt());
+  }
+
+  @Test
+  void dropsRejectedCommandsOnly() {
+    CommandsStub commands = coreServicesContext.getBean(CommandsStub.class);
+
+    client.post().uri("/product-composite").contentType(APPLICATION_JSON)
+      .bodyValue(new ProductAggregate(13, "name", 1, null, null, null)).exchange()
+      .expectStatus().isAccepted();
+    client.post().uri("/product-composite").contentType(APPLICATION_JSON)
+      .bodyValue(new ProductAggregate(14, "name", 1, null, null, null)).exchange()
+      .expectStatus().isAccepted();
+
+    awaitTrue(() -> commands.products.size() == 1);
+    assertEquals(14, commands.products.get(0).getKey());
+    assertTrue(commands.rejected.get() > 0);
+  }
+
+  @Test
+  void validatesBeforeQueueing() {
+    client.post().uri("/product-composite").contentType(APPLICATION_JSON)
+      .bodyValue(new ProductAggregate(-1, "name", 1, null, null, null)).exchange()
+      .expectStatus().isEqualTo(422);
+
+    ProductAggregate duplicates = new ProductAggregate(2, "name", 1, null,
+      List.of(new ReviewSummary(1, "a", "s", "c"), new ReviewSummary(1, "a", "s", "c")), null);
+    client.post().uri("/product-composite").contentType(APPLICATION_JSON).bodyValue(duplicates).exchange()
+      .expectStatus().isEqualTo(422)
+      .expectBody().jsonPath("$.message").isEqualTo("Duplicate reviewId, Product Id: 2");
+  }
+
+  private static CloseableChannel startCoreServices() {
+    RSocketStrategies strategies = RSocketStrategies.builder()
+      .encoder(new Jackson2CborEncoder())
+      .decoder(new Jackson2CborDecoder())
+      .build();
+
+    coreServicesContext.registerSingleton("commandsStub", CommandsStub.class);
+    coreServicesContext.refresh();
+
+    RSocketMessageHandler handler = new RSocketMessageHandler();
+    handler.setRSocketStrategies(strategies);
+    handler.setApplicationContext(coreServicesContext);
+    handler.afterPropertiesSet();
+
+    return RSocketServer.create(handler.responder())
+      .bind(TcpServerTransport.create("localhost", 0))
+      .block();
+  }
+
+  private static void awaitTrue(BooleanSupplier condition) {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "Timed out");
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  /**
+   * Receives the command batches of the three core services.
+   */
+  @Controller
+  static class CommandsStub {
+
+    // Classes, as nested type arguments of a List aren't resolved for the payload
+    static class ProductCommands extends ArrayList<Event<Integer, Product>> {
+    }
+
+    static class RecommendationCommands extends ArrayList<Event<Integer, Recommendation>> {
+    }
+
+    static class ReviewCommands extends ArrayList<Event<Integer, Review>> {
+    }
+
+    final List<Event<Integer, Product>> products = new CopyOnWriteArrayList<>();
+    final List<Event<Integer, Recommendation>> recommendations = new CopyOnWriteArrayList<>();
+    final List<Event<Integer, Review>> reviews = new CopyOnWriteArrayList<>();
+    final AtomicInteger rejected = new AtomicInteger();
+
+    // Rejects batches with a product 13, as a core service does invalid commands
+    @MessageMapping("product.commands")
+    Mono<Void> productCommands(ProductCommands batch) {
+      if (batch.stream().anyMatch(command -> command.getKey() == 13)) {
+        rejected.incrementAndGet();
+        return Mono.error(new CustomRSocketException(RSocketErrorCodes.UNPROCESSABLE_ENTITY, "Invalid product"));
+      }
+      products.addAll(batch);
+      return Mono.empty();
+    }
+
+    @MessageMapping("recommendation.commands")
+    Mono<Void> recommendationCommands(RecommendationCommands batch) {
+      recommendations.addAll(batch);
+      return Mono.empty();
+    }
+
+    @MessageMapping("review.commands")
+    Mono<Void> reviewCommands(ReviewCommands batch) {
+      reviews.addAll(batch);
+      return Mono.empty();
+    }
+  }
+}
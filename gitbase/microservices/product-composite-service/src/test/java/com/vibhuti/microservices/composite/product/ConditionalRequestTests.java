@@ -0,0 +1,206 @@
+package com.vibhuti.microservices.composite.product;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.vibhuti.microservices.api.EntityTags;
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.composite.product.ReviewSummary;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.product.ProductPatch;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances.SelectionStrategy;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+class ConditionalRequestTests {
+
+  @Autowired private WebTestClient client;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @Test
+  void answersIfNoneMatchWithNotModified() {
+    Review review = new Review(1, 1, "author", "subject", "content", "mock address");
+    when(compositeIntegration.getProduct(1)).thenReturn(new Product(1, "name", 1, "mock-address"));
+    when(compositeIntegration.getRecommendations(1))
+      .thenReturn(singletonList(new Recommendation(1, 1, "author", 1, "content", "mock address")));
+    when(compositeIntegration.getReviews(1)).thenReturn(singletonList(review));
+
+    String entityTag = getETag("/product-composite/1");
+
+    client.get().uri("/product-composite/1").header("If-None-Match", entityTag).exchange()
+      .expectStatus().isNotModified()
+      .expectHeader().valueEquals("ETag", entityTag)
+      .expectBody().isEmpty();
+
+    // Another selection of sections is another representation
+    assertNotEquals(entityTag, getETag("/product-composite/1?include=reviews"));
+
+    review.setVersion(1);
+    String updatedTag = getETag("/product-composite/1");
+    assertNotEquals(entityTag, updatedTag);
+    client.get().uri("/product-composite/1").header("If-None-Match", entityTag).exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals("ETag", updatedTag);
+  }
+
+  @Test
+  void forwardsTagsOfPartsWithIfMatchOfUpdates() {
+    Product product = new Product(41, "name", 1, "mock-address");
+    Review review = new Review(41, 2, "author", "subject", "content", "mock address");
+    String productTag = product.entityTag();
+    when(compositeIntegration.getProduct(41)).thenReturn(product);
+    when(compositeIntegration.getRecommendations(41)).thenReturn(List.of());
+    when(compositeIntegration.getReviews(41)).thenReturn(List.of(review));
+    when(compositeIntegration.getCurrentRecommendations(41)).thenReturn(List.of());
+    when(compositeIntegration.getCurrentReviews(41)).thenReturn(List.of(review));
+    String entityTag = getETag("/product-composite/41");
+    when(compositeIntegration.updateProduct(eq(41), eq(productTag), any())).thenAnswer(invocation -> {
+      product.setName("updated");
+      product.setVersion(1);
+      return product;
+    });
+
+    ProductAggregate body = new ProductAggregate(41, "updated", 1, null,
+      singletonList(new ReviewSummary(2, "a", "s", "c")), null);
+    String updatedTag = client.put().uri("/product-composite/41").header("If-Match", entityTag).bodyValue(body)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody(ProductAggregate.class).value(updated -> assertEquals("updated", updated.getName()))
+      .returnResult().getResponseHeaders().getETag();
+
+    assertNotEquals(entityTag, updatedTag);
+    assertEquals(1, EntityTags.version(updatedTag));
+    verify(compositeIntegration).updateProduct(eq(41), eq(productTag), argThat(p -> p.getName().equals("updated")));
+    verify(compositeIntegration).updateReview(eq(41), eq(2), eq(review.entityTag()), any());
+
+    // A tag of a GET with fewer sections matches as well
+    String reviewsOnlyTag = getETag("/product-composite/41?include=reviews");
+    client.patch().uri("/product-composite/41").header("If-Match", reviewsOnlyTag).bodyValue(new ProductPatch(null, 2))
+      .exchange()
+      .expectStatus().isOk();
+    verify(compositeIntegration).patchProduct(eq(41), eq(product.entityTag()), any());
+  }
+
+  @Test
+  void answersStaleIfMatchWithPreconditionFailed() {
+    when(compositeIntegration.getProduct(41)).thenReturn(new Product(41, "name", 1, "mock-address"));
+    when(compositeIntegration.getCurrentRecommendations(41)).thenReturn(List.of());
+    when(compositeIntegration.getCurrentReviews(41)).thenReturn(List.of());
+
+    // Same version, other fields, e.g. after a delete and create
+    String staleTag = EntityTags.combine(0, 0, EntityTags.of(0, 0, 41, "other", 1), EntityTags.ofList(List.of()),
+      EntityTags.ofList(List.of()));
+    client.patch().uri("/product-composite/41").header("If-Match", staleTag).bodyValue(new ProductPatch(null, 2))
+      .exchange()
+      .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED)
+      .expectBody().jsonPath("$.message").isEqualTo("Product has been modified, productId: 41");
+    verify(compositeIntegration, never()).patchProduct(anyInt(), any(), any());
+
+    client.put().uri("/product-composite/41").header("If-Match", staleTag)
+      .bodyValue(new ProductAggregate(41, "name", 2, null, null, null))
+      .exchange()
+      .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    verify(compositeIntegration, never()).updateProduct(anyInt(), any(), any());
+
+    client.put().uri("/product-composite/41").bodyValue(new ProductAggregate(42, "name", 1, null, null, null))
+      .exchange()
+      .expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+  }
+
+  @Test
+  void entityTagsIgnoreServiceAddress() {
+    Review review = new Review(1, 1, "author", "subject", "content", "instance-1");
+    String entityTag = review.entityTag();
+    review.setServiceAddress("instance-2");
+    assertEquals(entityTag, review.entityTag());
+    review.setContent("updated");
+    assertNotEquals(entityTag, review.entityTag());
+    assertNotEquals(EntityTags.combine(0, 0, "\"0.0-0\"", null),
+      EntityTags.combine(0, 0, "\"0.0-0\"", EntityTags.ofList(List.of())));
+  }
+
+  @Test
+  void revalidatesDownstream() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    List<Review> reviews = List.of(new Review(1, 1, "a", "s", "c", "stub"), new Review(1, 2, "a", "s", "c", "stub"));
+    String entityTag = EntityTags.ofList(reviews);
+    List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+
+    HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    stub.createContext("/review", exchange -> {
+      String validator = exchange.getRequestHeaders().getFirst("If-None-Match");
+      ifNoneMatch.add(String.valueOf(validator));
+      exchange.getResponseHeaders().add("ETag", entityTag);
+      if (entityTag.equals(validator)) {
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+      byte[] body = mapper.writeValueAsBytes(reviews);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    stub.start();
+    try {
+      ServiceInstances instances = new ServiceInstances("review-service",
+        List.of("http://localhost:" + stub.getAddress().getPort()), SelectionStrategy.LEAST_OUTSTANDING, 3,
+        Duration.ofMinutes(1));
+      ProductCompositeIntegration integration = new ProductCompositeIntegration(WebClient.create(), mapper,
+        MediaType.APPLICATION_JSON, instances, instances, instances, null, Duration.ZERO, 1, 100, Duration.ZERO,
+        Duration.ZERO, 0, productId -> false);
+
+      List<Review> loaded = integration.getReviews(1);
+      assertEquals(2, loaded.size());
+      List<Review> revalidated = integration.getReviews(1);
+      assertEquals(2, revalidated.size());
+      assertEquals(entityTag, EntityTags.ofList(revalidated));
+      // A copy, with the address of the instance that answered the 304
+      assertNotSame(loaded.get(0), revalidated.get(0));
+      assertEquals("http://localhost:" + stub.getAddress().getPort(), revalidated.get(0).getServiceAddress());
+      assertEquals(List.of("null", entityTag), ifNoneMatch);
+    } finally {
+      stub.stop(0);
+    }
+  }
+
+  private String getETag(String uri) {
+    return client.get().uri(uri).exchange()
+      .expectStatus().isOk()
+      .returnResult(String.class).getResponseHeaders().getETag();
+  }
+}
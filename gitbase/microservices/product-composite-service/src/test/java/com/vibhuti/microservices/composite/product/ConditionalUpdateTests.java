@@ -0,0 +1,154 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+
+/**
+ * Conditional requests of the shipped config against core services stubbed over
+ * HTTP, which speak HTTP/1.1 only.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "app.http-client.protocol=HTTP11")
+class ConditionalUpdateTests {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final AtomicReference<List<Review>> reviews = new AtomicReference<>();
+  private static final AtomicBoolean reviewsFailing = new AtomicBoolean();
+  private static final List<String> writes = new CopyOnWriteArrayList<>();
+  private static final List<String> productIfNoneMatch = new CopyOnWriteArrayList<>();
+  private static final HttpServer coreServices = startCoreServices();
+
+  @Autowired private WebTestClient client;
+
+  @Autowired private ProductCompositeIntegration compositeIntegration;
+
+  @DynamicPropertySource
+  static void coreServiceProperties(DynamicPropertyRegistry registry) {
+    for (String service : List.of("product", "recommendation", "review")) {
+      registry.add("app." + service + "-service.host", () -> "localhost");
+      registry.add("app." + service + "-service.port", () -> coreServices.getAddress().getPort());
+    }
+  }
+
+  @AfterAll
+  static void stopCoreServices() {
+    coreServices.stop(0);
+  }
+
+  @Test
+  void checksIfMatchAgainstCurrentSectionsNotCachedOnes() {
+    Review review = new Review(51, 1, "a", "s", "c", null);
+    reviews.set(List.of(review));
+    String entityTag = client.get().uri("/product-composite/51").exchange()
+      .expectStatus().isOk()
+      .returnResult(String.class).getResponseHeaders().getETag();
+
+    // Another writer changes the review, the response cache still holds the old one
+    Review changed = new Review(51, 1, "a", "s", "changed", null);
+    changed.setVersion(1);
+    reviews.set(List.of(changed));
+    assertEquals("c", compositeIntegration.getReviews(51).get(0).getContent());
+
+    ProductAggregate body = new ProductAggregate(51, "updated", 2, null, null, null);
+    client.put().uri("/product-composite/51").header("If-Match", entityTag).bodyValue(body).exchange()
+      .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    assertTrue(writes.isEmpty(), "Written: " + writes);
+
+    // A failing review-service fails the check, rather than passing it with no reviews
+    reviews.set(List.of());
+    reviewsFailing.set(true);
+    try {
+      client.put().uri("/product-composite/51").header("If-Match", entityTag).bodyValue(body).exchange()
+        .expectStatus().is5xxServerError();
+      assertTrue(writes.isEmpty(), "Written: " + writes);
+    } finally {
+      reviewsFailing.set(false);
+    }
+  }
+
+  @Test
+  void revalidatesSingleLookupsByDefault() {
+    Product product = compositeIntegration.getProduct(52);
+    Product revalidated = compositeIntegration.getProduct(52);
+
+    assertEquals(List.of("", product.entityTag()), productIfNoneMatch);
+    assertEquals(product.getName(), revalidated.getName());
+    assertNotSame(product, revalidated);
+  }
+
+  private static HttpServer startCoreServices() {
+    try {
+      HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/product/", exchange -> {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+          writes.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+          respond(exchange, 200, new Product(51, "name", 1, null));
+          return;
+        }
+        // Answers a GET of product 52 with a 304 when the composite sends its ETag
+        int productId = Integer.parseInt(exchange.getRequestURI().getPath().substring("/product/".length()));
+        Product product = new Product(productId, "name", 1, null);
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (productId == 52) {
+          productIfNoneMatch.add(ifNoneMatch == null ? "" : ifNoneMatch);
+        }
+        exchange.getResponseHeaders().add("ETag", product.entityTag());
+        respond(exchange, product.entityTag().equals(ifNoneMatch) ? 304 : 200,
+          product.entityTag().equals(ifNoneMatch) ? null : product);
+      });
+      server.createContext("/recommendation", exchange -> respond(exchange, 200, List.of()));
+      server.createContext("/review", exchange -> {
+        if (reviewsFailing.get()) {
+          respond(exchange, 500, null);
+        } else {
+          respond(exchange, 200, reviews.get());
+        }
+      });
+      server.start();
+      return server;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+      return;
+    }
+    byte[] json = mapper.writeValueAsBytes(body);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, json.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(json);
+    }
+  }
+}
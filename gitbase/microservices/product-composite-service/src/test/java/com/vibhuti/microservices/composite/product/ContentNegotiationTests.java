@@ -0,0 +1,103 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances.SelectionStrategy;
+import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.util.HttpErrorInfo;
+
+class ContentNegotiationTests {
+
+  private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+  private HttpServer stub;
+  private String lastContentType;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    stub.createContext("/product", this::handleProduct);
+    stub.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    stub.stop(0);
+  }
+
+  @Test
+  void usesSmileWhenPreferred() {
+    ProductCompositeIntegration integration = createIntegration(SMILE);
+
+    assertEquals("smile", integration.getProduct(1).getServiceAddress());
+    integration.createProduct(new Product(1, "n", 1, null));
+    assertEquals(SMILE.toString(), lastContentType);
+  }
+
+  @Test
+  void fallsBackToJson() {
+    ProductCompositeIntegration integration = createIntegration(MediaType.APPLICATION_JSON);
+
+    assertEquals("json", integration.getProduct(1).getServiceAddress());
+    integration.createProduct(new Product(1, "n", 1, null));
+    assertEquals(MediaType.APPLICATION_JSON_VALUE, lastContentType);
+  }
+
+  @Test
+  void decodesSmileErrorBody() {
+    ProductCompositeIntegration integration = createIntegration(SMILE);
+
+    NotFoundException ex = assertThrows(NotFoundException.class, () -> integration.getProduct(13));
+    assertEquals("No product found for productId: 13", ex.getMessage());
+  }
+
+  private ProductCompositeIntegration createIntegration(MediaType internalMediaType) {
+    ServiceInstances instances = new ServiceInstances("product-service",
+      List.of("http://localhost:" + stub.getAddress().getPort()), SelectionStrategy.LEAST_OUTSTANDING, 3,
+      Duration.ofMinutes(1));
+    return new ProductCompositeIntegration(WebClient.create(), new ObjectMapper(), internalMediaType,
+      instances, instances, instances);
+  }
+
+  private void handleProduct(HttpExchange exchange) throws IOException {
+    lastContentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    String accept = exchange.getRequestHeaders().getFirst("Accept");
+    boolean smile = accept != null && accept.startsWith(SMILE.toString());
+    ObjectMapper mapper = (smile ? new SmileMapper() : new ObjectMapper()).findAndRegisterModules();
+
+    int status = 200;
+    Object body = new Product(1, "n", 1, smile ? "smile" : "json");
+    if (exchange.getRequestURI().getPath().endsWith("/13")) {
+      status = HttpStatus.NOT_FOUND.value();
+      body = new HttpErrorInfo(HttpStatus.NOT_FOUND, "/product/13", "No product found for productId: 13");
+    }
+
+    byte[] bytes = mapper.writeValueAsBytes(body);
+    exchange.getResponseHeaders().add("Content-Type", smile ? SMILE.toString() : MediaType.APPLICATION_JSON_VALUE);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
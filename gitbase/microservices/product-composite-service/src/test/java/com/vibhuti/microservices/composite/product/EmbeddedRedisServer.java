@@ -0,0 +1,214 @@
+package com.vibhuti.microservices.composite.product;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in for a Redis server in tests, speaks RESP2 and knows just the commands of
+ * the shared cache: GET, SET with PX, DEL, PUBLISH and SUBSCRIBE, plus PING and CLIENT.
+ * EVAL runs the conditional set of {@code RedisSharedCacheClient}, whatever its script.
+ */
+class EmbeddedRedisServer implements AutoCloseable {
+
+  private record Value(byte[] bytes, long expiresAt) {
+  }
+
+  private final ServerSocket serverSocket;
+  private final Map<String, Value> values = new ConcurrentHashMap<>();
+  private final Map<String, List<OutputStream>> subscribers = new ConcurrentHashMap<>();
+  private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+  EmbeddedRedisServer() throws IOException {
+    serverSocket = new ServerSocket(0);
+    Thread acceptor = new Thread(this::accept, "embedded-redis");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  String uri() {
+    return "redis://localhost:" + serverSocket.getLocalPort();
+  }
+
+  boolean containsKey(String key) {
+    Value value = values.get(key);
+    return value != null && value.expiresAt() > System.currentTimeMillis();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+  }
+
+  private void accept() {
+    try {
+      while (true) {
+        Socket socket = serverSocket.accept();
+        sockets.add(socket);
+        Thread connection = new Thread(() -> serve(socket), "embedded-redis-connection");
+        connection.setDaemon(true);
+        connection.start();
+      }
+    } catch (IOException ex) {
+      // Closed
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (socket) {
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      OutputStream out = socket.getOutputStream();
+      List<byte[]> command;
+      while ((command = readCommand(in)) != null) {
+        byte[] reply = execute(command, out);
+        synchronized (out) {
+          out.write(reply);
+          out.flush();
+        }
+      }
+    } catch (IOException ex) {
+      // Disconnected
+    }
+  }
+
+  private byte[] execute(List<byte[]> command, OutputStream out) {
+    String name = text(command.get(0)).toUpperCase();
+    switch (name) {
+      case "PING":
+        return simple("PONG");
+      case "CLIENT":
+        return simple("OK");
+      case "GET": {
+        Value value = values.get(text(command.get(1)));
+        return value == null || value.expiresAt() <= System.currentTimeMillis() ? "$-1\r\n".getBytes()
+          : bulk(value.bytes());
+      }
+      case "SET": {
+        long expiresAt = Long.MAX_VALUE;
+        if (command.size() == 5 && "PX".equalsIgnoreCase(text(command.get(3)))) {
+          expiresAt = System.currentTimeMillis() + Long.parseLong(text(command.get(4)));
+        }
+        values.put(text(command.get(1)), new Value(command.get(2), expiresAt));
+        return simple("OK");
+      }
+      case "EVAL": {
+        Value fence = values.get(text(command.get(4)));
+        byte[] current = fence == null || fence.expiresAt() <= System.currentTimeMillis() ? new byte[0]
+          : fence.bytes();
+        if (!Arrays.equals(current, command.get(6))) {
+          return integer(0);
+        }
+        values.put(text(command.get(3)), new Value(command.get(5),
+          System.currentTimeMillis() + Long.parseLong(text(command.get(7)))));
+        return integer(1);
+      }
+      case "DEL": {
+        int deleted = 0;
+        for (byte[] key : command.subList(1, command.size())) {
+          deleted += values.remove(text(key)) != null ? 1 : 0;
+        }
+        return integer(deleted);
+      }
+      case "PUBLISH": {
+        List<OutputStream> receivers = subscribers.getOrDefault(text(command.get(1)), List.of());
+        byte[] message = concat(("*3\r\n").getBytes(), bulk("message".getBytes()), bulk(command.get(1)),
+          bulk(command.get(2)));
+        int received = 0;
+        for (OutputStream receiver : receivers) {
+          try {
+            synchronized (receiver) {
+              receiver.write(message);
+              receiver.flush();
+            }
+            received++;
+          } catch (IOException ex) {
+            receivers.remove(receiver);
+          }
+        }
+        return integer(received);
+      }
+      case "SUBSCRIBE": {
+        List<byte[]> replies = new ArrayList<>();
+        for (int i = 1; i < command.size(); i++) {
+          subscribers.computeIfAbsent(text(command.get(i)), channel -> new CopyOnWriteArrayList<>()).add(out);
+          replies.add(concat("*3\r\n".getBytes(), bulk("subscribe".getBytes()), bulk(command.get(i)),
+            integer(i)));
+        }
+        return concat(replies.toArray(byte[][]::new));
+      }
+      default:
+        return ("-ERR unknown command '" + name + "'\r\n").getBytes();
+    }
+  }
+
+  private static List<byte[]> readCommand(InputStream in) throws IOException {
+    String header = readLine(in);
+    if (header == null) {
+      return null;
+    }
+    int count = Integer.parseInt(header.substring(1));
+    List<byte[]> command = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int length = Integer.parseInt(readLine(in).substring(1));
+      command.add(in.readNBytes(length));
+      in.readNBytes(2);
+    }
+    return command;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != '\r') {
+      if (c == -1) {
+        return null;
+      }
+      line.append((char) c);
+    }
+    in.read();
+    return line.toString();
+  }
+
+  private static String text(byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] simple(String reply) {
+    return ("+" + reply + "\r\n").getBytes();
+  }
+
+  private static byte[] integer(long reply) {
+    return (":" + reply + "\r\n").getBytes();
+  }
+
+  private static byte[] bulk(byte[] reply) {
+    return concat(("$" + reply.length + "\r\n").getBytes(), reply, "\r\n".getBytes());
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    int length = 0;
+    for (byte[] part : parts) {
+      length += part.length;
+    }
+    byte[] all = new byte[length];
+    int offset = 0;
+    for (byte[] part : parts) {
+      System.arraycopy(part, 0, all, offset, part.length);
+      offset += part.length;
+    }
+    return all;
+  }
+}
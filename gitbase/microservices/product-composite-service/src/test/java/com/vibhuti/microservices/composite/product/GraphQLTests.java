@@ -0,0 +1,89 @@
+package com.vibhuti.microservices.composite.product;
+
+import static java.util.Collections.singletonList;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureHttpGraphQlTester;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.graphql.test.tester.HttpGraphQlTester;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.exception.NotFoundException;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@AutoConfigureHttpGraphQlTester
+class GraphQLTests {
+
+  @Autowired private HttpGraphQlTester graphQlTester;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @BeforeEach
+  void setUp() {
+    when(compositeIntegration.getProduct(1)).thenReturn(new Product(1, "name 1", 1, "mock-address"));
+    when(compositeIntegration.getProduct(13)).thenThrow(new NotFoundException("No product found for productId: 13"));
+    when(compositeIntegration.getProducts(List.of(1, 2, 3))).thenReturn(List.of(
+      new Product(3, "name 3", 3, "mock-address"),
+      new Product(1, "name 1", 1, "mock-address"),
+      new Product(2, "name 2", 2, "mock-address")));
+    when(compositeIntegration.getReviewsForProducts(anyList())).thenReturn(List.of(
+      new Review(1, 1, "author", "subject", "content", "mock address"),
+      new Review(1, 2, "author", "subject", "content", "mock address"),
+      new Review(3, 1, "author", "subject", "content", "mock address")));
+    when(compositeIntegration.getRecommendationsForProducts(anyList()))
+      .thenReturn(singletonList(new Recommendation(2, 1, "author", 1, "content", "mock address")));
+  }
+
+  @Test
+  void fetchesOnlySelectedFields() {
+    graphQlTester.document("{ product(productId: 1) { productId name } }")
+      .execute()
+      .path("product.name").entity(String.class).isEqualTo("name 1");
+
+    verify(compositeIntegration, never()).getReviewsForProducts(anyList());
+    verify(compositeIntegration, never()).getRecommendationsForProducts(anyList());
+    verify(compositeIntegration, never()).getReviews(anyInt());
+    verify(compositeIntegration, never()).getRecommendations(anyInt());
+  }
+
+  @Test
+  void batchesNestedFieldsAcrossProducts() {
+    graphQlTester.document("{ products(productIds: [1, 2, 3]) { productId reviews { reviewId } "
+        + "recommendations { recommendationId } } }")
+      .execute()
+      .path("products[*].productId").entityList(Integer.class).containsExactly(1, 2, 3)
+      .path("products[0].reviews").entityList(Object.class).hasSize(2)
+      .path("products[1].reviews").entityList(Object.class).hasSize(0)
+      .path("products[1].recommendations").entityList(Object.class).hasSize(1)
+      .path("products[2].reviews").entityList(Object.class).hasSize(1);
+
+    verify(compositeIntegration, times(1)).getReviewsForProducts(List.of(1, 2, 3));
+    verify(compositeIntegration, times(1)).getRecommendationsForProducts(List.of(1, 2, 3));
+  }
+
+  @Test
+  void mapsNotFound() {
+    graphQlTester.document("{ product(productId: 13) { name } }")
+      .execute()
+      .errors()
+      .expect(error -> error.getErrorType() == ErrorType.NOT_FOUND)
+      .verify()
+      .path("product").valueIsNull();
+  }
+}
@@ -0,0 +1,42 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+
+// A context of its own, the tracker of the shared one counts the lookups of the other tests
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "app.hot-keys.capacity=50")
+class HotKeysTests {
+
+  @Autowired private WebTestClient client;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @Test
+  void exposesHotKeysOnActuator() {
+    when(compositeIntegration.getProduct(7)).thenReturn(new Product(7, "name", 1, "mock-address"));
+    for (int i = 0; i < 5; i++) {
+      client.get().uri("/product-composite/7").exchange().expectStatus().isOk();
+    }
+
+    client.get().uri("/actuator/hotkeys/1").exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.length()").isEqualTo(1)
+      .jsonPath("$[0].key").isEqualTo(7)
+      .jsonPath("$[0].count").isEqualTo(5);
+
+    client.get().uri("/actuator/hotkeys").exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$[?(@.key == 7)].count").isEqualTo(5);
+  }
+}
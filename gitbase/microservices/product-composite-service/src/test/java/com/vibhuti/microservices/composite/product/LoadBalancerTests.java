@@ -0,0 +1,118 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances.SelectionStrategy;
+
+class LoadBalancerTests {
+
+  private final List<HttpServer> stubs = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      stubs.add(startStub("instance-" + i));
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    stubs.forEach(s -> s.stop(0));
+  }
+
+  @Test
+  void spreadsRequestsOverInstances() {
+    for (SelectionStrategy strategy : SelectionStrategy.values()) {
+      ProductCompositeIntegration integration = createIntegration(strategy, 3);
+
+      Set<String> servedBy = new HashSet<>();
+      for (int i = 0; i < 30; i++) {
+        servedBy.add(integration.getProduct(1).getServiceAddress());
+      }
+      assertEquals(Set.of("instance-0", "instance-1", "instance-2"), servedBy);
+    }
+  }
+
+  @Test
+  void ejectsFailingInstance() {
+    ProductCompositeIntegration integration = createIntegration(SelectionStrategy.LEAST_OUTSTANDING, 1);
+    stubs.get(0).stop(0);
+
+    int failures = 0;
+    Set<String> servedBy = new HashSet<>();
+    for (int i = 0; i < 30; i++) {
+      try {
+        servedBy.add(integration.getProduct(1).getServiceAddress());
+      } catch (WebClientRequestException ex) {
+        failures++;
+      }
+    }
+    assertEquals(1, failures);
+    assertEquals(Set.of("instance-1", "instance-2"), servedBy);
+  }
+
+  @Test
+  void usesEjectedInstanceWhenNoneIsHealthy() {
+    ProductCompositeIntegration integration = createIntegration(SelectionStrategy.POWER_OF_TWO_CHOICES, 1);
+    stubs.forEach(s -> s.stop(0));
+
+    for (int i = 0; i < 5; i++) {
+      assertThrows(WebClientRequestException.class, () -> integration.getProduct(1));
+    }
+  }
+
+  @Test
+  void fallsBackToHostAndPort() {
+    assertEquals(List.of("http://a:1", "http://b:2"), ServiceInstances.toBaseUrls("a:1, b:2", "c", 3));
+    assertEquals(List.of("http://c:3"), ServiceInstances.toBaseUrls("", "c", 3));
+    assertTrue(ServiceInstances.toBaseUrls(null, "c", 3).contains("http://c:3"));
+  }
+
+  private ProductCompositeIntegration createIntegration(SelectionStrategy strategy, int failureThreshold) {
+    List<String> urls = new ArrayList<>();
+    stubs.forEach(s -> urls.add("http://localhost:" + s.getAddress().getPort()));
+
+    ServiceInstances instances = new ServiceInstances("product-service", urls, strategy, failureThreshold,
+      Duration.ofMinutes(1));
+    return new ProductCompositeIntegration(WebClient.create(), new ObjectMapper(), MediaType.APPLICATION_JSON,
+      instances, instances, instances);
+  }
+
+  private HttpServer startStub(String serviceAddress) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/product/", exchange -> {
+      byte[] body = ("{\"productId\":1,\"name\":\"n\",\"weight\":1,\"serviceAddress\":\"" + serviceAddress + "\"}")
+        .getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+    return server;
+  }
+}
@@ -0,0 +1,173 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.MicroBatcher;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances.SelectionStrategy;
+import com.vibhuti.microservices.exception.InvalidInputException;
+import com.vibhuti.microservices.exception.NotFoundException;
+
+import reactor.core.scheduler.Schedulers;
+
+class MicroBatchingTests {
+
+  private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+  private final ObjectMapper mapper = new ObjectMapper();
+  private HttpServer stub;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    stub.createContext("/product/batch", exchange -> {
+      List<Integer> productIds = productIds(exchange.getRequestURI().getQuery());
+      batches.add(productIds);
+      List<Product> products = productIds.stream().filter(id -> id != 13)
+        .map(id -> new Product(id, "n" + id, 1, "stub")).collect(Collectors.toList());
+      respond(exchange, mapper.writeValueAsBytes(products));
+    });
+    stub.createContext("/review/batch", exchange -> {
+      List<Integer> productIds = productIds(exchange.getRequestURI().getQuery());
+      batches.add(productIds);
+      List<Review> reviews = new ArrayList<>();
+      productIds.forEach(id -> {
+        for (int i = 1; i <= id; i++) {
+          reviews.add(new Review(id, i, "a", "s", "c", "stub"));
+        }
+      });
+      respond(exchange, mapper.writeValueAsBytes(reviews));
+    });
+    stub.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    stub.stop(0);
+  }
+
+  @Test
+  void flushesWhenBatchIsFull() {
+    List<List<Integer>> loaded = new CopyOnWriteArrayList<>();
+    MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", keys -> {
+      loaded.add(keys);
+      return keys.stream().collect(Collectors.toMap(Function.identity(), String::valueOf));
+    }, Duration.ofHours(1), 3, Schedulers.boundedElastic());
+
+    CompletableFuture<String> first = batcher.load(1);
+    CompletableFuture<String> duplicate = batcher.load(1);
+    CompletableFuture<String> second = batcher.load(2);
+    assertFalse(first.isDone());
+
+    CompletableFuture<String> third = batcher.load(3);
+    assertEquals("1", first.join());
+    assertEquals("1", duplicate.join());
+    assertEquals("2", second.join());
+    assertEquals("3", third.join());
+    assertEquals(List.of(List.of(1, 2, 3)), loaded);
+  }
+
+  @Test
+  void flushesWhenWindowExpires() {
+    MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", keys -> Map.of(1, "one"),
+      Duration.ofMillis(10), 100, Schedulers.boundedElastic());
+
+    assertEquals("one", batcher.load(1).join());
+    assertNull(batcher.load(2).join());
+  }
+
+  @Test
+  void failsWholeBatch() {
+    MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test", keys -> {
+      throw new IllegalStateException("down");
+    }, Duration.ofMillis(10), 100, Schedulers.boundedElastic());
+
+    CompletableFuture<String> first = batcher.load(1);
+    CompletableFuture<String> second = batcher.load(2);
+    assertThrows(CompletionException.class, first::join);
+    assertThrows(CompletionException.class, second::join);
+  }
+
+  @Test
+  void concurrentLookupsShareOneRequest() throws Exception {
+    ProductCompositeIntegration integration = createIntegration(Duration.ofMillis(200), 10);
+
+    ExecutorService callers = Executors.newFixedThreadPool(10);
+    try {
+      List<Future<Product>> products = new ArrayList<>();
+      for (int i = 1; i <= 10; i++) {
+        int productId = i;
+        products.add(callers.submit(() -> integration.getProduct(productId)));
+      }
+      for (int i = 1; i <= 10; i++) {
+        assertEquals(i, products.get(i - 1).get().getProductId());
+      }
+    } finally {
+      callers.shutdown();
+    }
+
+    assertEquals(1, batches.size());
+    assertEquals(10, batches.get(0).size());
+  }
+
+  @Test
+  void splitsResponseToCallers() {
+    ProductCompositeIntegration integration = createIntegration(Duration.ofMillis(5), 10);
+
+    assertEquals(3, integration.getReviews(3).size());
+    assertEquals(3, integration.getReviews(3).stream().filter(r -> r.getProductId() == 3).count());
+    assertThrows(NotFoundException.class, () -> integration.getProduct(13));
+    assertThrows(InvalidInputException.class, () -> integration.getProduct(0));
+  }
+
+  private ProductCompositeIntegration createIntegration(Duration window, int maxBatchSize) {
+    ServiceInstances instances = new ServiceInstances("core-services",
+      List.of("http://localhost:" + stub.getAddress().getPort()), SelectionStrategy.LEAST_OUTSTANDING, 3,
+      Duration.ofMinutes(1));
+    return new ProductCompositeIntegration(WebClient.create(), mapper, MediaType.APPLICATION_JSON, instances,
+      instances, instances, null, window, maxBatchSize);
+  }
+
+  private static List<Integer> productIds(String query) {
+    String ids = query.substring(query.indexOf('=') + 1);
+    return List.of(ids.split(",")).stream().map(Integer::valueOf).collect(Collectors.toList());
+  }
+
+  private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.vibhuti.microservices.composite.product;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.AggregateCache;
+import com.vibhuti.microservices.composite.product.services.AggregateCache.Storage;
+import com.vibhuti.microservices.composite.product.services.EncodedProductAggregate;
+import com.vibhuti.microservices.composite.product.services.EncodedProductAggregateEncoder;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+  "app.aggregate-cache.ttl=1m",
+  "app.aggregate-cache.storage=OFF_HEAP"})
+class OffHeapAggregateCacheTests {
+
+  @Autowired private WebTestClient client;
+
+  @Autowired private EncodedProductAggregateEncoder encoder;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @Test
+  void servesCachedAggregatesFromDirectBuffers() {
+    when(compositeIntegration.getProduct(1)).thenReturn(new Product(1, "name", 1, "mock-address"));
+    when(compositeIntegration.getRecommendations(1))
+      .thenReturn(singletonList(new Recommendation(1, 1, "author", 1, "content", "mock address")));
+    when(compositeIntegration.getReviews(1))
+      .thenReturn(singletonList(new Review(1, 1, "author", "subject", "content", "mock address")));
+
+    byte[] first = getProduct(1);
+    byte[] cached = getProduct(1);
+    assertEquals(new String(first, StandardCharsets.UTF_8), new String(cached, StandardCharsets.UTF_8));
+    verify(compositeIntegration, times(1)).getProduct(1);
+
+    client.get().uri("/product-composite/1").accept(MediaType.APPLICATION_JSON).exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.productId").isEqualTo(1)
+      .jsonPath("$.reviews[0].subject").isEqualTo("subject");
+
+    client.get().uri("/actuator/metrics/aggregate.cache.payload?tag=storage:off-heap").exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.measurements[0].value").value(greaterThan(0.0));
+  }
+
+  @Test
+  void wrapsStoredJsonWithoutCopying() {
+    AggregateCache cache = new AggregateCache(new ObjectMapper(), Duration.ofMinutes(1), 10, Storage.OFF_HEAP,
+      key -> false, null, null);
+    EncodedProductAggregate aggregate = (EncodedProductAggregate) cache.get(1, "",
+      () -> new ProductAggregate(1, "name", 1, null, null, null, "\"1-abc\""), cached -> true);
+    assertTrue(aggregate.json().isDirect());
+
+    assertTrue(encoder.canEncode(ResolvableType.forInstance(aggregate), MediaType.APPLICATION_JSON));
+    ByteBuf written = ((NettyDataBuffer) encoder.encodeValue(aggregate,
+      new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT), ResolvableType.forInstance(aggregate),
+      MediaType.APPLICATION_JSON, null)).getNativeBuffer();
+    assertTrue(written.isDirect());
+    assertEquals("{\"productId\":1,\"name\":\"name\",\"weight\":1,\"serviceAddresses\":null}",
+      written.toString(StandardCharsets.UTF_8));
+    assertEquals("name", aggregate.getName());
+    assertEquals("\"1-abc\"", aggregate.entityTag());
+  }
+
+  private byte[] getProduct(int productId) {
+    return client.get().uri("/product-composite/" + productId).accept(MediaType.APPLICATION_JSON).exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(MediaType.APPLICATION_JSON)
+      .expectBody().returnResult().getResponseBody();
+  }
+}
@@ -0,0 +1,244 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.MimeTypeUtils;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.composite.product.services.ProductPartsCache;
+import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.util.EventPublisher;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import io.rsocket.core.RSocketServer;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class PartsCacheTests {
+
+  private CloseableChannel server;
+  private RSocketRequester.Builder builder;
+  private CoreServicesStub coreServices;
+  private ProductPartsCache cache;
+
+  @BeforeEach
+  void setUp() {
+    RSocketStrategies strategies = RSocketStrategies.builder()
+      .encoder(new Jackson2CborEncoder())
+      .decoder(new Jackson2CborDecoder())
+      .build();
+
+    StaticApplicationContext context = new StaticApplicationContext();
+    context.registerSingleton("coreServicesStub", CoreServicesStub.class);
+    context.refresh();
+    coreServices = context.getBean(CoreServicesStub.class);
+
+    RSocketMessageHandler handler = new RSocketMessageHandler();
+    handler.setRSocketStrategies(strategies);
+    handler.setApplicationContext(context);
+    handler.afterPropertiesSet();
+
+    server = RSocketServer.create(handler.responder())
+      .bind(TcpServerTransport.create("localhost", 0))
+      .block();
+
+    builder = RSocketRequester.builder()
+      .rsocketStrategies(strategies)
+      .dataMimeType(MimeTypeUtils.parseMimeType("application/cbor"));
+    // Created before the cache attaches, so their events don't race its first loads
+    coreServices.createProduct(new Product(1, "n1", 1, "stub"));
+    coreServices.createReview(new Review(1, 1, "a", "s", "c", "stub"));
+
+    int port = server.address().getPort();
+    cache = new ProductPartsCache(builder.tcp("localhost", port), builder.tcp("localhost", port),
+      builder.tcp("localhost", port), Duration.ofSeconds(5), 100, Duration.ofMillis(100), productId -> false);
+  }
+
+  @AfterEach
+  void tearDown() {
+    cache.destroy();
+    server.dispose();
+  }
+
+  @Test
+  void loadsOnceThenFollowsEvents() {
+    awaitTrue(cache::isLive);
+
+    assertEquals(1, cache.get(1).reviews().size());
+    assertEquals(1, cache.get(1).reviews().size());
+    assertEquals(1, coreServices.productCalls.get());
+
+    coreServices.createReview(new Review(1, 2, "a", "s", "c", "stub"));
+    coreServices.createRecommendation(new Recommendation(1, 1, "a", 1, "c", "stub"));
+    awaitTrue(() -> cache.get(1).reviews().size() == 2 && cache.get(1).recommendations().size() == 1);
+    assertEquals(1, coreServices.productCalls.get());
+
+    coreServices.deleteProduct(1);
+    awaitTrue(() -> cache.size() == 0);
+    assertThrows(NotFoundException.class, () -> cache.get(1));
+  }
+
+  @Test
+  void followsEveryInstanceAndReloadsAfterMaxAge() throws InterruptedException {
+    // Two connections to the stub stand in for two instances of each service
+    int port = server.address().getPort();
+    ProductPartsCache instancesCache = new ProductPartsCache(
+      List.of(builder.tcp("localhost", port), builder.tcp("localhost", port)),
+      List.of(builder.tcp("localhost", port), builder.tcp("localhost", port)),
+      List.of(builder.tcp("localhost", port)), Duration.ofSeconds(5), 100, Duration.ofMillis(200),
+      Duration.ofMillis(100), productId -> false);
+    try {
+      awaitTrue(instancesCache::isLive);
+      assertEquals("n1", instancesCache.get(1).product().getName());
+      assertEquals("n1", instancesCache.get(1).product().getName());
+      assertEquals(1, coreServices.productCalls.get());
+
+      Thread.sleep(300);
+      assertEquals("n1", instancesCache.get(1).product().getName());
+      assertEquals(2, coreServices.productCalls.get());
+    } finally {
+      instancesCache.destroy();
+    }
+  }
+
+  @Test
+  void fallsBackWhileEventStreamsAreDown() {
+    awaitTrue(cache::isLive);
+    assertEquals("n1", cache.get(1).product().getName());
+    assertEquals(1, cache.size());
+
+    coreServices.setDown(true);
+    awaitTrue(() -> !cache.isLive());
+    assertEquals(0, cache.size());
+    assertNull(cache.get(1));
+
+    coreServices.setDown(false);
+    awaitTrue(cache::isLive);
+    assertEquals("n1", cache.get(1).product().getName());
+    assertEquals(2, coreServices.productCalls.get());
+  }
+
+  private static void awaitTrue(BooleanSupplier condition) {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "Timed out");
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  /**
+   * The three core services in one, each with its own event stream.
+   */
+  @Controller
+  static class CoreServicesStub {
+
+    private final Map<Integer, Product> products = new ConcurrentHashMap<>();
+    private final List<Recommendation> recommendations = new CopyOnWriteArrayList<>();
+    private final List<Review> reviews = new CopyOnWriteArrayList<>();
+    private final EventPublisher productEvents = new EventPublisher(100);
+    private final EventPublisher recommendationEvents = new EventPublisher(100);
+    private final EventPublisher reviewEvents = new EventPublisher(100);
+    // Ends the event streams and refuses new ones while down
+    private final Sinks.Many<Boolean> outage = Sinks.many().multicast().directBestEffort();
+    private volatile boolean down;
+    final AtomicInteger productCalls = new AtomicInteger();
+
+    void setDown(boolean down) {
+      this.down = down;
+      if (down) {
+        outage.tryEmitNext(true);
+      }
+    }
+
+    void createProduct(Product product) {
+      products.put(product.getProductId(), product);
+      productEvents.publish(new Event<>(Event.Type.CREATE, product.getProductId(), product));
+    }
+
+    void deleteProduct(int productId) {
+      products.remove(productId);
+      productEvents.publish(new Event<>(Event.Type.DELETE, productId, null));
+    }
+
+    void createRecommendation(Recommendation recommendation) {
+      recommendations.add(recommendation);
+      recommendationEvents.publish(new Event<>(Event.Type.CREATE, recommendation.getProductId(), recommendation));
+    }
+
+    void createReview(Review review) {
+      reviews.add(review);
+      reviewEvents.publish(new Event<>(Event.Type.CREATE, review.getProductId(), review));
+    }
+
+    @MessageMapping("product.get.{productId}")
+    Mono<Product> getProduct(@DestinationVariable int productId) {
+      productCalls.incrementAndGet();
+      return Mono.justOrEmpty(products.get(productId))
+        .switchIfEmpty(Mono.error(() -> RSocketErrorCodes.toRSocketException(
+          new NotFoundException("No product found for productId: " + productId))));
+    }
+
+    @MessageMapping("recommendations.get.{productId}")
+    Flux<Recommendation> getRecommendations(@DestinationVariable int productId) {
+      return Flux.fromIterable(recommendations).filter(r -> r.getProductId() == productId);
+    }
+
+    @MessageMapping("reviews.get.{productId}")
+    Flux<Review> getReviews(@DestinationVariable int productId) {
+      return Flux.fromIterable(reviews).filter(r -> r.getProductId() == productId);
+    }
+
+    @MessageMapping("product.events")
+    Flux<Event<?, ?>> productEvents() {
+      return events(productEvents);
+    }
+
+    @MessageMapping("recommendation.events")
+    Flux<Event<?, ?>> recommendationEvents() {
+      return events(recommendationEvents);
+    }
+
+    @MessageMapping("review.events")
+    Flux<Event<?, ?>> reviewEvents() {
+      return events(reviewEvents);
+    }
+
+    private Flux<Event<?, ?>> events(EventPublisher publisher) {
+      return Flux.defer(() -> down ? Flux.error(new IllegalStateException("Down"))
+        : publisher.events().takeUntilOther(outage.asFlux()));
+    }
+  }
+}
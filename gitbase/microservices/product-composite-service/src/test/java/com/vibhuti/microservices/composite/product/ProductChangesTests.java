@@ -0,0 +1,71 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.vibhuti.microservices.api.core.Modification;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+class ProductChangesTests {
+
+  @Autowired private WebTestClient client;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @Test
+  void mergesModificationsIntoPages() {
+    when(compositeIntegration.getProductModifications(5, 0, 2))
+      .thenReturn(List.of(new Modification(1, 10), new Modification(3, 30)));
+    when(compositeIntegration.getRecommendationModifications(5, 0, 2)).thenReturn(List.of(new Modification(1, 20)));
+    when(compositeIntegration.getReviewModifications(5, 0, 2)).thenReturn(List.of(new Modification(2, 15)));
+    when(compositeIntegration.getProducts(List.of(1, 2))).thenReturn(List.of(new Product(1, "name", 1, "mock")));
+    when(compositeIntegration.getRecommendationsForProducts(List.of(1, 2)))
+      .thenReturn(List.of(new Recommendation(1, 1, "a", 1, "c", "mock")));
+    when(compositeIntegration.getReviewsForProducts(List.of(1, 2))).thenReturn(List.of());
+
+    client.get().uri("/product-composite/changes?since=5-0&limit=2").exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.products.length()").isEqualTo(1)
+      .jsonPath("$.products[0].productId").isEqualTo(1)
+      .jsonPath("$.products[0].recommendations.length()").isEqualTo(1)
+      .jsonPath("$.products[0].reviews.length()").isEqualTo(0)
+      .jsonPath("$.deletedProductIds[0]").isEqualTo(2)
+      .jsonPath("$.next").isEqualTo("15-2")
+      .jsonPath("$.more").isEqualTo(true);
+  }
+
+  @Test
+  void keepsTokenWithoutChanges() {
+    when(compositeIntegration.getProductModifications(15, 2, 100)).thenReturn(List.of());
+    when(compositeIntegration.getRecommendationModifications(15, 2, 100)).thenReturn(List.of());
+    when(compositeIntegration.getReviewModifications(15, 2, 100)).thenReturn(List.of());
+
+    client.get().uri("/product-composite/changes?since=15-2").exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.products.length()").isEqualTo(0)
+      .jsonPath("$.next").isEqualTo("15-2")
+      .jsonPath("$.more").isEqualTo(false);
+  }
+
+  @Test
+  void rejectsInvalidTokenAndLimit() {
+    client.get().uri("/product-composite/changes?since=yesterday").exchange()
+      .expectStatus().isEqualTo(422)
+      .expectBody().jsonPath("$.message").isEqualTo("Invalid token: yesterday");
+    client.get().uri("/product-composite/changes?limit=0").exchange()
+      .expectStatus().isEqualTo(422);
+  }
+}
@@ -1,8 +1,12 @@
 package com.vibhuti.microservices.composite.product;
 
 import static java.util.Collections.singletonList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static reactor.core.publisher.Mono.just;
@@ -95,6 +99,25 @@ class ProductCompositeServiceApplicationTests {
       .jsonPath("$.reviews.length()").isEqualTo(1);
   }
 
+  @Test
+  void getProductWithSelectedSections() {
+
+    getAndVerifyProduct(PRODUCT_ID_OK + "?include=reviews", HttpStatus.OK)
+      .jsonPath("$.reviews.length()").isEqualTo(1)
+      .jsonPath("$.recommendations").doesNotExist()
+      .jsonPath("$.serviceAddresses.rec").doesNotExist();
+    verify(compositeIntegration, never()).getRecommendations(anyInt());
+
+    getAndVerifyProduct(PRODUCT_ID_OK + "?include=", HttpStatus.OK)
+      .jsonPath("$.name").isEqualTo("name")
+      .jsonPath("$.reviews").doesNotExist()
+      .jsonPath("$.recommendations").doesNotExist();
+    verify(compositeIntegration, never()).getRecommendations(anyInt());
+
+    getAndVerifyProduct(PRODUCT_ID_OK + "?include=reviews,ratings", BAD_REQUEST)
+      .jsonPath("$.message").isEqualTo("Unknown include: ratings, expected recommendations and/or reviews");
+  }
+
   @Test
   void getProductNotFound() {
 
@@ -112,8 +135,12 @@ class ProductCompositeServiceApplicationTests {
   }
   
   private WebTestClient.BodyContentSpec getAndVerifyProduct(int productId, HttpStatus expectedStatus) {
+	    return getAndVerifyProduct(String.valueOf(productId), expectedStatus);
+	  }
+
+	  private WebTestClient.BodyContentSpec getAndVerifyProduct(String productIdPath, HttpStatus expectedStatus) {
 	    return client.get()
-	      .uri("/product-composite/" + productId)
+	      .uri("/product-composite/" + productIdPath)
 	      .accept(APPLICATION_JSON)
 	      .exchange()
 	      .expectStatus().isEqualTo(expectedStatus)
@@ -0,0 +1,83 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.composite.product.services.SortedMergeJoin;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+class ProductExportTests {
+
+  @Autowired private WebTestClient client;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @Test
+  void joinsSortedExportsIntoAggregates() {
+    when(compositeIntegration.exportProducts()).thenReturn(Flux.just(product(1), product(2), product(4)));
+    when(compositeIntegration.exportRecommendations()).thenReturn(Flux.just(
+      recommendation(1, 1), recommendation(1, 2), recommendation(3, 1), recommendation(4, 1)));
+    when(compositeIntegration.exportReviews()).thenReturn(Flux.just(review(2, 1), review(5, 1)));
+
+    List<ProductAggregate> exported = client.get().uri("/product-composite/export").accept(APPLICATION_NDJSON)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(ProductAggregate.class).getResponseBody()
+      .collectList().block(Duration.ofSeconds(5));
+
+    assertEquals(List.of(1, 2, 4), exported.stream().map(ProductAggregate::getProductId).toList());
+    assertEquals(2, exported.get(0).getRecommendations().size());
+    assertEquals(0, exported.get(0).getReviews().size());
+    assertEquals(1, exported.get(1).getReviews().size());
+    // The recommendation of product 3 has no product
+    assertEquals(1, exported.get(2).getRecommendations().size());
+    assertEquals(0, exported.get(2).getReviews().size());
+  }
+
+  @Test
+  void readsNoFurtherThanRequested() {
+    AtomicLong requested = new AtomicLong();
+    Flux<Product> products = Flux.range(1, 1_000_000).map(ProductExportTests::product)
+      .doOnRequest(n -> requested.addAndGet(n));
+
+    StepVerifier.create(SortedMergeJoin.join(products, Flux.empty(), Flux.empty(), 16), 3)
+      .expectNextCount(3)
+      .thenCancel()
+      .verify(Duration.ofSeconds(5));
+
+    assertTrue(requested.get() <= 32, "Requested " + requested.get());
+  }
+
+  private static Product product(int productId) {
+    return new Product(productId, "name", 1, "mock");
+  }
+
+  private static Recommendation recommendation(int productId, int recommendationId) {
+    return new Recommendation(productId, recommendationId, "a", 1, "c", "mock");
+  }
+
+  private static Review review(int productId, int reviewId) {
+    return new Review(productId, reviewId, "a", "s", "c", "mock");
+  }
+}
@@ -0,0 +1,59 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.composite.product.services.ProductIdFilter;
+import com.vibhuti.microservices.util.BloomFilter;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {"app.product-id-filter.enabled=true"})
+class ProductIdFilterTests {
+
+  @Autowired private WebTestClient client;
+
+  @Autowired private ProductIdFilter productIdFilter;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @Test
+  void bloomFilterHasNoFalseNegatives() {
+    BloomFilter filter = BloomFilter.create(10_000, 0.01);
+    IntStream.rangeClosed(1, 10_000).forEach(filter::put);
+
+    assertTrue(IntStream.rangeClosed(1, 10_000).allMatch(filter::mightContain));
+    long falsePositives = IntStream.rangeClosed(10_001, 110_000).filter(filter::mightContain).count();
+    assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+  }
+
+  @Test
+  void answersUnknownIdsWithoutProductService() {
+    when(compositeIntegration.getProductIds()).thenReturn(List.of(1));
+    when(compositeIntegration.getProduct(1)).thenReturn(new Product(1, "name", 1, "mock-address"));
+    when(compositeIntegration.getProduct(2)).thenReturn(new Product(2, "name", 1, "mock-address"));
+    productIdFilter.refresh();
+
+    client.get().uri("/product-composite/1").exchange().expectStatus().isOk();
+    client.get().uri("/product-composite/2").exchange().expectStatus().isNotFound()
+      .expectBody().jsonPath("$.message").isEqualTo("No product found for productId: 2");
+    verify(compositeIntegration, never()).getProduct(2);
+
+    client.post().uri("/product-composite").bodyValue(new ProductAggregate(2, "name", 1, null, null, null))
+      .exchange().expectStatus().isOk();
+    client.get().uri("/product-composite/2").exchange().expectStatus().isOk();
+  }
+}
@@ -0,0 +1,86 @@
+package com.vibhuti.microservices.composite.product;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.vibhuti.microservices.api.composite.product.ImportResult;
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.composite.product.RecommendationSummary;
+import com.vibhuti.microservices.api.composite.product.ReviewSummary;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.exception.ServiceUnavailableException;
+
+import reactor.core.publisher.Flux;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "app.import.batch-size=2")
+class ProductImportTests {
+
+  @Autowired private WebTestClient client;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @Test
+  void reportsInvalidProductsAndWritesTheRest() {
+    ProductAggregate duplicates = new ProductAggregate(2, "name", 1, null,
+      List.of(new ReviewSummary(1, "a", "s", "c"), new ReviewSummary(1, "a", "s", "c")), null);
+
+    List<ImportResult> results = importProducts(aggregate(1), aggregate(-1), duplicates, aggregate(3));
+
+    assertEquals(List.of(1, -1, 2, 3), results.stream().map(ImportResult::getProductId).toList());
+    assertEquals(List.of(200, 422, 422, 200), results.stream().map(ImportResult::getStatus).toList());
+    assertEquals("Duplicate reviewId, Product Id: 2", results.get(2).getMessage());
+    verify(compositeIntegration).createProducts(argThat(products -> products.size() == 1
+      && products.get(0).getProductId() == 1));
+    verify(compositeIntegration).createProducts(argThat(products -> products.get(0).getProductId() == 3));
+  }
+
+  @Test
+  void failsOnlyTheBatchOfAFailedWrite() {
+    doThrow(new ServiceUnavailableException("review-service is down")).when(compositeIntegration)
+      .createReviews(argThat(reviews -> reviews.stream().anyMatch(review -> review.getProductId() == 1)));
+
+    List<ImportResult> results = importProducts(aggregate(1), aggregate(2), aggregate(3));
+
+    assertEquals(List.of(503, 503, 200), results.stream().map(ImportResult::getStatus).toList());
+    assertEquals("review-service is down", results.get(1).getMessage());
+  }
+
+  @Test
+  void skipsWritesWithoutValidProducts() {
+    List<ImportResult> results = importProducts(aggregate(-1));
+
+    assertEquals(422, results.get(0).getStatus());
+    verify(compositeIntegration, never()).createProducts(any());
+  }
+
+  private List<ImportResult> importProducts(ProductAggregate... aggregates) {
+    return client.post().uri("/product-composite/import").contentType(APPLICATION_NDJSON)
+      .accept(APPLICATION_NDJSON)
+      .body(Flux.just(aggregates), ProductAggregate.class)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(ImportResult.class).getResponseBody()
+      .collectList().block(Duration.ofSeconds(5));
+  }
+
+  private static ProductAggregate aggregate(int productId) {
+    return new ProductAggregate(productId, "name", 1, singletonList(new RecommendationSummary(1, "a", 1, "c")),
+      singletonList(new ReviewSummary(1, "a", "s", "c")), null);
+  }
+}
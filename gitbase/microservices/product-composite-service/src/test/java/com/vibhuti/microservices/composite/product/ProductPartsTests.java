@@ -0,0 +1,91 @@
+package com.vibhuti.microservices.composite.product;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.vibhuti.microservices.api.composite.product.ProductAggregatePart;
+import com.vibhuti.microservices.api.composite.product.ProductAggregatePart.Type;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.exception.NotFoundException;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+class ProductPartsTests {
+
+  @Autowired private WebTestClient client;
+
+  @MockBean private ProductCompositeIntegration compositeIntegration;
+
+  @Test
+  void sendsProductFirstThenSectionsAsTheyArrive() {
+    when(compositeIntegration.getProduct(1)).thenAnswer(delayed(200, new Product(1, "name", 1, "mock")));
+    when(compositeIntegration.getRecommendations(1))
+      .thenAnswer(delayed(600, singletonList(new Recommendation(1, 1, "a", 1, "c", "mock"))));
+    when(compositeIntegration.getReviews(1)).thenReturn(singletonList(new Review(1, 1, "a", "s", "c", "mock")));
+
+    List<ProductAggregatePart> parts = client.get().uri("/product-composite/1").accept(APPLICATION_NDJSON).exchange()
+      .expectStatus().isOk()
+      .returnResult(ProductAggregatePart.class).getResponseBody()
+      .collectList().block(Duration.ofSeconds(5));
+
+    // Reviews arrive before the product, but are held back for it
+    assertEquals(List.of(Type.PRODUCT, Type.REVIEWS, Type.RECOMMENDATIONS),
+      parts.stream().map(ProductAggregatePart::getType).toList());
+    assertEquals("name", parts.get(0).getName());
+    assertEquals(1, parts.get(2).getRecommendations().size());
+  }
+
+  @Test
+  void namesEventsAfterPartTypes() {
+    when(compositeIntegration.getProduct(1)).thenReturn(new Product(1, "name", 1, "mock"));
+    when(compositeIntegration.getReviews(1)).thenReturn(List.of());
+
+    List<ServerSentEvent<ProductAggregatePart>> events = client.get().uri("/product-composite/1?include=reviews")
+      .accept(TEXT_EVENT_STREAM).exchange()
+      .expectStatus().isOk()
+      .returnResult(new ParameterizedTypeReference<ServerSentEvent<ProductAggregatePart>>() {}).getResponseBody()
+      .collectList().block(Duration.ofSeconds(5));
+
+    assertEquals(List.of("PRODUCT", "REVIEWS"), events.stream().map(ServerSentEvent::event).toList());
+    assertEquals(0, events.get(1).data().getReviews().size());
+    verify(compositeIntegration, never()).getRecommendations(anyInt());
+  }
+
+  @Test
+  void returnsErrorsBeforeAnyPart() {
+    when(compositeIntegration.getProduct(13)).thenThrow(new NotFoundException("NOT FOUND: 13"));
+
+    client.get().uri("/product-composite/13").accept(APPLICATION_NDJSON).exchange()
+      .expectStatus().isNotFound();
+    client.get().uri("/product-composite/1?include=ratings").accept(APPLICATION_NDJSON).exchange()
+      .expectStatus().isBadRequest();
+  }
+
+  private static <T> Answer<T> delayed(long millis, T result) {
+    return invocation -> {
+      Thread.sleep(millis);
+      return result;
+    };
+  }
+}
@@ -0,0 +1,136 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.MimeTypeUtils;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.CoreServicesRSocketClient;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.exception.InvalidInputException;
+import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import io.rsocket.core.RSocketServer;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class RSocketTransportTests {
+
+  private CloseableChannel server;
+  private CoreServicesRSocketClient client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    RSocketStrategies strategies = RSocketStrategies.builder()
+      .encoder(new Jackson2CborEncoder())
+      .decoder(new Jackson2CborDecoder())
+      .build();
+
+    StaticApplicationContext context = new StaticApplicationContext();
+    context.registerSingleton("coreServicesStub", CoreServicesStub.class);
+    context.refresh();
+
+    RSocketMessageHandler handler = new RSocketMessageHandler();
+    handler.setRSocketStrategies(strategies);
+    handler.setApplicationContext(context);
+    handler.afterPropertiesSet();
+
+    server = RSocketServer.create(handler.responder())
+      .bind(TcpServerTransport.create("localhost", 0))
+      .block();
+
+    RSocketRequester.Builder builder = RSocketRequester.builder()
+      .rsocketStrategies(strategies)
+      .dataMimeType(MimeTypeUtils.parseMimeType("application/cbor"));
+    int port = server.address().getPort();
+    client = new CoreServicesRSocketClient(builder.tcp("localhost", port), builder.tcp("localhost", port),
+      builder.tcp("localhost", port), Duration.ofSeconds(5));
+  }
+
+  @AfterEach
+  void tearDown() {
+    client.destroy();
+    server.dispose();
+  }
+
+  @Test
+  void requestResponse() {
+    assertEquals("n1", client.getProduct(1).getName());
+    assertEquals(2, client.createProduct(new Product(2, "n2", 1, null)).getProductId());
+  }
+
+  @Test
+  void requestStream() {
+    assertEquals(5, client.getReviews(5).size());
+    assertEquals(List.of(1, 2), client.streamReviews(100).take(2).map(Review::getReviewId).collectList().block());
+  }
+
+  @Test
+  void mapsErrors() {
+    assertThrows(NotFoundException.class, () -> client.getProduct(13));
+    assertThrows(InvalidInputException.class, () -> client.getProduct(-1));
+    assertThrows(InvalidInputException.class, () -> client.getReviews(-1));
+  }
+
+  @Test
+  void integrationDelegatesToRSocket() {
+    ProductCompositeIntegration integration = new ProductCompositeIntegration(null, null, null, null, null, null,
+      client, Duration.ZERO, 1);
+
+    assertEquals("n1", integration.getProduct(1).getName());
+    assertEquals(3, integration.getReviews(3).size());
+    assertEquals(0, integration.getReviews(-1).size());
+  }
+
+  @Controller
+  static class CoreServicesStub {
+
+    @MessageMapping("product.get.{productId}")
+    Mono<Product> getProduct(@DestinationVariable int productId) {
+      return Mono.fromCallable(() -> {
+        if (productId < 1) {
+          throw new InvalidInputException("Invalid productId: " + productId);
+        }
+        if (productId == 13) {
+          throw new NotFoundException("No product found for productId: " + productId);
+        }
+        return new Product(productId, "n" + productId, 1, "stub");
+      }).onErrorMap(RSocketErrorCodes::toRSocketException);
+    }
+
+    @MessageMapping("product.create")
+    Mono<Product> createProduct(Product body) {
+      return Mono.just(body);
+    }
+
+    @MessageMapping("reviews.get.{productId}")
+    Flux<Review> getReviews(@DestinationVariable int productId) {
+      if (productId < 1) {
+        return Flux.error(RSocketErrorCodes.toRSocketException(new InvalidInputException("Invalid productId")));
+      }
+      return Flux.fromStream(IntStream.rangeClosed(1, productId).boxed())
+        .map(id -> new Review(productId, id, "a", "s", "c", "stub"));
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.composite.product.services.ProductCompositeIntegration;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances;
+import com.vibhuti.microservices.composite.product.services.ServiceInstances.SelectionStrategy;
+import com.vibhuti.microservices.composite.product.services.StaleWhileRevalidateCache;
+
+import reactor.core.scheduler.Schedulers;
+
+class ResponseCacheTests {
+
+  @Test
+  void servesStaleValueAndReloadsOnce() throws InterruptedException {
+    AtomicInteger loads = new AtomicInteger();
+    StaleWhileRevalidateCache<Integer> cache = new StaleWhileRevalidateCache<>("test", key -> {
+      sleep(50);
+      return loads.incrementAndGet();
+    }, Duration.ofMillis(100), Duration.ofHours(1), 10, key -> false, Schedulers.boundedElastic());
+
+    assertEquals(1, cache.get(1));
+    assertEquals(1, cache.get(1));
+    assertEquals(1, loads.get());
+
+    Thread.sleep(150);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(1, cache.get(1));
+    }
+    awaitValue(cache, 1, 2);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void keepsCachedValueWhenReloadFails() throws InterruptedException {
+    AtomicBoolean failing = new AtomicBoolean();
+    StaleWhileRevalidateCache<String> cache = new StaleWhileRevalidateCache<>("test", key -> {
+      if (failing.get()) {
+        throw new IllegalStateException("down");
+      }
+      return "v" + key;
+    }, Duration.ofMillis(10), Duration.ofMillis(10), 10, key -> false, Schedulers.boundedElastic());
+
+    assertEquals("v1", cache.get(1));
+    failing.set(true);
+    Thread.sleep(15);
+    assertEquals("v1", cache.get(1));
+    Thread.sleep(30);
+    assertEquals("v1", cache.get(1));
+    assertThrows(IllegalStateException.class, () -> cache.get(2));
+
+    cache.invalidate(1);
+    assertThrows(IllegalStateException.class, () -> cache.get(1));
+  }
+
+  @Test
+  void keepsPinnedKeysOnEviction() {
+    AtomicInteger loads = new AtomicInteger();
+    StaleWhileRevalidateCache<Integer> cache = new StaleWhileRevalidateCache<>("test", key -> {
+      loads.incrementAndGet();
+      return key;
+    }, Duration.ofHours(1), Duration.ofHours(1), 2, key -> key == 1, Schedulers.boundedElastic());
+
+    cache.get(1);
+    cache.get(2);
+    cache.get(3);
+    cache.get(4);
+    assertEquals(4, loads.get());
+    cache.get(1);
+    cache.get(4);
+    assertEquals(4, loads.get());
+    cache.get(2);
+    assertEquals(5, loads.get());
+  }
+
+  @Test
+  void integrationKeepsCachedReviewsWhenServiceFails() throws IOException, InterruptedException {
+    ObjectMapper mapper = new ObjectMapper();
+    AtomicBoolean failing = new AtomicBoolean();
+    HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    stub.createContext("/review", exchange -> {
+      if (failing.get()) {
+        exchange.sendResponseHeaders(500, -1);
+        exchange.close();
+        return;
+      }
+      byte[] body = mapper.writeValueAsBytes(List.of(new Review(1, 1, "a", "s", "c", "stub")));
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    stub.start();
+    try {
+      ServiceInstances instances = new ServiceInstances("review-service",
+        List.of("http://localhost:" + stub.getAddress().getPort()), SelectionStrategy.LEAST_OUTSTANDING, 100,
+        Duration.ofMinutes(1));
+      ProductCompositeIntegration integration = new ProductCompositeIntegration(WebClient.create(), mapper,
+        MediaType.APPLICATION_JSON, instances, instances, instances, null, Duration.ZERO, 1, 0,
+        Duration.ofMillis(10), Duration.ofMillis(10), 100, productId -> false);
+
+      assertEquals(1, integration.getReviews(1).size());
+      failing.set(true);
+      Thread.sleep(50);
+      assertEquals(1, integration.getReviews(1).size());
+      assertEquals(0, integration.getReviews(2).size());
+    } finally {
+      stub.stop(0);
+    }
+  }
+
+  private static <V> void awaitValue(StaleWhileRevalidateCache<V> cache, int key, V expected)
+    throws InterruptedException {
+    for (int i = 0; i < 100 && !expected.equals(cache.get(key)); i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, cache.get(key));
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
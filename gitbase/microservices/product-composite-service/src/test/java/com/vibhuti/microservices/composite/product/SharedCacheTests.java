@@ -0,0 +1,142 @@
+package com.vibhuti.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibhuti.microservices.api.composite.product.ProductAggregate;
+import com.vibhuti.microservices.api.composite.product.ReviewSummary;
+import com.vibhuti.microservices.api.composite.product.ServiceAddresses;
+import com.vibhuti.microservices.composite.product.services.AggregateCache;
+import com.vibhuti.microservices.composite.product.services.AggregateCache.Storage;
+import com.vibhuti.microservices.composite.product.services.RedisSharedCacheClient;
+
+class SharedCacheTests {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  void sharesAggregatesAcrossReplicas() throws IOException, InterruptedException {
+    try (EmbeddedRedisServer server = new EmbeddedRedisServer()) {
+      RedisSharedCacheClient client1 = new RedisSharedCacheClient(server.uri(), Duration.ofSeconds(1));
+      RedisSharedCacheClient client2 = new RedisSharedCacheClient(server.uri(), Duration.ofSeconds(1));
+      try {
+        AggregateCache replica1 = new AggregateCache(mapper, Duration.ofMinutes(1), 100,
+          Storage.HEAP, key -> false, client1, null);
+        AggregateCache replica2 = new AggregateCache(mapper, Duration.ofMinutes(1), 100,
+          Storage.HEAP, key -> false, client2, null);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<ProductAggregate> loader = () -> {
+          loads.incrementAndGet();
+          return aggregate();
+        };
+
+        assertEquals("\"1-abc\"", replica1.get(1, "reviews", loader, cached -> true).entityTag());
+        ProductAggregate shared = replica2.get(1, "reviews", loader, cached -> true);
+        assertEquals(1, loads.get());
+        assertEquals("\"1-abc\"", shared.entityTag());
+        assertEquals("subject", shared.getReviews().get(0).getSubject());
+        assertTrue(server.containsKey("product-composite:aggregate:1:reviews"));
+
+        // Another variant is another entry
+        replica2.get(1, "", loader, cached -> true);
+        assertEquals(2, loads.get());
+
+        replica1.invalidate(1, List.of("", "reviews"));
+        assertFalse(server.containsKey("product-composite:aggregate:1:reviews"));
+        awaitLoads(() -> replica2.get(1, "reviews", loader, cached -> true), loads, 3);
+      } finally {
+        client1.destroy();
+        client2.destroy();
+      }
+    }
+  }
+
+  @Test
+  void dropsAggregatesInvalidatedWhileLoading() throws IOException, InterruptedException {
+    try (EmbeddedRedisServer server = new EmbeddedRedisServer()) {
+      RedisSharedCacheClient client1 = new RedisSharedCacheClient(server.uri(), Duration.ofSeconds(1));
+      RedisSharedCacheClient client2 = new RedisSharedCacheClient(server.uri(), Duration.ofSeconds(1));
+      try {
+        AggregateCache replica1 = new AggregateCache(mapper, Duration.ofMinutes(1), 100,
+          Storage.HEAP, key -> false, client1, null);
+        AggregateCache replica2 = new AggregateCache(mapper, Duration.ofMinutes(1), 100,
+          Storage.HEAP, key -> false, client2, null);
+        AtomicInteger loads = new AtomicInteger();
+
+        // The other replica writes the product while this one loads the old version
+        replica1.get(1, "", () -> {
+          loads.incrementAndGet();
+          replica2.invalidate(1, List.of(""));
+          return aggregate();
+        }, cached -> true);
+        assertFalse(server.containsKey("product-composite:aggregate:1:"));
+
+        // In memory until the invalidation reaches this replica
+        awaitLoads(() -> replica1.get(1, "", () -> {
+          loads.incrementAndGet();
+          return aggregate();
+        }, cached -> true), loads, 2);
+        assertTrue(server.containsKey("product-composite:aggregate:1:"));
+
+        // Written through the loading replica itself
+        replica2.get(2, "", () -> {
+          loads.incrementAndGet();
+          replica2.invalidate(2, List.of(""));
+          return aggregate();
+        }, cached -> true);
+        replica2.get(2, "", () -> {
+          loads.incrementAndGet();
+          return aggregate();
+        }, cached -> true);
+        assertEquals(4, loads.get());
+      } finally {
+        client1.destroy();
+        client2.destroy();
+      }
+    }
+  }
+
+  @Test
+  void buildsAggregatesWhenSharedCacheIsDown() throws IOException {
+    EmbeddedRedisServer server = new EmbeddedRedisServer();
+    RedisSharedCacheClient client = new RedisSharedCacheClient(server.uri(), Duration.ofMillis(200));
+    try {
+      AggregateCache cache = new AggregateCache(mapper, Duration.ofMillis(1), 100,
+        Storage.HEAP, key -> false, client, null);
+      server.close();
+      AtomicInteger loads = new AtomicInteger();
+
+      assertEquals("\"1-abc\"", cache.get(1, "", () -> {
+        loads.incrementAndGet();
+        return aggregate();
+      }, cached -> true).entityTag());
+      assertEquals(1, loads.get());
+      cache.invalidate(1, List.of(""));
+    } finally {
+      client.destroy();
+    }
+  }
+
+  private static ProductAggregate aggregate() {
+    return new ProductAggregate(1, "name", 1, null, List.of(new ReviewSummary(1, "author", "subject", "content")),
+      new ServiceAddresses("c", "p", "r", null), "\"1-abc\"");
+  }
+
+  private static void awaitLoads(Runnable lookup, AtomicInteger loads, int expected) throws InterruptedException {
+    for (int i = 0; i < 100 && loads.get() < expected; i++) {
+      lookup.run();
+      Thread.sleep(10);
+    }
+    assertEquals(expected, loads.get());
+  }
+}
@@ -12,6 +12,9 @@ public class ProductEntity {
 
   @Version private Integer version;
 
+  // Drawn when the product is created, so the tags of a deleted product never match it created again
+  private long generation;
+
   @Indexed(unique = true)
   private int productId;
 
@@ -42,6 +45,14 @@ public class ProductEntity {
     this.version = version;
   }
 
+  public long getGeneration() {
+    return generation;
+  }
+
+  public void setGeneration(long generation) {
+    this.generation = generation;
+  }
+
   public int getProductId() {
     return productId;
   }
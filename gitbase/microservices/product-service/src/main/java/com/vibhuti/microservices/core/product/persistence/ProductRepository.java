@@ -1,9 +1,18 @@
 package com.vibhuti.microservices.core.product.persistence;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
 public interface ProductRepository extends PagingAndSortingRepository<ProductEntity, String>, CrudRepository<ProductEntity, String> {
   Optional<ProductEntity> findByProductId(int productId);
+
+  List<ProductEntity> findByProductIdIn(Collection<Integer> productIds);
+
+  // Only productId is read, from the unique index on it
+  @Query(value = "{}", fields = "{ 'productId' : 1, '_id' : 0 }")
+  List<ProductEntity> findAllProductIds();
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.vibhuti.microservices.core.product.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.event.ChangeEvent;
+import com.vibhuti.microservices.core.product.persistence.ProductEntity;
+import com.vibhuti.microservices.util.MongoChangeFeed;
+import com.vibhuti.microservices.util.ServiceUtil;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * The changes of the products collection, as NDJSON or server-sent events, read from a
+ * MongoDB change stream. Unlike the RSocket events, a consumer that reconnects with the
+ * resume token of the last event it received misses none.
+ */
+@RestController
+public class ProductChangeFeedController implements DisposableBean {
+
+	private final MongoChangeFeed<ProductEntity, Product> changeFeed;
+
+	public ProductChangeFeedController(MongoTemplate mongoTemplate, ProductMapper productMapper,
+			ServiceUtil serviceUtil, @Value("${app.change-feed.max-await:1s}") Duration maxAwait,
+			@Value("${app.change-feed.max-consumers:20}") int maxConsumers) {
+
+		this.changeFeed = new MongoChangeFeed<>(mongoTemplate, ProductEntity.class, entity -> {
+			Product product = productMapper.entityToApi(entity);
+			product.setServiceAddress(serviceUtil.getServiceAddress());
+			return product;
+		}, maxAwait, maxConsumers);
+	}
+
+	@Override
+	public void destroy() {
+		changeFeed.dispose();
+	}
+
+	/**
+	 * Sample usage: "curl -N $HOST:$PORT/product/changes?resumeAfter=8264...".
+	 *
+	 * @param resumeAfter resume token of the last event received, none for changes from now on
+	 * @return a SUBSCRIBED event with the current resume token, then the changes, endless
+	 */
+	@GetMapping(value = "/product/changes", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Flux<ChangeEvent<Integer, Product>> getChanges(
+			@RequestParam(value = "resumeAfter", required = false) String resumeAfter) {
+		return changeFeed.changes(resumeAfter);
+	}
+
+	/**
+	 * The resume token is the id of each event, so a reconnecting EventSource resumes
+	 * from its Last-Event-ID.
+	 */
+	@GetMapping(value = "/product/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public Flux<ServerSentEvent<ChangeEvent<Integer, Product>>> getChangeEvents(
+			@RequestParam(value = "resumeAfter", required = false) String resumeAfter,
+			@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+		return changeFeed.changes(lastEventId != null ? lastEventId : resumeAfter)
+				.map(change -> ServerSentEvent.builder(change).id(change.getResumeToken())
+						.event(change.getEventType().name()).build());
+	}
+}
@@ -0,0 +1,41 @@
+package com.vibhuti.microservices.core.product.services;
+
+import java.util.ArrayList;
+
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.util.CommandBatch;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Applies batches of create and delete commands queued by the composite. The
+ * composite sends a batch again until it succeeds, creates of products that exist
+ * already are skipped and deletes are idempotent, so a batch can be applied twice.
+ */
+@Controller
+public class ProductCommandController {
+
+	// Rather than List<Event<Integer, Product>>, whose nested type argument isn't resolved for the payload
+	static class Commands extends ArrayList<Event<Integer, Product>> {
+	}
+
+	private final ProductServiceImpl productService;
+
+	public ProductCommandController(ProductServiceImpl productService) {
+		this.productService = productService;
+	}
+
+	@MessageMapping("product.commands")
+	public Mono<Void> apply(Commands commands) {
+		return Mono.<Void>fromRunnable(() -> CommandBatch.apply(commands, productService::createProducts,
+				productService::deleteProduct))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+}
@@ -1,5 +1,7 @@
 package com.vibhuti.microservices.core.product.services;
 
+import java.util.List;
+
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
@@ -19,8 +21,11 @@ public interface ProductMapper {
   })
   Product entityToApi(ProductEntity entity);
 
+  List<Product> entityListToApiList(List<ProductEntity> entities);
+
   @Mappings({
-    @Mapping(target = "id", ignore = true), @Mapping(target = "version", ignore = true)
+    @Mapping(target = "id", ignore = true), @Mapping(target = "version", ignore = true),
+    @Mapping(target = "generation", ignore = true)
   })
   ProductEntity apiToEntity(Product api);
 }
\ No newline at end of file
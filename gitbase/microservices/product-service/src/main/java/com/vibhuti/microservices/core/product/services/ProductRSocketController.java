@@ -0,0 +1,116 @@
+package com.vibhuti.microservices.core.product.services;
+
+import java.util.List;
+
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+
+import com.vibhuti.microservices.api.core.Modification;
+import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.product.ProductPatch;
+import com.vibhuti.microservices.api.core.product.ProductService;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.util.EventPublisher;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Exposes {@link ProductService} over RSocket, multi-ID lookups as a request-stream
+ * and everything else as request-response. The repository is blocking, so calls
+ * are moved off the RSocket event loop.
+ */
+@Controller
+public class ProductRSocketController {
+
+	private final ProductService productService;
+	private final EventPublisher eventPublisher;
+
+	public ProductRSocketController(ProductService productService, EventPublisher eventPublisher) {
+		this.productService = productService;
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Creates and deletes from now on, as an endless stream.
+	 */
+	@MessageMapping("product.events")
+	public Flux<Event<?, ?>> events() {
+		return eventPublisher.events();
+	}
+
+	@MessageMapping("product.get.{productId}")
+	public Mono<Product> getProduct(@DestinationVariable int productId) {
+		return Mono.fromCallable(() -> productService.getProduct(productId))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("products.batch")
+	public Flux<Product> getProducts(List<Integer> productIds) {
+		return Flux.defer(() -> Flux.fromIterable(productService.getProducts(productIds)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("product.ids")
+	public Flux<Integer> getProductIds() {
+		return Flux.defer(() -> Flux.fromIterable(productService.getProductIds()))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	@MessageMapping("product.modifications.{afterTime}.{afterProductId}.{limit}")
+	public Flux<Modification> getProductModifications(@DestinationVariable long afterTime,
+			@DestinationVariable int afterProductId, @DestinationVariable int limit) {
+		return Flux.defer(() -> Flux.fromIterable(productService.getProductModifications(afterTime, afterProductId,
+				limit)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	/**
+	 * Read as fast as the requester requests them, over RSocket's request-n.
+	 */
+	@MessageMapping("product.export")
+	public Flux<Product> exportProducts() {
+		return productService.exportProducts()
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("product.create")
+	public Mono<Product> createProduct(Product body) {
+		return Mono.fromCallable(() -> productService.createProduct(body))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	/**
+	 * The If-Match header travels in the route, {@code *} when the update applies to
+	 * any version.
+	 */
+	@MessageMapping("product.update.{productId}.{ifMatch}")
+	public Mono<Product> updateProduct(@DestinationVariable int productId, @DestinationVariable String ifMatch,
+			Product body) {
+		return Mono.fromCallable(() -> productService.updateProduct(productId, ifMatch, body))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("product.patch.{productId}.{ifMatch}")
+	public Mono<Product> patchProduct(@DestinationVariable int productId, @DestinationVariable String ifMatch,
+			ProductPatch body) {
+		return Mono.fromCallable(() -> productService.patchProduct(productId, ifMatch, body))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("product.delete.{productId}")
+	public Mono<Void> deleteProduct(@DestinationVariable int productId) {
+		return Mono.<Void>fromRunnable(() -> productService.deleteProduct(productId))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+}
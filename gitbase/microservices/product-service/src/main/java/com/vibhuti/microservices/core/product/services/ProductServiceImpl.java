@@ -1,18 +1,49 @@
 package com.vibhuti.microservices.core.product.services;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators.Add;
+import org.springframework.data.mongodb.core.aggregation.BooleanOperators.And;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators.Eq;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators.Cond;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators.IfNull;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators.Literal;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.vibhuti.microservices.api.EntityTags;
 import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.product.ProductPatch;
 import com.vibhuti.microservices.api.core.product.ProductService;
+import com.vibhuti.microservices.api.core.Modification;
+import com.vibhuti.microservices.api.event.Event;
 import com.vibhuti.microservices.core.product.persistence.ProductEntity;
 import com.vibhuti.microservices.core.product.persistence.ProductRepository;
 import com.vibhuti.microservices.exception.InvalidInputException;
 import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.exception.PreconditionFailedException;
+import com.vibhuti.microservices.util.EventPublisher;
+import com.vibhuti.microservices.util.HotKeyTracker;
+import com.vibhuti.microservices.util.MongoModifications;
 import com.vibhuti.microservices.util.ServiceUtil;
 
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
 @RestController
 public class ProductServiceImpl implements ProductService {
 	private static final Logger LOG = LoggerFactory.getLogger(ProductServiceImpl.class);
@@ -20,12 +51,26 @@ public class ProductServiceImpl implements ProductService {
 	private final ServiceUtil serviceUtil;
 	private final ProductRepository productRepository;
 	private final ProductMapper productMapper;
+	private final HotKeyTracker hotKeyTracker;
+	private final EventPublisher eventPublisher;
+	private final MongoTemplate mongoTemplate;
+	private final MongoModifications modifications;
+	// Set when app.create-mode is UPSERT, creates then replace an existing product
+	private final boolean upsert;
 
 	//@Autowired
-	public ProductServiceImpl(ServiceUtil serviceUtil,ProductRepository productRepository,ProductMapper productMapper) {
+	public ProductServiceImpl(ServiceUtil serviceUtil,ProductRepository productRepository,ProductMapper productMapper,
+			HotKeyTracker hotKeyTracker, EventPublisher eventPublisher, MongoTemplate mongoTemplate,
+			@Value("${app.modifications.settle-time:5s}") Duration settleTime,
+			@Value("${app.create-mode:INSERT}") String createMode) {
 		this.serviceUtil = serviceUtil;
 		this.productRepository = productRepository;
 		this.productMapper = productMapper;
+		this.hotKeyTracker = hotKeyTracker;
+		this.eventPublisher = eventPublisher;
+		this.mongoTemplate = mongoTemplate;
+		this.modifications = new MongoModifications(mongoTemplate, "products_last_modified", settleTime);
+		this.upsert = "UPSERT".equalsIgnoreCase(createMode);
 	}
 
 	@Override
@@ -33,6 +78,7 @@ public class ProductServiceImpl implements ProductService {
 		if (productId < 1) {
 			throw new InvalidInputException("Invalid productId: " + productId);
 		}
+		this.hotKeyTracker.record(productId);
 		ProductEntity productEntity = this.productRepository.findByProductId(productId).orElseThrow(
 				()-> new NotFoundException("No product found for productId: " + productId));
 		Product product = this.productMapper.entityToApi(productEntity);
@@ -40,12 +86,64 @@ public class ProductServiceImpl implements ProductService {
 		return product;
 	}
 
+	@Override
+	public List<Product> getProducts(List<Integer> productIds) {
+		productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+			throw new InvalidInputException("Invalid productId: " + productId);
+		});
+		// The composite batches its single lookups, so most lookups arrive here
+		productIds.forEach(this.hotKeyTracker::record);
+		List<Product> list = this.productMapper.entityListToApiList(this.productRepository.findByProductIdIn(productIds));
+		list.forEach(product -> product.setServiceAddress(this.serviceUtil.getServiceAddress()));
+		LOG.debug("getProducts: found {} of {} products", list.size(), productIds.size());
+		return list;
+	}
+
+	@Override
+	public List<Integer> getProductIds() {
+		List<Integer> productIds = this.productRepository.findAllProductIds().stream().map(ProductEntity::getProductId)
+				.collect(Collectors.toList());
+		LOG.debug("getProductIds: found {} products", productIds.size());
+		return productIds;
+	}
+
+	@Override
+	public List<Modification> getProductModifications(long afterTime, int afterProductId, int limit) {
+		List<Modification> list = this.modifications.after(afterTime, afterProductId, limit);
+		LOG.debug("getProductModifications: found {} after {}/{}", list.size(), afterTime, afterProductId);
+		return list;
+	}
+
+	/**
+	 * Reads the products from a cursor on the unique productId index, a batch at a time
+	 * as they are requested, the cursor is closed on completion and on cancel.
+	 */
+	@Override
+	public Flux<Product> exportProducts() {
+		Query query = new Query().with(Sort.by("productId"));
+		return Flux.fromStream(() -> this.mongoTemplate.stream(query, ProductEntity.class))
+				.map(productEntity -> {
+					Product product = this.productMapper.entityToApi(productEntity);
+					product.setServiceAddress(this.serviceUtil.getServiceAddress());
+					return product;
+				})
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
 	@Override
 	public Product createProduct(Product body) {
+		if (this.upsert) {
+			return upsertProduct(body);
+		}
 		try {
+			// Before the write, a failed write is listed as a modification rather than a write missed
+			long touchedAt = this.modifications.touch(List.of(body.getProductId()));
 			ProductEntity productEntity = this.productMapper.apiToEntity(body);
+			productEntity.setGeneration(EntityTags.newGeneration());
 			ProductEntity savedProductEntity = this.productRepository.save(productEntity);
+			this.modifications.touchAgainIfLate(List.of(body.getProductId()), touchedAt);
 		    LOG.debug("createProduct: entity created for productId: {}", body.getProductId());
+			publishCreated(savedProductEntity);
 			return this.productMapper.entityToApi(savedProductEntity);
 		} catch (DuplicateKeyException e) {
 			throw new InvalidInputException("Duplicate key, Product Id: " + 
@@ -54,9 +152,138 @@ public class ProductServiceImpl implements ProductService {
 		
 	}
 
+	/**
+	 * One findAndModify on the unique productId index, upserting, with an update pipeline
+	 * that increases the version only if a field changes, and draws the generation only
+	 * if the product is inserted. A retried create leaves the product and its version as
+	 * they are, and two creates of a new product don't fail on the index, the server
+	 * retries the upsert that lost.
+	 */
+	private Product upsertProduct(Product body) {
+		long touchedAt = this.modifications.touch(List.of(body.getProductId()));
+		AggregationExpression unchanged = And.and(Eq.valueOf("name").equalTo(Literal.asLiteral(body.getName())),
+				Eq.valueOf("weight").equalToValue(body.getWeight()));
+		AggregationUpdate update = AggregationUpdate.update()
+				.set(SetOperation.set("version").toValue(Cond.when(unchanged)
+						.thenValueOf(IfNull.ifNull("version").then(0))
+						.otherwiseValueOf(Add.valueOf(IfNull.ifNull("version").then(-1)).add(1))))
+				.set(SetOperation.set("name").toValue(Literal.asLiteral(body.getName()))
+						.and().set("weight").toValue(body.getWeight())
+						.and().set("generation").toValue(IfNull.ifNull("generation").then(EntityTags.newGeneration())));
+		ProductEntity productEntity = this.mongoTemplate.findAndModify(
+				Query.query(Criteria.where("productId").is(body.getProductId())), update,
+				FindAndModifyOptions.options().upsert(true).returnNew(true), ProductEntity.class);
+		this.modifications.touchAgainIfLate(List.of(body.getProductId()), touchedAt);
+		LOG.debug("createProduct: entity upserted for productId: {}, version: {}", body.getProductId(),
+				productEntity.getVersion());
+		publishCreated(productEntity);
+		return this.productMapper.entityToApi(productEntity);
+	}
+
+	/**
+	 * Creates the products with one insert, for the queued commands and the bulk import
+	 * of the composite. Products that exist already are skipped.
+	 */
+	@Override
+	public void createProducts(List<Product> products) {
+		try {
+			List<ProductEntity> productEntities = products.stream().map(this.productMapper::apiToEntity)
+					.collect(Collectors.toList());
+			productEntities.forEach(productEntity -> productEntity.setGeneration(EntityTags.newGeneration()));
+			List<Integer> productIds = products.stream().map(Product::getProductId).toList();
+			long touchedAt = this.modifications.touch(productIds);
+			Iterable<ProductEntity> savedProductEntities = this.productRepository.saveAll(productEntities);
+			this.modifications.touchAgainIfLate(productIds, touchedAt);
+			savedProductEntities.forEach(this::publishCreated);
+			LOG.debug("createProducts: {} entities created", products.size());
+		} catch (DuplicateKeyException e) {
+			// The insert stops at the first duplicate, the products before it are stored without their events
+			LOG.debug("createProducts: duplicate key in batch of {}, creates them one by one", products.size());
+			for (Product product : products) {
+				try {
+					createProduct(product);
+				} catch (InvalidInputException duplicate) {
+					this.productRepository.findByProductId(product.getProductId()).ifPresent(this::publishCreated);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Product updateProduct(int productId, String ifMatch, Product body) {
+		return update(productId, ifMatch, new Update().set("name", body.getName()).set("weight", body.getWeight()));
+	}
+
+	@Override
+	public Product patchProduct(int productId, String ifMatch, ProductPatch body) {
+		Update update = new Update();
+		if (body.getName() != null) {
+			update.set("name", body.getName());
+		}
+		if (body.getWeight() != null) {
+			update.set("weight", body.getWeight());
+		}
+		return update(productId, ifMatch, update);
+	}
+
+	/**
+	 * Applies the update with one findAndModify, conditional on the revisions of the
+	 * If-Match tags, so a concurrent update in between makes it fail rather than be
+	 * overwritten, and so does a delete and create again, which draws another generation.
+	 * Only a failed update looks the product up, to tell 404 from 412.
+	 */
+	private Product update(int productId, String ifMatch, Update update) {
+		if (productId < 1) {
+			throw new InvalidInputException("Invalid productId: " + productId);
+		}
+		Criteria criteria = Criteria.where("productId").is(productId);
+		if (!EntityTags.matchesAny(ifMatch)) {
+			List<Criteria> revisions = EntityTags.revisions(ifMatch).stream().map(ProductServiceImpl::isAt).toList();
+			if (revisions.isEmpty()) {
+				throw preconditionFailedOrNotFound(productId);
+			}
+			criteria = criteria.orOperator(revisions);
+		}
+		long touchedAt = this.modifications.touch(List.of(productId));
+		ProductEntity productEntity = this.mongoTemplate.findAndModify(new Query(criteria), update.inc("version", 1),
+				FindAndModifyOptions.options().returnNew(true), ProductEntity.class);
+		this.modifications.touchAgainIfLate(List.of(productId), touchedAt);
+		if (productEntity == null) {
+			throw preconditionFailedOrNotFound(productId);
+		}
+		LOG.debug("update: entity updated to version {} for productId: {}", productEntity.getVersion(), productId);
+		publishCreated(productEntity);
+		Product product = this.productMapper.entityToApi(productEntity);
+		product.setServiceAddress(this.serviceUtil.getServiceAddress());
+		return product;
+	}
+
+	// Products stored before generations were added have none, their tags carry 0
+	private static Criteria isAt(EntityTags.Revision revision) {
+		Criteria version = Criteria.where("version").is(revision.version());
+		return revision.generation() == 0 ? version.and("generation").in(0L, null)
+				: version.and("generation").is(revision.generation());
+	}
+
+	private RuntimeException preconditionFailedOrNotFound(int productId) {
+		if (this.mongoTemplate.exists(Query.query(Criteria.where("productId").is(productId)), ProductEntity.class)) {
+			return new PreconditionFailedException("Product has been modified, productId: " + productId);
+		}
+		return new NotFoundException("No product found for productId: " + productId);
+	}
+
 	@Override
 	public void deleteProduct(int productId) {
 		LOG.debug("deleteProduct: tries to delete an entity with productId: {}", productId);
+		long touchedAt = this.modifications.touch(List.of(productId));
 	    this.productRepository.findByProductId(productId).ifPresent(e -> this.productRepository.delete(e));	
+		this.modifications.touchAgainIfLate(List.of(productId), touchedAt);
+		this.eventPublisher.publish(new Event<>(Event.Type.DELETE, productId, null));
+	}
+
+	private void publishCreated(ProductEntity productEntity) {
+		Product created = this.productMapper.entityToApi(productEntity);
+		created.setServiceAddress(this.serviceUtil.getServiceAddress());
+		this.eventPublisher.publish(new Event<>(Event.Type.CREATE, created.getProductId(), created));
 	}
 }
\ No newline at end of file
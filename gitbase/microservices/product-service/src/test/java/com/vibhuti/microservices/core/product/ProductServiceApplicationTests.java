@@ -2,34 +2,57 @@ package com.vibhuti.microservices.core.product;
 
 import static reactor.core.publisher.Mono.just;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+
+import java.time.Duration;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import com.vibhuti.microservices.api.core.product.Product;
+import com.vibhuti.microservices.api.core.product.ProductPatch;
+import com.vibhuti.microservices.api.event.ChangeEvent;
+import com.vibhuti.microservices.api.event.Event;
 import com.vibhuti.microservices.core.product.persistence.ProductRepository;
+import com.vibhuti.microservices.core.product.services.ProductServiceImpl;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
 
-@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+// Modifications are listed right away
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "app.modifications.settle-time=0s")
 class ProductServiceApplicationTests extends MongoDbTestBase{
 
 	@Autowired
 	private WebTestClient client;
 	@Autowired
 	private ProductRepository repository;
+	@Autowired
+	private ProductServiceImpl productService;
+	@Autowired
+	private MongoTemplate mongoTemplate;
 
 	@BeforeEach
 	public void setupDb() {
 		this.repository.deleteAll();
+		this.mongoTemplate.remove(new Query(), "products_last_modified");
 	}
 
 	@Test
@@ -40,6 +63,82 @@ class ProductServiceApplicationTests extends MongoDbTestBase{
 		getAndVerifyProduct(productId, HttpStatus.OK).jsonPath("$.productId").isEqualTo(productId);
 	}
 
+	@Test
+	void getProductsByIds() {
+		postAndVerifyProduct(1, HttpStatus.OK);
+		postAndVerifyProduct(2, HttpStatus.OK);
+		getAndVerifyProduct("/batch?productIds=1,2,13", HttpStatus.OK).jsonPath("$.length()").isEqualTo(2);
+		getAndVerifyProduct("/batch?productIds=1,-1", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid productId: -1");
+	}
+
+	@Test
+	void getProductIds() {
+		postAndVerifyProduct(1, HttpStatus.OK);
+		postAndVerifyProduct(2, HttpStatus.OK);
+		getAndVerifyProduct("/ids", HttpStatus.OK).jsonPath("$.length()").isEqualTo(2).jsonPath("$[0]").isEqualTo(1);
+	}
+
+	@Test
+	void getProductModifications() {
+		postAndVerifyProduct(1, HttpStatus.OK);
+		postAndVerifyProduct(2, HttpStatus.OK);
+		deleteAndVerifyProduct(1, HttpStatus.OK);
+		getAndVerifyProduct("/modifications?afterTime=0&afterProductId=0&limit=10", HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(2);
+		getAndVerifyProduct("/modifications?afterTime=0&afterProductId=0&limit=1", HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(1);
+		getAndVerifyProduct("/modifications?afterTime=0&afterProductId=0&limit=0", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid limit: 0");
+	}
+
+	@Test
+	void exportProductsInProductIdOrder() {
+		postAndVerifyProduct(3, HttpStatus.OK);
+		postAndVerifyProduct(1, HttpStatus.OK);
+		postAndVerifyProduct(2, HttpStatus.OK);
+
+		StepVerifier.create(client.get().uri("/product/export").accept(APPLICATION_NDJSON).exchange()
+				.expectStatus().isOk()
+				.returnResult(Product.class).getResponseBody().map(Product::getProductId))
+				.expectNext(1, 2, 3)
+				.verifyComplete();
+	}
+
+	@Test
+	void getProductNotModified() {
+		postAndVerifyProduct(1, HttpStatus.OK);
+		String entityTag = client.get().uri("/product/1").accept(APPLICATION_JSON).exchange().expectStatus().isOk()
+				.returnResult(Product.class).getResponseHeaders().getETag();
+		assertNotNull(entityTag);
+		client.get().uri("/product/1").accept(APPLICATION_JSON).header("If-None-Match", entityTag).exchange()
+				.expectStatus().isNotModified();
+	}
+
+	@Test
+	void updateProductIfMatch() {
+		postAndVerifyProduct(1, HttpStatus.OK);
+		String entityTag = client.get().uri("/product/1").accept(APPLICATION_JSON).exchange().expectStatus().isOk()
+				.returnResult(Product.class).getResponseHeaders().getETag();
+
+		client.put().uri("/product/1").header("If-Match", entityTag).bodyValue(new Product(1, "Updated", 2, null))
+				.accept(APPLICATION_JSON).exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueMatches("ETag", "\"1-.*")
+				.expectBody().jsonPath("$.name").isEqualTo("Updated");
+
+		// The tag is of the version before the update
+		client.patch().uri("/product/1").header("If-Match", entityTag).bodyValue(new ProductPatch(null, 3))
+				.accept(APPLICATION_JSON).exchange()
+				.expectStatus().isEqualTo(PRECONDITION_FAILED);
+		client.patch().uri("/product/1").bodyValue(new ProductPatch(null, 3)).accept(APPLICATION_JSON).exchange()
+				.expectStatus().isOk()
+				.expectBody().jsonPath("$.name").isEqualTo("Updated").jsonPath("$.weight").isEqualTo(3);
+		client.patch().uri("/product/13").bodyValue(new ProductPatch(null, 3)).accept(APPLICATION_JSON).exchange()
+				.expectStatus().isNotFound();
+		assertEquals(2, this.repository.findByProductId(1).get().getVersion().intValue());
+	}
+
 	   @Test
 	void getProductInvalidParameterString() {
 		getAndVerifyProduct("/no-integer", BAD_REQUEST).jsonPath("$.path").isEqualTo("/product/no-integer");
@@ -56,6 +155,15 @@ class ProductServiceApplicationTests extends MongoDbTestBase{
 	      .jsonPath("$.message").isEqualTo("Duplicate key, Product Id: " + productId);
 	  }
 
+	@Test
+	void createProductsSkipsDuplicates() {
+		postAndVerifyProduct(2, HttpStatus.OK);
+		this.productService.createProducts(List.of(new Product(1, "n1", 1, null), new Product(2, "n2", 2, null),
+				new Product(3, "n3", 3, null)));
+		assertEquals(3, this.repository.count());
+		assertEquals("Name 2", this.repository.findByProductId(2).get().getName());
+	}
+
 	@Test
 	void getProductNotFound() {
 		int productIdNotFound = 13;
@@ -75,6 +183,24 @@ class ProductServiceApplicationTests extends MongoDbTestBase{
 		deleteAndVerifyProduct(productId, HttpStatus.OK);
 	}
 
+	@Test
+	void resumesChangesAfterToken() {
+		String resumeToken = getChanges("").blockFirst(Duration.ofSeconds(10)).getResumeToken();
+		postAndVerifyProduct(21, HttpStatus.OK);
+		deleteAndVerifyProduct(21, HttpStatus.OK);
+
+		StepVerifier.create(getChanges("?resumeAfter=" + resumeToken).take(3))
+				.expectNextMatches(change -> change.getEventType() == Event.Type.SUBSCRIBED)
+				.expectNextMatches(change -> change.getEventType() == Event.Type.CREATE && change.getKey() == 21
+						&& change.getData().getName().equals("Name 21"))
+				.expectNextMatches(change -> change.getEventType() == Event.Type.DELETE && change.getKey() == 21)
+				.expectComplete()
+				.verify(Duration.ofSeconds(10));
+
+		client.get().uri("/product/changes?resumeAfter=no-token").accept(APPLICATION_NDJSON).exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY);
+	}
+
 	@Test
 	void getProductInvalidParameterNegativeValue() {
 		int productIdInvalid = -1;
@@ -104,6 +230,13 @@ class ProductServiceApplicationTests extends MongoDbTestBase{
 				.isEqualTo(expectedStatus).expectHeader().contentType(APPLICATION_JSON).expectBody();
 	}
 
+	private Flux<ChangeEvent<Integer, Product>> getChanges(String query) {
+		return client.get().uri("/product/changes" + query).accept(APPLICATION_NDJSON).exchange()
+				.expectStatus().isOk()
+				.returnResult(new ParameterizedTypeReference<ChangeEvent<Integer, Product>>() {})
+				.getResponseBody();
+	}
+
 	private WebTestClient.BodyContentSpec deleteAndVerifyProduct(int productId, HttpStatus expectedStatus) {
 		return client.delete().uri("/product/" + productId).accept(APPLICATION_JSON).exchange().expectStatus()
 				.isEqualTo(expectedStatus).expectBody();
@@ -18,6 +18,9 @@ public class RecommendationEntity {
   @Version
   private Integer version;
 
+  // Random per creation, missing in recommendations stored before it was added, which read as 0
+  private long generation;
+
   private int productId;
   private int recommendationId;
   private String author;
@@ -71,6 +74,14 @@ public class RecommendationEntity {
     this.version = version;
   }
 
+  public long getGeneration() {
+    return generation;
+  }
+
+  public void setGeneration(long generation) {
+    this.generation = generation;
+  }
+
   public void setProductId(int productId) {
     this.productId = productId;
   }
@@ -1,8 +1,11 @@
 package com.vibhuti.microservices.core.review.recommendation.persistence;
 
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.repository.CrudRepository;
 
 public interface RecommendationRepository extends CrudRepository<RecommendationEntity, String> {
   List<RecommendationEntity> findByProductId(int productId);
+
+  List<RecommendationEntity> findByProductIdIn(Collection<Integer> productIds);
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.vibhuti.microservices.core.review.recommendation.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.event.ChangeEvent;
+import com.vibhuti.microservices.core.review.recommendation.persistence.RecommendationEntity;
+import com.vibhuti.microservices.util.MongoChangeFeed;
+import com.vibhuti.microservices.util.ServiceUtil;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * The changes of the recommendations collection, as NDJSON or server-sent events, read from a
+ * MongoDB change stream. Unlike the RSocket events, a consumer that reconnects with the
+ * resume token of the last event it received misses none.
+ */
+@RestController
+public class RecommendationChangeFeedController implements DisposableBean {
+
+	private final MongoChangeFeed<RecommendationEntity, Recommendation> changeFeed;
+
+	public RecommendationChangeFeedController(MongoTemplate mongoTemplate, RecommendationMapper recommendationMapper,
+			ServiceUtil serviceUtil, @Value("${app.change-feed.max-await:1s}") Duration maxAwait,
+			@Value("${app.change-feed.max-consumers:20}") int maxConsumers) {
+
+		this.changeFeed = new MongoChangeFeed<>(mongoTemplate, RecommendationEntity.class, entity -> {
+			Recommendation recommendation = recommendationMapper.entityToApi(entity);
+			recommendation.setServiceAddress(serviceUtil.getServiceAddress());
+			return recommendation;
+		}, maxAwait, maxConsumers);
+	}
+
+	@Override
+	public void destroy() {
+		changeFeed.dispose();
+	}
+
+	/**
+	 * Sample usage: "curl -N $HOST:$PORT/recommendation/changes?resumeAfter=8264...".
+	 *
+	 * @param resumeAfter resume token of the last event received, none for changes from now on
+	 * @return a SUBSCRIBED event with the current resume token, then the changes, endless
+	 */
+	@GetMapping(value = "/recommendation/changes", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Flux<ChangeEvent<Integer, Recommendation>> getChanges(
+			@RequestParam(value = "resumeAfter", required = false) String resumeAfter) {
+		return changeFeed.changes(resumeAfter);
+	}
+
+	/**
+	 * The resume token is the id of each event, so a reconnecting EventSource resumes
+	 * from its Last-Event-ID.
+	 */
+	@GetMapping(value = "/recommendation/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public Flux<ServerSentEvent<ChangeEvent<Integer, Recommendation>>> getChangeEvents(
+			@RequestParam(value = "resumeAfter", required = false) String resumeAfter,
+			@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+		return changeFeed.changes(lastEventId != null ? lastEventId : resumeAfter)
+				.map(change -> ServerSentEvent.builder(change).id(change.getResumeToken())
+						.event(change.getEventType().name()).build());
+	}
+}
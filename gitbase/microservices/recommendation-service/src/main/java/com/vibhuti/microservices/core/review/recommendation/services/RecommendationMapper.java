@@ -22,7 +22,8 @@ public interface RecommendationMapper {
   @Mappings({
     @Mapping(target = "rating", source = "api.rate"),
     @Mapping(target = "id", ignore = true),
-    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "version", ignore = true),
+    @Mapping(target = "generation", ignore = true)
   })
   RecommendationEntity apiToEntity(Recommendation api);
 
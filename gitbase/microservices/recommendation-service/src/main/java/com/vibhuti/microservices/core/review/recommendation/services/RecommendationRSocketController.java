@@ -0,0 +1,94 @@
+package com.vibhuti.microservices.core.review.recommendation.services;
+
+import java.util.List;
+
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+
+import com.vibhuti.microservices.api.core.Modification;
+import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.core.recommendation.RecommendationService;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.util.EventPublisher;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Exposes {@link RecommendationService} over RSocket. Recommendations of a product
+ * are sent as a request-stream, so the requester controls the pace with its demand.
+ */
+@Controller
+public class RecommendationRSocketController {
+
+	private final RecommendationService recommendationService;
+	private final EventPublisher eventPublisher;
+
+	public RecommendationRSocketController(RecommendationService recommendationService, EventPublisher eventPublisher) {
+		this.recommendationService = recommendationService;
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Creates and deletes from now on, as an endless stream.
+	 */
+	@MessageMapping("recommendation.events")
+	public Flux<Event<?, ?>> events() {
+		return eventPublisher.events();
+	}
+
+	@MessageMapping("recommendations.get.{productId}")
+	public Flux<Recommendation> getRecommendations(@DestinationVariable int productId) {
+		return Flux.defer(() -> Flux.fromIterable(recommendationService.getRecommendations(productId)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("recommendations.batch")
+	public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+		return Flux.defer(() -> Flux.fromIterable(recommendationService.getRecommendationsForProducts(productIds)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("recommendation.modifications.{afterTime}.{afterProductId}.{limit}")
+	public Flux<Modification> getRecommendationModifications(@DestinationVariable long afterTime,
+			@DestinationVariable int afterProductId, @DestinationVariable int limit) {
+		return Flux.defer(() -> Flux.fromIterable(recommendationService.getRecommendationModifications(afterTime,
+				afterProductId, limit)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("recommendation.export")
+	public Flux<Recommendation> exportRecommendations() {
+		return recommendationService.exportRecommendations()
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("recommendation.create")
+	public Mono<Recommendation> createRecommendation(Recommendation body) {
+		return Mono.fromCallable(() -> recommendationService.createRecommendation(body))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("recommendation.update.{productId}.{recommendationId}.{ifMatch}")
+	public Mono<Recommendation> updateRecommendation(@DestinationVariable int productId,
+			@DestinationVariable int recommendationId, @DestinationVariable String ifMatch, Recommendation body) {
+		return Mono.fromCallable(() -> recommendationService.updateRecommendation(productId, recommendationId,
+				ifMatch, body))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("recommendations.delete.{productId}")
+	public Mono<Void> deleteRecommendations(@DestinationVariable int productId) {
+		return Mono.<Void>fromRunnable(() -> recommendationService.deleteRecommendations(productId))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+}
@@ -1,20 +1,48 @@
 package com.vibhuti.microservices.core.review.recommendation.services;
 
+import java.time.Duration;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators.Add;
+import org.springframework.data.mongodb.core.aggregation.BooleanOperators.And;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators.Eq;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators.Cond;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators.IfNull;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators.Literal;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.vibhuti.microservices.api.EntityTags;
+import com.vibhuti.microservices.api.core.Modification;
 import com.vibhuti.microservices.api.core.recommendation.Recommendation;
 import com.vibhuti.microservices.api.core.recommendation.RecommendationService;
+import com.vibhuti.microservices.api.event.Event;
 import com.vibhuti.microservices.core.review.recommendation.persistence.RecommendationEntity;
 import com.vibhuti.microservices.core.review.recommendation.persistence.RecommendationRepository;
 import com.vibhuti.microservices.exception.InvalidInputException;
+import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.exception.PreconditionFailedException;
+import com.vibhuti.microservices.util.EventPublisher;
+import com.vibhuti.microservices.util.HotKeyTracker;
+import com.vibhuti.microservices.util.MongoModifications;
 import com.vibhuti.microservices.util.ServiceUtil;
 
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
 @RestController
 public class RecommendationServiceImpl implements RecommendationService {
 
@@ -23,13 +51,27 @@ public class RecommendationServiceImpl implements RecommendationService {
 	private final ServiceUtil serviceUtil;
 	private final RecommendationMapper recommendationMapper;
 	private final RecommendationRepository recommendationRepository;
+	private final HotKeyTracker hotKeyTracker;
+	private final EventPublisher eventPublisher;
+	private final MongoTemplate mongoTemplate;
+	private final MongoModifications modifications;
+	// Set when app.create-mode is UPSERT, creates then replace an existing recommendation
+	private final boolean upsert;
 
 	@Autowired
 	public RecommendationServiceImpl(ServiceUtil serviceUtil, RecommendationMapper recommendationMapper,
-			RecommendationRepository recommendationRepository) {
+			RecommendationRepository recommendationRepository, HotKeyTracker hotKeyTracker,
+			EventPublisher eventPublisher, MongoTemplate mongoTemplate,
+			@Value("${app.modifications.settle-time:5s}") Duration settleTime,
+			@Value("${app.create-mode:INSERT}") String createMode) {
 		this.serviceUtil = serviceUtil;
 		this.recommendationMapper = recommendationMapper;
 		this.recommendationRepository = recommendationRepository;
+		this.hotKeyTracker = hotKeyTracker;
+		this.eventPublisher = eventPublisher;
+		this.mongoTemplate = mongoTemplate;
+		this.modifications = new MongoModifications(mongoTemplate, "recommendations_last_modified", settleTime);
+		this.upsert = "UPSERT".equalsIgnoreCase(createMode);
 	}
 
 	@Override
@@ -38,6 +80,7 @@ public class RecommendationServiceImpl implements RecommendationService {
 		if (productId < 1) {
 			throw new InvalidInputException("Invalid productId: " + productId);
 		}
+		this.hotKeyTracker.record(productId);
 		List<RecommendationEntity> listOfEntities = this.recommendationRepository.findByProductId(productId);
 		List<Recommendation> list = this.recommendationMapper.entityListToApiList(listOfEntities);
 		list.stream().forEach(r -> r.setServiceAddress(this.serviceUtil.getServiceAddress()));
@@ -45,13 +88,58 @@ public class RecommendationServiceImpl implements RecommendationService {
 		return list;
 	}
 
+	@Override
+	public List<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+
+		productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+			throw new InvalidInputException("Invalid productId: " + productId);
+		});
+		productIds.forEach(this.hotKeyTracker::record);
+		List<RecommendationEntity> listOfEntities = this.recommendationRepository.findByProductIdIn(productIds);
+		List<Recommendation> list = this.recommendationMapper.entityListToApiList(listOfEntities);
+		list.stream().forEach(r -> r.setServiceAddress(this.serviceUtil.getServiceAddress()));
+		LOG.debug("getRecommendationsForProducts: size for {} products: {}", productIds.size(), list.size());
+		return list;
+	}
+
+	@Override
+	public List<Modification> getRecommendationModifications(long afterTime, int afterProductId, int limit) {
+		List<Modification> list = this.modifications.after(afterTime, afterProductId, limit);
+		LOG.debug("getRecommendationModifications: found {} after {}/{}", list.size(), afterTime, afterProductId);
+		return list;
+	}
+
+	/**
+	 * Reads the recommendations from a cursor on the unique prod-rec-id index, a batch at
+	 * a time as they are requested, the cursor is closed on completion and on cancel.
+	 */
+	@Override
+	public Flux<Recommendation> exportRecommendations() {
+		Query query = new Query().with(Sort.by("productId", "recommendationId"));
+		return Flux.fromStream(() -> this.mongoTemplate.stream(query, RecommendationEntity.class))
+				.map(recommendationEntity -> {
+					Recommendation recommendation = this.recommendationMapper.entityToApi(recommendationEntity);
+					recommendation.setServiceAddress(this.serviceUtil.getServiceAddress());
+					return recommendation;
+				})
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
 	@Override
 	public Recommendation createRecommendation(Recommendation recommendation) {
+		if (this.upsert) {
+			return upsertRecommendation(recommendation);
+		}
 		try {
+			// Before the write, a failed write is listed as a modification rather than a write missed
+			long touchedAt = this.modifications.touch(List.of(recommendation.getProductId()));
 			RecommendationEntity recommendationEntity = this.recommendationMapper.apiToEntity(recommendation);
+			recommendationEntity.setGeneration(EntityTags.newGeneration());
 			RecommendationEntity savedRecommendationEntity = this.recommendationRepository.save(recommendationEntity);
+			this.modifications.touchAgainIfLate(List.of(recommendation.getProductId()), touchedAt);
 			LOG.debug("createRecommendation: created a recommendation entity: {}/{}", recommendation.getProductId(),
 					recommendation.getRecommendationId());
+			publishCreated(savedRecommendationEntity);
 			return this.recommendationMapper.entityToApi(savedRecommendationEntity);
 		} catch (DuplicateKeyException e) {
 			LOG.error(e.getMessage());
@@ -60,9 +148,135 @@ public class RecommendationServiceImpl implements RecommendationService {
 		}
 	}
 
+	/**
+	 * One findAndModify on the prod-rec-id index, upserting, with an update pipeline that
+	 * increases the version only if a field changes and keeps the generation of a stored
+	 * recommendation, so a retried create is a no-op rather than a duplicate key error.
+	 * Concurrent creates of a new recommendation are retried by the server on the index.
+	 */
+	private Recommendation upsertRecommendation(Recommendation recommendation) {
+		long touchedAt = this.modifications.touch(List.of(recommendation.getProductId()));
+		Query key = Query.query(Criteria.where("productId").is(recommendation.getProductId())
+				.and("recommendationId").is(recommendation.getRecommendationId()));
+		AggregationExpression unchanged = And.and(
+				Eq.valueOf("author").equalTo(Literal.asLiteral(recommendation.getAuthor())),
+				Eq.valueOf("rating").equalToValue(recommendation.getRate()),
+				Eq.valueOf("content").equalTo(Literal.asLiteral(recommendation.getContent())));
+		AggregationUpdate update = AggregationUpdate.update()
+				.set(SetOperation.set("version").toValue(Cond.when(unchanged)
+						.thenValueOf(IfNull.ifNull("version").then(0))
+						.otherwiseValueOf(Add.valueOf(IfNull.ifNull("version").then(-1)).add(1))))
+				.set(SetOperation.set("author").toValue(Literal.asLiteral(recommendation.getAuthor()))
+						.and().set("rating").toValue(recommendation.getRate())
+						.and().set("content").toValue(Literal.asLiteral(recommendation.getContent()))
+						.and().set("generation").toValue(IfNull.ifNull("generation").then(EntityTags.newGeneration())));
+		RecommendationEntity recommendationEntity = this.mongoTemplate.findAndModify(key, update,
+				FindAndModifyOptions.options().upsert(true).returnNew(true), RecommendationEntity.class);
+		this.modifications.touchAgainIfLate(List.of(recommendation.getProductId()), touchedAt);
+		LOG.debug("createRecommendation: upserted a recommendation entity: {}/{}, version: {}",
+				recommendation.getProductId(), recommendation.getRecommendationId(), recommendationEntity.getVersion());
+		publishCreated(recommendationEntity);
+		return this.recommendationMapper.entityToApi(recommendationEntity);
+	}
+
+	/**
+	 * Creates the recommendations with one insert, for the queued commands and the bulk
+	 * import of the composite. Recommendations that exist already are skipped.
+	 */
+	@Override
+	public void createRecommendations(List<Recommendation> recommendations) {
+		try {
+			List<RecommendationEntity> recommendationEntities = this.recommendationMapper
+					.apiListToEntityList(recommendations);
+			recommendationEntities.forEach(entity -> entity.setGeneration(EntityTags.newGeneration()));
+			List<Integer> productIds = recommendations.stream().map(Recommendation::getProductId).toList();
+			long touchedAt = this.modifications.touch(productIds);
+			Iterable<RecommendationEntity> savedRecommendationEntities = this.recommendationRepository
+					.saveAll(recommendationEntities);
+			this.modifications.touchAgainIfLate(productIds, touchedAt);
+			savedRecommendationEntities.forEach(this::publishCreated);
+			LOG.debug("createRecommendations: {} entities created", recommendations.size());
+		} catch (DuplicateKeyException e) {
+			// The insert stops at the first duplicate, the ones before it are stored without their events
+			LOG.debug("createRecommendations: duplicate key in batch of {}, creates them one by one",
+					recommendations.size());
+			for (Recommendation recommendation : recommendations) {
+				try {
+					createRecommendation(recommendation);
+				} catch (InvalidInputException duplicate) {
+					this.recommendationRepository.findByProductId(recommendation.getProductId()).stream()
+							.filter(r -> r.getRecommendationId() == recommendation.getRecommendationId())
+							.forEach(this::publishCreated);
+				}
+			}
+		}
+	}
+
+	/**
+	 * One findAndModify on the prod-rec-id index, conditional on the revisions of the
+	 * If-Match tags. Only a failed update looks the recommendation up, to tell 404 from 412.
+	 */
+	@Override
+	public Recommendation updateRecommendation(int productId, int recommendationId, String ifMatch,
+			Recommendation body) {
+		if (productId < 1) {
+			throw new InvalidInputException("Invalid productId: " + productId);
+		}
+		Criteria criteria = Criteria.where("productId").is(productId).and("recommendationId").is(recommendationId);
+		if (!EntityTags.matchesAny(ifMatch)) {
+			List<Criteria> revisions = EntityTags.revisions(ifMatch).stream()
+					.map(RecommendationServiceImpl::isAt).toList();
+			if (revisions.isEmpty()) {
+				throw preconditionFailedOrNotFound(productId, recommendationId);
+			}
+			criteria = criteria.orOperator(revisions);
+		}
+		Update update = new Update().set("author", body.getAuthor()).set("rating", body.getRate())
+				.set("content", body.getContent()).inc("version", 1);
+		long touchedAt = this.modifications.touch(List.of(productId));
+		RecommendationEntity recommendationEntity = this.mongoTemplate.findAndModify(new Query(criteria), update,
+				FindAndModifyOptions.options().returnNew(true), RecommendationEntity.class);
+		this.modifications.touchAgainIfLate(List.of(productId), touchedAt);
+		if (recommendationEntity == null) {
+			throw preconditionFailedOrNotFound(productId, recommendationId);
+		}
+		LOG.debug("updateRecommendation: updated to version {}: {}/{}", recommendationEntity.getVersion(), productId,
+				recommendationId);
+		publishCreated(recommendationEntity);
+		Recommendation recommendation = this.recommendationMapper.entityToApi(recommendationEntity);
+		recommendation.setServiceAddress(this.serviceUtil.getServiceAddress());
+		return recommendation;
+	}
+
+	// A generation of 0 is the one of recommendations stored without any
+	private static Criteria isAt(EntityTags.Revision revision) {
+		Criteria version = Criteria.where("version").is(revision.version());
+		return revision.generation() == 0 ? version.and("generation").in(0L, null)
+				: version.and("generation").is(revision.generation());
+	}
+
+	private RuntimeException preconditionFailedOrNotFound(int productId, int recommendationId) {
+		Query key = Query.query(Criteria.where("productId").is(productId).and("recommendationId").is(recommendationId));
+		if (this.mongoTemplate.exists(key, RecommendationEntity.class)) {
+			return new PreconditionFailedException("Recommendation has been modified, Product Id: " + productId
+					+ ", Recommendation Id:" + recommendationId);
+		}
+		return new NotFoundException("No recommendation found for productId: " + productId
+				+ ", recommendationId: " + recommendationId);
+	}
+
 	@Override
 	public void deleteRecommendations(int productId) {
 		 LOG.debug("deleteRecommendations: tries to delete recommendations for the product with productId: {}", productId);
+		long touchedAt = this.modifications.touch(List.of(productId));
 		this.recommendationRepository.deleteAll(this.recommendationRepository.findByProductId(productId));
+		this.modifications.touchAgainIfLate(List.of(productId), touchedAt);
+		this.eventPublisher.publish(new Event<>(Event.Type.DELETE, productId, null));
+	}
+
+	private void publishCreated(RecommendationEntity recommendationEntity) {
+		Recommendation created = this.recommendationMapper.entityToApi(recommendationEntity);
+		created.setServiceAddress(this.serviceUtil.getServiceAddress());
+		this.eventPublisher.publish(new Event<>(Event.Type.CREATE, created.getProductId(), created));
 	}
 }
\ No newline at end of file
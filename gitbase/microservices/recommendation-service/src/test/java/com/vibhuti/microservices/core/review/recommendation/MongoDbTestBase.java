@@ -5,6 +5,7 @@ import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.MongoDBContainer;
 
 public abstract class MongoDbTestBase {
+  // A single node replica set, as the change streams of the change feed need one
   private static MongoDBContainer database = new MongoDBContainer("mongo:6.0.4");
   
   static {
@@ -2,19 +2,28 @@ package com.vibhuti.microservices.core.review.recommendation;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
 import static reactor.core.publisher.Mono.just;
 
+import java.time.Duration;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import com.vibhuti.microservices.api.core.recommendation.Recommendation;
+import com.vibhuti.microservices.api.event.ChangeEvent;
 import com.vibhuti.microservices.core.review.recommendation.persistence.RecommendationRepository;
 
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 class RecommendationServiceApplicationTests extends MongoDbTestBase {
 
@@ -39,6 +48,17 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
 				.jsonPath("$[2].productId").isEqualTo(productId).jsonPath("$[2].recommendationId").isEqualTo(3);
 	}
 
+	@Test
+	void getRecommendationsForProducts() {
+		postAndVerifyRecommendation(1, 1, HttpStatus.OK);
+		postAndVerifyRecommendation(1, 2, HttpStatus.OK);
+		postAndVerifyRecommendation(2, 1, HttpStatus.OK);
+		getAndVerifyRecommendationsByProductId("/batch?productIds=1,2,13", HttpStatus.OK).jsonPath("$.length()")
+				.isEqualTo(3);
+		getAndVerifyRecommendationsByProductId("/batch?productIds=1,-1", HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid productId: -1");
+	}
+
 	@Test
 	void duplicateError() {
 
@@ -102,6 +122,39 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
 				.isEqualTo("Invalid productId: " + productIdInvalid);
 	}
 
+	@Test
+	void resumesChangeEventsAfterLastEventId() {
+		String lastEventId = getChangeEvents(null).blockFirst(Duration.ofSeconds(10)).id();
+		postAndVerifyRecommendation(21, 1, HttpStatus.OK);
+		postAndVerifyRecommendation(21, 2, HttpStatus.OK);
+		deleteAndVerifyRecommendationsByProductId(21, HttpStatus.OK);
+
+		StepVerifier.create(getChangeEvents(lastEventId).skip(1).take(4))
+				.expectNextMatches(event -> "CREATE".equals(event.event())
+						&& event.data().getData().getRecommendationId() == 1)
+				.expectNextMatches(event -> "CREATE".equals(event.event())
+						&& event.data().getData().getRecommendationId() == 2)
+				// One per deleted recommendation
+				.expectNextMatches(event -> "DELETE".equals(event.event()) && event.data().getKey() == 21)
+				.expectNextMatches(event -> "DELETE".equals(event.event()) && event.data().getKey() == 21)
+				.expectComplete()
+				.verify(Duration.ofSeconds(10));
+	}
+
+	private Flux<ServerSentEvent<ChangeEvent<Integer, Recommendation>>> getChangeEvents(String lastEventId) {
+		return client.get().uri("/recommendation/changes").accept(TEXT_EVENT_STREAM)
+				.headers(headers -> {
+					if (lastEventId != null) {
+						headers.set("Last-Event-ID", lastEventId);
+					}
+				})
+				.exchange()
+				.expectStatus().isOk()
+				.returnResult(
+						new ParameterizedTypeReference<ServerSentEvent<ChangeEvent<Integer, Recommendation>>>() {})
+				.getResponseBody();
+	}
+
 	private WebTestClient.BodyContentSpec postAndVerifyRecommendation(int productId, int recommendationId,
 			HttpStatus expectedStatus) {
 		Recommendation recommendation = new Recommendation(productId, recommendationId, "Author " + recommendationId,
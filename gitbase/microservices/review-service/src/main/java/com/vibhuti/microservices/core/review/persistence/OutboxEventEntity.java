@@ -0,0 +1,80 @@
+package com.vibhuti.microservices.core.review.persistence;
+
+import java.time.Instant;
+
+import com.vibhuti.microservices.api.event.Event;
+
+import jakarta.persistence.*;
+
+/**
+ * A change event of the reviews, written in the transaction of the change and removed
+ * once published. The payload is the created review as JSON, and null for deletes.
+ */
+@Entity
+@Table(name = "review_outbox")
+public class OutboxEventEntity {
+
+  // Identity rather than a pooled sequence, so rows are relayed about in insert order
+  @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  @Enumerated(EnumType.STRING)
+  private Event.Type eventType;
+
+  private int productId;
+
+  @Lob
+  private String payload;
+
+  private Instant createdAt;
+
+  public OutboxEventEntity() {
+  }
+
+  public OutboxEventEntity(Event.Type eventType, int productId, String payload) {
+    this.eventType = eventType;
+    this.productId = productId;
+    this.payload = payload;
+    this.createdAt = Instant.now();
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  public Event.Type getEventType() {
+    return eventType;
+  }
+
+  public void setEventType(Event.Type eventType) {
+    this.eventType = eventType;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public void setProductId(int productId) {
+    this.productId = productId;
+  }
+
+  public String getPayload() {
+    return payload;
+  }
+
+  public void setPayload(String payload) {
+    this.payload = payload;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(Instant createdAt) {
+    this.createdAt = createdAt;
+  }
+}
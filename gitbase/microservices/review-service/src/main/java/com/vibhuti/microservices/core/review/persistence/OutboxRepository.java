@@ -0,0 +1,36 @@
+package com.vibhuti.microservices.core.review.persistence;
+
+import java.util.Collection;
+import java.util.List;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface OutboxRepository extends CrudRepository<OutboxEventEntity, Long> {
+
+  // The lock timeout Hibernate turns into FOR UPDATE SKIP LOCKED
+  String SKIP_LOCKED = "-2";
+
+  /**
+   * Locks the rows it returns until the caller's transaction ends, and skips rows
+   * locked by another one, so each row is claimed by a single relay.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = SKIP_LOCKED))
+  List<OutboxEventEntity> findByOrderByIdAsc(Pageable pageable);
+
+  // One statement for the batch, rather than a select and a delete per row
+  @Transactional
+  @Modifying
+  @Query("delete from OutboxEventEntity e where e.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
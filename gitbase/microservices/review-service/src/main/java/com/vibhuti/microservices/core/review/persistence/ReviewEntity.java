@@ -6,12 +6,20 @@ import jakarta.persistence.*;
 @Table(name = "reviews", indexes = { @Index(name = "reviews_unique_idx", unique = true, columnList = "productId,reviewId") })
 public class ReviewEntity {
 
-  @Id @GeneratedValue
+  // Ids are taken from reviews_seq this many at a time, for save() and ReviewRepository.nextId alike
+  static final int ID_ALLOCATION_SIZE = 50;
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reviews_seq")
+  @SequenceGenerator(name = "reviews_seq", sequenceName = "reviews_seq", allocationSize = ID_ALLOCATION_SIZE)
   private int id;
 
   @Version
   private int version;
 
+  // Set on insert, the column is 0 for reviews stored before it was added
+  private long generation;
+
   private int productId;
   private int reviewId;
   private String author;
@@ -45,6 +53,14 @@ public class ReviewEntity {
     this.version = version;
   }
 
+  public long getGeneration() {
+    return generation;
+  }
+
+  public void setGeneration(long generation) {
+    this.generation = generation;
+  }
+
   public int getProductId() {
     return productId;
   }
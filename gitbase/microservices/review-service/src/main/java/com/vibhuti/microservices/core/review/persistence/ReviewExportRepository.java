@@ -0,0 +1,45 @@
+package com.vibhuti.microservices.core.review.persistence;
+
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads all reviews in the order of the reviews_unique_idx index with plain JDBC, row
+ * by row from a streaming result set, so neither the driver nor a persistence context
+ * holds more than the row being read.
+ */
+@Repository
+public class ReviewExportRepository {
+
+  private static final String SELECT_ALL = "select id, version, generation, product_id, review_id, author, subject, content"
+    + " from reviews order by product_id, review_id";
+
+  private static final RowMapper<ReviewEntity> ROW_MAPPER = (rs, rowNum) -> {
+    ReviewEntity entity = new ReviewEntity(rs.getInt("product_id"), rs.getInt("review_id"), rs.getString("author"),
+      rs.getString("subject"), rs.getString("content"));
+    entity.setId(rs.getInt("id"));
+    entity.setVersion(rs.getInt("version"));
+    entity.setGeneration(rs.getLong("generation"));
+    return entity;
+  };
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public ReviewExportRepository(DataSource dataSource) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    // Integer.MIN_VALUE makes MySQL Connector/J stream the rows instead of reading the whole result
+    this.jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+  }
+
+  /**
+   * The stream holds a connection until it is closed.
+   */
+  public Stream<ReviewEntity> streamAllOrderByProductId() {
+    return jdbcTemplate.queryForStream(SELECT_ALL, ROW_MAPPER);
+  }
+}
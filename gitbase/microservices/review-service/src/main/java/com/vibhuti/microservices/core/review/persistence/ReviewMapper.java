@@ -19,7 +19,8 @@ public interface ReviewMapper {
 
   @Mappings({
     @Mapping(target = "id", ignore = true),
-    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "version", ignore = true),
+    @Mapping(target = "generation", ignore = true)
   })
   ReviewEntity apiToEntity(Review api);
 
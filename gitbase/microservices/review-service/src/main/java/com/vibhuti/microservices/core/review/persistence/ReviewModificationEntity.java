@@ -0,0 +1,41 @@
+package com.vibhuti.microservices.core.review.persistence;
+
+import jakarta.persistence.*;
+
+/**
+ * The time of the last change of the reviews of a product, kept after they are
+ * deleted, so changes can be listed since a position.
+ */
+@Entity
+@Table(name = "reviews_last_modified", indexes = { @Index(name = "reviews_last_modified_idx", columnList = "lastModified,productId") })
+public class ReviewModificationEntity {
+
+  @Id
+  private int productId;
+
+  private long lastModified;
+
+  public ReviewModificationEntity() {
+  }
+
+  public ReviewModificationEntity(int productId, long lastModified) {
+    this.productId = productId;
+    this.lastModified = lastModified;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public void setProductId(int productId) {
+    this.productId = productId;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public void setLastModified(long lastModified) {
+    this.lastModified = lastModified;
+  }
+}
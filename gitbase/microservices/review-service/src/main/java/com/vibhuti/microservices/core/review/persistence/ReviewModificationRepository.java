@@ -0,0 +1,19 @@
+package com.vibhuti.microservices.core.review.persistence;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ReviewModificationRepository extends CrudRepository<ReviewModificationEntity, Integer> {
+
+  // Positions after (afterTime, afterProductId), up to until, in the order of the index
+  @Transactional(readOnly = true)
+  @Query("select m from ReviewModificationEntity m where m.lastModified <= :until and (m.lastModified > :afterTime"
+    + " or (m.lastModified = :afterTime and m.productId > :afterProductId)) order by m.lastModified, m.productId")
+  List<ReviewModificationEntity> findAfter(@Param("afterTime") long afterTime,
+    @Param("afterProductId") int afterProductId, @Param("until") long until, Pageable pageable);
+}
@@ -1,11 +1,60 @@
 package com.vibhuti.microservices.core.review.persistence;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
-public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer> {
+public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer>, ReviewRepositoryCustom {
 
   @Transactional(readOnly = true)
   List<ReviewEntity> findByProductId(int productId);
-}
\ No newline at end of file
+
+  @Transactional(readOnly = true)
+  List<ReviewEntity> findByProductIdIn(Collection<Integer> productIds);
+
+  @Transactional(readOnly = true)
+  Optional<ReviewEntity> findByProductIdAndReviewId(int productId, int reviewId);
+
+  /**
+   * Inserts the review, or updates the one with the same productId and reviewId, in one
+   * statement. The version is only increased when a field changes, so a repeated create
+   * leaves the review as it is. The generation is only set by an insert. The id is only
+   * used by an insert, an upsert that updates leaves it unused in reviews_seq.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query(nativeQuery = true, value = "insert into reviews"
+    + " (id, version, generation, product_id, review_id, author, subject, content)"
+    + " values (:id, 0, :generation, :productId, :reviewId, :author, :subject, :content) as new"
+    + " on duplicate key update"
+    + " version = if(reviews.author <=> new.author and reviews.subject <=> new.subject"
+    + " and reviews.content <=> new.content, reviews.version, reviews.version + 1),"
+    + " author = new.author, subject = new.subject, content = new.content")
+  int upsert(@Param("id") int id, @Param("productId") int productId, @Param("reviewId") int reviewId,
+    @Param("author") String author, @Param("subject") String subject, @Param("content") String content,
+    @Param("generation") long generation);
+
+  // A single UPDATE on the unique index, the caller's transaction holds the row lock until commit
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query("update ReviewEntity r set r.author = :author, r.subject = :subject, r.content = :content,"
+    + " r.version = r.version + 1 where r.productId = :productId and r.reviewId = :reviewId")
+  int update(@Param("productId") int productId, @Param("reviewId") int reviewId, @Param("author") String author,
+    @Param("subject") String subject, @Param("content") String content);
+
+  // The same UPDATE, applied only if the review is still at the revision of an If-Match tag
+  @Transactional
+  @Modifying(clearAutomatically = true)
+  @Query("update ReviewEntity r set r.author = :author, r.subject = :subject, r.content = :content,"
+    + " r.version = r.version + 1 where r.productId = :productId and r.reviewId = :reviewId"
+    + " and r.version = :version and r.generation = :generation")
+  int updateIfAt(@Param("productId") int productId, @Param("reviewId") int reviewId, @Param("author") String author,
+    @Param("subject") String subject, @Param("content") String content, @Param("version") int version,
+    @Param("generation") long generation);
+}
@@ -0,0 +1,11 @@
+package com.vibhuti.microservices.core.review.persistence;
+
+public interface ReviewRepositoryCustom {
+
+  /**
+   * The next id of reviews_seq, from the same pooled generator Hibernate uses for
+   * {@code save()}. It comes out of the block of ids the generator holds in memory,
+   * reviews_seq itself is only updated when a block is used up.
+   */
+  int nextId();
+}
@@ -0,0 +1,24 @@
+package com.vibhuti.microservices.core.review.persistence;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.transaction.annotation.Transactional;
+
+class ReviewRepositoryCustomImpl implements ReviewRepositoryCustom {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  @Transactional
+  public int nextId() {
+    SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+    BeforeExecutionGenerator generator = (BeforeExecutionGenerator) session.getFactory().getMappingMetamodel()
+      .getEntityDescriptor(ReviewEntity.class).getGenerator();
+    return ((Number) generator.generate(session, null, null, EventType.INSERT)).intValue();
+  }
+}
@@ -0,0 +1,123 @@
+package com.vibhuti.microservices.core.review.services;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.core.review.persistence.OutboxEventEntity;
+import com.vibhuti.microservices.core.review.persistence.OutboxRepository;
+import com.vibhuti.microservices.util.EventPublisher;
+
+/**
+ * Publishes the events of the review outbox in batches of {@code app.outbox.batch-size},
+ * in id order, and removes them once published, from a thread of its own. The thread
+ * is woken after each committed change, and drains the outbox every
+ * {@code app.outbox.poll-interval} anyway for rows left by a stop or a failure.
+ *
+ * Each instance of the service runs a relay. A batch is claimed, published and removed
+ * in one transaction, and the claim skips rows another relay holds, so every event is
+ * published by one instance, and published again only if its removal doesn't commit.
+ * Publishing hands the event to the subscribers of that instance attached at the
+ * time, see {@link EventPublisher}, nothing is kept for the others. A subscriber that
+ * was detached has to assume it missed events, as with the other core services.
+ */
+@Component
+public class OutboxRelay implements DisposableBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(OutboxRelay.class);
+
+	private final OutboxRepository outboxRepository;
+	private final EventPublisher eventPublisher;
+	private final ObjectMapper mapper;
+	private final TransactionTemplate transactionTemplate;
+	private final int batchSize;
+	private final Duration pollInterval;
+	private final Semaphore wakeUp = new Semaphore(0);
+	private final Thread relay;
+
+	@Autowired
+	public OutboxRelay(OutboxRepository outboxRepository, EventPublisher eventPublisher, ObjectMapper mapper,
+			TransactionTemplate transactionTemplate, @Value("${app.outbox.batch-size:100}") int batchSize,
+			@Value("${app.outbox.poll-interval:1s}") Duration pollInterval) {
+
+		this.outboxRepository = outboxRepository;
+		this.eventPublisher = eventPublisher;
+		this.mapper = mapper;
+		this.transactionTemplate = transactionTemplate;
+		this.batchSize = batchSize;
+		this.pollInterval = pollInterval;
+		this.relay = new Thread(this::relayEvents, "review-outbox-relay");
+		this.relay.setDaemon(true);
+		this.relay.start();
+	}
+
+	/**
+	 * Called after a transaction that wrote to the outbox has committed.
+	 */
+	public void wake() {
+		wakeUp.release();
+	}
+
+	@Override
+	public void destroy() {
+		relay.interrupt();
+	}
+
+	private void relayEvents() {
+		try {
+			while (true) {
+				try {
+					drain();
+				} catch (RuntimeException e) {
+					LOG.warn("Failed to relay the review outbox, will retry: {}", e.toString());
+				}
+				wakeUp.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+				// Changes committed while draining are in the next batch already
+				wakeUp.drainPermits();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		int relayed;
+		do {
+			relayed = transactionTemplate.execute(status -> relayBatch());
+		} while (relayed == batchSize);
+	}
+
+	private int relayBatch() {
+		List<OutboxEventEntity> batch = outboxRepository.findByOrderByIdAsc(PageRequest.of(0, batchSize));
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		batch.forEach(row -> eventPublisher.publish(toEvent(row)));
+		outboxRepository.deleteByIdIn(batch.stream().map(OutboxEventEntity::getId).toList());
+		LOG.debug("Relayed {} review events", batch.size());
+		return batch.size();
+	}
+
+	private Event<Integer, Review> toEvent(OutboxEventEntity row) {
+		try {
+			Review review = row.getPayload() == null ? null : mapper.readValue(row.getPayload(), Review.class);
+			return new Event<>(row.getEventType(), row.getProductId(), review);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Unreadable outbox row " + row.getId(), e);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.vibhuti.microservices.core.review.services;
+
+import java.util.ArrayList;
+
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.util.CommandBatch;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Applies batches of create and delete commands queued by the composite. The
+ * composite sends a batch again until it succeeds, creates of reviews that exist
+ * already are skipped and deletes are idempotent, so a batch can be applied twice.
+ */
+@Controller
+public class ReviewCommandController {
+
+	// Rather than List<Event<Integer, Review>>, whose nested type argument isn't resolved for the payload
+	static class Commands extends ArrayList<Event<Integer, Review>> {
+	}
+
+	private final ReviewServiceImpl reviewService;
+
+	public ReviewCommandController(ReviewServiceImpl reviewService) {
+		this.reviewService = reviewService;
+	}
+
+	@MessageMapping("review.commands")
+	public Mono<Void> apply(Commands commands) {
+		return Mono.<Void>fromRunnable(() -> CommandBatch.apply(commands, reviewService::createReviews,
+				reviewService::deleteReviews))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+}
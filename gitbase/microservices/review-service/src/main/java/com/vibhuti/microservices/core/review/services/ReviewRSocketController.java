@@ -0,0 +1,93 @@
+package com.vibhuti.microservices.core.review.services;
+
+import java.util.List;
+
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+
+import com.vibhuti.microservices.api.core.Modification;
+import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.core.review.ReviewService;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.util.EventPublisher;
+import com.vibhuti.microservices.util.RSocketErrorCodes;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Exposes {@link ReviewService} over RSocket. Reviews of a product are sent as a
+ * request-stream, so the requester controls the pace with its demand.
+ */
+@Controller
+public class ReviewRSocketController {
+
+	private final ReviewService reviewService;
+	private final EventPublisher eventPublisher;
+
+	public ReviewRSocketController(ReviewService reviewService, EventPublisher eventPublisher) {
+		this.reviewService = reviewService;
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Creates and deletes from now on, as an endless stream.
+	 */
+	@MessageMapping("review.events")
+	public Flux<Event<?, ?>> events() {
+		return eventPublisher.events();
+	}
+
+	@MessageMapping("reviews.get.{productId}")
+	public Flux<Review> getReviews(@DestinationVariable int productId) {
+		return Flux.defer(() -> Flux.fromIterable(reviewService.getReviews(productId)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("reviews.batch")
+	public Flux<Review> getReviewsForProducts(List<Integer> productIds) {
+		return Flux.defer(() -> Flux.fromIterable(reviewService.getReviewsForProducts(productIds)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("review.modifications.{afterTime}.{afterProductId}.{limit}")
+	public Flux<Modification> getReviewModifications(@DestinationVariable long afterTime,
+			@DestinationVariable int afterProductId, @DestinationVariable int limit) {
+		return Flux.defer(() -> Flux.fromIterable(reviewService.getReviewModifications(afterTime, afterProductId,
+				limit)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("review.export")
+	public Flux<Review> exportReviews() {
+		return reviewService.exportReviews()
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("review.create")
+	public Mono<Review> createReview(Review body) {
+		return Mono.fromCallable(() -> reviewService.createReview(body))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("review.update.{productId}.{reviewId}.{ifMatch}")
+	public Mono<Review> updateReview(@DestinationVariable int productId, @DestinationVariable int reviewId,
+			@DestinationVariable String ifMatch, Review body) {
+		return Mono.fromCallable(() -> reviewService.updateReview(productId, reviewId, ifMatch, body))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+
+	@MessageMapping("reviews.delete.{productId}")
+	public Mono<Void> deleteReviews(@DestinationVariable int productId) {
+		return Mono.<Void>fromRunnable(() -> reviewService.deleteReviews(productId))
+				.subscribeOn(Schedulers.boundedElastic())
+				.onErrorMap(RSocketErrorCodes::toRSocketException);
+	}
+}
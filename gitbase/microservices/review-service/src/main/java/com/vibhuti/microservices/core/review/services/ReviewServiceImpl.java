@@ -1,21 +1,41 @@
 package com.vibhuti.microservices.core.review.services;
 
+import java.time.Duration;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibhuti.microservices.api.EntityTags;
+import com.vibhuti.microservices.api.core.Modification;
 import com.vibhuti.microservices.api.core.review.Review;
 import com.vibhuti.microservices.api.core.review.ReviewService;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.core.review.persistence.OutboxEventEntity;
+import com.vibhuti.microservices.core.review.persistence.OutboxRepository;
 import com.vibhuti.microservices.core.review.persistence.ReviewEntity;
+import com.vibhuti.microservices.core.review.persistence.ReviewExportRepository;
 import com.vibhuti.microservices.core.review.persistence.ReviewMapper;
+import com.vibhuti.microservices.core.review.persistence.ReviewModificationEntity;
+import com.vibhuti.microservices.core.review.persistence.ReviewModificationRepository;
 import com.vibhuti.microservices.core.review.persistence.ReviewRepository;
 import com.vibhuti.microservices.exception.InvalidInputException;
+import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.exception.PreconditionFailedException;
+import com.vibhuti.microservices.util.HotKeyTracker;
 import com.vibhuti.microservices.util.ServiceUtil;
 
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
 @RestController
 public class ReviewServiceImpl implements ReviewService {
 
@@ -24,12 +44,37 @@ public class ReviewServiceImpl implements ReviewService {
 	private final ServiceUtil serviceUtil;
 	private final ReviewRepository reviewRepository;
 	private final ReviewMapper reviewMapper;
+	private final HotKeyTracker hotKeyTracker;
+	private final OutboxRepository outboxRepository;
+	private final OutboxRelay outboxRelay;
+	private final ObjectMapper objectMapper;
+	private final ReviewModificationRepository modificationRepository;
+	private final ReviewExportRepository exportRepository;
+	private final Duration settleTime;
+	// Programmatic, so the fallback of createReviews gets a transaction per review
+	private final TransactionTemplate transactionTemplate;
+	// Set when app.create-mode is UPSERT, creates then replace an existing review
+	private final boolean upsert;
 
 	@Autowired
-	public ReviewServiceImpl(ServiceUtil serviceUtil, ReviewRepository repository, ReviewMapper mapper) {
+	public ReviewServiceImpl(ServiceUtil serviceUtil, ReviewRepository repository, ReviewMapper mapper,
+			HotKeyTracker hotKeyTracker, OutboxRepository outboxRepository, OutboxRelay outboxRelay,
+			ObjectMapper objectMapper, TransactionTemplate transactionTemplate,
+			ReviewModificationRepository modificationRepository, ReviewExportRepository exportRepository,
+			@Value("${app.modifications.settle-time:5s}") Duration settleTime,
+			@Value("${app.create-mode:INSERT}") String createMode) {
 		this.serviceUtil = serviceUtil;
 		this.reviewMapper = mapper;
 		this.reviewRepository = repository;
+		this.hotKeyTracker = hotKeyTracker;
+		this.outboxRepository = outboxRepository;
+		this.outboxRelay = outboxRelay;
+		this.objectMapper = objectMapper;
+		this.transactionTemplate = transactionTemplate;
+		this.modificationRepository = modificationRepository;
+		this.exportRepository = exportRepository;
+		this.settleTime = settleTime;
+		this.upsert = "UPSERT".equalsIgnoreCase(createMode);
 	}
 
 	@Override
@@ -38,6 +83,7 @@ public class ReviewServiceImpl implements ReviewService {
 		if (productId < 1) {
 			throw new InvalidInputException("Invalid productId: " + productId);
 		}
+		this.hotKeyTracker.record(productId);
 		List<ReviewEntity> reviewEntityList = this.reviewRepository.findByProductId(productId);
 		List<Review> list = this.reviewMapper.entityListToApiList(reviewEntityList);
 		list.stream().forEach(review -> review.setServiceAddress(this.serviceUtil.getServiceAddress()));
@@ -45,12 +91,64 @@ public class ReviewServiceImpl implements ReviewService {
 		return list;
 	}
 
+	@Override
+	public List<Review> getReviewsForProducts(List<Integer> productIds) {
+
+		productIds.stream().filter(productId -> productId < 1).findFirst().ifPresent(productId -> {
+			throw new InvalidInputException("Invalid productId: " + productId);
+		});
+		productIds.forEach(this.hotKeyTracker::record);
+		List<ReviewEntity> reviewEntityList = this.reviewRepository.findByProductIdIn(productIds);
+		List<Review> list = this.reviewMapper.entityListToApiList(reviewEntityList);
+		list.stream().forEach(review -> review.setServiceAddress(this.serviceUtil.getServiceAddress()));
+		LOG.debug("getReviewsForProducts: size for {} products: {}", productIds.size(), list.size());
+		return list;
+	}
+
+	/**
+	 * Changes younger than the settle time aren't listed yet, a change whose transaction
+	 * is still open would otherwise show up behind a position already listed.
+	 */
+	@Override
+	public List<Modification> getReviewModifications(long afterTime, int afterProductId, int limit) {
+		if (limit < 1 || limit > Modification.MAX_LIMIT) {
+			throw new InvalidInputException("Invalid limit: " + limit);
+		}
+		long until = System.currentTimeMillis() - this.settleTime.toMillis();
+		List<Modification> list = this.modificationRepository
+				.findAfter(afterTime, afterProductId, until, PageRequest.of(0, limit)).stream()
+				.map(m -> new Modification(m.getProductId(), m.getLastModified())).toList();
+		LOG.debug("getReviewModifications: found {} after {}/{}", list.size(), afterTime, afterProductId);
+		return list;
+	}
+
+	@Override
+	public Flux<Review> exportReviews() {
+		return Flux.fromStream(this.exportRepository::streamAllOrderByProductId)
+				.map(reviewEntity -> {
+					Review review = this.reviewMapper.entityToApi(reviewEntity);
+					review.setServiceAddress(this.serviceUtil.getServiceAddress());
+					return review;
+				})
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
 	@Override
 	public Review createReview(Review body) {
+		if (this.upsert) {
+			return upsertReview(body);
+		}
 		try {
 			ReviewEntity reviewEntity = this.reviewMapper.apiToEntity(body);
-			ReviewEntity savedReview = this.reviewRepository.save(reviewEntity);
+			reviewEntity.setGeneration(EntityTags.newGeneration());
+			ReviewEntity savedReview = this.transactionTemplate.execute(status -> {
+				ReviewEntity saved = this.reviewRepository.save(reviewEntity);
+				this.outboxRepository.save(createdEvent(saved));
+				touch(List.of(saved.getProductId()));
+				return saved;
+			});
 			LOG.debug("createReview: created a review entity: {}/{}", body.getProductId(), body.getReviewId());
+			this.outboxRelay.wake();
 			return this.reviewMapper.entityToApi(savedReview);
 		} catch (DataIntegrityViolationException e) {
 			throw new InvalidInputException(
@@ -58,8 +156,140 @@ public class ReviewServiceImpl implements ReviewService {
 		}
 	}
 
+	/**
+	 * An INSERT ... ON DUPLICATE KEY UPDATE on the unique index instead of an insert that
+	 * fails on a duplicate, so a retried create succeeds without a constraint violation.
+	 * Two statements, not one round trip: the upsert, and the read back of the row in the
+	 * same transaction for the response and the outbox event. The id is taken up front
+	 * from the in-memory block of the generator behind save(), so every upsert uses up
+	 * one id of reviews_seq, also when it updates an existing review.
+	 */
+	private Review upsertReview(Review body) {
+		ReviewEntity savedReview = this.transactionTemplate.execute(status -> {
+			this.reviewRepository.upsert(this.reviewRepository.nextId(), body.getProductId(), body.getReviewId(),
+					body.getAuthor(), body.getSubject(), body.getContent(), EntityTags.newGeneration());
+			ReviewEntity saved = this.reviewRepository.findByProductIdAndReviewId(body.getProductId(),
+					body.getReviewId()).orElseThrow();
+			this.outboxRepository.save(createdEvent(saved));
+			touch(List.of(saved.getProductId()));
+			return saved;
+		});
+		LOG.debug("createReview: upserted a review entity: {}/{}, version: {}", body.getProductId(), body.getReviewId(),
+				savedReview.getVersion());
+		this.outboxRelay.wake();
+		return this.reviewMapper.entityToApi(savedReview);
+	}
+
+	/**
+	 * Creates the reviews in one transaction, for the queued commands and the bulk
+	 * import of the composite. Reviews that exist already are skipped.
+	 */
+	@Override
+	public void createReviews(List<Review> reviews) {
+		try {
+			List<ReviewEntity> reviewEntities = this.reviewMapper.apiListToEntityList(reviews);
+			reviewEntities.forEach(reviewEntity -> reviewEntity.setGeneration(EntityTags.newGeneration()));
+			this.transactionTemplate.executeWithoutResult(status -> {
+				this.reviewRepository.saveAll(reviewEntities)
+						.forEach(saved -> this.outboxRepository.save(createdEvent(saved)));
+				touch(reviews.stream().map(Review::getProductId).toList());
+			});
+			this.outboxRelay.wake();
+			LOG.debug("createReviews: {} entities created", reviews.size());
+		} catch (DataIntegrityViolationException e) {
+			// Rolled back as a whole, so each review is either created now or existed already
+			LOG.debug("createReviews: duplicate key in batch of {}, creates them one by one", reviews.size());
+			for (Review review : reviews) {
+				try {
+					createReview(review);
+				} catch (InvalidInputException duplicate) {
+					LOG.debug("createReviews: skips existing review {}/{}", review.getProductId(),
+							review.getReviewId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * A single UPDATE, with If-Match tags conditional on the revision of the tag, so the
+	 * database checks it in the write itself. A header with several tags tries them one
+	 * by one, each in a conditional UPDATE of its own. The updated row is read back in the
+	 * same transaction, under the lock of the update, for the response and the outbox.
+	 */
+	@Override
+	public Review updateReview(int productId, int reviewId, String ifMatch, Review body) {
+		if (productId < 1) {
+			throw new InvalidInputException("Invalid productId: " + productId);
+		}
+		List<EntityTags.Revision> revisions = EntityTags.matchesAny(ifMatch) ? null : EntityTags.revisions(ifMatch);
+		ReviewEntity updatedReview = this.transactionTemplate.execute(status -> {
+			int updated = 0;
+			if (revisions == null) {
+				updated = this.reviewRepository.update(productId, reviewId, body.getAuthor(), body.getSubject(),
+						body.getContent());
+			} else {
+				for (int i = 0; i < revisions.size() && updated == 0; i++) {
+					updated = this.reviewRepository.updateIfAt(productId, reviewId, body.getAuthor(),
+							body.getSubject(), body.getContent(), revisions.get(i).version(),
+							revisions.get(i).generation());
+				}
+			}
+			if (updated == 0) {
+				return null;
+			}
+			ReviewEntity updatedEntity = this.reviewRepository.findByProductIdAndReviewId(productId, reviewId)
+					.orElseThrow();
+			this.outboxRepository.save(createdEvent(updatedEntity));
+			touch(List.of(productId));
+			return updatedEntity;
+		});
+		if (updatedReview == null) {
+			throw preconditionFailedOrNotFound(productId, reviewId);
+		}
+		LOG.debug("updateReview: updated to version {}: {}/{}", updatedReview.getVersion(), productId, reviewId);
+		this.outboxRelay.wake();
+		Review review = this.reviewMapper.entityToApi(updatedReview);
+		review.setServiceAddress(this.serviceUtil.getServiceAddress());
+		return review;
+	}
+
+	private RuntimeException preconditionFailedOrNotFound(int productId, int reviewId) {
+		if (this.reviewRepository.findByProductIdAndReviewId(productId, reviewId).isPresent()) {
+			return new PreconditionFailedException(
+					"Review has been modified, Product Id: " + productId + ", Review Id:" + reviewId);
+		}
+		return new NotFoundException("No review found for productId: " + productId + ", reviewId: " + reviewId);
+	}
+
 	@Override
 	public void deleteReviews(int productId) {
-		this.reviewRepository.deleteAll(this.reviewRepository.findByProductId(productId));
+		this.transactionTemplate.executeWithoutResult(status -> {
+			this.reviewRepository.deleteAll(this.reviewRepository.findByProductId(productId));
+			this.outboxRepository.save(new OutboxEventEntity(Event.Type.DELETE, productId, null));
+			touch(List.of(productId));
+		});
+		this.outboxRelay.wake();
+	}
+
+	// In the transaction of the change, see getReviewModifications
+	private void touch(List<Integer> productIds) {
+		long now = System.currentTimeMillis();
+		this.modificationRepository.saveAll(productIds.stream().distinct()
+				.map(productId -> new ReviewModificationEntity(productId, now)).toList());
+	}
+
+	/**
+	 * The change event of a created review, written to the outbox in the transaction of
+	 * the review and published by the {@link OutboxRelay} once committed.
+	 */
+	private OutboxEventEntity createdEvent(ReviewEntity reviewEntity) {
+		Review created = this.reviewMapper.entityToApi(reviewEntity);
+		created.setServiceAddress(this.serviceUtil.getServiceAddress());
+		try {
+			return new OutboxEventEntity(Event.Type.CREATE, created.getProductId(),
+					this.objectMapper.writeValueAsString(created));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 }
\ No newline at end of file
@@ -7,7 +7,10 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,6 +20,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.vibhuti.microservices.core.review.persistence.ReviewEntity;
 import com.vibhuti.microservices.core.review.persistence.ReviewRepository;
@@ -29,6 +33,9 @@ class PersistenceTests extends MySqlTestBase {
   @Autowired
   private ReviewRepository repository;
 
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
   private ReviewEntity savedEntity;
 
   @BeforeEach
@@ -64,6 +71,43 @@ class PersistenceTests extends MySqlTestBase {
     assertEquals("a2", foundEntity.getAuthor());
   }
 
+  @Test
+  void upsert() {
+    // As the service does it, so the id is taken and used in one transaction
+    int id = transactionTemplate.execute(status -> {
+      int nextId = repository.nextId();
+      repository.upsert(nextId, 1, 3, "a", "s", "c", 1);
+      return nextId;
+    });
+    ReviewEntity inserted = repository.findByProductIdAndReviewId(1, 3).get();
+    assertEquals(id, inserted.getId());
+    assertEquals(0, (long)inserted.getVersion());
+    assertEquals(1, inserted.getGeneration());
+
+    // Ids handed out by save() before and after don't overlap the one of the upsert
+    List<ReviewEntity> saved = new ArrayList<>();
+    for (int reviewId = 10; reviewId < 70; reviewId++) {
+      saved.add(new ReviewEntity(2, reviewId, "a", "s", "c"));
+    }
+    Set<Integer> savedIds = new HashSet<>();
+    savedIds.add(savedEntity.getId());
+    repository.saveAll(saved).forEach(entity -> savedIds.add(entity.getId()));
+    assertEquals(61, savedIds.size());
+    assertFalse(savedIds.contains(id));
+
+    // An existing review is updated in place, its version only increased by a change
+    transactionTemplate.executeWithoutResult(status -> repository.upsert(repository.nextId(), 1, 2, "a", "s", "c2", 2));
+    ReviewEntity foundEntity = repository.findByProductIdAndReviewId(1, 2).get();
+    assertEquals(savedEntity.getId(), foundEntity.getId());
+    assertEquals(1, (long)foundEntity.getVersion());
+    assertEquals("c2", foundEntity.getContent());
+    assertEquals(savedEntity.getGeneration(), foundEntity.getGeneration());
+
+    transactionTemplate.executeWithoutResult(status -> repository.upsert(repository.nextId(), 1, 2, "a", "s", "c2", 3));
+    assertEquals(1, (long)repository.findByProductIdAndReviewId(1, 2).get().getVersion());
+    assertEquals(62, repository.count());
+  }
+
   @Test
   void delete() {
     repository.delete(savedEntity);
@@ -5,6 +5,8 @@ import static org.springframework.boot.test.context.SpringBootTest.WebEnvironmen
 import static reactor.core.publisher.Mono.just;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
+import java.time.Duration;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,7 +15,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import com.vibhuti.microservices.api.core.review.Review;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.core.review.persistence.OutboxRepository;
 import com.vibhuti.microservices.core.review.persistence.ReviewRepository;
+import com.vibhuti.microservices.util.EventPublisher;
+
+import reactor.test.StepVerifier;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
 class ReviewServiceApplicationTests extends MySqlTestBase {
@@ -22,6 +29,10 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
 	private WebTestClient client;
 	@Autowired
 	private ReviewRepository repository;
+	@Autowired
+	private OutboxRepository outboxRepository;
+	@Autowired
+	private EventPublisher eventPublisher;
 
 	@BeforeEach
 	void setupDb() {
@@ -46,6 +57,59 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
 	}
 	
 	
+	@Test
+	void getReviewsForProducts() {
+
+		postAndVerifyReview(1, 1, HttpStatus.OK);
+		postAndVerifyReview(1, 2, HttpStatus.OK);
+		postAndVerifyReview(2, 1, HttpStatus.OK);
+
+		getAndVerifyReviewsByProductId("/batch?productIds=1,2,13", HttpStatus.OK).jsonPath("$.length()").isEqualTo(3);
+		getAndVerifyReviewsByProductId("/batch?productIds=1,-1", HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid productId: -1");
+	}
+
+	@Test
+	void getReviewsNotModified() {
+
+		postAndVerifyReview(1, 1, HttpStatus.OK);
+		String entityTag = client.get().uri("/review?productId=1").accept(APPLICATION_JSON).exchange()
+				.expectStatus().isOk().returnResult(Review.class).getResponseHeaders().getETag();
+		client.get().uri("/review?productId=1").accept(APPLICATION_JSON).header("If-None-Match", entityTag).exchange()
+				.expectStatus().isNotModified();
+
+		postAndVerifyReview(1, 2, HttpStatus.OK);
+		client.get().uri("/review?productId=1").accept(APPLICATION_JSON).header("If-None-Match", entityTag).exchange()
+				.expectStatus().isOk();
+	}
+
+	@Test
+	void publishesChangesThroughOutbox() {
+
+		int productId = 11;
+
+		StepVerifier.create(eventPublisher.events()
+				.filter(event -> event.getKey() == null || event.getKey().equals(productId)).take(3))
+				.expectNextMatches(event -> event.getEventType() == Event.Type.SUBSCRIBED)
+				.then(() -> {
+					postAndVerifyReview(productId, 1, HttpStatus.OK);
+					// Rolled back with the review, so no event
+					postAndVerifyReview(productId, 1, HttpStatus.UNPROCESSABLE_ENTITY);
+					deleteAndVerifyReviewsByProductId(productId, HttpStatus.OK);
+				})
+				.expectNextMatches(event -> event.getEventType() == Event.Type.CREATE)
+				.expectNextMatches(event -> event.getEventType() == Event.Type.DELETE)
+				.expectComplete()
+				.verify(Duration.ofSeconds(5));
+
+		// Removed right after publishing
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (outboxRepository.count() > 0 && System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+		assertEquals(0, outboxRepository.count());
+	}
+
 	@Test
 	  void getReviewsMissingParameter() {
 
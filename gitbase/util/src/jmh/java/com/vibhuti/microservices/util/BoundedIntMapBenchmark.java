@@ -0,0 +1,82 @@
+package com.vibhuti.microservices.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups and updates of a {@link BoundedIntMap} against a ConcurrentHashMap with
+ * Integer keys, from 4 threads over keys that fit in the map, so neither evicts. Keys
+ * are product id like, i.e. spread over 0 to 4 times the size. Run with -prof gc to
+ * compare the allocation per operation.
+ *
+ * ./gradlew :util:jmh -PjmhIncludes=BoundedIntMapBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BoundedIntMapBenchmark {
+
+  private static final Object VALUE = new Object();
+
+  @Param({"10000", "1000000"})
+  public int size;
+
+  private int[] keys;
+  private BoundedIntMap<Object> intMap;
+  private Map<Integer, Object> concurrentHashMap;
+
+  @Setup
+  public void setUp() {
+    keys = new int[size];
+    intMap = new BoundedIntMap<>(size);
+    concurrentHashMap = new ConcurrentHashMap<>();
+    for (int i = 0; i < size; i++) {
+      keys[i] = ThreadLocalRandom.current().nextInt(size * 4);
+      intMap.put(keys[i], VALUE);
+      concurrentHashMap.put(keys[i], VALUE);
+    }
+  }
+
+  @Benchmark
+  public Object intMapGet() {
+    return intMap.get(nextKey());
+  }
+
+  @Benchmark
+  public Object concurrentHashMapGet() {
+    return concurrentHashMap.get(nextKey());
+  }
+
+  @Benchmark
+  public Object intMapPut() {
+    return intMap.put(nextKey(), VALUE);
+  }
+
+  @Benchmark
+  public Object concurrentHashMapPut() {
+    return concurrentHashMap.put(nextKey(), VALUE);
+  }
+
+  private int nextKey() {
+    return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+  }
+}
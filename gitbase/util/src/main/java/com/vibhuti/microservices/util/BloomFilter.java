@@ -0,0 +1,96 @@
+package com.vibhuti.microservices.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact membership test for int keys, e.g. product ids. {@link #mightContain}
+ * never returns false for a key that was put, and returns true for a key that
+ * wasn't with about the false positive rate it was created with. Keys can't be
+ * removed, rebuild the filter instead.
+ *
+ * Bits are set with compare-and-set, so puts and lookups can run concurrently.
+ */
+public final class BloomFilter {
+
+  private final AtomicLongArray words;
+  private final long bitSize;
+  private final int hashFunctions;
+
+  private BloomFilter(long bitSize, int hashFunctions) {
+    this.words = new AtomicLongArray((int) ((bitSize + 63) / 64));
+    this.bitSize = words.length() * 64L;
+    this.hashFunctions = hashFunctions;
+  }
+
+  /**
+   * Sizes the filter with the usual formulas, m = -n ln p / (ln 2)^2 bits and
+   * k = m / n ln 2 hash functions, about 9.6 bits per key for a 1% rate.
+   */
+  public static BloomFilter create(int expectedInsertions, double falsePositiveRate) {
+    if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException(
+        "Expected insertions must be positive and the false positive rate between 0 and 1");
+    }
+    long bitSize = Math.max(64, (long) (-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+    int hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    return new BloomFilter(bitSize, hashFunctions);
+  }
+
+  public void put(int key) {
+    long hash = mix(key);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashFunctions; i++) {
+      setBit(index(hash1 + i * hash2));
+    }
+  }
+
+  public boolean mightContain(int key) {
+    long hash = mix(key);
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashFunctions; i++) {
+      long bit = index(hash1 + i * hash2);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long bitSize() {
+    return bitSize;
+  }
+
+  public int hashFunctions() {
+    return hashFunctions;
+  }
+
+  private long index(int combinedHash) {
+    // Kirsch-Mitzenmacher double hashing, a negative combination is flipped to stay in range
+    return (combinedHash < 0 ? ~combinedHash : combinedHash) % bitSize;
+  }
+
+  private void setBit(long bit) {
+    int word = (int) (bit >>> 6);
+    long mask = 1L << bit;
+    long current;
+    do {
+      current = words.get(word);
+      if ((current & mask) != 0) {
+        return;
+      }
+    } while (!words.compareAndSet(word, current, current | mask));
+  }
+
+  // Finalizer of MurmurHash3, spreads sequential ids over all 64 bits
+  private static long mix(int key) {
+    long hash = key;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
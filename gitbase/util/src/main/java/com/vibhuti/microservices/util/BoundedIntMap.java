@@ -0,0 +1,419 @@
+package com.vibhuti.microservices.util;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Concurrent map from int keys, e.g. product ids, to values, with at most about
+ * {@code maxSize} entries. Keys are kept unboxed in open addressing tables with linear
+ * probing, so an entry costs an int, a reference and a flag instead of a node and an
+ * Integer. Null values aren't supported, a null result means the key is missing.
+ *
+ * The map is split into segments by the hash of the key, each with its own lock for
+ * updates. Lookups don't lock, they read optimistically and only read again under
+ * the lock if the segment changed meanwhile. A lookup that finds an entry not marked as
+ * read since the last pass of the hand takes the read lock once to mark it, so a mark is
+ * never written from a read that wasn't validated. A full segment makes room for a new key
+ * by evicting one, chosen by the CLOCK algorithm as an approximation of least recently
+ * used: the hand passes over entries that were read since it last came by, and over
+ * pinned keys, e.g. hot keys. Pinned keys are only evicted when the hand went round
+ * twice without finding anything else.
+ */
+public final class BoundedIntMap<V> {
+
+  /**
+   * Receives the entries of {@link #forEach}.
+   */
+  @FunctionalInterface
+  public interface EntryConsumer<V> {
+    void accept(int key, V value);
+  }
+
+  private static final int MAX_SEGMENTS = 16;
+  // Below this many entries per segment the bound gets too coarse, fewer segments are used
+  private static final int MIN_SEGMENT_SIZE = 64;
+
+  private final Segment<V>[] segments;
+  private final int segmentShift;
+  private final IntPredicate pinned;
+
+  public BoundedIntMap(int maxSize) {
+    this(maxSize, key -> false);
+  }
+
+  @SuppressWarnings("unchecked")
+  public BoundedIntMap(int maxSize, IntPredicate pinned) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Max size must be positive");
+    }
+    int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE)));
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<>((maxSize + segmentCount - 1) / segmentCount);
+    }
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    this.pinned = pinned;
+  }
+
+  public V get(int key) {
+    int hash = hash(key);
+    return segmentFor(hash).get(key, hash);
+  }
+
+  /**
+   * @return the value that was replaced, or null
+   */
+  public V put(int key, V value) {
+    int hash = hash(key);
+    return segmentFor(hash).put(key, hash, value, false, pinned);
+  }
+
+  /**
+   * @return the current value, or null if the value was added
+   */
+  public V putIfAbsent(int key, V value) {
+    int hash = hash(key);
+    return segmentFor(hash).put(key, hash, value, true, pinned);
+  }
+
+  /**
+   * Like {@link java.util.concurrent.ConcurrentHashMap#computeIfAbsent}, the function
+   * runs under the lock of the segment, so it must be short and not use this map.
+   */
+  public V computeIfAbsent(int key, IntFunction<? extends V> function) {
+    int hash = hash(key);
+    Segment<V> segment = segmentFor(hash);
+    V value = segment.get(key, hash);
+    return value != null ? value : segment.computeIfAbsent(key, hash, function, pinned);
+  }
+
+  /**
+   * Replaces the value only if it is still {@code expected}, compared by identity.
+   */
+  public boolean replace(int key, V expected, V value) {
+    int hash = hash(key);
+    return segmentFor(hash).replace(key, hash, expected, value);
+  }
+
+  public V remove(int key) {
+    int hash = hash(key);
+    return segmentFor(hash).remove(key, hash, null);
+  }
+
+  /**
+   * Removes the value only if it is still {@code expected}, compared by identity.
+   */
+  public boolean remove(int key, V expected) {
+    int hash = hash(key);
+    return segmentFor(hash).remove(key, hash, expected) != null;
+  }
+
+  /**
+   * Sum of the segment sizes, which may change while they are added up.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Visits the entries segment by segment, each under its read lock.
+   */
+  public void forEach(EntryConsumer<? super V> consumer) {
+    for (Segment<V> segment : segments) {
+      segment.forEach(consumer);
+    }
+  }
+
+  private Segment<V> segmentFor(int hash) {
+    return segmentShift == 32 ? segments[0] : segments[hash >>> segmentShift];
+  }
+
+  // Fibonacci hashing, the high bits select the segment and are mixed into the low bits for the slot
+  static int hash(int key) {
+    return key * 0x9e3779b9;
+  }
+
+  static int slot(int hash, int mask) {
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  /**
+   * Arrays of one size, replaced as a whole when the segment grows, so an optimistic
+   * lookup never sees arrays of different sizes.
+   */
+  private static final class Table {
+    final int[] keys;
+    final Object[] values;
+    final boolean[] referenced;
+    final int mask;
+
+    Table(int capacity) {
+      keys = new int[capacity];
+      values = new Object[capacity];
+      referenced = new boolean[capacity];
+      mask = capacity - 1;
+    }
+  }
+
+  private static final class Segment<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+    private final int maxSize;
+    private Table table = new Table(INITIAL_CAPACITY);
+    private volatile int size;
+    private int hand;
+
+    Segment(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key, int hash) {
+      long stamp = lock.tryOptimisticRead();
+      Table current = table;
+      int index = find(current, key, hash);
+      Object value = index >= 0 ? current.values[index] : null;
+      if (lock.validate(stamp)) {
+        if (value == null || current.referenced[index]) {
+          return (V) value;
+        }
+        // Usually only the first lookup after the hand passed gets here
+        stamp = lock.tryConvertToReadLock(stamp);
+        if (stamp != 0L) {
+          try {
+            current.referenced[index] = true;
+          } finally {
+            lock.unlockRead(stamp);
+          }
+          return (V) value;
+        }
+      }
+      stamp = lock.readLock();
+      try {
+        current = table;
+        index = find(current, key, hash);
+        if (index < 0) {
+          return null;
+        }
+        current.referenced[index] = true;
+        return (V) current.values[index];
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    V put(int key, int hash, V value, boolean onlyIfAbsent, IntPredicate pinned) {
+      long stamp = lock.writeLock();
+      try {
+        int index = indexOf(table, key, hash);
+        if (index >= 0) {
+          @SuppressWarnings("unchecked")
+          V current = (V) table.values[index];
+          if (!onlyIfAbsent) {
+            table.values[index] = value;
+          }
+          return current;
+        }
+        insert(key, hash, value, pinned);
+        return null;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    V computeIfAbsent(int key, int hash, IntFunction<? extends V> function, IntPredicate pinned) {
+      long stamp = lock.writeLock();
+      try {
+        int index = indexOf(table, key, hash);
+        if (index >= 0) {
+          @SuppressWarnings("unchecked")
+          V current = (V) table.values[index];
+          return current;
+        }
+        V value = function.apply(key);
+        if (value != null) {
+          insert(key, hash, value, pinned);
+        }
+        return value;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    boolean replace(int key, int hash, V expected, V value) {
+      long stamp = lock.writeLock();
+      try {
+        int index = indexOf(table, key, hash);
+        if (index < 0 || table.values[index] != expected) {
+          return false;
+        }
+        table.values[index] = value;
+        return true;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    // Any value if expected is null
+    V remove(int key, int hash, V expected) {
+      long stamp = lock.writeLock();
+      try {
+        int index = indexOf(table, key, hash);
+        if (index < 0 || (expected != null && table.values[index] != expected)) {
+          return null;
+        }
+        @SuppressWarnings("unchecked")
+        V removed = (V) table.values[index];
+        removeAt(table, index);
+        size--;
+        return removed;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    void clear() {
+      long stamp = lock.writeLock();
+      try {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+        hand = 0;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(EntryConsumer<? super V> consumer) {
+      long stamp = lock.readLock();
+      try {
+        Table current = table;
+        for (int i = 0; i < current.values.length; i++) {
+          if (current.values[i] != null) {
+            consumer.accept(current.keys[i], (V) current.values[i]);
+          }
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    /**
+     * Runs without the lock during optimistic reads, so it must stop on any state, at
+     * the latest after one pass over the table, and only reads.
+     *
+     * @return the index of the key, or -1
+     */
+    private static int find(Table table, int key, int hash) {
+      int mask = table.mask;
+      for (int i = slot(hash, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        if (table.values[i] == null) {
+          return -1;
+        }
+        if (table.keys[i] == key) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private static int indexOf(Table table, int key, int hash) {
+      int mask = table.mask;
+      for (int i = slot(hash, mask); table.values[i] != null; i = (i + 1) & mask) {
+        if (table.keys[i] == key) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private void insert(int key, int hash, V value, IntPredicate pinned) {
+      if (size >= maxSize) {
+        evict(pinned);
+      } else if ((size + 1) * 2 > table.keys.length) {
+        grow();
+      }
+      int mask = table.mask;
+      int i = slot(hash, mask);
+      while (table.values[i] != null) {
+        i = (i + 1) & mask;
+      }
+      table.keys[i] = key;
+      table.values[i] = value;
+      table.referenced[i] = false;
+      size++;
+    }
+
+    // Doubles the table, which stays at most half full
+    private void grow() {
+      Table old = table;
+      Table grown = new Table(old.keys.length * 2);
+      for (int i = 0; i < old.keys.length; i++) {
+        if (old.values[i] != null) {
+          int j = slot(hash(old.keys[i]), grown.mask);
+          while (grown.values[j] != null) {
+            j = (j + 1) & grown.mask;
+          }
+          grown.keys[j] = old.keys[i];
+          grown.values[j] = old.values[i];
+          grown.referenced[j] = old.referenced[i];
+        }
+      }
+      table = grown;
+      hand = 0;
+    }
+
+    private void evict(IntPredicate pinned) {
+      Table current = table;
+      int capacity = current.keys.length;
+      // The first two rounds clear reference flags and skip pinned keys, the third takes any entry
+      for (int step = 0; step < capacity * 3; step++) {
+        int i = hand;
+        if (current.values[i] != null) {
+          if (current.referenced[i] && step < capacity * 2) {
+            current.referenced[i] = false;
+          } else if (step >= capacity * 2 || !pinned.test(current.keys[i])) {
+            removeAt(current, i);
+            size--;
+            return;
+          }
+        }
+        hand = (i + 1) & current.mask;
+      }
+    }
+
+    /**
+     * Removes by shifting the following entries of the probe sequence back, rather than
+     * leaving a tombstone, so lookups stop at the first empty slot.
+     */
+    private static void removeAt(Table table, int index) {
+      int mask = table.mask;
+      int empty = index;
+      for (int i = (index + 1) & mask; table.values[i] != null; i = (i + 1) & mask) {
+        int home = slot(hash(table.keys[i]), mask);
+        // The entry moves back unless its home slot lies cyclically in (empty, i]
+        boolean stays = empty <= i ? empty < home && home <= i : empty < home || home <= i;
+        if (!stays) {
+          table.keys[empty] = table.keys[i];
+          table.values[empty] = table.values[i];
+          table.referenced[empty] = table.referenced[i];
+          empty = i;
+        }
+      }
+      table.values[empty] = null;
+      table.referenced[empty] = false;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.vibhuti.microservices.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import com.vibhuti.microservices.api.event.Event;
+
+/**
+ * Applies a batch of create and delete commands, as queued by the composite, in their
+ * order. Consecutive creates are applied together, so they can be stored with one
+ * call, deletes one by one.
+ */
+public final class CommandBatch {
+
+  private CommandBatch() {
+  }
+
+  public static <T> void apply(List<Event<Integer, T>> commands, Consumer<List<T>> createAll, IntConsumer delete) {
+    List<T> creates = new ArrayList<>();
+    for (Event<Integer, T> command : commands) {
+      if (command.getEventType() == Event.Type.CREATE) {
+        creates.add(command.getData());
+      } else if (command.getEventType() == Event.Type.DELETE) {
+        if (!creates.isEmpty()) {
+          createAll.accept(creates);
+          creates = new ArrayList<>();
+        }
+        delete.accept(command.getKey());
+      }
+    }
+    if (!creates.isEmpty()) {
+      createAll.accept(creates);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.vibhuti.microservices.util;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerResult;
+import org.springframework.web.reactive.accept.RequestedContentTypeResolver;
+import org.springframework.web.reactive.result.method.annotation.ResponseBodyResultHandler;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.vibhuti.microservices.api.EntityTagged;
+import com.vibhuti.microservices.api.EntityTags;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes the ETag header for controller methods that return an {@link EntityTagged}
+ * representation, or a list of them, and answers a matching If-None-Match of a GET
+ * or HEAD with 304 Not Modified and no body. The tag returned by a PUT or PATCH is
+ * that of the new version, which If-Match was already checked against by the
+ * update itself. Runs before the default response body handler, which
+ * writes the body of all other responses.
+ */
+@Component
+public class EntityTagResultHandler extends ResponseBodyResultHandler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EntityTagResultHandler.class);
+
+	public EntityTagResultHandler(ServerCodecConfigurer serverCodecConfigurer,
+			RequestedContentTypeResolver webFluxContentTypeResolver, ReactiveAdapterRegistry webFluxAdapterRegistry) {
+		super(serverCodecConfigurer.getWriters(), webFluxContentTypeResolver, webFluxAdapterRegistry);
+		setOrder(50);
+	}
+
+	@Override
+	public boolean supports(HandlerResult result) {
+		return super.supports(result) && isTagged(result.getReturnType());
+	}
+
+	@Override
+	public Mono<Void> handleResult(ServerWebExchange exchange, HandlerResult result) {
+		String entityTag = entityTagOf(result.getReturnValue());
+		if (entityTag != null) {
+			if (isSafe(exchange.getRequest().getMethod()) && exchange.checkNotModified(entityTag)) {
+				LOG.debug("Not modified, ETag: {}, path: {}", entityTag, exchange.getRequest().getPath());
+				return exchange.getResponse().setComplete();
+			}
+			HttpHeaders headers = exchange.getResponse().getHeaders();
+			if (headers.getETag() == null) {
+				headers.setETag(entityTag);
+			}
+		}
+		return super.handleResult(exchange, result);
+	}
+
+	private static boolean isSafe(HttpMethod method) {
+		return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method);
+	}
+
+	private static boolean isTagged(ResolvableType type) {
+		if (List.class.isAssignableFrom(type.toClass())) {
+			return EntityTagged.class.isAssignableFrom(type.getGeneric(0).toClass());
+		}
+		return EntityTagged.class.isAssignableFrom(type.toClass());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String entityTagOf(Object value) {
+		if (value instanceof EntityTagged tagged) {
+			return tagged.entityTag();
+		}
+		if (value instanceof List<?> list) {
+			return EntityTags.ofList((List<? extends EntityTagged>) list);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,46 @@
+package com.vibhuti.microservices.util;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.vibhuti.microservices.api.event.Event;
+
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * In-memory broker for the change events of a service, subscribers get the events
+ * published while they are subscribed. Nothing is stored, a subscriber that reconnects
+ * has to assume it missed events. Events are buffered per subscriber, one that falls
+ * more than {@code buffer-size} events behind gets an error rather than a gap.
+ */
+@Component
+public class EventPublisher {
+
+  private final Sinks.Many<Event<?, ?>> sink = Sinks.many().multicast().directBestEffort();
+  private final int bufferSize;
+
+  @Autowired
+  public EventPublisher(@Value("${app.events.buffer-size:10000}") int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public void publish(Event<?, ?> event) {
+    // Concurrent publishers retry until the sink is free, a sink without subscribers drops the event
+    sink.emitNext(event, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+  }
+
+  /**
+   * Starts with a {@link Event.Type#SUBSCRIBED} event, sent once the stream is attached,
+   * so every event published after it is received.
+   */
+  public Flux<Event<?, ?>> events() {
+    Flux<Event<?, ?>> published = sink.asFlux().onBackpressureBuffer(bufferSize, BufferOverflowStrategy.ERROR);
+    return Flux.merge(published, Mono.fromSupplier(() -> new Event<>(Event.Type.SUBSCRIBED, null, null)));
+  }
+}
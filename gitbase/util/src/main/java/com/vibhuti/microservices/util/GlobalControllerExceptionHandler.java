@@ -1,8 +1,10 @@
 package com.vibhuti.microservices.util;
 
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -15,6 +17,8 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import com.vibhuti.microservices.exception.BadRequestException;
 import com.vibhuti.microservices.exception.InvalidInputException;
 import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.exception.PreconditionFailedException;
+import com.vibhuti.microservices.exception.ServiceUnavailableException;
 
 @RestControllerAdvice
 class GlobalControllerExceptionHandler {
@@ -37,6 +41,14 @@ class GlobalControllerExceptionHandler {
     return createHttpErrorInfo(NOT_FOUND, request, ex);
   }
 
+  @ResponseStatus(PRECONDITION_FAILED)
+  @ExceptionHandler(PreconditionFailedException.class)
+  public @ResponseBody HttpErrorInfo handlePreconditionFailedException(
+    ServerHttpRequest request, PreconditionFailedException ex) {
+
+    return createHttpErrorInfo(PRECONDITION_FAILED, request, ex);
+  }
+
   @ResponseStatus(UNPROCESSABLE_ENTITY)
   @ExceptionHandler(InvalidInputException.class)
   public @ResponseBody HttpErrorInfo handleInvalidInputException(
@@ -45,6 +57,14 @@ class GlobalControllerExceptionHandler {
     return createHttpErrorInfo(UNPROCESSABLE_ENTITY, request, ex);
   }
 
+  @ResponseStatus(SERVICE_UNAVAILABLE)
+  @ExceptionHandler(ServiceUnavailableException.class)
+  public @ResponseBody HttpErrorInfo handleServiceUnavailableException(
+    ServerHttpRequest request, ServiceUnavailableException ex) {
+
+    return createHttpErrorInfo(SERVICE_UNAVAILABLE, request, ex);
+  }
+
   private HttpErrorInfo createHttpErrorInfo(
     HttpStatus httpStatus, ServerHttpRequest request, Exception ex) {
 
@@ -0,0 +1,214 @@
+package com.vibhuti.microservices.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the most requested product ids with {@link SpaceSaving} sketches, in
+ * constant memory however many distinct ids are requested. Counts are kept per
+ * window and reported over the current and the previous window, so they follow
+ * shifts in traffic. At the end of a window its top {@code pinned} keys become the
+ * hot keys, which caches can keep in memory, see {@link #isHot}.
+ *
+ * Requests are recorded on the calling thread into one of several stripes, each a
+ * sketch with a lock of its own, so concurrent requests rarely wait for each other.
+ * The stripes are merged when they are read: a key's count is the sum of its counts
+ * in the stripes, and for a stripe that doesn't count it, the most it could have
+ * occurred there. The error bound adds up over the stripes the same way.
+ *
+ * Exposed on the actuator endpoint /actuator/hotkeys.
+ */
+@Component
+public class HotKeyTracker {
+
+  public record HotKey(int key, long count, long maxError, double ratePerSecond) {
+  }
+
+  private static final int MAX_STRIPES = 16;
+
+  private final int pinned;
+  private final long windowNanos;
+  private final long start;
+  private final Stripe[] stripes;
+  private final int stripeMask;
+  // The window whose start the hot keys were last taken at
+  private final AtomicLong hotKeysWindow = new AtomicLong();
+  private volatile Set<Integer> hotKeys = Set.of();
+
+  @Autowired
+  public HotKeyTracker(
+    @Value("${app.hot-keys.capacity:100}") int capacity,
+    @Value("${app.hot-keys.pinned:10}") int pinned,
+    @Value("${app.hot-keys.window:1m}") Duration window) {
+
+    this(capacity, pinned, window, Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()));
+  }
+
+  HotKeyTracker(int capacity, int pinned, Duration window, int stripes) {
+    this.pinned = pinned;
+    this.windowNanos = window.toNanos();
+    this.start = System.nanoTime();
+    int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      this.stripes[i] = new Stripe(capacity);
+    }
+    this.stripeMask = stripeCount - 1;
+  }
+
+  public void record(int key) {
+    long window = windowAt(System.nanoTime());
+    stripes[(int) Thread.currentThread().getId() & stripeMask].offer(key, window);
+    if (window > hotKeysWindow.get()) {
+      updateHotKeys(window);
+    }
+  }
+
+  /**
+   * The most requested keys over the current and the previous window, highest count
+   * first. A count can be up to maxError too high, never too low.
+   */
+  public List<HotKey> topKeys(int limit) {
+    long now = System.nanoTime();
+    long window = windowAt(now);
+    updateHotKeys(window);
+
+    List<Counts> counts = new ArrayList<>(stripes.length * 2);
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.rotate(window);
+        counts.add(new Counts(stripe.current));
+        if (stripe.previous != null) {
+          counts.add(new Counts(stripe.previous));
+        }
+      }
+    }
+    Set<Integer> keys = new LinkedHashSet<>();
+    counts.forEach(part -> keys.addAll(part.counters().keySet()));
+
+    // Windows are aligned for all stripes, the rate is over the previous and the current one
+    long elapsed = now - start - Math.max(0, window - 1) * windowNanos;
+    double seconds = Math.max(1e-3, elapsed / 1e9);
+    return keys.stream()
+      .map(key -> estimate(key, counts, seconds))
+      .sorted(Comparator.comparingLong(HotKey::count).reversed())
+      .limit(limit)
+      .collect(Collectors.toList());
+  }
+
+  private static HotKey estimate(int key, List<Counts> windows, double seconds) {
+    long count = 0;
+    long error = 0;
+    for (Counts window : windows) {
+      SpaceSaving.Counter counter = window.counters().get(key);
+      // A key that isn't counted in a window occurred at most minCount times in it
+      count += counter == null ? window.minCount() : counter.count();
+      error += counter == null ? window.minCount() : counter.error();
+    }
+    return new HotKey(key, count, error, count / seconds);
+  }
+
+  /**
+   * True for the top keys of the last completed window, cheap enough to be called
+   * on every cache eviction.
+   */
+  public boolean isHot(int key) {
+    return hotKeys.contains(key);
+  }
+
+  private long windowAt(long now) {
+    return (now - start) / windowNanos;
+  }
+
+  /**
+   * Takes the hot keys from the last window with traffic before this one, once per
+   * window, by the first thread that gets here.
+   */
+  private void updateHotKeys(long window) {
+    long last = hotKeysWindow.get();
+    if (window <= last || !hotKeysWindow.compareAndSet(last, window)) {
+      return;
+    }
+    List<Counts> completed = new ArrayList<>(stripes.length);
+    long completedWindow = -1;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.rotate(window);
+        if (stripe.completedWindow > completedWindow) {
+          completed.clear();
+          completedWindow = stripe.completedWindow;
+        }
+        if (stripe.completedWindow == completedWindow && stripe.completed != null) {
+          completed.add(new Counts(stripe.completed));
+        }
+      }
+    }
+    Set<Integer> keys = new LinkedHashSet<>();
+    completed.forEach(counts -> keys.addAll(counts.counters().keySet()));
+    hotKeys = keys.stream()
+      .map(key -> estimate(key, completed, 1))
+      .sorted(Comparator.comparingLong(HotKey::count).reversed())
+      .limit(pinned)
+      .map(HotKey::key)
+      .collect(Collectors.toSet());
+  }
+
+  // The counters of a window, copied under the lock of its stripe
+  private record Counts(Map<Integer, SpaceSaving.Counter> counters, long minCount) {
+
+    Counts(SpaceSaving window) {
+      this(window.counters().stream().collect(Collectors.toMap(SpaceSaving.Counter::key, counter -> counter)),
+        window.minCount());
+    }
+  }
+
+  /**
+   * The sketches of the current and the previous window of some of the threads.
+   * Windows are numbered from the start of the tracker, so all stripes agree on them.
+   */
+  private static final class Stripe {
+    private final int capacity;
+    private SpaceSaving current;
+    private long currentWindow;
+    // Null after a window without requests on this stripe
+    private SpaceSaving previous;
+    // The last window with requests before the current one, whether adjacent or not
+    private SpaceSaving completed;
+    private long completedWindow = -1;
+
+    Stripe(int capacity) {
+      this.capacity = capacity;
+      this.current = new SpaceSaving(capacity);
+    }
+
+    synchronized void offer(int key, long window) {
+      rotate(window);
+      current.offer(key);
+    }
+
+    // Called holding the lock of the stripe
+    void rotate(long window) {
+      if (window <= currentWindow) {
+        return;
+      }
+      if (!current.isEmpty()) {
+        completed = current;
+        completedWindow = currentWindow;
+      }
+      previous = window == currentWindow + 1 ? current : null;
+      current = new SpaceSaving(capacity);
+      currentWindow = window;
+    }
+  }
+}
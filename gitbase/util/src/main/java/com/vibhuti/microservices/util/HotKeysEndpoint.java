@@ -0,0 +1,35 @@
+package com.vibhuti.microservices.util;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sample usage: "curl $HOST:$PORT/actuator/hotkeys" for the top 20, or
+ * "curl $HOST:$PORT/actuator/hotkeys/10" for another number of them.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+
+  private static final int DEFAULT_LIMIT = 20;
+
+  private final HotKeyTracker hotKeyTracker;
+
+  public HotKeysEndpoint(HotKeyTracker hotKeyTracker) {
+    this.hotKeyTracker = hotKeyTracker;
+  }
+
+  @ReadOperation
+  public List<HotKeyTracker.HotKey> hotKeys() {
+    return hotKeyTracker.topKeys(DEFAULT_LIMIT);
+  }
+
+  @ReadOperation
+  public List<HotKeyTracker.HotKey> hotKeys(@Selector int limit) {
+    return hotKeyTracker.topKeys(limit);
+  }
+}
@@ -0,0 +1,199 @@
+package com.vibhuti.microservices.util;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.vibhuti.microservices.api.event.ChangeEvent;
+import com.vibhuti.microservices.api.event.Event;
+import com.vibhuti.microservices.exception.InvalidInputException;
+import com.vibhuti.microservices.exception.ServiceUnavailableException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The changes of a MongoDB collection as {@link ChangeEvent}s, read from a change
+ * stream, which needs a replica set, a single node one will do. Inserts, replaces and
+ * updates are sent as {@link Event.Type#CREATE} with the stored entity, deletes as
+ * {@link Event.Type#DELETE} keyed by the product id of the deleted document, read from
+ * its pre-image. The stream is only read as fast as the subscriber requests events.
+ *
+ * The driver's cursor blocks, so each consumer holds a thread of the feed for as long
+ * as it is attached, waiting on the database for up to {@code maxAwait} at a time and
+ * idle while it has no demand. Up to {@code maxConsumers} consumers are served, more
+ * are refused with a {@link ServiceUnavailableException}. The threads are the feed's
+ * own, so consumers don't take those of the other blocking calls.
+ *
+ * @param <E> the entity stored in the collection
+ * @param <T> the api model sent in the events
+ */
+public class MongoChangeFeed<E, T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MongoChangeFeed.class);
+
+  // The _data of a resume token is a hex string
+  private static final Pattern RESUME_TOKEN = Pattern.compile("[0-9A-Fa-f]+");
+  // InvalidResumeToken, ChangeStreamFatalError and ChangeStreamHistoryLost
+  private static final int[] LOST_POSITION_CODES = { 260, 280, 286 };
+
+  private final MongoTemplate mongoTemplate;
+  private final String collectionName;
+  private final Class<E> entityClass;
+  private final Function<E, T> mapper;
+  private final Duration maxAwait;
+  private final Semaphore consumers;
+  private final Scheduler scheduler;
+
+  /**
+   * Enables the pre-images of the collection, which the deletes are keyed from, and
+   * creates the collection for it if needed.
+   */
+  public MongoChangeFeed(MongoTemplate mongoTemplate, Class<E> entityClass, Function<E, T> mapper,
+    Duration maxAwait, int maxConsumers) {
+
+    this.mongoTemplate = mongoTemplate;
+    this.collectionName = mongoTemplate.getCollectionName(entityClass);
+    this.entityClass = entityClass;
+    this.mapper = mapper;
+    this.maxAwait = maxAwait;
+    this.consumers = new Semaphore(maxConsumers);
+    this.scheduler = Schedulers.newBoundedElastic(maxConsumers, maxConsumers, collectionName + "-changes", 60, true);
+
+    if (!mongoTemplate.collectionExists(collectionName)) {
+      try {
+        mongoTemplate.createCollection(collectionName);
+      } catch (RuntimeException e) {
+        // Unless created by another instance, or for an index, in the meantime
+        if (!mongoTemplate.collectionExists(collectionName)) {
+          throw e;
+        }
+      }
+    }
+    mongoTemplate.getDb().runCommand(new Document("collMod", collectionName)
+      .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+  }
+
+  /**
+   * Starts with a {@link Event.Type#SUBSCRIBED} event, sent once the stream is open,
+   * with the resume token of the current position.
+   *
+   * @param resumeAfter the resume token of the last event received, null for changes from now on
+   * @return the changes, or a {@link ServiceUnavailableException} if {@code maxConsumers}
+   *         consumers are attached
+   */
+  public Flux<ChangeEvent<Integer, T>> changes(String resumeAfter) {
+    if (resumeAfter != null && !RESUME_TOKEN.matcher(resumeAfter).matches()) {
+      throw new InvalidInputException("Invalid resume token: " + resumeAfter);
+    }
+    return Flux.defer(() -> {
+      if (!consumers.tryAcquire()) {
+        return Flux.error(new ServiceUnavailableException("Too many consumers of the " + collectionName
+          + " changes, try again later"));
+      }
+      return Flux.<ChangeEvent<Integer, T>>create(sink -> read(sink, resumeAfter))
+        .subscribeOn(scheduler)
+        .doFinally(signal -> consumers.release());
+    });
+  }
+
+  /**
+   * Stops the threads of the consumers, which ends their streams.
+   */
+  public void dispose() {
+    scheduler.dispose();
+  }
+
+  private void read(FluxSink<ChangeEvent<Integer, T>> sink, String resumeAfter) {
+    // Wakes the reader up when there is demand again, or the consumer is gone
+    Semaphore signal = new Semaphore(0);
+    sink.onRequest(requested -> signal.release());
+    sink.onDispose(signal::release);
+
+    var watch = mongoTemplate.getCollection(collectionName).watch()
+      .fullDocument(FullDocument.UPDATE_LOOKUP)
+      .fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE)
+      .maxAwaitTime(maxAwait.toMillis(), TimeUnit.MILLISECONDS);
+    if (resumeAfter != null) {
+      watch = watch.resumeAfter(new BsonDocument("_data", new BsonString(resumeAfter)));
+    }
+
+    try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = watch.cursor()) {
+      sink.next(new ChangeEvent<>(Event.Type.SUBSCRIBED, null, null, token(cursor.getResumeToken())));
+      // Checks for a cancel at least every maxAwait, the cursor is closed by this thread only
+      while (!sink.isCancelled()) {
+        if (sink.requestedFromDownstream() == 0) {
+          signal.tryAcquire(maxAwait.toMillis(), TimeUnit.MILLISECONDS);
+          continue;
+        }
+        ChangeStreamDocument<Document> change = cursor.tryNext();
+        if (change == null) {
+          continue;
+        }
+        switch (change.getOperationType()) {
+          case INSERT, REPLACE, UPDATE -> {
+            if (change.getFullDocument() != null) {
+              E entity = mongoTemplate.getConverter().read(entityClass, change.getFullDocument());
+              sink.next(new ChangeEvent<>(Event.Type.CREATE, productId(change.getFullDocument()),
+                mapper.apply(entity), token(change.getResumeToken())));
+            }
+          }
+          case DELETE -> {
+            if (change.getFullDocumentBeforeChange() != null) {
+              sink.next(new ChangeEvent<>(Event.Type.DELETE, productId(change.getFullDocumentBeforeChange()),
+                null, token(change.getResumeToken())));
+            } else {
+              LOG.warn("No pre-image of a deleted {} document, skips its delete", collectionName);
+            }
+          }
+          case INVALIDATE -> {
+            sink.complete();
+            return;
+          }
+          default -> LOG.debug("Skips a {} change of {}", change.getOperationType(), collectionName);
+        }
+      }
+    } catch (InterruptedException e) {
+      // Disposed
+      Thread.currentThread().interrupt();
+      sink.complete();
+    } catch (MongoCommandException e) {
+      sink.error(lostPosition(e) ? new InvalidInputException("Resume token no longer valid: " + resumeAfter) : e);
+    } catch (RuntimeException e) {
+      sink.error(e);
+    }
+  }
+
+  private static boolean lostPosition(MongoCommandException e) {
+    for (int code : LOST_POSITION_CODES) {
+      if (e.getErrorCode() == code) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Integer productId(Document document) {
+    return document.getInteger("productId");
+  }
+
+  private static String token(BsonDocument resumeToken) {
+    return resumeToken == null ? null : resumeToken.getString("_data").getValue();
+  }
+}
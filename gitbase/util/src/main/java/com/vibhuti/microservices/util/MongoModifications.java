@@ -0,0 +1,103 @@
+package com.vibhuti.microservices.util;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.vibhuti.microservices.api.core.Modification;
+import com.vibhuti.microservices.exception.InvalidInputException;
+
+/**
+ * Tracks the time of the last change of each product in a collection of its own,
+ * one document per product id that outlives deletes, so changes can be listed since a
+ * position. Changes younger than {@code settleTime} aren't listed yet, a change whose
+ * write is still in progress would otherwise show up behind a position already
+ * listed.
+ *
+ * A write touches its products before it starts, with one bulk upsert, a round trip
+ * of its own. Its time is the clock of the writing instance then. A consumer that
+ * lists past it before the write lands misses the change until the next change of the
+ * product. This is the case when the write takes longer than {@code settleTime}, or
+ * the clocks of the instances are further apart than what is left of it. So a write
+ * calls {@link #touchAgainIfLate} when done, which touches its products again, at a
+ * later position, if it took more than half the settle time. The clocks are assumed
+ * to be synchronized well within the other half. A write that fails after the touch
+ * lists a modification that didn't happen, which consumers read as no change.
+ */
+public class MongoModifications {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MongoModifications.class);
+
+  private static final String LAST_MODIFIED = "lastModified";
+
+  private final MongoTemplate mongoTemplate;
+  private final String collectionName;
+  private final Duration settleTime;
+
+  public MongoModifications(MongoTemplate mongoTemplate, String collectionName, Duration settleTime) {
+    this.mongoTemplate = mongoTemplate;
+    this.collectionName = collectionName;
+    this.settleTime = settleTime;
+    mongoTemplate.indexOps(collectionName)
+      .ensureIndex(new Index().on(LAST_MODIFIED, Sort.Direction.ASC).on("_id", Sort.Direction.ASC));
+  }
+
+  /**
+   * Upserts the last modified time of the products, with one bulk write.
+   *
+   * @return the time they were touched at, for {@link #touchAgainIfLate}
+   */
+  public long touch(Collection<Integer> productIds) {
+    long now = System.currentTimeMillis();
+    if (productIds.isEmpty()) {
+      return now;
+    }
+    BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collectionName);
+    productIds.stream().distinct().forEach(productId ->
+      operations.upsert(Query.query(where("_id").is(productId)), new Update().set(LAST_MODIFIED, now)));
+    operations.execute();
+    return now;
+  }
+
+  /**
+   * Touches the products again if the write that touched them at {@code touchedAt}
+   * ended so late that it may land behind a position consumers listed already.
+   */
+  public void touchAgainIfLate(Collection<Integer> productIds, long touchedAt) {
+    long took = System.currentTimeMillis() - touchedAt;
+    if (took > settleTime.toMillis() / 2) {
+      LOG.warn("A write of {} took {} ms, touches its products again so it isn't missed", collectionName, took);
+      touch(productIds);
+    }
+  }
+
+  public List<Modification> after(long afterTime, int afterProductId, int limit) {
+    if (limit < 1 || limit > Modification.MAX_LIMIT) {
+      throw new InvalidInputException("Invalid limit: " + limit);
+    }
+    long until = System.currentTimeMillis() - settleTime.toMillis();
+    Query query = Query.query(new Criteria().andOperator(
+        where(LAST_MODIFIED).lte(until),
+        new Criteria().orOperator(
+          where(LAST_MODIFIED).gt(afterTime),
+          where(LAST_MODIFIED).is(afterTime).and("_id").gt(afterProductId))))
+      .with(Sort.by(LAST_MODIFIED, "_id"))
+      .limit(limit);
+    return mongoTemplate.find(query, Document.class, collectionName).stream()
+      .map(document -> new Modification(document.getInteger("_id"), document.getLong(LAST_MODIFIED)))
+      .toList();
+  }
+}
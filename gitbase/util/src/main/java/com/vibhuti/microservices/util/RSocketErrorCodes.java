@@ -0,0 +1,64 @@
+package com.vibhuti.microservices.util;
+
+import com.vibhuti.microservices.exception.BadRequestException;
+import com.vibhuti.microservices.exception.InvalidInputException;
+import com.vibhuti.microservices.exception.NotFoundException;
+import com.vibhuti.microservices.exception.PreconditionFailedException;
+
+import io.rsocket.exceptions.CustomRSocketException;
+
+/**
+ * Application error codes sent in RSocket ERROR frames, the RSocket counterpart of
+ * the HTTP status codes set by {@link GlobalControllerExceptionHandler}. Codes
+ * must be in the range reserved for applications, starting at 0x301.
+ *
+ * Boot doesn't apply {@code @ControllerAdvice} to {@code @MessageMapping} methods,
+ * so RSocket controllers map their errors with
+ * {@code onErrorMap(RSocketErrorCodes::toRSocketException)}.
+ */
+public final class RSocketErrorCodes {
+
+  public static final int BAD_REQUEST = 0x00000400;
+  public static final int NOT_FOUND = 0x00000404;
+  public static final int PRECONDITION_FAILED = 0x00000412;
+  public static final int UNPROCESSABLE_ENTITY = 0x00000422;
+
+  private RSocketErrorCodes() {
+  }
+
+  /**
+   * Translates an exception thrown by a core service into an ERROR frame with the
+   * matching code, other exceptions are returned as is.
+   */
+  public static Throwable toRSocketException(Throwable ex) {
+    if (ex instanceof BadRequestException) {
+      return new CustomRSocketException(BAD_REQUEST, ex.getMessage());
+    } else if (ex instanceof NotFoundException) {
+      return new CustomRSocketException(NOT_FOUND, ex.getMessage());
+    } else if (ex instanceof PreconditionFailedException) {
+      return new CustomRSocketException(PRECONDITION_FAILED, ex.getMessage());
+    } else if (ex instanceof InvalidInputException) {
+      return new CustomRSocketException(UNPROCESSABLE_ENTITY, ex.getMessage());
+    }
+    return ex;
+  }
+
+  /**
+   * Translates an error received over RSocket back into the exception the core
+   * service threw, other errors are returned as is.
+   */
+  public static RuntimeException toException(CustomRSocketException ex) {
+    switch (ex.errorCode()) {
+      case BAD_REQUEST:
+        return new BadRequestException(ex.getMessage());
+      case NOT_FOUND:
+        return new NotFoundException(ex.getMessage());
+      case PRECONDITION_FAILED:
+        return new PreconditionFailedException(ex.getMessage());
+      case UNPROCESSABLE_ENTITY:
+        return new InvalidInputException(ex.getMessage());
+      default:
+        return ex;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.vibhuti.microservices.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy hitters sketch (Metwally et al.) over int keys, with a fixed
+ * number of counters. A key that isn't counted takes over the counter with the
+ * lowest count, and inherits that count as its possible overestimation. Every key
+ * that occurs more than n / capacity times in n offers is guaranteed to be counted.
+ *
+ * Counters are kept in a min-heap, so an offer costs O(log capacity). Not thread
+ * safe, see the stripes of {@link HotKeyTracker}.
+ */
+final class SpaceSaving {
+
+  record Counter(int key, long count, long error) {
+  }
+
+  private final int[] keys;
+  private final long[] counts;
+  private final long[] errors;
+  private final Map<Integer, Integer> positions;
+  private int size;
+
+  SpaceSaving(int capacity) {
+    this.keys = new int[capacity];
+    this.counts = new long[capacity];
+    this.errors = new long[capacity];
+    this.positions = new HashMap<>(capacity * 2);
+  }
+
+  void offer(int key) {
+    Integer position = positions.get(key);
+    if (position != null) {
+      counts[position]++;
+      siftDown(position);
+    } else if (size < keys.length) {
+      keys[size] = key;
+      counts[size] = 1;
+      errors[size] = 0;
+      positions.put(key, size);
+      siftUp(size++);
+    } else {
+      long min = counts[0];
+      positions.remove(keys[0]);
+      keys[0] = key;
+      counts[0] = min + 1;
+      errors[0] = min;
+      positions.put(key, 0);
+      siftDown(0);
+    }
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Upper bound of the count of a key that isn't counted, 0 while counters are free.
+   */
+  long minCount() {
+    return size < keys.length ? 0 : counts[0];
+  }
+
+  List<Counter> counters() {
+    List<Counter> counters = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      counters.add(new Counter(keys[i], counts[i], errors[i]));
+    }
+    counters.sort(Comparator.comparingLong(Counter::count).reversed());
+    return counters;
+  }
+
+  private void siftUp(int position) {
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (counts[parent] <= counts[position]) {
+        return;
+      }
+      swap(position, parent);
+      position = parent;
+    }
+  }
+
+  private void siftDown(int position) {
+    while (true) {
+      int smallest = position;
+      int left = 2 * position + 1;
+      int right = left + 1;
+      if (left < size && counts[left] < counts[smallest]) {
+        smallest = left;
+      }
+      if (right < size && counts[right] < counts[smallest]) {
+        smallest = right;
+      }
+      if (smallest == position) {
+        return;
+      }
+      swap(position, smallest);
+      position = smallest;
+    }
+  }
+
+  private void swap(int i, int j) {
+    int key = keys[i];
+    long count = counts[i];
+    long error = errors[i];
+    keys[i] = keys[j];
+    counts[i] = counts[j];
+    errors[i] = errors[j];
+    keys[j] = key;
+    counts[j] = count;
+    errors[j] = error;
+    positions.put(keys[i], i);
+    positions.put(keys[j], j);
+  }
+}
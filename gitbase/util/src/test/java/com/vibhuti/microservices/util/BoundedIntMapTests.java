@@ -0,0 +1,209 @@
+package com.vibhuti.microservices.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedIntMapTests {
+
+  // Below 128 entries the map is a single segment, its table has 16 slots up to 8 entries
+  private static final int SLOTS = 16;
+
+  @Test
+  void findsCollidingKeysAcrossTheEndOfTheTable() {
+    BoundedIntMap<Integer> map = new BoundedIntMap<>(100);
+    // Three keys at home in the last slot wrap around to slots 0 and 1, the others are pushed behind them
+    List<Integer> lastSlot = keysWithHomeSlot(SLOTS - 1, 3);
+    int firstSlot = keysWithHomeSlot(0, 1).get(0);
+    int secondSlot = keysWithHomeSlot(1, 1).get(0);
+    List<Integer> keys = new ArrayList<>(lastSlot);
+    keys.add(firstSlot);
+    keys.add(secondSlot);
+    keys.forEach(key -> map.put(key, key));
+
+    assertEquals(5, map.size());
+    keys.forEach(key -> assertEquals(key, map.get(key)));
+    assertNull(map.get(keysWithHomeSlot(SLOTS - 1, 4).get(3)));
+
+    // Deleting the one in slot 0 shifts every following entry back by one, over the wrap
+    assertEquals(lastSlot.get(1), map.remove(lastSlot.get(1)));
+    assertNull(map.get(lastSlot.get(1)));
+    keys.stream().filter(key -> !key.equals(lastSlot.get(1))).forEach(key -> assertEquals(key, map.get(key)));
+
+    // Deleting the one in the last slot pulls the wrapped entries back across the end
+    assertEquals(lastSlot.get(0), map.remove(lastSlot.get(0)));
+    assertEquals(lastSlot.get(2), map.get(lastSlot.get(2)));
+    assertEquals(firstSlot, map.get(firstSlot));
+    assertEquals(secondSlot, map.get(secondSlot));
+    assertEquals(3, map.size());
+
+    assertTrue(map.remove(secondSlot, secondSlot));
+    assertTrue(map.remove(lastSlot.get(2), lastSlot.get(2)));
+    assertEquals(firstSlot, map.get(firstSlot));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void matchesHashMapUnderRandomUpdates() {
+    BoundedIntMap<Integer> map = new BoundedIntMap<>(100_000);
+    Map<Integer, Integer> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200_000; i++) {
+      int key = random.nextInt(5_000) - 1_000;
+      switch (random.nextInt(4)) {
+        case 0 -> assertEquals(expected.remove(key), map.remove(key));
+        case 1 -> assertEquals(expected.putIfAbsent(key, i), map.putIfAbsent(key, i));
+        default -> assertEquals(expected.put(key, i), map.put(key, i));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+    map.forEach((key, value) -> assertEquals(expected.get(key), value));
+  }
+
+  @Test
+  void evictsAnUnreadUnpinnedKeyWhenFull() {
+    BoundedIntMap<Integer> map = new BoundedIntMap<>(8, key -> key == 5);
+    for (int key = 1; key <= 8; key++) {
+      map.put(key, key);
+    }
+    for (int key = 1; key <= 4; key++) {
+      map.get(key);
+    }
+
+    map.put(9, 9);
+    assertEquals(8, map.size());
+    for (int key = 1; key <= 5; key++) {
+      assertEquals(key, map.get(key));
+    }
+    assertEquals(9, map.get(9));
+    assertEquals(2, IntStream.rangeClosed(6, 8).filter(key -> map.get(key) != null).count());
+
+    // With every key pinned and read, the third round of the hand evicts one anyway
+    BoundedIntMap<Integer> pinned = new BoundedIntMap<>(8, key -> true);
+    for (int key = 1; key <= 8; key++) {
+      pinned.put(key, key);
+      pinned.get(key);
+    }
+    pinned.put(9, 9);
+    assertEquals(8, pinned.size());
+    assertEquals(9, pinned.get(9));
+  }
+
+  @Test
+  void evictsKeysThatWereNotReadRecently() throws InterruptedException {
+    BoundedIntMap<Integer> map = new BoundedIntMap<>(1_000);
+    for (int key = 0; key < 1_000; key++) {
+      map.put(key, key);
+    }
+    for (int key = 0; key < 100; key++) {
+      map.get(key);
+    }
+    for (int key = 1_000; key < 1_500; key++) {
+      map.put(key, key);
+    }
+    assertTrue(map.size() <= 1_000);
+    for (int key = 0; key < 100; key++) {
+      assertEquals(key, map.get(key));
+    }
+
+    // Concurrent updates keep the bound and never mix up keys and values
+    AtomicInteger mismatches = new AtomicInteger();
+    Thread[] writers = new Thread[4];
+    for (int t = 0; t < writers.length; t++) {
+      int seed = t;
+      writers[t] = new Thread(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < 100_000; i++) {
+          int key = random.nextInt(10_000);
+          Integer value = random.nextBoolean() ? map.put(key, key) : map.get(key);
+          if (value != null && value != key) {
+            mismatches.incrementAndGet();
+          }
+          if (i % 10 == 0) {
+            map.remove(random.nextInt(10_000));
+          }
+        }
+      });
+      writers[t].start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    assertEquals(0, mismatches.get());
+    assertTrue(map.size() <= 1_000);
+    map.forEach((key, value) -> assertEquals(key, value));
+  }
+
+  @Test
+  void readerAlwaysFindsKeysAWriterMovesAround() throws InterruptedException {
+    // Pinned keys stay in the map, while the writer's puts grow the table and its removes and
+    // evictions shift entries back, those of the pinned keys among them
+    List<Integer> pinned = IntStream.range(0, 10).map(i -> i * 37).boxed().toList();
+    BoundedIntMap<Integer> map = new BoundedIntMap<>(100, pinned::contains);
+    pinned.forEach(key -> map.put(key, key));
+
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicInteger misses = new AtomicInteger();
+    AtomicInteger mismatches = new AtomicInteger();
+    Thread reader = new Thread(() -> {
+      Random random = new Random(7);
+      while (!done.get()) {
+        for (int key : pinned) {
+          if (!Integer.valueOf(key).equals(map.get(key))) {
+            misses.incrementAndGet();
+          }
+        }
+        int key = random.nextInt(500);
+        Integer value = map.get(key);
+        if (value != null && value != key) {
+          mismatches.incrementAndGet();
+        }
+      }
+    });
+    reader.start();
+    try {
+      Random random = new Random(42);
+      for (int i = 0; i < 200_000; i++) {
+        int key = random.nextInt(500);
+        if (pinned.contains(key)) {
+          continue;
+        }
+        if (random.nextInt(3) == 0) {
+          map.remove(key);
+        } else {
+          map.put(key, key);
+        }
+      }
+    } finally {
+      done.set(true);
+      reader.join();
+    }
+    assertEquals(0, misses.get());
+    assertEquals(0, mismatches.get());
+    assertTrue(map.size() <= 100);
+    pinned.forEach(key -> assertEquals(key, map.get(key)));
+  }
+
+  // The first keys from 0 up whose probe sequence starts at the slot, in a table of SLOTS
+  private static List<Integer> keysWithHomeSlot(int slot, int count) {
+    List<Integer> keys = new ArrayList<>();
+    for (int key = 0; keys.size() < count; key++) {
+      if (BoundedIntMap.slot(BoundedIntMap.hash(key), SLOTS - 1) == slot) {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+}
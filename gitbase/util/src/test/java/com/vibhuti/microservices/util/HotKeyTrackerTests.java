@@ -0,0 +1,72 @@
+package com.vibhuti.microservices.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.vibhuti.microservices.util.HotKeyTracker.HotKey;
+
+class HotKeyTrackerTests {
+
+  @Test
+  void findsHeavyHittersAmongManyKeys() throws InterruptedException {
+    HotKeyTracker tracker = new HotKeyTracker(20, 3, Duration.ofMillis(200));
+    Random random = new Random(42);
+    // Keys 1 to 3 make up half of the traffic, the rest is spread over 100 000 keys
+    for (int i = 0; i < 100_000; i++) {
+      tracker.record(random.nextBoolean() ? 1 + random.nextInt(3) : 100 + random.nextInt(100_000));
+    }
+
+    List<HotKey> top = tracker.topKeys(3);
+    assertEquals(List.of(1, 2, 3), top.stream().map(HotKey::key).sorted().toList());
+    top.forEach(hotKey -> {
+      assertTrue(hotKey.count() - hotKey.maxError() <= 17_000, "count: " + hotKey);
+      assertTrue(hotKey.count() >= 16_000, "count: " + hotKey);
+    });
+
+    assertFalse(tracker.isHot(1));
+    Thread.sleep(250);
+    tracker.record(5);
+    assertTrue(tracker.isHot(1));
+    assertFalse(tracker.isHot(5));
+  }
+
+  @Test
+  void mergesTheStripesOfConcurrentThreads() throws InterruptedException {
+    HotKeyTracker tracker = new HotKeyTracker(20, 2, Duration.ofMillis(200), 4);
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          tracker.record(1);
+          if (i % 2 == 0) {
+            tracker.record(2);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // Fewer keys than counters, so the counts are exact however the threads were striped
+    List<HotKey> top = tracker.topKeys(2);
+    assertEquals(List.of(1, 2), top.stream().map(HotKey::key).toList());
+    assertEquals(80_000, top.get(0).count());
+    assertEquals(40_000, top.get(1).count());
+    assertEquals(0, top.get(0).maxError());
+
+    Thread.sleep(250);
+    tracker.record(3);
+    assertTrue(tracker.isHot(1));
+    assertTrue(tracker.isHot(2));
+    assertFalse(tracker.isHot(3));
+  }
+}